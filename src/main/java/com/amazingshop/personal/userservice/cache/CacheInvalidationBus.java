@@ -0,0 +1,428 @@
+package com.amazingshop.personal.userservice.cache;
+
+import com.amazingshop.personal.userservice.util.AfterCommit;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Инвалидация локальных кэшей на других узлах через PostgreSQL LISTEN/NOTIFY.
+ * <p>
+ * Кэш подписывается на свой регион и сам выбрасывает записи у себя; шина после коммита
+ * рассылает ключи остальным узлам. Отправляет один поток: ключи из очереди собираются в пачки
+ * и уходят через pg_notify с номером по порядку. Слушает отдельное соединение вне пула.
+ * <p>
+ * Потерянное сообщение означает устаревший кэш, поэтому любая потеря заканчивается полным сбросом:
+ * получатель сбрасывает всё при пропуске в номерах и после переподключения, а отправитель,
+ * не сумевший отправить или переполнивший очередь, пропускает номер - и сбрасываются все остальные.
+ */
+@Slf4j
+@Component
+public class CacheInvalidationBus {
+
+    public static final String METRIC_NAME = "cache.invalidation";
+
+    // Лимит payload у NOTIFY - 8000 байт
+    static final int MAX_PAYLOAD_BYTES = 7900;
+
+    private static final String LISTENER_APPLICATION_NAME = "cache-invalidation-listener";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSourceProperties dataSourceProperties;
+    private final boolean enabled;
+    private final String channel;
+    private final int maxBatch;
+    private final long reconnectDelayMs;
+    private final long maxReconnectDelayMs;
+    private final long keepaliveMs;
+
+    private final String nodeId = UUID.randomUUID().toString().substring(0, 8);
+    private final Map<String, Subscriber> subscribers = new ConcurrentHashMap<>();
+    private final BlockingQueue<Key> queue;
+    private final AtomicLong sequence = new AtomicLong();
+    // Отправка не удалась или очередь переполнилась - следующее сообщение пропустит номер
+    private final AtomicBoolean lost = new AtomicBoolean();
+    // Последний принятый номер по каждому узлу-отправителю
+    private final Map<String, Long> lastSequences = new ConcurrentHashMap<>();
+
+    private final Counter sentKeys;
+    private final Counter receivedKeys;
+    private final Counter reconnects;
+    private final MeterRegistry meterRegistry;
+
+    private final List<Thread> threads = new ArrayList<>();
+    private volatile boolean running;
+    private volatile boolean connected;
+    private volatile Connection listenerConnection;
+
+    @Autowired
+    public CacheInvalidationBus(JdbcTemplate jdbcTemplate,
+                                DataSourceProperties dataSourceProperties,
+                                MeterRegistry meterRegistry,
+                                @Value("${cache.invalidation.enabled:false}") boolean enabled,
+                                @Value("${cache.invalidation.channel:cache_invalidation}") String channel,
+                                @Value("${cache.invalidation.queue-capacity:10000}") int queueCapacity,
+                                @Value("${cache.invalidation.max-batch:500}") int maxBatch,
+                                @Value("${cache.invalidation.reconnect-delay-ms:1000}") long reconnectDelayMs,
+                                @Value("${cache.invalidation.max-reconnect-delay-ms:30000}") long maxReconnectDelayMs,
+                                @Value("${cache.invalidation.keepalive-ms:10000}") long keepaliveMs) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dataSourceProperties = dataSourceProperties;
+        this.enabled = enabled;
+        this.channel = channel;
+        this.queue = new LinkedBlockingQueue<>(queueCapacity);
+        this.maxBatch = maxBatch;
+        this.reconnectDelayMs = reconnectDelayMs;
+        this.maxReconnectDelayMs = maxReconnectDelayMs;
+        this.keepaliveMs = keepaliveMs;
+        this.meterRegistry = meterRegistry;
+
+        this.sentKeys = Counter.builder(METRIC_NAME + ".sent")
+                .description("Ключи, разосланные другим узлам")
+                .register(meterRegistry);
+        this.receivedKeys = Counter.builder(METRIC_NAME + ".received")
+                .description("Ключи, принятые от других узлов")
+                .register(meterRegistry);
+        this.reconnects = Counter.builder(METRIC_NAME + ".reconnects")
+                .description("Переподключения слушающего соединения")
+                .register(meterRegistry);
+        Gauge.builder(METRIC_NAME + ".connected", this, bus -> bus.connected ? 1 : 0)
+                .description("1, если слушающее соединение установлено")
+                .register(meterRegistry);
+        Gauge.builder(METRIC_NAME + ".queue.size", queue, BlockingQueue::size)
+                .description("Ключи, ожидающие отправки")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            log.info("Cache invalidation bus is disabled, local caches rely on ttl only");
+            return;
+        }
+        running = true;
+        startThread(this::runSender, "cache-invalidation-sender");
+        startThread(this::runListener, "cache-invalidation-listener");
+        log.info("Cache invalidation bus started on channel {}, node {}", channel, nodeId);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        closeQuietly(listenerConnection);
+        for (Thread thread : threads) {
+            thread.join(TimeUnit.SECONDS.toMillis(10));
+        }
+    }
+
+    /**
+     * evict - выбросить запись по ключу, flush - сбросить весь кэш (сообщения могли потеряться)
+     */
+    public void subscribe(String region, Consumer<String> evict, Runnable flush) {
+        subscribers.put(region, new Subscriber(evict, flush));
+    }
+
+    /**
+     * Разослать ключ остальным узлам после коммита текущей транзакции.
+     * Свой кэш вызывающий сбрасывает сам
+     */
+    public void publish(String region, String key) {
+        publishAll(region, List.of(key));
+    }
+
+    public void publishAll(String region, Collection<String> keys) {
+        if (!enabled || keys.isEmpty()) {
+            return;
+        }
+        AfterCommit.run(() -> {
+            for (String key : keys) {
+                if (!queue.offer(new Key(region, key))) {
+                    lost.set(true);
+                    return;
+                }
+            }
+        });
+    }
+
+    private void runSender() {
+        List<Key> batch = new ArrayList<>(maxBatch);
+        // После stop() дорабатываем то, что уже в очереди
+        while (running || !queue.isEmpty()) {
+            try {
+                Key first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, maxBatch - 1);
+                send(new LinkedHashSet<>(batch));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void send(Set<Key> keys) {
+        List<List<Key>> chunks = chunk(keys);
+        for (List<Key> chunk : chunks) {
+            long seq = lost.getAndSet(false) ? sequence.addAndGet(2) : sequence.incrementAndGet();
+            try {
+                jdbcTemplate.query("SELECT pg_notify(?, ?)", rs -> null, channel, encode(nodeId, seq, chunk));
+                sentKeys.increment(chunk.size());
+            } catch (DataAccessException e) {
+                lost.set(true);
+                log.warn("Failed to publish {} cache invalidation keys, other nodes will flush", chunk.size(), e);
+            }
+        }
+    }
+
+    private void runListener() {
+        long delay = reconnectDelayMs;
+        while (running) {
+            try (Connection connection = connect()) {
+                listenerConnection = connection;
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + channel);
+                }
+                connected = true;
+                delay = reconnectDelayMs;
+                // Пока не слушали, сообщения могли пройти мимо
+                lastSequences.clear();
+                flushAll("connect");
+                listen(connection.unwrap(PGConnection.class), connection);
+            } catch (SQLException e) {
+                if (running) {
+                    log.warn("Cache invalidation listener lost connection, reconnecting in {} ms", delay, e);
+                }
+            } finally {
+                connected = false;
+                listenerConnection = null;
+            }
+
+            if (running) {
+                reconnects.increment();
+                sleep(delay);
+                delay = Math.min(delay * 2, maxReconnectDelayMs);
+            }
+        }
+    }
+
+    private void listen(PGConnection pgConnection, Connection connection) throws SQLException {
+        long lastActivity = System.currentTimeMillis();
+        while (running) {
+            PGNotification[] notifications = pgConnection.getNotifications(500);
+            if (notifications != null && notifications.length > 0) {
+                for (PGNotification notification : notifications) {
+                    receive(notification.getParameter());
+                }
+                lastActivity = System.currentTimeMillis();
+            } else if (System.currentTimeMillis() - lastActivity >= keepaliveMs) {
+                // Оборванное без RST соединение молчит - проверяем запросом
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("SELECT 1");
+                }
+                lastActivity = System.currentTimeMillis();
+            }
+        }
+    }
+
+    /**
+     * Разбирает сообщение другого узла; свои сообщения пропускаются
+     */
+    void receive(String payload) {
+        Message message = decode(payload);
+        if (message == null) {
+            log.warn("Ignoring malformed cache invalidation message: {}", payload);
+            return;
+        }
+        if (nodeId.equals(message.nodeId())) {
+            return;
+        }
+
+        Long previous = lastSequences.put(message.nodeId(), message.seq());
+        if (previous != null && message.seq() != previous + 1) {
+            log.warn("Missed cache invalidation messages from node {} ({} -> {})", message.nodeId(), previous,
+                    message.seq());
+            flushAll("gap");
+            return;
+        }
+
+        receivedKeys.increment(message.keys().size());
+        for (Key key : message.keys()) {
+            Subscriber subscriber = subscribers.get(key.region());
+            if (subscriber == null) {
+                continue;
+            }
+            try {
+                subscriber.evict().accept(key.key());
+            } catch (RuntimeException e) {
+                log.error("Cache invalidation of {}:{} failed", key.region(), key.key(), e);
+            }
+        }
+    }
+
+    void flushAll(String reason) {
+        Counter.builder(METRIC_NAME + ".flushes")
+                .description("Полные сбросы локальных кэшей")
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+        subscribers.forEach((region, subscriber) -> {
+            try {
+                subscriber.flush().run();
+            } catch (RuntimeException e) {
+                log.error("Cache flush of {} failed", region, e);
+            }
+        });
+        log.info("Flushed local caches: {}", reason);
+    }
+
+    String nodeId() {
+        return nodeId;
+    }
+
+    private Connection connect() throws SQLException {
+        Properties properties = new Properties();
+        properties.setProperty("user", dataSourceProperties.determineUsername());
+        String password = dataSourceProperties.determinePassword();
+        if (password != null) {
+            properties.setProperty("password", password);
+        }
+        properties.setProperty("ApplicationName", LISTENER_APPLICATION_NAME);
+        return DriverManager.getConnection(dataSourceProperties.determineUrl(), properties);
+    }
+
+    static List<List<Key>> chunk(Set<Key> keys) {
+        List<List<Key>> chunks = new ArrayList<>();
+        List<Key> current = new ArrayList<>();
+        // Заголовок "nodeId seq" укладывается в 40 байт
+        int size = 40;
+        for (Key key : keys) {
+            int keySize = line(key).length() + 1;
+            if (!current.isEmpty() && size + keySize > MAX_PAYLOAD_BYTES) {
+                chunks.add(current);
+                current = new ArrayList<>();
+                size = 40;
+            }
+            current.add(key);
+            size += keySize;
+        }
+        if (!current.isEmpty()) {
+            chunks.add(current);
+        }
+        return chunks;
+    }
+
+    /**
+     * Первая строка - "nodeId seq", дальше по строке "region key" на ключ; ключ URL-кодирован
+     */
+    static String encode(String nodeId, long seq, List<Key> keys) {
+        StringBuilder payload = new StringBuilder(nodeId).append(' ').append(seq);
+        for (Key key : keys) {
+            payload.append('\n').append(line(key));
+        }
+        return payload.toString();
+    }
+
+    static Message decode(String payload) {
+        if (payload == null) {
+            return null;
+        }
+        String[] lines = payload.split("\n");
+        String[] header = lines[0].split(" ");
+        if (header.length != 2) {
+            return null;
+        }
+        try {
+            long seq = Long.parseLong(header[1]);
+            List<Key> keys = new ArrayList<>(lines.length - 1);
+            for (int i = 1; i < lines.length; i++) {
+                int space = lines[i].indexOf(' ');
+                if (space < 0) {
+                    return null;
+                }
+                keys.add(new Key(lines[i].substring(0, space),
+                        URLDecoder.decode(lines[i].substring(space + 1), StandardCharsets.UTF_8)));
+            }
+            return new Message(header[0], seq, keys);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static String line(Key key) {
+        return key.region() + ' ' + URLEncoder.encode(key.key(), StandardCharsets.UTF_8);
+    }
+
+    private void startThread(Runnable task, String name) {
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+        thread.start();
+        threads.add(thread);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void closeQuietly(Connection connection) {
+        if (connection == null) {
+            return;
+        }
+        try {
+            connection.close();
+        } catch (SQLException e) {
+            log.debug("Failed to close cache invalidation listener connection", e);
+        }
+    }
+
+    record Key(String region, String key) {
+    }
+
+    record Message(String nodeId, long seq, List<Key> keys) {
+    }
+
+    private record Subscriber(Consumer<String> evict, Runnable flush) {
+    }
+}
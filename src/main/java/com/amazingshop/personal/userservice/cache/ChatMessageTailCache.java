@@ -0,0 +1,184 @@
+package com.amazingshop.personal.userservice.cache;
+
+import com.amazingshop.personal.userservice.models.ChatMessage;
+import com.amazingshop.personal.userservice.util.AfterCommit;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Кэш последних N сообщений каждого чата.
+ * <p>
+ * Сообщения меняются только через addMessage, поэтому хвост обновляется на месте
+ * после коммита, а удаление чата просто выбрасывает запись. Ограничение по весу
+ * (приблизительно в байтах) и W-TinyLFU допуск Caffeine не дают нескольким огромным
+ * чатам вытеснить всех остальных.
+ * <p>
+ * Другие узлы не могут дописать чужое сообщение, поэтому по {@link CacheInvalidationBus}
+ * любая запись в чат просто выбрасывает его хвост.
+ */
+@Slf4j
+@Component
+public class ChatMessageTailCache {
+
+    public static final String METRIC_NAME = "chat.messages.tail";
+    public static final String REGION = "chat.tail";
+
+    private static final int STAMP_STRIPES = 64;
+    private static final int MESSAGE_OVERHEAD_BYTES = 96;
+
+    private final Cache<Long, Tail> cache;
+    private final int tailSize;
+    private final CacheInvalidationBus invalidationBus;
+
+    // Счётчики записей по полосам chatId: читатель не кладёт в кэш список,
+    // если пока он читал БД, в этот чат успели что-то записать
+    private final AtomicLongArray stamps = new AtomicLongArray(STAMP_STRIPES);
+
+    public ChatMessageTailCache(@Value("${chat.cache.tail-size:50}") int tailSize,
+                                @Value("${chat.cache.max-weight-bytes:67108864}") long maxWeightBytes,
+                                MeterRegistry meterRegistry,
+                                CacheInvalidationBus invalidationBus) {
+        this.tailSize = tailSize;
+        this.invalidationBus = invalidationBus;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxWeightBytes)
+                .weigher((Long chatId, Tail tail) -> tail.weight())
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, METRIC_NAME);
+        Gauge.builder(METRIC_NAME + ".hit.ratio", cache, c -> c.stats().hitRate())
+                .description("Доля обращений к истории чата, обслуженных из кэша")
+                .register(meterRegistry);
+        Gauge.builder(METRIC_NAME + ".weight", cache, ChatMessageTailCache::weightedSize)
+                .description("Приблизительный объём памяти, занятый хвостами чатов")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+        invalidationBus.subscribe(REGION, key -> evict(Long.valueOf(key)), this::evictAll);
+    }
+
+    /**
+     * Хвост чата или null, если его нет в кэше
+     */
+    public Tail get(Long chatId) {
+        return cache.getIfPresent(chatId);
+    }
+
+    /**
+     * Отметка, которую нужно взять ДО чтения сообщений из БД и передать в {@link #put}
+     */
+    public long stamp(Long chatId) {
+        return stamps.get(stripe(chatId));
+    }
+
+    /**
+     * Кладёт в кэш хвост полной истории чата (сообщения по возрастанию).
+     * Владелец сохраняется вместе с хвостом, чтобы попадание в кэш не требовало проверки по БД.
+     * Ничего не делает, если с момента {@code stamp} в чат были записи.
+     */
+    public void put(Long chatId, Long ownerId, List<ChatMessage> messages, long stamp) {
+        int from = Math.max(0, messages.size() - tailSize);
+        Tail tail = Tail.of(ownerId, messages.subList(from, messages.size()), from == 0);
+
+        cache.asMap().compute(chatId, (id, existing) ->
+                stamps.get(stripe(id)) == stamp ? tail : existing);
+    }
+
+    /**
+     * Дописывает сообщение в хвост после коммита текущей транзакции
+     */
+    public void append(Long chatId, ChatMessage message) {
+        AfterCommit.run(() -> {
+            stamps.incrementAndGet(stripe(chatId));
+            cache.asMap().computeIfPresent(chatId, (id, tail) -> tail.append(message, tailSize));
+        });
+        invalidationBus.publish(REGION, chatId.toString());
+    }
+
+    public void invalidate(Long chatId) {
+        evict(chatId);
+        AfterCommit.run(() -> evict(chatId));
+        invalidationBus.publish(REGION, chatId.toString());
+    }
+
+    public void invalidateAll(Collection<Long> chatIds) {
+        chatIds.forEach(this::evict);
+        AfterCommit.run(() -> chatIds.forEach(this::evict));
+        invalidationBus.publishAll(REGION, chatIds.stream().map(String::valueOf).toList());
+    }
+
+    private void evict(Long chatId) {
+        stamps.incrementAndGet(stripe(chatId));
+        cache.invalidate(chatId);
+    }
+
+    // Полный сброс: отметки всех полос сдвигаются, чтобы начатые чтения не положили старые списки
+    private void evictAll() {
+        for (int i = 0; i < STAMP_STRIPES; i++) {
+            stamps.incrementAndGet(i);
+        }
+        cache.invalidateAll();
+    }
+
+    private static int stripe(Long chatId) {
+        return (int) (chatId & (STAMP_STRIPES - 1));
+    }
+
+    private static double weightedSize(Cache<Long, Tail> cache) {
+        return cache.policy().eviction()
+                .map(eviction -> eviction.weightedSize().orElse(0L))
+                .orElse(0L);
+    }
+
+    /**
+     * Последние сообщения чата по возрастанию.
+     * complete = true, если хвост содержит всю историю чата.
+     */
+    public record Tail(Long ownerId, List<ChatMessage> messages, boolean complete, int weight) {
+
+        static Tail of(Long ownerId, List<ChatMessage> messages, boolean complete) {
+            int weight = 0;
+            for (ChatMessage message : messages) {
+                weight += weigh(message);
+            }
+            return new Tail(ownerId, List.copyOf(messages), complete, weight);
+        }
+
+        Tail append(ChatMessage message, int tailSize) {
+            // Читатель мог уже увидеть это сообщение в БД
+            if (!messages.isEmpty() && message.getId() <= messages.get(messages.size() - 1).getId()) {
+                return this;
+            }
+
+            List<ChatMessage> updated = new ArrayList<>(messages.size() + 1);
+            updated.addAll(messages);
+            updated.add(message);
+
+            int overflow = updated.size() - tailSize;
+            if (overflow > 0) {
+                return of(ownerId, updated.subList(overflow, updated.size()), false);
+            }
+            return of(ownerId, updated, complete);
+        }
+
+        private static int weigh(ChatMessage message) {
+            int chars = length(message.getContent()) + length(message.getRole()) + length(message.getTemplateUsed());
+            return MESSAGE_OVERHEAD_BYTES + chars * 2;
+        }
+
+        private static int length(String value) {
+            return value != null ? value.length() : 0;
+        }
+    }
+}
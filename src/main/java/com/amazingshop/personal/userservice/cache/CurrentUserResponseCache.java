@@ -0,0 +1,98 @@
+package com.amazingshop.personal.userservice.cache;
+
+import com.amazingshop.personal.userservice.dto.responses.CurrentUserResponse;
+import com.amazingshop.personal.userservice.util.AfterCommit;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.function.Supplier;
+
+/**
+ * Ответ GET /users/me по id пользователя: DTO, его JSON и ETag.
+ * <p>
+ * JSON сериализуется один раз при заполнении, дальше отдаются те же байты.
+ * Изменения пользователя на этом узле записываются в кэш после коммита (write-through),
+ * удаление выбрасывает запись. Другие узлы выбрасывают её по {@link CacheInvalidationBus},
+ * ttl страхует на случай, если шина выключена.
+ */
+@Component
+public class CurrentUserResponseCache {
+
+    public static final String METRIC_NAME = "users.me";
+    public static final String REGION = "users.me";
+
+    private final Cache<Long, Entry> cache;
+    private final ObjectMapper objectMapper;
+    private final CacheInvalidationBus invalidationBus;
+
+    @Autowired
+    public CurrentUserResponseCache(ObjectMapper objectMapper,
+                                    @Value("${users.cache.me.max-size:10000}") long maxSize,
+                                    @Value("${users.cache.me.ttl-seconds:300}") long ttlSeconds,
+                                    MeterRegistry meterRegistry,
+                                    CacheInvalidationBus invalidationBus) {
+        this.objectMapper = objectMapper;
+        this.invalidationBus = invalidationBus;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, METRIC_NAME);
+        invalidationBus.subscribe(REGION, key -> cache.invalidate(Long.valueOf(key)), cache::invalidateAll);
+    }
+
+    /**
+     * Запись из кэша; при промахе loader читает пользователя из БД.
+     * Запись после коммита ждёт идущую загрузку того же ключа и заменяет её результат
+     */
+    public Entry get(Long userId, Supplier<CurrentUserResponse> loader) {
+        return cache.get(userId, id -> entry(loader.get()));
+    }
+
+    /**
+     * Кладёт новое состояние пользователя после коммита текущей транзакции.
+     * До коммита запись просто выброшена - читатели загрузят зафиксированное состояние
+     */
+    public void put(CurrentUserResponse response) {
+        if (response.getId() == null) {
+            return;
+        }
+        Entry entry = entry(response);
+        cache.invalidate(response.getId());
+        AfterCommit.run(() -> cache.put(response.getId(), entry));
+        invalidationBus.publish(REGION, response.getId().toString());
+    }
+
+    public void invalidate(Long userId) {
+        cache.invalidate(userId);
+        AfterCommit.run(() -> cache.invalidate(userId));
+        invalidationBus.publish(REGION, userId.toString());
+    }
+
+    private Entry entry(CurrentUserResponse response) {
+        try {
+            byte[] json = objectMapper.writeValueAsBytes(response);
+            return new Entry(response, json, "me-" + DigestUtils.md5DigestAsHex(json));
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /**
+     * json - тело ответа в application/json, etag - хэш этих байтов
+     */
+    public record Entry(CurrentUserResponse response, byte[] json, String etag) {
+    }
+}
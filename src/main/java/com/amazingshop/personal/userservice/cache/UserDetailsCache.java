@@ -0,0 +1,92 @@
+package com.amazingshop.personal.userservice.cache;
+
+import com.amazingshop.personal.userservice.models.User;
+import com.amazingshop.personal.userservice.security.details.UserDetailsImpl;
+import com.amazingshop.personal.userservice.util.AfterCommit;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Снимки {@link UserDetailsImpl} по username для JwtFilter и логина.
+ * <p>
+ * Сохранение пользователя на этом узле заменяет снимок после коммита (роль, пароль),
+ * удаление выбрасывает его. Другие узлы выбрасывают снимок по {@link CacheInvalidationBus},
+ * короткий ttl страхует на случай, если шина выключена. Отсутствующие пользователи не кэшируются,
+ * как и чтения из пишущей транзакции
+ */
+@Component
+public class UserDetailsCache {
+
+    public static final String METRIC_NAME = "users.details";
+    public static final String REGION = "users.details";
+    public static final String REGION_BY_ID = "users.details.id";
+
+    private final Cache<String, UserDetailsImpl> cache;
+    private final CacheInvalidationBus invalidationBus;
+
+    @Autowired
+    public UserDetailsCache(@Value("${users.cache.details.max-size:10000}") long maxSize,
+                            @Value("${users.cache.details.ttl-seconds:60}") long ttlSeconds,
+                            MeterRegistry meterRegistry,
+                            CacheInvalidationBus invalidationBus) {
+        this.invalidationBus = invalidationBus;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofSeconds(ttlSeconds))
+                .recordStats()
+                .build();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache, METRIC_NAME);
+        invalidationBus.subscribe(REGION, cache::invalidate, cache::invalidateAll);
+        invalidationBus.subscribe(REGION_BY_ID, key -> evictById(Long.valueOf(key)), cache::invalidateAll);
+    }
+
+    /**
+     * Снимок из кэша; при промахе loader читает пользователя из БД.
+     * В пишущей транзакции кэш обходится: loader видит её незакоммиченные изменения,
+     * а снимок из кэша может не видеть их
+     */
+    public Optional<UserDetailsImpl> get(String username, Function<String, Optional<User>> loader) {
+        if (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            return loader.apply(username).map(UserDetailsImpl::new);
+        }
+        return Optional.ofNullable(cache.get(username, name -> loader.apply(name).map(UserDetailsImpl::new).orElse(null)));
+    }
+
+    /**
+     * Заменяет снимок после коммита текущей транзакции; до коммита читатели идут в БД
+     */
+    public void put(User user) {
+        if (user.getUsername() == null) {
+            return;
+        }
+        UserDetailsImpl details = new UserDetailsImpl(user);
+        cache.invalidate(user.getUsername());
+        AfterCommit.run(() -> cache.put(user.getUsername(), details));
+        invalidationBus.publish(REGION, user.getUsername());
+    }
+
+    /**
+     * Выбрасывает снимок по id - перебор всего кэша, вызывается только при удалении
+     */
+    public void invalidate(Long userId) {
+        evictById(userId);
+        AfterCommit.run(() -> evictById(userId));
+        invalidationBus.publish(REGION_BY_ID, userId.toString());
+    }
+
+    private void evictById(Long userId) {
+        cache.asMap().values().removeIf(details -> userId.equals(details.getId()));
+    }
+}
@@ -0,0 +1,56 @@
+package com.amazingshop.personal.userservice.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class AsyncConfig {
+
+    public static final String MAINTENANCE_EXECUTOR = "maintenanceExecutor";
+    public static final String CHAT_EVENTS_EXECUTOR = "chatEventsExecutor";
+
+    /**
+     * Пул для долгих фоновых задач обслуживания (массовое удаление и т.п.)
+     * Очередь ограничена, чтобы всплеск запросов не копил задачи без конца.
+     * С виртуальными потоками размер пула и очередь остаются - они ограничивают нагрузку на БД, а не число потоков
+     */
+    @Bean(name = MAINTENANCE_EXECUTOR)
+    public ThreadPoolTaskExecutor maintenanceExecutor(@Value("${maintenance.executor.pool-size:2}") int poolSize,
+                                                      @Value("${maintenance.executor.queue-capacity:100}") int queueCapacity,
+                                                      @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        if (virtualThreads) {
+            executor.setThreadFactory(Thread.ofVirtual().name("maintenance-", 0).factory());
+        }
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("maintenance-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+
+    /**
+     * Рабочие потоки конвейера событий чата ({@link com.amazingshop.personal.userservice.events.ChatEventDispatcher}).
+     * Каждый поток занят циклом разбора очереди до остановки, поэтому пул ровно на chat.events.workers и без очереди
+     */
+    @Bean(name = CHAT_EVENTS_EXECUTOR)
+    public ThreadPoolTaskExecutor chatEventsExecutor(@Value("${chat.events.workers:1}") int workers,
+                                                     @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        if (virtualThreads) {
+            executor.setThreadFactory(Thread.ofVirtual().name("chat-events-", 0).factory());
+        }
+        int poolSize = Math.max(workers, 1);
+        executor.setCorePoolSize(poolSize);
+        executor.setMaxPoolSize(poolSize);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("chat-events-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(10);
+        return executor;
+    }
+}
@@ -0,0 +1,80 @@
+package com.amazingshop.personal.userservice.config;
+
+import com.amazingshop.personal.userservice.datasource.ReadYourWrites;
+import com.amazingshop.personal.userservice.datasource.ReplicaDataSource;
+import com.amazingshop.personal.userservice.datasource.WriteTrackingDataSource;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Маршрутизация read-only транзакций на реплики.
+ * Включается, только если задан datasource.replica.urls; иначе работает обычный пул Spring Boot.
+ * <p>
+ * LazyConnectionDataSourceProxy откладывает получение соединения до первого запроса -
+ * к этому моменту Spring уже пометил транзакцию read-only, и прокси берёт соединение из реплик.
+ */
+@Configuration
+@ConditionalOnExpression("!'${datasource.replica.urls:}'.isBlank()")
+public class ReplicaRoutingConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+        return properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+    }
+
+    @Bean
+    public ReadYourWrites readYourWrites(@Value("${datasource.replica.read-your-writes-ms:5000}") long windowMs) {
+        return new ReadYourWrites(Duration.ofMillis(windowMs));
+    }
+
+    @Bean
+    public ReplicaDataSource replicaDataSource(HikariDataSource primaryDataSource,
+                                               DataSourceProperties properties,
+                                               ReadYourWrites readYourWrites,
+                                               MeterRegistry meterRegistry,
+                                               @Value("${datasource.replica.urls}") List<String> urls,
+                                               @Value("${datasource.replica.pool-size:10}") int poolSize,
+                                               @Value("${datasource.replica.max-lag-ms:1000}") long maxLagMs,
+                                               @Value("${datasource.replica.lag-query:" + ReplicaDataSource.POSTGRES_LAG_QUERY + "}")
+                                               String lagQuery) {
+        List<DataSource> replicas = new ArrayList<>(urls.size());
+        for (int i = 0; i < urls.size(); i++) {
+            HikariConfig config = new HikariConfig();
+            config.setPoolName("replica-" + i);
+            config.setJdbcUrl(urls.get(i).trim());
+            config.setUsername(properties.determineUsername());
+            config.setPassword(properties.determinePassword());
+            config.setDriverClassName(properties.determineDriverClassName());
+            config.setMaximumPoolSize(poolSize);
+            config.setReadOnly(true);
+            replicas.add(new HikariDataSource(config));
+        }
+        return new ReplicaDataSource(primaryDataSource, replicas, readYourWrites, Duration.ofMillis(maxLagMs),
+                lagQuery, meterRegistry);
+    }
+
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, ReplicaDataSource replicaDataSource,
+                                 ReadYourWrites readYourWrites) {
+        LazyConnectionDataSourceProxy proxy =
+                new LazyConnectionDataSourceProxy(new WriteTrackingDataSource(primaryDataSource, readYourWrites));
+        proxy.setReadOnlyDataSource(replicaDataSource);
+        return proxy;
+    }
+}
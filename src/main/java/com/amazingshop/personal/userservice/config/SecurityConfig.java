@@ -62,6 +62,9 @@ public class SecurityConfig {
                         // Chat history endpoints - требуют аутентификации
                         .requestMatchers("/api/v1/chats/**").hasAnyRole(Role.USER.toString(), Role.ADMIN.toString())
 
+                        // Internal endpoints (ai-service) - с токеном пользователя, только его чаты
+                        .requestMatchers("/api/v1/internal/**").hasAnyRole(Role.USER.toString(), Role.ADMIN.toString())
+
                         // Custom endpoints (Пользовательские эндпоинты)
                         .requestMatchers(HttpMethod.GET, "/api/v1/users/me").hasAnyRole(Role.USER.toString(), Role.ADMIN.toString())
                         .requestMatchers(HttpMethod.PUT, "/api/v1/users/me").hasAnyRole(Role.USER.toString(), Role.ADMIN.toString())
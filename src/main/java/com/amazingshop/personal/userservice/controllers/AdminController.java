@@ -1,25 +1,40 @@
 package com.amazingshop.personal.userservice.controllers;
 
+import com.amazingshop.personal.userservice.dto.requests.AdminUserQuery;
 import com.amazingshop.personal.userservice.dto.requests.UserDTO;
-import com.amazingshop.personal.userservice.dto.responses.UserResponse;
+import com.amazingshop.personal.userservice.dto.responses.AdminUserPage;
+import com.amazingshop.personal.userservice.dto.responses.DeletionJobResponse;
+import com.amazingshop.personal.userservice.dto.responses.PlatformStatsResponse;
+import com.amazingshop.personal.userservice.enums.UserExportFormat;
 import com.amazingshop.personal.userservice.interfaces.AdminService;
 import com.amazingshop.personal.userservice.interfaces.ConverterService;
 import com.amazingshop.personal.userservice.interfaces.UserService;
 import com.amazingshop.personal.userservice.models.User;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.List;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
+import java.util.Locale;
 import java.util.Map;
+import java.util.zip.GZIPOutputStream;
 
 @Slf4j
 @RestController
 @RequestMapping("/admin")
 public class AdminController {
 
+    private static final int EXPORT_BUFFER_SIZE = 64 * 1024;
+
     private final UserService userService;
     private final AdminService adminService;
     private final ConverterService converterService;
@@ -44,19 +59,69 @@ public class AdminController {
     }
 
     /**
-     * Админский эндпоинт - получение всех пользователей
-     * GET /api/v1/users/admin/all
+     * Админский эндпоинт - страница пользователей с фильтрами и сортировкой.
+     * Следующая страница - тот же запрос с cursor=nextCursor; nextCursor=null - страниц больше нет
+     * GET /api/v1/admin/users?role=&createdFrom=&createdTo=&usernamePrefix=&emailPrefix=&sort=&direction=&limit=&cursor=
+     */
+    @GetMapping("/users")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<AdminUserPage> listUsers(AdminUserQuery query) {
+        AdminUserPage page = adminService.listUsers(query);
+        log.info("Users page requested by admin, count: {}", page.getUsers().size());
+        return ResponseEntity.ok(page);
+    }
+
+    /**
+     * Админский эндпоинт - выгрузка всех пользователей в CSV или NDJSON.
+     * Пишется прямо в ответ по мере чтения из БД; если Accept-Encoding допускает gzip - сжимается на лету
+     * GET /api/v1/admin/users/export?format=csv|ndjson
+     */
+    @GetMapping("/users/export")
+    @PreAuthorize("hasRole('ADMIN')")
+    public void exportUsers(@RequestParam(defaultValue = "csv") String format,
+                            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+                            HttpServletResponse response) throws IOException {
+        UserExportFormat exportFormat = UserExportFormat.fromParam(format);
+        boolean gzip = acceptsGzip(acceptEncoding);
+
+        response.setContentType(exportFormat.getContentType() + ";charset=UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename("users." + exportFormat.getExtension())
+                .build()
+                .toString());
+        response.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+
+        OutputStream out = gzip
+                ? new GZIPOutputStream(response.getOutputStream(), EXPORT_BUFFER_SIZE)
+                : new BufferedOutputStream(response.getOutputStream(), EXPORT_BUFFER_SIZE);
+        try {
+            long rows = adminService.exportUsers(exportFormat, out);
+            // Закрываем только после успешной выгрузки: оборванный ошибкой gzip остаётся без трейлера,
+            // и клиент не примет обрезанный файл за целый
+            out.close();
+            log.info("Users exported by admin as {}, rows: {}", exportFormat, rows);
+        } catch (IOException e) {
+            // Ответ уже начат - сообщить об ошибке некому, клиент скорее всего отключился
+            log.info("Users export aborted: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * Админский эндпоинт - статистика по дням: регистрации, чаты, сообщения и активные пользователи,
+     * итогом и по предметам. По умолчанию - последние 30 дней
+     * GET /api/v1/admin/stats/daily?from=2024-01-01&to=2024-01-31
      */
-    @GetMapping("/all")
+    @GetMapping("/stats/daily")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<UserResponse> getAllUsers() {
-        List<User> users = userService.findAll();
-        List<UserDTO> userDTOS = users.stream()
-                .map(converterService::convertToUserDTO)
-                .toList();
-
-        log.info("All users requested by admin, count: {}", userDTOS.size());
-        return ResponseEntity.ok(new UserResponse(userDTOS));
+    public ResponseEntity<PlatformStatsResponse> getDailyStats(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to) {
+        LocalDate end = to != null ? to : LocalDate.now();
+        LocalDate start = from != null ? from : end.minusDays(29);
+        return ResponseEntity.ok(adminService.getDailyStats(start, end));
     }
 
     /**
@@ -74,15 +139,25 @@ public class AdminController {
     }
 
     /**
-     * Админский эндпоинт - удаление пользователя по ID
+     * Админский эндпоинт - удаление пользователя по ID.
+     * Вход закрывается сразу, удаление идёт в фоне - в ответе задача для опроса статуса
      * DELETE /api/v1/admin/{id}
      */
     @DeleteMapping("/{id}")
     @PreAuthorize("hasRole('ADMIN')")
-    public ResponseEntity<Void> deleteUser(@PathVariable Long id) {
+    public ResponseEntity<DeletionJobResponse> deleteUser(@PathVariable Long id) {
         log.info("Admin requested to delete user with id: {}", id);
-        adminService.deleteUser(id);
-        return ResponseEntity.noContent().build();
+        return ResponseEntity.accepted().body(adminService.deleteUser(id));
+    }
+
+    /**
+     * Админский эндпоинт - статус фонового удаления пользователя
+     * GET /api/v1/admin/deletion-jobs/{jobId}
+     */
+    @GetMapping("/deletion-jobs/{jobId}")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<DeletionJobResponse> getDeletionJob(@PathVariable String jobId) {
+        return ResponseEntity.ok(adminService.getDeletionJob(jobId));
     }
 
     /**
@@ -97,4 +172,38 @@ public class AdminController {
         UserDTO userDTO = converterService.convertToUserDTO(promotedUser);
         return ResponseEntity.ok(userDTO);
     }
-}
\ No newline at end of file
+
+    // Accept-Encoding с q-значениями: "gzip;q=0" - явный отказ, "*" - любая кодировка, кроме названных отдельно
+    private static boolean acceptsGzip(String acceptEncoding) {
+        if (acceptEncoding == null) {
+            return false;
+        }
+
+        Double gzip = null;
+        Double any = null;
+        for (String coding : acceptEncoding.split(",")) {
+            String[] params = coding.split(";");
+            String name = params[0].trim().toLowerCase(Locale.ROOT);
+            double q = 1;
+            for (int i = 1; i < params.length; i++) {
+                String param = params[i].trim();
+                if (param.regionMatches(true, 0, "q=", 0, 2)) {
+                    try {
+                        q = Double.parseDouble(param.substring(2).trim());
+                    } catch (NumberFormatException e) {
+                        q = 0;
+                    }
+                }
+            }
+            if (name.equals("gzip") || name.equals("x-gzip")) {
+                gzip = q;
+            } else if (name.equals("*")) {
+                any = q;
+            }
+        }
+        if (gzip != null) {
+            return gzip > 0;
+        }
+        return any != null && any > 0;
+    }
+}
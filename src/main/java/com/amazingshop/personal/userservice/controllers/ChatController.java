@@ -3,16 +3,24 @@ package com.amazingshop.personal.userservice.controllers;
 import com.amazingshop.personal.userservice.dto.requests.AddMessageRequest;
 import com.amazingshop.personal.userservice.dto.requests.CreateChatRequest;
 import com.amazingshop.personal.userservice.dto.requests.UpdateChatTitleRequest;
+import com.amazingshop.personal.userservice.dto.responses.ChatChangesResponse;
+import com.amazingshop.personal.userservice.dto.responses.ChatSummary;
+import com.amazingshop.personal.userservice.dto.responses.DeletionJobResponse;
+import com.amazingshop.personal.userservice.enums.JobStatus;
 import com.amazingshop.personal.userservice.interfaces.ChatService;
+import com.amazingshop.personal.userservice.interfaces.ChatSyncService;
 import com.amazingshop.personal.userservice.interfaces.UserService;
 import com.amazingshop.personal.userservice.models.Chat;
 import com.amazingshop.personal.userservice.models.ChatMessage;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.NativeWebRequest;
 
 import java.util.List;
+import java.util.Objects;
 
 @Slf4j
 @RestController
@@ -20,21 +28,39 @@ import java.util.List;
 public class ChatController {
 
     private final ChatService chatService;
+    private final ChatSyncService chatSyncService;
     private final UserService userService;
+    private final NegotiatedETags etags;
 
     @Autowired
-    public ChatController(ChatService chatService, UserService userService) {
+    public ChatController(ChatService chatService, ChatSyncService chatSyncService, UserService userService,
+                          NegotiatedETags etags) {
         this.chatService = chatService;
+        this.chatSyncService = chatSyncService;
         this.userService = userService;
+        this.etags = etags;
     }
 
 
+    /**
+     * Список чатов пользователя со сводкой (число сообщений, превью последнего)
+     * GET /api/v1/chats
+     * Поддерживает If-None-Match: при неизменном списке отвечает 304 без загрузки чатов.
+     * ETag свой для каждого формата ответа (см. {@link NegotiatedETags})
+     */
     @GetMapping
-    public ResponseEntity<List<Chat>> getChats(
+    public ResponseEntity<List<ChatSummary>> getChats(
             @RequestParam(required = false) String search,
-            @RequestParam(required = false) String subject
-    ) {
-        List<Chat> chats = chatService.getUserChats(userService.getCurrentUserId(), search, subject);
+            @RequestParam(required = false) String subject,
+            NativeWebRequest webRequest
+    ) throws HttpMediaTypeNotAcceptableException {
+        Long userId = userService.getCurrentUserId();
+        String etag = "chats-" + chatService.getChatListVersion(userId) + "-" + Integer.toHexString(Objects.hash(search, subject));
+        if (etags.checkNotModified(webRequest, etag)) {
+            return null;
+        }
+
+        List<ChatSummary> chats = chatService.getUserChats(userId, search, subject);
         return ResponseEntity.ok(chats);
     }
 
@@ -50,9 +76,22 @@ public class ChatController {
         return ResponseEntity.noContent().build();
     }
 
+    /**
+     * История сообщений чата
+     * GET /api/v1/chats/{chatId}/messages
+     * Поддерживает If-None-Match: версия берётся из updated_at чата до загрузки сообщений
+     * Список пишется в поток ответа через ChatMessageJsonSerializer, без рефлексии по геттерам
+     */
     @GetMapping("/{chatId}/messages")
-    public ResponseEntity<List<ChatMessage>> getChatMessages(@PathVariable Long chatId) {
-        List<ChatMessage> messages = chatService.getChatMessages(chatId, userService.getCurrentUserId());
+    public ResponseEntity<List<ChatMessage>> getChatMessages(@PathVariable Long chatId, NativeWebRequest webRequest)
+            throws HttpMediaTypeNotAcceptableException {
+        Long userId = userService.getCurrentUserId();
+        String etag = "messages-" + chatService.getChatMessagesVersion(chatId, userId);
+        if (etags.checkNotModified(webRequest, etag)) {
+            return null;
+        }
+
+        List<ChatMessage> messages = chatService.getChatMessages(chatId, userId);
         return ResponseEntity.ok(messages);
     }
 
@@ -68,13 +107,34 @@ public class ChatController {
 
     // Получить последние чаты для sidebar
     @GetMapping("/recent")
-    public ResponseEntity<List<Chat>> getRecentChats(
-            @RequestParam(defaultValue = "20") int limit
-    ) {
-        List<Chat> chats = chatService.getRecentChats(userService.getCurrentUserId(), limit);
+    public ResponseEntity<List<ChatSummary>> getRecentChats(
+            @RequestParam(defaultValue = "20") int limit,
+            NativeWebRequest webRequest
+    ) throws HttpMediaTypeNotAcceptableException {
+        Long userId = userService.getCurrentUserId();
+        String etag = "recent-" + chatService.getChatListVersion(userId) + "-" + limit;
+        if (etags.checkNotModified(webRequest, etag)) {
+            return null;
+        }
+
+        List<ChatSummary> chats = chatService.getRecentChats(userId, limit);
         return ResponseEntity.ok(chats);
     }
 
+    /**
+     * Дельта-синхронизация: чаты, сообщения и удаления после watermark
+     * GET /api/v1/chats/changes?since=0
+     * since=0 - полная выгрузка; дальше клиент передаёт watermark из прошлого ответа
+     */
+    @GetMapping("/changes")
+    public ResponseEntity<ChatChangesResponse> getChanges(
+            @RequestParam(defaultValue = "0") long since,
+            @RequestParam(defaultValue = "500") int limit
+    ) {
+        ChatChangesResponse changes = chatSyncService.getChanges(userService.getCurrentUserId(), since, limit);
+        return ResponseEntity.ok(changes);
+    }
+
     @PutMapping("/{chatId}/title")
     public ResponseEntity<Chat> updateChatTitle(
             @PathVariable Long chatId,
@@ -83,9 +143,26 @@ public class ChatController {
         return ResponseEntity.ok(updatedChat);
     }
 
+    /**
+     * Удаление всех чатов пользователя
+     * DELETE /api/v1/chats/all
+     * 204 - всё удалено сразу; 202 - большая история удаляется в фоне, статус по jobId
+     */
     @DeleteMapping("/all")
-    public ResponseEntity<Void> deleteAllChats() {
-        chatService.deleteAllChats(userService.getCurrentUserId());
-        return ResponseEntity.noContent().build();
+    public ResponseEntity<DeletionJobResponse> deleteAllChats() {
+        DeletionJobResponse job = chatService.deleteAllChats(userService.getCurrentUserId());
+        if (job.getStatus() == JobStatus.COMPLETED) {
+            return ResponseEntity.noContent().build();
+        }
+        return ResponseEntity.accepted().body(job);
+    }
+
+    /**
+     * Статус фонового удаления чатов
+     * GET /api/v1/chats/deletion-jobs/{jobId}
+     */
+    @GetMapping("/deletion-jobs/{jobId}")
+    public ResponseEntity<DeletionJobResponse> getDeletionJob(@PathVariable String jobId) {
+        return ResponseEntity.ok(chatService.getDeletionJob(jobId, userService.getCurrentUserId()));
     }
 }
\ No newline at end of file
@@ -2,6 +2,8 @@ package com.amazingshop.personal.userservice.controllers;
 
 import com.amazingshop.personal.userservice.dto.responses.ErrorResponse;
 import com.amazingshop.personal.userservice.util.exceptions.UnauthorizedException;
+import com.amazingshop.personal.userservice.util.exceptions.ChatNotFoundException;
+import com.amazingshop.personal.userservice.util.exceptions.DeletionJobNotFoundException;
 import com.amazingshop.personal.userservice.util.exceptions.UserNotFoundException;
 import com.amazingshop.personal.userservice.util.exceptions.UserValidationException;
 import com.auth0.jwt.exceptions.JWTVerificationException;
@@ -11,6 +13,7 @@ import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
 import org.springframework.security.authentication.BadCredentialsException;
+import org.springframework.security.authentication.DisabledException;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.validation.FieldError;
 import org.springframework.web.HttpRequestMethodNotSupportedException;
@@ -101,6 +104,14 @@ public class GlobalExceptionHandler {
                 HttpStatus.UNAUTHORIZED);
     }
 
+    // Аккаунт на удалении; ответ тот же, что при неверном пароле
+    @ExceptionHandler(DisabledException.class)
+    public ResponseEntity<ErrorResponse> handlerDisabledException(DisabledException e) {
+        log.warn("Login to disabled account: {}", e.getMessage());
+        return new ResponseEntity<>(ErrorResponse.makeErrorResponse("Invalid username or password"),
+                HttpStatus.UNAUTHORIZED);
+    }
+
     @ExceptionHandler(JWTVerificationException.class)
     public ResponseEntity<ErrorResponse> handlerJWTVerificationException(JWTVerificationException e) {
         log.warn("JWT verification failed: {}", e.getMessage());
@@ -133,6 +144,20 @@ public class GlobalExceptionHandler {
                 HttpStatus.NOT_FOUND);
     }
 
+    @ExceptionHandler(ChatNotFoundException.class)
+    public ResponseEntity<ErrorResponse> handlerChatNotFoundException(ChatNotFoundException e) {
+        log.warn("Chat not found: {}", e.getMessage());
+        return new ResponseEntity<>(ErrorResponse.makeErrorResponse(e.getMessage()),
+                HttpStatus.NOT_FOUND);
+    }
+
+    @ExceptionHandler(DeletionJobNotFoundException.class)
+    public ResponseEntity<ErrorResponse> handlerDeletionJobNotFoundException(DeletionJobNotFoundException e) {
+        log.warn("Deletion job not found: {}", e.getMessage());
+        return new ResponseEntity<>(ErrorResponse.makeErrorResponse(e.getMessage()),
+                HttpStatus.NOT_FOUND);
+    }
+
     @ExceptionHandler(DataIntegrityViolationException.class)
     public ResponseEntity<ErrorResponse> handleDataIntegrityViolationException(DataIntegrityViolationException e) {
         log.error("Database constraint violation: {}", e.getMessage());
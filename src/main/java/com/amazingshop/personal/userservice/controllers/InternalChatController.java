@@ -0,0 +1,37 @@
+package com.amazingshop.personal.userservice.controllers;
+
+import com.amazingshop.personal.userservice.dto.responses.ChatContextResponse;
+import com.amazingshop.personal.userservice.interfaces.ChatContextService;
+import com.amazingshop.personal.userservice.interfaces.UserService;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+/**
+ * Эндпоинты для внутренних сервисов (ai-service).
+ * Вызываются с токеном пользователя, от имени которого идёт запрос, и видят только его чаты
+ */
+@Slf4j
+@RestController
+@RequestMapping("/internal/chats")
+public class InternalChatController {
+
+    private final ChatContextService chatContextService;
+    private final UserService userService;
+
+    @Autowired
+    public InternalChatController(ChatContextService chatContextService, UserService userService) {
+        this.chatContextService = chatContextService;
+        this.userService = userService;
+    }
+
+    /**
+     * Самые новые сообщения чата, укладывающиеся в бюджет токенов модели
+     * GET /api/v1/internal/chats/{chatId}/context?tokenBudget=4000
+     */
+    @GetMapping("/{chatId}/context")
+    public ResponseEntity<ChatContextResponse> getContext(@PathVariable Long chatId, @RequestParam int tokenBudget) {
+        return ResponseEntity.ok(chatContextService.getContext(chatId, userService.getCurrentUserId(), tokenBudget));
+    }
+}
@@ -0,0 +1,71 @@
+package com.amazingshop.personal.userservice.controllers;
+
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+import org.springframework.web.accept.ContentNegotiationManager;
+import org.springframework.web.context.request.NativeWebRequest;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * ETag ответов, формат которых выбирается по Accept (JSON, CBOR, Smile).
+ * <p>
+ * Одни и те же данные в разных форматах - разные байты, поэтому к версии добавляется формат ответа,
+ * а в ответ - Vary: Accept: иначе кэш или клиент подставит JSON-тело на запрос CBOR
+ */
+@Component
+public class NegotiatedETags {
+
+    // Порядок как у конвертеров: JSON первым, он же - ответ без Accept
+    private static final Map<MediaType, String> FORMATS = new LinkedHashMap<>();
+
+    static {
+        FORMATS.put(MediaType.APPLICATION_JSON, "json");
+        FORMATS.put(MediaType.APPLICATION_CBOR, "cbor");
+        FORMATS.put(MediaType.parseMediaType("application/x-jackson-smile"), "smile");
+    }
+
+    private final ContentNegotiationManager contentNegotiationManager;
+
+    @Autowired
+    public NegotiatedETags(ContentNegotiationManager contentNegotiationManager) {
+        this.contentNegotiationManager = contentNegotiationManager;
+    }
+
+    /**
+     * Как {@link NativeWebRequest#checkNotModified(String)}, но ETag зависит от формата ответа.
+     * Vary: Accept ставится и на 200, и на 304
+     */
+    public boolean checkNotModified(NativeWebRequest webRequest, String version)
+            throws HttpMediaTypeNotAcceptableException {
+        HttpServletResponse response = webRequest.getNativeResponse(HttpServletResponse.class);
+        if (response != null) {
+            response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        }
+        return webRequest.checkNotModified(version + "-" + format(webRequest));
+    }
+
+    /**
+     * true, если ответ пойдёт в JSON
+     */
+    public boolean prefersJson(NativeWebRequest webRequest) throws HttpMediaTypeNotAcceptableException {
+        return "json".equals(format(webRequest));
+    }
+
+    // Первый из запрошенных типов, который мы умеем отдавать; без Accept - JSON
+    private String format(NativeWebRequest webRequest) throws HttpMediaTypeNotAcceptableException {
+        for (MediaType requested : contentNegotiationManager.resolveMediaTypes(webRequest)) {
+            for (Map.Entry<MediaType, String> format : FORMATS.entrySet()) {
+                if (requested.isCompatibleWith(format.getKey())) {
+                    return format.getValue();
+                }
+            }
+        }
+        return "json";
+    }
+}
@@ -1,11 +1,15 @@
 package com.amazingshop.personal.userservice.controllers;
 
+import com.amazingshop.personal.userservice.cache.CurrentUserResponseCache;
 import com.amazingshop.personal.userservice.dto.responses.CurrentUserResponse;
 import com.amazingshop.personal.userservice.interfaces.UserService;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.HttpMediaTypeNotAcceptableException;
+import org.springframework.web.context.request.NativeWebRequest;
 
 import java.util.Map;
 
@@ -15,24 +19,34 @@ import java.util.Map;
 public class UsersController {
 
     private final UserService userService;
+    private final NegotiatedETags etags;
 
     @Autowired
-    public UsersController(UserService userService) {
+    public UsersController(UserService userService, NegotiatedETags etags) {
         this.userService = userService;
+        this.etags = etags;
     }
 
     /**
      * Получение информации о текущем пользователе
      * GET /api/v1/users/me
-     * Возвращает актуальные данные пользователя из БД
-     * БЕЗ чувствительной информации (пароля, refresh token)
+     * Возвращает данные пользователя БЕЗ чувствительной информации (пароля, refresh token)
+     * <p>
+     * Ответ берётся из кэша: JSON - уже сериализованными байтами, CBOR и Smile - через конвертеры.
+     * При совпадении If-None-Match - 304 без тела; ETag свой для каждого формата (см. {@link NegotiatedETags})
      */
     @GetMapping("/me")
-    public ResponseEntity<CurrentUserResponse> getCurrentUser() {
-        CurrentUserResponse response = userService.getCurrentUserResponse();
+    public ResponseEntity<?> getCurrentUser(NativeWebRequest webRequest) throws HttpMediaTypeNotAcceptableException {
+        CurrentUserResponseCache.Entry me = userService.getCurrentUserEntry();
+        if (etags.checkNotModified(webRequest, me.etag())) {
+            return null;
+        }
 
-        log.info("User info requested for: {}", response.getUsername());
-        return ResponseEntity.ok(response);
+        log.debug("User info requested for: {}", me.response().getUsername());
+        if (etags.prefersJson(webRequest)) {
+            return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(me.json());
+        }
+        return ResponseEntity.ok(me.response());
     }
 
     /**
@@ -50,4 +64,4 @@ public class UsersController {
         return ResponseEntity.ok(response);
 
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,58 @@
+package com.amazingshop.personal.userservice.datasource;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.function.Supplier;
+
+/**
+ * Чтение с primary в обход реплик - для загрузки локальных кэшей.
+ * <p>
+ * Запись кэша живёт дольше допуска по лагу: после сброса по CacheInvalidationBus снимок,
+ * перечитанный с отстающей реплики, держал бы старое состояние до конца ttl.
+ * {@link ReadYourWrites} здесь не спасает - он локален для узла и помнит того, кто писал,
+ * а не пользователя, чья строка изменилась.
+ * <p>
+ * Действие выполняется в отдельной read-only транзакции: соединение уже идущей read-only транзакции
+ * могло быть взято с реплики. Пишущая транзакция и так на primary - в ней действие выполняется
+ * как есть и видит её незафиксированные изменения. Без настроенных реплик это просто транзакция на primary.
+ */
+@Component
+public class PrimaryReads {
+
+    private static final ThreadLocal<Boolean> ACTIVE = new ThreadLocal<>();
+
+    private final TransactionTemplate transactionTemplate;
+
+    @Autowired
+    public PrimaryReads(PlatformTransactionManager transactionManager) {
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setReadOnly(true);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    public <T> T call(Supplier<T> action) {
+        if (isActive() || (TransactionSynchronizationManager.isActualTransactionActive()
+                && !TransactionSynchronizationManager.isCurrentTransactionReadOnly())) {
+            return action.get();
+        }
+
+        ACTIVE.set(Boolean.TRUE);
+        try {
+            return transactionTemplate.execute(status -> action.get());
+        } finally {
+            ACTIVE.remove();
+        }
+    }
+
+    /**
+     * Идёт ли в этом потоке чтение, которое {@link ReplicaDataSource} должен отдать primary
+     */
+    public static boolean isActive() {
+        return Boolean.TRUE.equals(ACTIVE.get());
+    }
+}
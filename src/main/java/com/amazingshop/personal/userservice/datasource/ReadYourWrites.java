@@ -0,0 +1,47 @@
+package com.amazingshop.personal.userservice.datasource;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Duration;
+import java.util.Optional;
+
+/**
+ * Read-your-writes для реплик: после коммита пишущей транзакции пользователь
+ * на время window читает с primary, чтобы не увидеть своё же изменение из прошлого.
+ * <p>
+ * Состояние локально для узла. Анонимные запросы не закрепляются - им достаточно допуска по лагу.
+ */
+public class ReadYourWrites {
+
+    private final Cache<String, Boolean> recentWriters;
+
+    public ReadYourWrites(Duration window) {
+        this.recentWriters = Caffeine.newBuilder()
+                .expireAfterWrite(window)
+                .maximumSize(100_000)
+                .build();
+    }
+
+    public void recordWrite() {
+        currentUser().ifPresent(username -> recentWriters.put(username, Boolean.TRUE));
+    }
+
+    public boolean isPinnedToPrimary() {
+        return currentUser()
+                .map(username -> recentWriters.getIfPresent(username) != null)
+                .orElse(false);
+    }
+
+    private static Optional<String> currentUser() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            return Optional.empty();
+        }
+        return Optional.ofNullable(authentication.getName());
+    }
+}
@@ -0,0 +1,154 @@
+package com.amazingshop.personal.userservice.datasource;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Источник соединений для read-only транзакций.
+ * <p>
+ * Раздаёт реплики по кругу, пропуская те, чей лаг больше допуска или которые не ответили
+ * на последнюю проверку. Если подходящих реплик нет, пользователь недавно писал сам
+ * ({@link ReadYourWrites}) или идёт загрузка кэша ({@link PrimaryReads}) - соединение берётся с primary.
+ */
+@Slf4j
+public class ReplicaDataSource extends AbstractDataSource implements AutoCloseable {
+
+    public static final String METRIC_NAME = "datasource.replica";
+
+    // Лаг в секундах; на простаивающем primary реплика без новых WAL считается догнавшей
+    public static final String POSTGRES_LAG_QUERY = "SELECT CASE WHEN pg_last_wal_receive_lsn() = pg_last_wal_replay_lsn() " +
+            "THEN 0 ELSE COALESCE(EXTRACT(EPOCH FROM now() - pg_last_xact_replay_timestamp()), 0) END";
+
+    private final DataSource primary;
+    private final List<Replica> replicas;
+    private final ReadYourWrites readYourWrites;
+    private final Duration maxLag;
+    private final String lagQuery;
+    private final AtomicInteger next = new AtomicInteger();
+    private final Counter primaryFallbacks;
+
+    public ReplicaDataSource(DataSource primary, List<DataSource> replicas, ReadYourWrites readYourWrites,
+                             Duration maxLag, String lagQuery, MeterRegistry meterRegistry) {
+        this.primary = primary;
+        this.readYourWrites = readYourWrites;
+        this.maxLag = maxLag;
+        this.lagQuery = lagQuery;
+
+        this.replicas = new ArrayList<>(replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = new Replica(i, replicas.get(i));
+            this.replicas.add(replica);
+            Gauge.builder(METRIC_NAME + ".lag", replica, r -> r.lagMillis)
+                    .description("Лаг реплики на последней проверке")
+                    .baseUnit("milliseconds")
+                    .tag("replica", String.valueOf(i))
+                    .register(meterRegistry);
+        }
+        this.primaryFallbacks = Counter.builder(METRIC_NAME + ".primary.fallbacks")
+                .description("Read-only соединения, выданные с primary")
+                .register(meterRegistry);
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return route(DataSource::getConnection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return route(dataSource -> dataSource.getConnection(username, password));
+    }
+
+    /**
+     * Перепроверяет лаг реплик и возвращает в ротацию догнавшие
+     */
+    @Scheduled(fixedDelayString = "${datasource.replica.lag-check-interval-ms:5000}")
+    public void refreshLag() {
+        for (Replica replica : replicas) {
+            try (Connection connection = replica.dataSource.getConnection();
+                 Statement statement = connection.createStatement();
+                 ResultSet resultSet = statement.executeQuery(lagQuery)) {
+                resultSet.next();
+                replica.lagMillis = Math.round(resultSet.getDouble(1) * 1000);
+                boolean available = replica.lagMillis <= maxLag.toMillis();
+                if (available != replica.available) {
+                    log.info("Replica {} {} rotation, lag {} ms", replica.index, available ? "is back in" : "is out of",
+                            replica.lagMillis);
+                }
+                replica.available = available;
+            } catch (SQLException e) {
+                replica.available = false;
+                log.warn("Lag check failed for replica {}", replica.index, e);
+            }
+        }
+    }
+
+    @Override
+    public void close() throws Exception {
+        for (Replica replica : replicas) {
+            if (replica.dataSource instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+
+    private Connection route(ConnectionSource source) throws SQLException {
+        if (PrimaryReads.isActive() || readYourWrites.isPinnedToPrimary()) {
+            return fromPrimary(source);
+        }
+
+        for (int attempt = 0; attempt < replicas.size(); attempt++) {
+            Replica replica = replicas.get(Math.floorMod(next.getAndIncrement(), replicas.size()));
+            if (!replica.available) {
+                continue;
+            }
+            try {
+                return source.connect(replica.dataSource);
+            } catch (SQLException e) {
+                // До следующей проверки лага реплика выведена из ротации
+                replica.available = false;
+                log.warn("Replica {} is unavailable, taking it out of rotation", replica.index, e);
+            }
+        }
+        return fromPrimary(source);
+    }
+
+    private Connection fromPrimary(ConnectionSource source) throws SQLException {
+        primaryFallbacks.increment();
+        return source.connect(primary);
+    }
+
+    @FunctionalInterface
+    private interface ConnectionSource {
+
+        Connection connect(DataSource dataSource) throws SQLException;
+    }
+
+    private static final class Replica {
+
+        private final int index;
+        private final DataSource dataSource;
+        // В ротацию реплика попадает только после первой успешной проверки лага
+        private volatile boolean available;
+        private volatile long lagMillis;
+
+        private Replica(int index, DataSource dataSource) {
+            this.index = index;
+            this.dataSource = dataSource;
+        }
+    }
+}
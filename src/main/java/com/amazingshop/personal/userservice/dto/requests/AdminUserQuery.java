@@ -0,0 +1,36 @@
+package com.amazingshop.personal.userservice.dto.requests;
+
+import com.amazingshop.personal.userservice.enums.Role;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.format.annotation.DateTimeFormat;
+
+import java.time.LocalDateTime;
+
+/**
+ * Параметры GET /admin/users: фильтры, сортировка и курсор keyset-пагинации
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AdminUserQuery {
+
+    private Role role;
+
+    // Полуинтервал [createdFrom, createdTo)
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime createdFrom;
+
+    @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME)
+    private LocalDateTime createdTo;
+
+    // Без учёта регистра
+    private String usernamePrefix;
+    private String emailPrefix;
+
+    private String sort = "createdAt";    // createdAt | username | email | id
+    private String direction = "desc";    // asc | desc
+    private int limit = 50;
+    private String cursor;
+}
@@ -0,0 +1,20 @@
+package com.amazingshop.personal.userservice.dto.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Страница админского списка пользователей (эндпоинт /admin/users)
+ * Следующая страница - тот же запрос с cursor = nextCursor
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AdminUserPage {
+
+    private List<AdminUserSummary> users;
+    private String nextCursor;     // null - страниц больше нет
+}
@@ -0,0 +1,25 @@
+package com.amazingshop.personal.userservice.dto.responses;
+
+import com.amazingshop.personal.userservice.enums.Role;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Строка админского списка пользователей.
+ * Заполняется конструкторным выражением в JPQL - пароль и refresh token не читаются вовсе.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class AdminUserSummary {
+
+    private Long id;
+    private String username;
+    private String email;
+    private Role role;
+    private LocalDateTime createdAt;
+    private String profilePictureUrl;
+}
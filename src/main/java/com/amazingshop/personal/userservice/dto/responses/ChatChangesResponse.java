@@ -0,0 +1,27 @@
+package com.amazingshop.personal.userservice.dto.responses;
+
+import com.amazingshop.personal.userservice.models.Chat;
+import com.amazingshop.personal.userservice.models.ChatMessage;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Изменения чатов пользователя после watermark (эндпоинт /chats/changes)
+ * Клиент сохраняет watermark и передаёт его в следующем запросе
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatChangesResponse {
+
+    private long watermark;
+    private boolean hasMore;       // сообщений больше лимита - нужно запросить ещё раз с новым watermark
+    private boolean fullResync;    // watermark старше компактированных следов - локальное состояние нужно сбросить
+    private List<Chat> chats;
+    private List<ChatMessage> messages;
+    private List<Long> deletedChatIds;
+    private List<Long> deletedMessageIds; // удалённые очисткой по сроку хранения
+}
@@ -0,0 +1,25 @@
+package com.amazingshop.personal.userservice.dto.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Краткое содержание старой части чата и самые новые сообщения после него,
+ * укладывающиеся в бюджет токенов (эндпоинт /internal/chats/{id}/context)
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatContextResponse {
+
+    private Long chatId;
+    private int tokenBudget;
+    private int tokenCount;        // токены краткого содержания и отданных сообщений
+    private boolean truncated;     // часть сообщений между кратким содержанием и хвостом в бюджет не вошла
+    private String summary;        // null - краткого содержания нет или оно не влезло
+    private Long summarizedThroughId;  // краткое содержание покрывает сообщения с id <= этого
+    private List<ContextMessage> messages;
+}
@@ -0,0 +1,28 @@
+package com.amazingshop.personal.userservice.dto.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Строка сайдбара: чат вместе со сводкой по его сообщениям.
+ * Заполняется конструкторным выражением прямо в JPQL, без загрузки сущностей.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatSummary {
+
+    private Long id;
+    private Long userId;
+    private String title;
+    private String subject;
+    private LocalDateTime createdAt;
+    private LocalDateTime updatedAt;
+    private int messageCount;
+    private String lastMessagePreview;
+    private String lastMessageRole;
+    private LocalDateTime lastMessageAt;
+}
@@ -0,0 +1,23 @@
+package com.amazingshop.personal.userservice.dto.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Сообщение в контексте для AI-сервиса, с заранее посчитанным числом токенов
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ContextMessage {
+
+    private Long id;
+    private String role;
+    private String content;
+    private String templateUsed;
+    private LocalDateTime createdAt;
+    private int tokenCount;
+}
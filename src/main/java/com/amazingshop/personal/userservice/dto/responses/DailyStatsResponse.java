@@ -0,0 +1,26 @@
+package com.amazingshop.personal.userservice.dto.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Итоги дня и разбивка по предметам чатов (OTHER - чаты без предмета или с неизвестным предметом).
+ * closed = false - день ещё пересчитывается
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailyStatsResponse {
+
+    private LocalDate day;
+    private long newUsers;
+    private long newChats;
+    private long messages;
+    private long activeUsers;
+    private boolean closed;
+    private List<SubjectStatsResponse> subjects;
+}
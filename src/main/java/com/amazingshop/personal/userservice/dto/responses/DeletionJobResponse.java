@@ -0,0 +1,25 @@
+package com.amazingshop.personal.userservice.dto.responses;
+
+import com.amazingshop.personal.userservice.enums.JobStatus;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Состояние фоновой задачи удаления (эндпоинты /chats/deletion-jobs/{jobId} и /admin/deletion-jobs/{jobId})
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class DeletionJobResponse {
+
+    private String jobId;
+    private JobStatus status;
+    private long chatsDeleted;
+    private long messagesDeleted;
+    private LocalDateTime createdAt;
+    private LocalDateTime finishedAt;
+    private String error;
+}
@@ -0,0 +1,19 @@
+package com.amazingshop.personal.userservice.dto.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Дневная статистика платформы (эндпоинт /admin/stats/daily).
+ * Дня нет в списке, пока DailyStatsAggregator до него не дошёл
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PlatformStatsResponse {
+
+    private List<DailyStatsResponse> days;
+}
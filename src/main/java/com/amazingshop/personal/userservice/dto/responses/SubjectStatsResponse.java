@@ -0,0 +1,16 @@
+package com.amazingshop.personal.userservice.dto.responses;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SubjectStatsResponse {
+
+    private String subject;
+    private long newChats;
+    private long messages;
+    private long activeUsers;
+}
@@ -0,0 +1,8 @@
+package com.amazingshop.personal.userservice.enums;
+
+public enum JobStatus {
+    PENDING,
+    RUNNING,
+    COMPLETED,
+    FAILED;
+}
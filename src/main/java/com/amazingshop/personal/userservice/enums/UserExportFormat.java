@@ -0,0 +1,31 @@
+package com.amazingshop.personal.userservice.enums;
+
+import java.util.Arrays;
+
+public enum UserExportFormat {
+    CSV("csv", "text/csv"),
+    NDJSON("ndjson", "application/x-ndjson");
+
+    private final String extension;
+    private final String contentType;
+
+    UserExportFormat(String extension, String contentType) {
+        this.extension = extension;
+        this.contentType = contentType;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+
+    public String getContentType() {
+        return contentType;
+    }
+
+    public static UserExportFormat fromParam(String param) {
+        return Arrays.stream(values())
+                .filter(format -> format.extension.equalsIgnoreCase(param))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unsupported export format: " + param));
+    }
+}
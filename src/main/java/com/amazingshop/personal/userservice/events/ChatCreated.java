@@ -0,0 +1,4 @@
+package com.amazingshop.personal.userservice.events;
+
+public record ChatCreated(Long chatId, Long userId) implements ChatEvent {
+}
@@ -0,0 +1,10 @@
+package com.amazingshop.personal.userservice.events;
+
+/**
+ * Доменное событие чата. Публикуется внутри транзакции, обработчики получают его
+ * только после коммита через {@link ChatEventDispatcher}.
+ */
+public interface ChatEvent {
+    Long chatId();
+    Long userId();
+}
@@ -0,0 +1,163 @@
+package com.amazingshop.personal.userservice.events;
+
+import com.amazingshop.personal.userservice.config.AsyncConfig;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.ClassUtils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Конвейер событий чата после коммита.
+ * <p>
+ * Событие кладётся в ограниченную очередь, рабочие потоки пула {@link AsyncConfig#CHAT_EVENTS_EXECUTOR}
+ * забирают его пачками и отдают всем {@link ChatEventHandler}. Если очередь переполнена, обработчики
+ * выполняются прямо в потоке запроса - так нагрузка притормаживает источник,
+ * а события не теряются.
+ */
+@Slf4j
+@Component
+public class ChatEventDispatcher {
+
+    public static final String METRIC_NAME = "chat.events";
+
+    private final List<ChatEventHandler> handlers;
+    private final BlockingQueue<Envelope> queue;
+    private final TaskExecutor executor;
+    private final int batchSize;
+    private final int workers;
+
+    private final Timer lagTimer;
+    private final Map<ChatEventHandler, Timer> handlerTimers;
+    private final Counter callerRuns;
+
+    private final CountDownLatch stopped;
+    private volatile boolean running;
+
+    @Autowired
+    public ChatEventDispatcher(List<ChatEventHandler> handlers,
+                               MeterRegistry meterRegistry,
+                               @Qualifier(AsyncConfig.CHAT_EVENTS_EXECUTOR) TaskExecutor executor,
+                               @Value("${chat.events.queue-capacity:10000}") int queueCapacity,
+                               @Value("${chat.events.batch-size:100}") int batchSize,
+                               @Value("${chat.events.workers:1}") int workers) {
+        this.handlers = List.copyOf(handlers);
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.executor = executor;
+        this.batchSize = batchSize;
+        this.workers = workers;
+        this.stopped = new CountDownLatch(workers);
+
+        this.lagTimer = Timer.builder(METRIC_NAME + ".lag")
+                .description("Время от коммита до обработки события")
+                .register(meterRegistry);
+        this.handlerTimers = this.handlers.stream().collect(Collectors.toMap(Function.identity(),
+                handler -> Timer.builder(METRIC_NAME + ".handler")
+                        .description("Время обработки пачки событий")
+                        .tag("handler", handlerName(handler))
+                        .register(meterRegistry)));
+        this.callerRuns = Counter.builder(METRIC_NAME + ".caller.runs")
+                .description("События, обработанные в потоке запроса из-за переполненной очереди")
+                .register(meterRegistry);
+        Gauge.builder(METRIC_NAME + ".queue.size", queue, BlockingQueue::size)
+                .description("События, ожидающие обработки")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        for (int i = 0; i < workers; i++) {
+            executor.execute(() -> {
+                try {
+                    runWorker();
+                } finally {
+                    stopped.countDown();
+                }
+            });
+        }
+    }
+
+    // Пул останавливается после диспетчера (он от него зависит): сначала дорабатываем очередь
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if (!stopped.await(10, TimeUnit.SECONDS)) {
+            log.warn("Chat event workers did not drain the queue in time, {} events left", queue.size());
+        }
+    }
+
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEvent(ChatEvent event) {
+        Envelope envelope = new Envelope(event, System.nanoTime());
+        if (!queue.offer(envelope)) {
+            callerRuns.increment();
+            dispatch(List.of(envelope));
+        }
+    }
+
+    private void runWorker() {
+        List<Envelope> batch = new ArrayList<>(batchSize);
+        // После stop() дорабатываем то, что уже в очереди
+        while (running || !queue.isEmpty()) {
+            try {
+                Envelope first = queue.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                queue.drainTo(batch, batchSize - 1);
+                dispatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    private void dispatch(List<Envelope> batch) {
+        long now = System.nanoTime();
+        List<ChatEvent> events = new ArrayList<>(batch.size());
+        for (Envelope envelope : batch) {
+            lagTimer.record(now - envelope.enqueuedAt(), TimeUnit.NANOSECONDS);
+            events.add(envelope.event());
+        }
+
+        for (ChatEventHandler handler : handlers) {
+            try {
+                handlerTimers.get(handler).record(() -> handler.handle(events));
+            } catch (RuntimeException e) {
+                log.error("Chat event handler {} failed on {} events", handlerName(handler), events.size(), e);
+            }
+        }
+    }
+
+    // Обработчики с @Transactional приходят CGLIB-прокси - берём имя исходного класса
+    private static String handlerName(ChatEventHandler handler) {
+        return ClassUtils.getUserClass(handler).getSimpleName();
+    }
+
+    private record Envelope(ChatEvent event, long enqueuedAt) {
+    }
+}
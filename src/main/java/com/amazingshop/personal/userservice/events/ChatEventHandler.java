@@ -0,0 +1,11 @@
+package com.amazingshop.personal.userservice.events;
+
+import java.util.List;
+
+/**
+ * Обработчик событий чата. Получает пачку событий в порядке публикации
+ * и сам выбирает нужные ему типы.
+ */
+public interface ChatEventHandler {
+    void handle(List<ChatEvent> events);
+}
@@ -0,0 +1,7 @@
+package com.amazingshop.personal.userservice.events;
+
+import java.time.LocalDateTime;
+
+public record MessageAppended(Long chatId, Long userId, Long messageId, String role, String content,
+                              LocalDateTime createdAt) implements ChatEvent {
+}
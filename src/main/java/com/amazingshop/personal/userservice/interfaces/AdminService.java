@@ -1,12 +1,22 @@
 package com.amazingshop.personal.userservice.interfaces;
 
+import com.amazingshop.personal.userservice.dto.requests.AdminUserQuery;
+import com.amazingshop.personal.userservice.dto.responses.AdminUserPage;
+import com.amazingshop.personal.userservice.dto.responses.DeletionJobResponse;
+import com.amazingshop.personal.userservice.dto.responses.PlatformStatsResponse;
+import com.amazingshop.personal.userservice.enums.UserExportFormat;
 import com.amazingshop.personal.userservice.models.User;
 
-import java.util.List;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDate;
 
 public interface AdminService {
     String sayForAdmin();
-    List<User> getAllUsers();
-    void deleteUser(Long userId);
+    AdminUserPage listUsers(AdminUserQuery query);
+    long exportUsers(UserExportFormat format, OutputStream out) throws IOException;
+    PlatformStatsResponse getDailyStats(LocalDate from, LocalDate to);
+    DeletionJobResponse deleteUser(Long userId);
+    DeletionJobResponse getDeletionJob(String jobId);
     User promoteToAdmin(Long userId);
 }
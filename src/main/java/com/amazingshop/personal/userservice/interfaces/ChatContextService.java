@@ -0,0 +1,7 @@
+package com.amazingshop.personal.userservice.interfaces;
+
+import com.amazingshop.personal.userservice.dto.responses.ChatContextResponse;
+
+public interface ChatContextService {
+    ChatContextResponse getContext(Long chatId, Long userId, int tokenBudget);
+}
@@ -1,18 +1,23 @@
 package com.amazingshop.personal.userservice.interfaces;
 
+import com.amazingshop.personal.userservice.dto.responses.ChatSummary;
+import com.amazingshop.personal.userservice.dto.responses.DeletionJobResponse;
 import com.amazingshop.personal.userservice.models.Chat;
 import com.amazingshop.personal.userservice.models.ChatMessage;
 
 import java.util.List;
 
 public interface ChatService {
-    List<Chat> getUserChats(Long userId, String search, String subject);
+    List<ChatSummary> getUserChats(Long userId, String search, String subject);
     Chat createChat(Long userId, String title, String subject);
     void deleteChat(Long chatId, Long userId);
     List<ChatMessage> getChatMessages(Long chatId, Long useId);
     ChatMessage addMessage(Long chatId, Long userId, String content, String role, String templateUsed);
-    List<Chat> getRecentChats(Long userId, int limit);
+    List<ChatSummary> getRecentChats(Long userId, int limit);
     Chat updateChatTitle(Long chatId, Long userId, String newTitle);
-    void deleteAllChats(Long userId);
+    DeletionJobResponse deleteAllChats(Long userId);
+    DeletionJobResponse getDeletionJob(String jobId, Long userId);
+    String getChatListVersion(Long userId);
+    String getChatMessagesVersion(Long chatId, Long userId);
 }
 
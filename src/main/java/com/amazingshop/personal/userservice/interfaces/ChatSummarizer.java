@@ -0,0 +1,15 @@
+package com.amazingshop.personal.userservice.interfaces;
+
+import com.amazingshop.personal.userservice.models.ChatMessage;
+
+import java.util.List;
+
+/**
+ * Сворачивает старую часть чата в краткое содержание для контекста AI-сервиса.
+ * Вызывается в фоне, вне транзакции: previousSummary (или null) дополняется сообщениями
+ * в хронологическом порядке, результат должен укладываться в maxTokens.
+ * Реализацию на модели достаточно объявить бином с @Primary
+ */
+public interface ChatSummarizer {
+    String summarize(String previousSummary, List<ChatMessage> messages, int maxTokens);
+}
@@ -0,0 +1,8 @@
+package com.amazingshop.personal.userservice.interfaces;
+
+import com.amazingshop.personal.userservice.dto.responses.ChatChangesResponse;
+
+public interface ChatSyncService {
+    ChatChangesResponse getChanges(Long userId, long since, int limit);
+    int compactTombstones();
+}
@@ -0,0 +1,11 @@
+package com.amazingshop.personal.userservice.interfaces;
+
+/**
+ * Подсчёт токенов текста для бюджета контекста AI-сервиса.
+ * Результат считается один раз при вставке сообщения и хранится в Chat_Messages.token_count;
+ * сообщения, сохранённые до появления колонки, досчитывает TokenCountBackfiller.
+ * Реализацию под конкретную модель достаточно объявить бином с @Primary
+ */
+public interface Tokenizer {
+    int countTokens(String text);
+}
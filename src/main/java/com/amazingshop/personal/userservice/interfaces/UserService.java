@@ -1,5 +1,6 @@
 package com.amazingshop.personal.userservice.interfaces;
 
+import com.amazingshop.personal.userservice.cache.CurrentUserResponseCache;
 import com.amazingshop.personal.userservice.dto.responses.CurrentUserResponse;
 import com.amazingshop.personal.userservice.models.User;
 
@@ -10,11 +11,14 @@ import java.util.Optional;
 public interface UserService {
     Optional<User> findByUsername(String username);
     Optional<User> findByEmail(String email);
+    boolean isUsernameTaken(String username);
+    boolean isEmailTaken(String email);
     User findUserByIdOrThrow(Long id);
     List<User> findAll();
     User save(User user);
     void deleteById(Long id);
     Long getCurrentUserId();
     CurrentUserResponse getCurrentUserResponse();
+    CurrentUserResponseCache.Entry getCurrentUserEntry();
     CurrentUserResponse updateCurrentUserResponse(Map<String, String> updates);
 }
@@ -0,0 +1,67 @@
+package com.amazingshop.personal.userservice.json;
+
+import com.amazingshop.personal.userservice.models.Chat;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.BeanProperty;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.ContextualSerializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import org.springframework.boot.jackson.JsonComponent;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+import static com.amazingshop.personal.userservice.json.JsonFields.*;
+
+/**
+ * Сериализация чата с заранее закодированными именами полей, см. {@link ChatMessageJsonSerializer}
+ */
+@JsonComponent
+public class ChatJsonSerializer extends StdSerializer<Chat> implements ContextualSerializer {
+
+    private static final SerializedString ID = new SerializedString("id");
+    private static final SerializedString USER_ID = new SerializedString("userId");
+    private static final SerializedString TITLE = new SerializedString("title");
+    private static final SerializedString SUBJECT = new SerializedString("subject");
+    private static final SerializedString CREATED_AT = new SerializedString("createdAt");
+    private static final SerializedString UPDATED_AT = new SerializedString("updatedAt");
+    private static final SerializedString MESSAGE_COUNT = new SerializedString("messageCount");
+    private static final SerializedString LAST_MESSAGE_PREVIEW = new SerializedString("lastMessagePreview");
+    private static final SerializedString LAST_MESSAGE_ROLE = new SerializedString("lastMessageRole");
+    private static final SerializedString LAST_MESSAGE_AT = new SerializedString("lastMessageAt");
+
+    private final JsonSerializer<Object> dateTimeSerializer;
+
+    public ChatJsonSerializer() {
+        this(null);
+    }
+
+    private ChatJsonSerializer(JsonSerializer<Object> dateTimeSerializer) {
+        super(Chat.class);
+        this.dateTimeSerializer = dateTimeSerializer;
+    }
+
+    @Override
+    public JsonSerializer<?> createContextual(SerializerProvider provider, BeanProperty property) throws JsonMappingException {
+        return new ChatJsonSerializer(provider.findValueSerializer(LocalDateTime.class, property));
+    }
+
+    @Override
+    public void serialize(Chat chat, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject(chat);
+        writeLong(gen, ID, chat.getId());
+        writeLong(gen, USER_ID, chat.getUserId());
+        writeString(gen, TITLE, chat.getTitle());
+        writeString(gen, SUBJECT, chat.getSubject());
+        writeDateTime(gen, CREATED_AT, chat.getCreatedAt(), dateTimeSerializer, provider);
+        writeDateTime(gen, UPDATED_AT, chat.getUpdatedAt(), dateTimeSerializer, provider);
+        writeInt(gen, MESSAGE_COUNT, chat.getMessageCount());
+        writeString(gen, LAST_MESSAGE_PREVIEW, chat.getLastMessagePreview());
+        writeString(gen, LAST_MESSAGE_ROLE, chat.getLastMessageRole());
+        writeDateTime(gen, LAST_MESSAGE_AT, chat.getLastMessageAt(), dateTimeSerializer, provider);
+        gen.writeEndObject();
+    }
+}
@@ -0,0 +1,62 @@
+package com.amazingshop.personal.userservice.json;
+
+import com.amazingshop.personal.userservice.models.ChatMessage;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.io.SerializedString;
+import com.fasterxml.jackson.databind.BeanProperty;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.ser.ContextualSerializer;
+import com.fasterxml.jackson.databind.ser.std.StdSerializer;
+import org.springframework.boot.jackson.JsonComponent;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+import static com.amazingshop.personal.userservice.json.JsonFields.*;
+
+/**
+ * Сериализация сообщения без рефлексии по геттерам: поля пишутся прямо в JsonGenerator
+ * с заранее закодированными именами. Формат совпадает с BeanSerializer по умолчанию
+ * (те же поля в том же порядке, changeSeq не выводится)
+ */
+@JsonComponent
+public class ChatMessageJsonSerializer extends StdSerializer<ChatMessage> implements ContextualSerializer {
+
+    private static final SerializedString ID = new SerializedString("id");
+    private static final SerializedString CHAT_ID = new SerializedString("chatId");
+    private static final SerializedString ROLE = new SerializedString("role");
+    private static final SerializedString CONTENT = new SerializedString("content");
+    private static final SerializedString TEMPLATE_USED = new SerializedString("templateUsed");
+    private static final SerializedString CREATED_AT = new SerializedString("createdAt");
+
+    private final JsonSerializer<Object> dateTimeSerializer;
+
+    public ChatMessageJsonSerializer() {
+        this(null);
+    }
+
+    private ChatMessageJsonSerializer(JsonSerializer<Object> dateTimeSerializer) {
+        super(ChatMessage.class);
+        this.dateTimeSerializer = dateTimeSerializer;
+    }
+
+    @Override
+    public JsonSerializer<?> createContextual(SerializerProvider provider, BeanProperty property) throws JsonMappingException {
+        // Формат дат берём у настроенного ObjectMapper один раз, а не на каждое сообщение
+        return new ChatMessageJsonSerializer(provider.findValueSerializer(LocalDateTime.class, property));
+    }
+
+    @Override
+    public void serialize(ChatMessage message, JsonGenerator gen, SerializerProvider provider) throws IOException {
+        gen.writeStartObject(message);
+        writeLong(gen, ID, message.getId());
+        writeLong(gen, CHAT_ID, message.getChatId());
+        writeString(gen, ROLE, message.getRole());
+        writeString(gen, CONTENT, message.getContent());
+        writeString(gen, TEMPLATE_USED, message.getTemplateUsed());
+        writeDateTime(gen, CREATED_AT, message.getCreatedAt(), dateTimeSerializer, provider);
+        gen.writeEndObject();
+    }
+}
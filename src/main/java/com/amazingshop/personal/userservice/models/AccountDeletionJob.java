@@ -0,0 +1,61 @@
+package com.amazingshop.personal.userservice.models;
+
+import com.amazingshop.personal.userservice.enums.JobStatus;
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Фоновое удаление аккаунта: прогресс сохраняется после каждой порции,
+ * незавершённая задача продолжается после перезапуска с того же места
+ */
+@Data
+@Entity
+@Table(name = "Account_Deletion_Jobs")
+@NoArgsConstructor
+@AllArgsConstructor
+public class AccountDeletionJob implements DeletionJob {
+
+    @Id
+    @Column(name = "id", length = 36)
+    private String id;
+
+    @Column(name = "user_id", nullable = false, unique = true)
+    private Long userId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "status", nullable = false, length = 20)
+    private JobStatus status;
+
+    @Column(name = "chats_deleted", nullable = false)
+    private long chatsDeleted;
+
+    @Column(name = "messages_deleted", nullable = false)
+    private long messagesDeleted;
+
+    @Column(name = "attempts", nullable = false)
+    private int attempts;
+
+    @Column(name = "error", length = 500)
+    private String error;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+
+    public AccountDeletionJob(String id, Long userId, LocalDateTime now) {
+        this.id = id;
+        this.userId = userId;
+        this.status = JobStatus.PENDING;
+        this.createdAt = now;
+        this.updatedAt = now;
+    }
+}
@@ -1,5 +1,6 @@
 package com.amazingshop.personal.userservice.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -34,6 +35,24 @@ public class Chat {
     @Column(name = "updated_at", nullable = false)
     private LocalDateTime updatedAt;
 
+    // Сводка по сообщениям, обновляется атомарно в addMessage
+    @Column(name = "message_count", nullable = false)
+    private int messageCount;
+
+    @Column(name = "last_message_preview", length = 200)
+    private String lastMessagePreview;
+
+    @Column(name = "last_message_role", length = 10)
+    private String lastMessageRole;
+
+    @Column(name = "last_message_at")
+    private LocalDateTime lastMessageAt;
+
+    // Позиция последнего изменения чата в chat_change_seq (для дельта-синхронизации)
+    @JsonIgnore
+    @Column(name = "change_seq", nullable = false)
+    private long changeSeq;
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -0,0 +1,32 @@
+package com.amazingshop.personal.userservice.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * История давно неактивного чата одним сжатым блобом вместо строк в Chat_Messages
+ */
+@Data
+@Entity
+@Table(name = "Chat_Archives")
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatArchive {
+
+    @Id
+    @Column(name = "chat_id")
+    private Long chatId;
+
+    @Column(name = "message_count", nullable = false)
+    private int messageCount;
+
+    @Column(name = "payload", nullable = false, columnDefinition = "BYTEA")
+    private byte[] payload;
+
+    @Column(name = "archived_at", nullable = false)
+    private LocalDateTime archivedAt;
+}
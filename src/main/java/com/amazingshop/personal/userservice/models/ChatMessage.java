@@ -1,5 +1,6 @@
 package com.amazingshop.personal.userservice.models;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
@@ -32,6 +33,16 @@ public class ChatMessage {
     @Column(name = "created_at", nullable = false)
     private LocalDateTime createdAt;
 
+    @JsonIgnore
+    @Column(name = "change_seq", nullable = false)
+    private long changeSeq;
+
+    // Считается Tokenizer-ом при вставке; в API истории не отдаётся, нужен для бюджета контекста.
+    // NULL - у сообщений до V11, пока их не досчитал TokenCountBackfiller
+    @JsonIgnore
+    @Column(name = "token_count")
+    private Integer tokenCount;
+
     @PrePersist
     protected void onCreate() {
         createdAt = LocalDateTime.now();
@@ -0,0 +1,39 @@
+package com.amazingshop.personal.userservice.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Краткое содержание сообщений чата с id не больше lastMessageId (watermark).
+ * Продвигается в фоне каждые K сообщений, см. ChatSummaryUpdater
+ */
+@Data
+@Entity
+@Table(name = "Chat_Rolling_Summaries")
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatRollingSummary {
+
+    @Id
+    @Column(name = "chat_id")
+    private Long chatId;
+
+    @Column(name = "content", nullable = false, columnDefinition = "TEXT")
+    private String content;
+
+    @Column(name = "token_count", nullable = false)
+    private int tokenCount;
+
+    @Column(name = "last_message_id", nullable = false)
+    private long lastMessageId;
+
+    @Column(name = "message_count", nullable = false)
+    private int messageCount;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,23 @@
+package com.amazingshop.personal.userservice.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@Entity
+@Table(name = "Chat_Sync_Horizon")
+@NoArgsConstructor
+@AllArgsConstructor
+public class ChatSyncHorizon {
+
+    public static final int SINGLETON_ID = 1;
+
+    @Id
+    @Column(name = "id")
+    private Integer id;
+
+    @Column(name = "purged_change_seq", nullable = false)
+    private long purgedChangeSeq;
+}
@@ -0,0 +1,62 @@
+package com.amazingshop.personal.userservice.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * Сводка за день по предмету чата. Заполняется DailyStatsAggregator.
+ * subject - имя из {@link com.amazingshop.personal.userservice.enums.Subject}, OTHER для чатов без предмета
+ * или с неизвестным предметом, TOTAL - итог дня: такой ключ не получается ни из какого предмета.
+ * newUsers осмыслен только в строке TOTAL, activeUsers - число разных авторов чатов с сообщениями за день
+ */
+@Data
+@Entity
+@Table(name = "Daily_Stats")
+@IdClass(DailyStats.Key.class)
+@NoArgsConstructor
+@AllArgsConstructor
+public class DailyStats {
+
+    public static final String TOTAL = "*";
+    public static final String OTHER = "OTHER";
+
+    @Id
+    @Column(name = "stat_date")
+    private LocalDate day;
+
+    @Id
+    @Column(name = "subject", length = 20)
+    private String subject;
+
+    @Column(name = "new_users", nullable = false)
+    private long newUsers;
+
+    @Column(name = "new_chats", nullable = false)
+    private long newChats;
+
+    @Column(name = "messages", nullable = false)
+    private long messages;
+
+    @Column(name = "active_users", nullable = false)
+    private long activeUsers;
+
+    @Column(name = "closed", nullable = false)
+    private boolean closed;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private LocalDate day;
+        private String subject;
+    }
+}
@@ -0,0 +1,30 @@
+package com.amazingshop.personal.userservice.models;
+
+import com.amazingshop.personal.userservice.enums.JobStatus;
+
+import java.time.LocalDateTime;
+
+/**
+ * Общее у фоновых задач удаления ({@link ChatDeletionJob}, {@link AccountDeletionJob}):
+ * то, что читает их общий исполнитель и отдаёт отчёт о задаче
+ */
+public interface DeletionJob {
+
+    String getId();
+
+    Long getUserId();
+
+    JobStatus getStatus();
+
+    int getAttempts();
+
+    long getChatsDeleted();
+
+    long getMessagesDeleted();
+
+    String getError();
+
+    LocalDateTime getCreatedAt();
+
+    LocalDateTime getFinishedAt();
+}
@@ -0,0 +1,29 @@
+package com.amazingshop.personal.userservice.models;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+/**
+ * Аренда фоновой задачи: пока leased_until в будущем, задачу выполняет только owner
+ */
+@Data
+@Entity
+@Table(name = "Maintenance_Leases")
+@NoArgsConstructor
+@AllArgsConstructor
+public class MaintenanceLease {
+
+    @Id
+    @Column(name = "name", length = 100)
+    private String name;
+
+    @Column(name = "owner", nullable = false, length = 200)
+    private String owner;
+
+    @Column(name = "leased_until", nullable = false)
+    private LocalDateTime leasedUntil;
+}
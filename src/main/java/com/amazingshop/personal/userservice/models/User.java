@@ -10,6 +10,7 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 
 import java.time.LocalDateTime;
+import java.util.Locale;
 
 @Data
 @Entity
@@ -53,6 +54,17 @@ public class User {
     @Column(name = "refresh_token_expiry")
     private LocalDateTime refreshTokenExpiry;
 
+    // Нормализованные копии для поиска без учёта регистра; меняются только через сеттеры username/email
+    @Column(name = "username_lc", unique = true, length = 30)
+    private String usernameLc;
+
+    @Column(name = "email_lc", unique = true)
+    private String emailLc;
+
+    // Аккаунт поставлен на удаление (см. AccountDeleter): вход уже закрыт, история удаляется в фоне
+    @Column(name = "deletion_requested_at")
+    private LocalDateTime deletionRequestedAt;
+
     // Автоматически устанавливаем createdAt и роль по умолчанию
     @PrePersist
     public void prePersist() {
@@ -65,8 +77,25 @@ public class User {
     }
 
     public User(String username, String password, String email) {
-        this.username = username;
+        setUsername(username);
         this.password = password;
+        setEmail(email);
+    }
+
+    public void setUsername(String username) {
+        this.username = username;
+        this.usernameLc = normalize(username);
+    }
+
+    public void setEmail(String email) {
         this.email = email;
+        this.emailLc = normalize(email);
+    }
+
+    /**
+     * Ключ сравнения имени и email; тем же правилом колонки заполняет миграция V13
+     */
+    public static String normalize(String value) {
+        return value == null ? null : value.trim().toLowerCase(Locale.ROOT);
     }
 }
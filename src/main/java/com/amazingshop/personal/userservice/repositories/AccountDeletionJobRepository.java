@@ -0,0 +1,45 @@
+package com.amazingshop.personal.userservice.repositories;
+
+import com.amazingshop.personal.userservice.enums.JobStatus;
+import com.amazingshop.personal.userservice.models.AccountDeletionJob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface AccountDeletionJobRepository extends DeletionJobRepository<AccountDeletionJob> {
+
+    Optional<AccountDeletionJob> findByUserId(Long userId);
+
+    // Незавершённые задачи, старые первыми (idx_account_deletion_jobs_status)
+    @Query("select j.id from AccountDeletionJob j where j.status in :statuses order by j.createdAt")
+    List<String> findIdsByStatusIn(@Param("statuses") Collection<JobStatus> statuses, Pageable pageable);
+
+    // Прогресс и статус пишутся обновлением, а не через сущность - порции коммитятся каждая в своей транзакции.
+    // flushAutomatically: в общей транзакции изменения до обновления не должны потеряться при очистке контекста
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update AccountDeletionJob j set j.chatsDeleted = j.chatsDeleted + :chats, " +
+            "j.messagesDeleted = j.messagesDeleted + :messages, j.updatedAt = :now where j.id = :id")
+    int addProgress(@Param("id") String id, @Param("chats") long chats, @Param("messages") long messages,
+                    @Param("now") LocalDateTime now);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update AccountDeletionJob j set j.status = :status, j.updatedAt = :now, j.finishedAt = :finishedAt " +
+            "where j.id = :id")
+    int updateStatus(@Param("id") String id, @Param("status") JobStatus status,
+                     @Param("finishedAt") LocalDateTime finishedAt, @Param("now") LocalDateTime now);
+
+    // Неудачная попытка: ошибка запоминается, задача возвращается в очередь или сдаётся
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update AccountDeletionJob j set j.status = :status, j.attempts = j.attempts + 1, j.error = :error, " +
+            "j.updatedAt = :now, j.finishedAt = :finishedAt where j.id = :id")
+    int recordFailure(@Param("id") String id, @Param("status") JobStatus status, @Param("error") String error,
+                      @Param("finishedAt") LocalDateTime finishedAt, @Param("now") LocalDateTime now);
+}
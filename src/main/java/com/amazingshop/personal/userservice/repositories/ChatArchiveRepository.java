@@ -0,0 +1,26 @@
+package com.amazingshop.personal.userservice.repositories;
+
+import com.amazingshop.personal.userservice.models.ChatArchive;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ChatArchiveRepository extends JpaRepository<ChatArchive, Long> {
+
+    // Архивы, в которых даже последнее сообщение старше cutoff
+    @Query("select a.chatId from ChatArchive a join Chat c on c.id = a.chatId " +
+            "where c.lastMessageAt < :cutoff and a.chatId > :afterId order by a.chatId")
+    List<Long> findExpiredChatIds(@Param("cutoff") LocalDateTime cutoff, @Param("afterId") Long afterId,
+                                  Pageable pageable);
+
+    @Modifying
+    @Query("delete from ChatArchive a where a.chatId in :chatIds")
+    int deleteByChatIdIn(@Param("chatIds") List<Long> chatIds);
+}
@@ -0,0 +1,50 @@
+package com.amazingshop.personal.userservice.repositories;
+
+import com.amazingshop.personal.userservice.enums.JobStatus;
+import com.amazingshop.personal.userservice.models.ChatDeletionJob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface ChatDeletionJobRepository extends DeletionJobRepository<ChatDeletionJob> {
+
+    Optional<ChatDeletionJob> findByIdAndUserId(String id, Long userId);
+
+    Optional<ChatDeletionJob> findFirstByUserIdAndStatusIn(Long userId, Collection<JobStatus> statuses);
+
+    // Незавершённые задачи, старые первыми (idx_chat_deletion_jobs_status)
+    @Query("select j.id from ChatDeletionJob j where j.status in :statuses order by j.createdAt")
+    List<String> findIdsByStatusIn(@Param("statuses") Collection<JobStatus> statuses, Pageable pageable);
+
+    // Прогресс и статус - обновлениями, как у AccountDeletionJobRepository: каждая порция в своей транзакции
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update ChatDeletionJob j set j.chatsDeleted = j.chatsDeleted + :chats, " +
+            "j.messagesDeleted = j.messagesDeleted + :messages, j.updatedAt = :now where j.id = :id")
+    int addProgress(@Param("id") String id, @Param("chats") long chats, @Param("messages") long messages,
+                    @Param("now") LocalDateTime now);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update ChatDeletionJob j set j.status = :status, j.updatedAt = :now, j.finishedAt = :finishedAt " +
+            "where j.id = :id")
+    int updateStatus(@Param("id") String id, @Param("status") JobStatus status,
+                     @Param("finishedAt") LocalDateTime finishedAt, @Param("now") LocalDateTime now);
+
+    @Modifying(flushAutomatically = true, clearAutomatically = true)
+    @Query("update ChatDeletionJob j set j.status = :status, j.attempts = j.attempts + 1, j.error = :error, " +
+            "j.updatedAt = :now, j.finishedAt = :finishedAt where j.id = :id")
+    int recordFailure(@Param("id") String id, @Param("status") JobStatus status, @Param("error") String error,
+                      @Param("finishedAt") LocalDateTime finishedAt, @Param("now") LocalDateTime now);
+
+    // Отчёты о завершённых задачах хранятся ограниченное время
+    @Modifying
+    @Query("delete from ChatDeletionJob j where j.finishedAt < :cutoff")
+    int deleteFinishedBefore(@Param("cutoff") LocalDateTime cutoff);
+}
@@ -1,14 +1,153 @@
 package com.amazingshop.personal.userservice.repositories;
 
 import com.amazingshop.personal.userservice.models.ChatMessage;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 
 @Repository
 public interface ChatMessageRepository extends JpaRepository<ChatMessage, Long> {
 
-    List<ChatMessage> findByChatIdOrderByCreatedAtAsc(Long chatId);
+    // История только своего чата: пустой результат - либо сообщений нет, либо чат чужой
+    @Query("select m from ChatMessage m join Chat c on c.id = m.chatId " +
+            "where m.chatId = :chatId and c.userId = :userId order by m.createdAt")
+    List<ChatMessage> findOwnedByChatId(@Param("chatId") Long chatId, @Param("userId") Long userId);
+
+    List<ChatMessage> findByChatIdAndIdLessThanOrderByCreatedAtAsc(Long chatId, Long id);
+
+    List<ChatMessage> findByChatIdOrderByIdAsc(Long chatId);
+
+    // Сообщения после watermark краткого содержания, по порядку
+    List<ChatMessage> findByChatIdAndIdGreaterThanOrderByIdAsc(Long chatId, Long id, Pageable pageable);
+
+    long countByChatIdAndIdGreaterThan(Long chatId, Long id);
+
+    // Порция для очистки по сроку хранения: идём по индексу created_at от нижней границы from
+    @Query("select m.id as id, m.chatId as chatId, m.createdAt as createdAt from ChatMessage m " +
+            "where m.createdAt >= :from and m.createdAt < :cutoff order by m.createdAt, m.id")
+    List<MessageRef> findCreatedBetween(@Param("from") LocalDateTime from, @Param("cutoff") LocalDateTime cutoff,
+                                        Pageable pageable);
+
+    // chat_id рядом с id - чтобы PostgreSQL отсёк секции и искал по первичному ключу
+    @Modifying
+    @Query("delete from ChatMessage m where m.chatId in :chatIds and m.id in :ids")
+    int deleteByChatIdInAndIdIn(@Param("chatIds") Collection<Long> chatIds, @Param("ids") List<Long> ids);
+
+    boolean existsByChatIdAndRoleAndIdLessThan(Long chatId, String role, Long id);
+
+    // Фильтр по списку chat_id, а не join по user_id: в PostgreSQL так читаются только секции этих чатов.
+    // Только для коротких списков - каждый id это параметр запроса
+    @Query("select m from ChatMessage m where m.chatId in :chatIds and m.changeSeq > :since order by m.changeSeq")
+    List<ChatMessage> findChangedSince(@Param("chatIds") List<Long> chatIds, @Param("since") long since, Pageable pageable);
+
+    // Для пользователя с множеством чатов: список всё равно задел бы все секции, а подзапрос не упирается в лимит параметров
+    @Query("select m from ChatMessage m where m.chatId in (select c.id from Chat c where c.userId = :userId) " +
+            "and m.changeSeq > :since order by m.changeSeq")
+    List<ChatMessage> findChangedSinceByUserId(@Param("userId") Long userId, @Param("since") long since,
+                                               Pageable pageable);
+
+    // Считает сообщения пользователя, но не дальше limit - дёшево даже для огромных историй
+    @Query(value = "SELECT COUNT(*) FROM (SELECT 1 FROM Chat_Messages m JOIN Chats c ON c.id = m.chat_id " +
+            "WHERE c.user_id = :userId LIMIT :limit) t", nativeQuery = true)
+    long countByUserIdUpTo(@Param("userId") Long userId, @Param("limit") long limit);
+
+    // chat_id во внешнем условии нужен для отсечения секций: по одному id секцию не найти
+    @Modifying
+    @Query(value = "DELETE FROM Chat_Messages WHERE chat_id IN (:chatIds) AND id IN " +
+            "(SELECT id FROM Chat_Messages WHERE chat_id IN (:chatIds) LIMIT :limit)", nativeQuery = true)
+    int deleteBatchByChatIdIn(@Param("chatIds") List<Long> chatIds, @Param("limit") int limit);
+
+    @Modifying
+    @Query("delete from ChatMessage m where m.chatId = :chatId")
+    int deleteByChatId(@Param("chatId") Long chatId);
+
+    // Возврат сообщения из архива с прежними id и change_seq
+    @Modifying
+    @Query(value = "INSERT INTO Chat_Messages (id, chat_id, role, content, template_used, created_at, change_seq, token_count) " +
+            "VALUES (:id, :chatId, :role, :content, :templateUsed, :createdAt, :changeSeq, :tokenCount)", nativeQuery = true)
+    void restore(@Param("id") Long id, @Param("chatId") Long chatId, @Param("role") String role,
+                 @Param("content") String content, @Param("templateUsed") String templateUsed,
+                 @Param("createdAt") LocalDateTime createdAt, @Param("changeSeq") long changeSeq,
+                 @Param("tokenCount") int tokenCount);
+
+    /**
+     * Самые новые сообщения чата после afterId, суммарно укладывающиеся в budget токенов, в хронологическом порядке.
+     * Накопительная сумма идёт назад по индексу (chat_id, id, token_count) без чтения content;
+     * content читается только у попавших в бюджет. Чужой чат даёт пустой результат.
+     */
+    @Query(value = "SELECT m.id AS id, m.role AS role, m.content AS content, m.template_used AS templateUsed, " +
+            "m.created_at AS createdAt, m.token_count AS tokenCount " +
+            "FROM Chat_Messages m JOIN Chats c ON c.id = m.chat_id " +
+            "WHERE m.chat_id = :chatId AND c.user_id = :userId AND m.id > :afterId AND m.id >= (" +
+            "SELECT MIN(b.id) FROM (SELECT id, SUM(token_count) OVER (ORDER BY id DESC ROWS UNBOUNDED PRECEDING) AS running " +
+            "FROM Chat_Messages WHERE chat_id = :chatId AND id > :afterId) b WHERE b.running <= :budget) " +
+            "ORDER BY m.id", nativeQuery = true)
+    List<ContextRow> findContext(@Param("chatId") Long chatId, @Param("userId") Long userId,
+                                 @Param("afterId") long afterId, @Param("budget") long budget);
+
+    boolean existsByChatIdAndIdGreaterThanAndIdLessThan(Long chatId, Long afterId, Long beforeId);
+
+    // Сообщения до V11, ещё не досчитанные TokenCountBackfiller - по индексу (chat_id, id, token_count)
+    boolean existsByChatIdAndIdGreaterThanAndTokenCountIsNull(Long chatId, Long afterId);
+
+    // Порция для TokenCountBackfiller: keyset по id, каждая строка просматривается один раз за проход
+    List<ChatMessage> findByIdGreaterThanAndTokenCountIsNullOrderByIdAsc(Long afterId, Pageable pageable);
+
+    // chat_id рядом с id - чтобы PostgreSQL отсёк секции и искал по первичному ключу
+    @Modifying
+    @Query("update ChatMessage m set m.tokenCount = :tokenCount where m.chatId = :chatId and m.id = :id " +
+            "and m.tokenCount is null")
+    int updateTokenCount(@Param("chatId") Long chatId, @Param("id") Long id, @Param("tokenCount") int tokenCount);
+
+    boolean existsByChatIdAndIdGreaterThan(Long chatId, Long id);
+
+    // Сообщения за день по предметам чатов и число разных авторов; диапазон - по индексу created_at
+    // Группировка по корзине в SQL: activeUsers нельзя сложить из групп по сырому subject
+    @Query("select " + ChatRepository.SUBJECT_BUCKET + " as subject, count(m) as messages, " +
+            "count(distinct c.userId) as activeUsers " +
+            "from ChatMessage m join Chat c on c.id = m.chatId where m.createdAt >= :from and m.createdAt < :to " +
+            "group by " + ChatRepository.SUBJECT_BUCKET)
+    List<SubjectActivity> countActivityBySubject(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    // Активные за день по всем предметам: сумма по предметам посчитала бы автора нескольких чатов дважды
+    @Query("select count(distinct c.userId) from ChatMessage m join Chat c on c.id = m.chatId " +
+            "where m.createdAt >= :from and m.createdAt < :to")
+    long countActiveUsers(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
+
+    interface SubjectActivity {
+        String getSubject();
+
+        long getMessages();
+
+        long getActiveUsers();
+    }
+
+    interface ContextRow {
+        Long getId();
+
+        String getRole();
+
+        String getContent();
+
+        String getTemplateUsed();
+
+        LocalDateTime getCreatedAt();
+
+        int getTokenCount();
+    }
+
+    interface MessageRef {
+        Long getId();
+
+        Long getChatId();
 
-    long countByChatIdAndRole(Long chatId, String role);
-}
\ No newline at end of file
+        LocalDateTime getCreatedAt();
+    }
+}
@@ -0,0 +1,40 @@
+package com.amazingshop.personal.userservice.repositories;
+
+import com.amazingshop.personal.userservice.models.ChatMessageTombstone;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface ChatMessageTombstoneRepository extends JpaRepository<ChatMessageTombstone, Long> {
+
+    List<ChatMessageTombstone> findByUserIdAndChangeSeqGreaterThanOrderByChangeSeqAsc(Long userId, long changeSeq,
+                                                                                     Pageable pageable);
+
+    // Следы одного архива делят позицию - страница дочитывает группу на своей границе целиком
+    List<ChatMessageTombstone> findByUserIdAndChangeSeqGreaterThanAndChangeSeqLessThanEqualOrderByChangeSeqAsc(
+            Long userId, long changeSeq, long upTo);
+
+    @Query("select max(t.changeSeq) from ChatMessageTombstone t where t.deletedAt < :cutoff")
+    Long findMaxChangeSeqDeletedBefore(@Param("cutoff") LocalDateTime cutoff);
+
+    @Modifying
+    @Query("delete from ChatMessageTombstone t where t.changeSeq <= :changeSeq")
+    int deleteUpToChangeSeq(@Param("changeSeq") long changeSeq);
+
+    // Вызывать до удаления самих сообщений, под блокировкой владельцев (ChatRepository#lockChangeSeqOwners)
+    @Modifying
+    @Query(value = "INSERT INTO Chat_Message_Tombstones (message_id, chat_id, user_id, change_seq, deleted_at) " +
+            "SELECT m.id, m.chat_id, c.user_id, nextval('chat_change_seq'), CURRENT_TIMESTAMP " +
+            "FROM Chat_Messages m JOIN Chats c ON c.id = m.chat_id " +
+            "WHERE m.chat_id IN (:chatIds) AND m.id IN (:ids)",
+            nativeQuery = true)
+    int insertForMessages(@Param("chatIds") Collection<Long> chatIds, @Param("ids") List<Long> ids);
+}
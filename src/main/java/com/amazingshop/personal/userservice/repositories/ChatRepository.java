@@ -1,16 +1,174 @@
 package com.amazingshop.personal.userservice.repositories;
 
+import com.amazingshop.personal.userservice.dto.responses.ChatSummary;
 import com.amazingshop.personal.userservice.models.Chat;
+import com.amazingshop.personal.userservice.models.DailyStats;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface ChatRepository extends JpaRepository<Chat, Long> {
 
-    List<Chat> findByUserIdOrderByUpdatedAtDesc(Long userId);
+    String SUMMARY_SELECT = "select new com.amazingshop.personal.userservice.dto.responses.ChatSummary(" +
+            "c.id, c.userId, c.title, c.subject, c.createdAt, c.updatedAt, " +
+            "c.messageCount, c.lastMessagePreview, c.lastMessageRole, c.lastMessageAt) from Chat c ";
+
+    // Корзина предмета для дневных сводок: subject - свободная строка, поэтому значения из Subject
+    // сравниваются без учёта регистра и пробелов, всё остальное и NULL - одна корзина OTHER.
+    // Список повторяет Subject - их расхождение ловит DailyStatsAggregatorIT
+    String SUBJECT_BUCKET = "case when upper(trim(c.subject)) in ('MATH', 'PROGRAMMING', 'ENGLISH', 'GENERAL') " +
+            "then upper(trim(c.subject)) else '" + DailyStats.OTHER + "' end";
+
+    @Query(SUMMARY_SELECT + "where c.userId = :userId order by c.updatedAt desc")
+    List<ChatSummary> findSummariesByUserId(@Param("userId") Long userId);
+
+    @Query(SUMMARY_SELECT + "where c.userId = :userId order by c.updatedAt desc")
+    List<ChatSummary> findSummariesByUserId(@Param("userId") Long userId, Pageable pageable);
+
+    @Query(SUMMARY_SELECT + "where c.userId = :userId and lower(c.title) like lower(concat('%', :title, '%')) " +
+            "order by c.updatedAt desc")
+    List<ChatSummary> findSummariesByUserIdAndTitleContaining(@Param("userId") Long userId, @Param("title") String title);
+
+    @Query(SUMMARY_SELECT + "where c.userId = :userId and c.subject = :subject order by c.updatedAt desc")
+    List<ChatSummary> findSummariesByUserIdAndSubject(@Param("userId") Long userId, @Param("subject") String subject);
+
+    boolean existsByIdAndUserId(Long id, Long userId);
+
+    // Операции над чатом ограничены владельцем прямо в запросе: 0 строк - чата нет или он чужой
+    @Modifying
+    @Query("delete from Chat c where c.id = :chatId and c.userId = :userId")
+    int deleteByIdAndUserId(@Param("chatId") Long chatId, @Param("userId") Long userId);
+
+    // Сдвигает сводку чата одним UPDATE: параллельные addMessage не теряют инкременты message_count
+    @Modifying(clearAutomatically = true)
+    @Query("update Chat c set c.messageCount = c.messageCount + 1, c.lastMessagePreview = :preview, " +
+            "c.lastMessageRole = :role, c.lastMessageAt = :at, c.updatedAt = :at, c.changeSeq = :changeSeq " +
+            "where c.id = :chatId and c.userId = :userId")
+    int recordMessage(@Param("chatId") Long chatId, @Param("userId") Long userId, @Param("preview") String preview,
+                      @Param("role") String role, @Param("at") LocalDateTime at, @Param("changeSeq") long changeSeq);
+
+    @Modifying(clearAutomatically = true)
+    @Query("update Chat c set c.title = :title, c.updatedAt = :updatedAt, c.changeSeq = :changeSeq " +
+            "where c.id = :chatId and c.userId = :userId")
+    int updateTitleByIdAndUserId(@Param("chatId") Long chatId, @Param("userId") Long userId,
+                                 @Param("title") String title, @Param("updatedAt") LocalDateTime updatedAt,
+                                 @Param("changeSeq") long changeSeq);
+
+    // Версия списка чатов пользователя: меняется при создании, удалении и любом изменении чата
+    @Query("select count(c) as chatCount, max(c.updatedAt) as lastUpdatedAt from Chat c where c.userId = :userId")
+    ChatListVersion findChatListVersion(@Param("userId") Long userId);
+
+    @Query("select c.userId as userId, c.updatedAt as updatedAt from Chat c where c.id = :chatId")
+    Optional<ChatVersion> findChatVersion(@Param("chatId") Long chatId);
+
+    @Query(value = "SELECT nextval('chat_change_seq')", nativeQuery = true)
+    long allocateChangeSeq();
+
+    @Query(value = "SELECT id FROM Users WHERE id = :userId FOR UPDATE", nativeQuery = true)
+    Optional<Long> lockChangeSeqOwner(@Param("userId") Long userId);
+
+    // Фоновые задачи, меняющие данные нескольких пользователей: блокировки по возрастанию id,
+    // чтобы две такие транзакции не ждали друг друга крест-накрест
+    @Query(value = "SELECT id FROM Users WHERE id IN (:userIds) ORDER BY id FOR UPDATE", nativeQuery = true)
+    List<Long> lockChangeSeqOwners(@Param("userIds") Collection<Long> userIds);
+
+    @Query("select c.id as chatId, c.userId as userId from Chat c where c.id in :chatIds")
+    List<ChatOwner> findOwnersByIdIn(@Param("chatIds") Collection<Long> chatIds);
+
+    /**
+     * Следующая позиция в chat_change_seq для изменения данных пользователя.
+     * <p>
+     * nextval берётся до коммита, поэтому без блокировки транзакция с меньшей позицией могла бы
+     * закоммититься позже чужой с большей - и клиент, уже получивший watermark, пропустил бы её.
+     * Строка пользователя остаётся заблокированной до конца транзакции: изменения одного
+     * пользователя получают позиции в порядке коммитов. Вызывать первым изменением в транзакции,
+     * до блокировок строк чатов - иначе возможна взаимоблокировка с addMessage
+     */
+    default long nextChangeSeq(Long userId) {
+        lockChangeSeqOwner(userId);
+        return allocateChangeSeq();
+    }
+
+    @Query("select c from Chat c where c.userId = :userId and c.changeSeq > :since order by c.changeSeq")
+    List<Chat> findChangedSince(@Param("userId") Long userId, @Param("since") long since);
+
+    @Query("select c.id from Chat c where c.userId = :userId order by c.id")
+    List<Long> findIdsByUserId(@Param("userId") Long userId, Pageable pageable);
+
+    @Query("select c.id from Chat c where c.userId = :userId")
+    List<Long> findAllIdsByUserId(@Param("userId") Long userId);
+
+    // Кандидаты в архив: с сообщениями, не менялись с cutoff и ещё не в архиве
+    @Query("select c.id from Chat c where c.updatedAt < :cutoff and c.messageCount > 0 and c.id > :afterId " +
+            "and not exists (select 1 from ChatArchive a where a.chatId = c.id) order by c.id")
+    List<Long> findArchivableIds(@Param("cutoff") LocalDateTime cutoff, @Param("afterId") Long afterId,
+                                 Pageable pageable);
+
+    // Сводка сайдбара после удаления части сообщений в обход addMessage. Чат меняется вместе с историей:
+    // без нового updated_at и change_seq ETag списка и истории и дельта-синхронизация удаления не заметят
+    @Modifying
+    @Query("update Chat c set c.messageCount = (select count(m) from ChatMessage m where m.chatId = c.id), " +
+            "c.updatedAt = :updatedAt, c.changeSeq = :changeSeq where c.id in :chatIds")
+    int recountMessages(@Param("chatIds") Collection<Long> chatIds, @Param("updatedAt") LocalDateTime updatedAt,
+                        @Param("changeSeq") long changeSeq);
+
+    @Modifying
+    @Query("update Chat c set c.lastMessagePreview = null, c.lastMessageRole = null " +
+            "where c.id in :chatIds and c.messageCount = 0")
+    int clearEmptySummaries(@Param("chatIds") Collection<Long> chatIds);
+
+    // Блокирует чат, если он всё ещё неактивен: параллельный addMessage дождётся архивации
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("select c from Chat c where c.id = :chatId and c.updatedAt < :cutoff")
+    Optional<Chat> findIdleForUpdate(@Param("chatId") Long chatId, @Param("cutoff") LocalDateTime cutoff);
+
+    @Modifying
+    @Query("delete from Chat c where c.id in :chatIds and c.userId = :userId")
+    int deleteByIdInAndUserId(@Param("chatIds") List<Long> chatIds, @Param("userId") Long userId);
+
+    // Авто-title: меняет только название по умолчанию - заданное пользователем (в том числе
+    // переименованием, пока событие ждало в очереди) не перезаписывается
+    @Modifying
+    @Query("update Chat c set c.title = :title, c.updatedAt = :updatedAt, c.changeSeq = :changeSeq " +
+            "where c.id = :chatId and c.title = :defaultTitle")
+    int updateTitleIfDefault(@Param("chatId") Long chatId, @Param("title") String title,
+                             @Param("defaultTitle") String defaultTitle, @Param("updatedAt") LocalDateTime updatedAt,
+                             @Param("changeSeq") long changeSeq);
+
+    interface ChatOwner {
+        Long getChatId();
+        Long getUserId();
+    }
+
+    interface ChatListVersion {
+        long getChatCount();
+        LocalDateTime getLastUpdatedAt();
+    }
+
+    interface ChatVersion {
+        Long getUserId();
+        LocalDateTime getUpdatedAt();
+    }
+
+    // Новые чаты за день по предметам, по индексу created_at
+    @Query("select " + SUBJECT_BUCKET + " as subject, count(c) as count from Chat c " +
+            "where c.createdAt >= :from and c.createdAt < :to group by " + SUBJECT_BUCKET)
+    List<SubjectCount> countCreatedBySubject(@Param("from") LocalDateTime from, @Param("to") LocalDateTime to);
 
-    List<Chat> findByUserIdAndTitleContainingIgnoreCaseOrderByUpdatedAtDesc(Long userId, String title);
+    interface SubjectCount {
+        String getSubject();
 
-    List<Chat> findByUserIdAndSubjectOrderByUpdatedAtDesc(Long userId, String subject);
-}
\ No newline at end of file
+        long getCount();
+    }
+}
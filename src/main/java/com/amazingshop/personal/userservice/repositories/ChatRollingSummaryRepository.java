@@ -0,0 +1,38 @@
+package com.amazingshop.personal.userservice.repositories;
+
+import com.amazingshop.personal.userservice.models.ChatRollingSummary;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+
+@Repository
+public interface ChatRollingSummaryRepository extends JpaRepository<ChatRollingSummary, Long> {
+
+    // Сдвигает watermark, только если его никто не сдвинул с момента чтения
+    @Modifying
+    @Query("update ChatRollingSummary s set s.content = :content, s.tokenCount = :tokenCount, " +
+            "s.lastMessageId = :lastMessageId, s.messageCount = :messageCount, s.updatedAt = :updatedAt " +
+            "where s.chatId = :chatId and s.lastMessageId = :expectedLastMessageId")
+    int advance(@Param("chatId") Long chatId, @Param("expectedLastMessageId") long expectedLastMessageId,
+                @Param("content") String content, @Param("tokenCount") int tokenCount,
+                @Param("lastMessageId") long lastMessageId, @Param("messageCount") int messageCount,
+                @Param("updatedAt") LocalDateTime updatedAt);
+
+    // Первое краткое содержание чата; при гонке второй получит нарушение первичного ключа
+    @Modifying
+    @Query(value = "INSERT INTO Chat_Rolling_Summaries (chat_id, content, token_count, last_message_id, message_count, updated_at) " +
+            "VALUES (:chatId, :content, :tokenCount, :lastMessageId, :messageCount, :updatedAt)", nativeQuery = true)
+    void insert(@Param("chatId") Long chatId, @Param("content") String content, @Param("tokenCount") int tokenCount,
+                @Param("lastMessageId") long lastMessageId, @Param("messageCount") int messageCount,
+                @Param("updatedAt") LocalDateTime updatedAt);
+
+    // Краткое содержание пересобирается заново из оставшихся сообщений
+    @Modifying
+    @Query("delete from ChatRollingSummary s where s.chatId in :chatIds")
+    int deleteByChatIdIn(@Param("chatIds") Collection<Long> chatIds);
+}
@@ -0,0 +1,9 @@
+package com.amazingshop.personal.userservice.repositories;
+
+import com.amazingshop.personal.userservice.models.ChatSyncHorizon;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.stereotype.Repository;
+
+@Repository
+public interface ChatSyncHorizonRepository extends JpaRepository<ChatSyncHorizon, Integer> {
+}
@@ -0,0 +1,32 @@
+package com.amazingshop.personal.userservice.repositories;
+
+import com.amazingshop.personal.userservice.models.ChatTombstone;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ChatTombstoneRepository extends JpaRepository<ChatTombstone, Long> {
+
+    List<ChatTombstone> findByUserIdAndChangeSeqGreaterThanOrderByChangeSeqAsc(Long userId, long changeSeq,
+                                                                              Pageable pageable);
+
+    @Query("select max(t.changeSeq) from ChatTombstone t where t.deletedAt < :cutoff")
+    Long findMaxChangeSeqDeletedBefore(@Param("cutoff") LocalDateTime cutoff);
+
+    @Modifying
+    @Query("delete from ChatTombstone t where t.changeSeq <= :changeSeq")
+    int deleteUpToChangeSeq(@Param("changeSeq") long changeSeq);
+
+    @Modifying
+    @Query(value = "INSERT INTO Chat_Tombstones (chat_id, user_id, change_seq, deleted_at) " +
+            "SELECT id, user_id, nextval('chat_change_seq'), CURRENT_TIMESTAMP FROM Chats WHERE id IN (:chatIds)",
+            nativeQuery = true)
+    int insertForChats(@Param("chatIds") List<Long> chatIds);
+}
\ No newline at end of file
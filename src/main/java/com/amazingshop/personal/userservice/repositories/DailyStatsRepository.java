@@ -0,0 +1,29 @@
+package com.amazingshop.personal.userservice.repositories;
+
+import com.amazingshop.personal.userservice.models.DailyStats;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface DailyStatsRepository extends JpaRepository<DailyStats, DailyStats.Key> {
+
+    // Панель читает только готовые строки: O(дней × предметов), а не O(сообщений)
+    List<DailyStats> findByDayBetweenOrderByDayAscSubjectAsc(LocalDate from, LocalDate to);
+
+    // С этого дня пересчёт больше не нужен
+    @Query("select max(s.day) from DailyStats s where s.subject = '" + DailyStats.TOTAL + "' and s.closed = true")
+    Optional<LocalDate> findLastClosedDay();
+
+    // Предметы, которых в пересчёте дня больше нет (их чаты удалены до закрытия дня)
+    @Modifying
+    @Query("delete from DailyStats s where s.day = :day and s.subject not in :subjects")
+    int deleteByDayAndSubjectNotIn(@Param("day") LocalDate day, @Param("subjects") Collection<String> subjects);
+}
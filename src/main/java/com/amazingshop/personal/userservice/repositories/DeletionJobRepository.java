@@ -0,0 +1,27 @@
+package com.amazingshop.personal.userservice.repositories;
+
+import com.amazingshop.personal.userservice.enums.JobStatus;
+import com.amazingshop.personal.userservice.models.DeletionJob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.repository.NoRepositoryBean;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Операции над задачами удаления, нужные их общему исполнителю.
+ * Запросы объявляет каждый репозиторий сам - у задач разные таблицы
+ */
+@NoRepositoryBean
+public interface DeletionJobRepository<T extends DeletionJob> extends JpaRepository<T, String> {
+
+    List<String> findIdsByStatusIn(Collection<JobStatus> statuses, Pageable pageable);
+
+    int addProgress(String id, long chats, long messages, LocalDateTime now);
+
+    int updateStatus(String id, JobStatus status, LocalDateTime finishedAt, LocalDateTime now);
+
+    int recordFailure(String id, JobStatus status, String error, LocalDateTime finishedAt, LocalDateTime now);
+}
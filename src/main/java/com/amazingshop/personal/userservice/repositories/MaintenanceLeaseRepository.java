@@ -0,0 +1,41 @@
+package com.amazingshop.personal.userservice.repositories;
+
+import com.amazingshop.personal.userservice.models.MaintenanceLease;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+
+@Repository
+public interface MaintenanceLeaseRepository extends JpaRepository<MaintenanceLease, String> {
+
+    // Забирает истёкшую аренду или продлевает свою - атомарно одним UPDATE
+    @Modifying
+    @Query("update MaintenanceLease l set l.owner = :owner, l.leasedUntil = :until " +
+            "where l.name = :name and (l.leasedUntil < :now or l.owner = :owner)")
+    int tryAcquire(@Param("name") String name, @Param("owner") String owner,
+                   @Param("now") LocalDateTime now, @Param("until") LocalDateTime until);
+
+    // Первая аренда задачи; при гонке узлов второй получит нарушение первичного ключа
+    @Modifying
+    @Query(value = "INSERT INTO Maintenance_Leases (name, owner, leased_until) VALUES (:name, :owner, :until)",
+            nativeQuery = true)
+    void insert(@Param("name") String name, @Param("owner") String owner, @Param("until") LocalDateTime until);
+
+    @Modifying
+    @Query("update MaintenanceLease l set l.leasedUntil = :now where l.name = :name and l.owner = :owner")
+    int release(@Param("name") String name, @Param("owner") String owner, @Param("now") LocalDateTime now);
+
+    // Аренда завершённой задачи больше не нужна - строку удаляет её владелец
+    @Modifying
+    @Query("delete from MaintenanceLease l where l.name = :name and l.owner = :owner")
+    int delete(@Param("name") String name, @Param("owner") String owner);
+
+    // Истёкшие аренды задач с префиксом: остались от упавших узлов или уже отпущены
+    @Modifying
+    @Query("delete from MaintenanceLease l where l.name like concat(:prefix, '%') and l.leasedUntil < :now")
+    int deleteExpiredByPrefix(@Param("prefix") String prefix, @Param("now") LocalDateTime now);
+}
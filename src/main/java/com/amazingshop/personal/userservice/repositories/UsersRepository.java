@@ -1,19 +1,62 @@
 package com.amazingshop.personal.userservice.repositories;
 
+import com.amazingshop.personal.userservice.dto.responses.AdminUserSummary;
 import com.amazingshop.personal.userservice.models.User;
-import jakarta.validation.constraints.Email;
+import jakarta.persistence.QueryHint;
 import jakarta.validation.constraints.NotEmpty;
 import jakarta.validation.constraints.Size;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.hibernate.jpa.HibernateHints.HINT_FETCH_SIZE;
 
 @Repository
-public interface UsersRepository extends JpaRepository<User, Long> {
+public interface UsersRepository extends JpaRepository<User, Long>, UsersRepositoryCustom {
+    // Вход - по точному имени (уникальный индекс username)
     Optional<User> findByUsername(@NotEmpty(message = "Username should be not empty") @Size(min = 2, max = 30,
                                         message = "Username should be for 2 to 30 symbols") String username);
 
-    Optional<User> findByEmail(@NotEmpty(message = "Email should be not empty") @Email(
-                                               message = "Email should be valid") String email);
-}
\ No newline at end of file
+    // Поиск и проверки занятости без учёта регистра - по уникальным индексам username_lc/email_lc (V13).
+    // Аргумент уже нормализован через User.normalize
+    Optional<User> findByEmailLc(String emailLc);
+
+    // Старый почти-дубликат, которому V13 не досталось email_lc - только по точному email
+    Optional<User> findFirstByEmailAndEmailLcIsNullOrderByIdAsc(String email);
+
+    boolean existsByUsernameLc(String usernameLc);
+
+    boolean existsByEmailLc(String emailLc);
+
+    @Query("select u.id from User u where u.refreshTokenExpiry < :now and u.id > :afterId order by u.id")
+    List<Long> findIdsWithExpiredRefreshToken(@Param("now") LocalDateTime now, @Param("afterId") Long afterId,
+                                              Pageable pageable);
+
+    // Условие по сроку повторяется: токен, обновлённый после выборки, не трогаем
+    @Modifying
+    @Query("update User u set u.refreshToken = null, u.refreshTokenExpiry = null " +
+            "where u.id in :ids and u.refreshTokenExpiry < :now")
+    int clearExpiredRefreshTokens(@Param("ids") List<Long> ids, @Param("now") LocalDateTime now);
+
+    // Регистрации за день для DailyStatsAggregator - по индексу (created_at, id)
+    long countByCreatedAtGreaterThanEqualAndCreatedAtLessThan(LocalDateTime from, LocalDateTime to);
+
+    @Query("select min(u.createdAt) from User u")
+    Optional<LocalDateTime> findFirstCreatedAt();
+
+    // Выгрузка всех пользователей: проекция без сущностей в контексте и чтение курсором порциями по fetch size
+    // (в PostgreSQL - только внутри транзакции). Стрим закрывать, читать в той же транзакции
+    @QueryHints(@QueryHint(name = HINT_FETCH_SIZE, value = "1000"))
+    @Query("select new com.amazingshop.personal.userservice.dto.responses.AdminUserSummary(" +
+            "u.id, u.username, u.email, u.role, u.createdAt, u.profilePictureUrl) from User u order by u.id")
+    Stream<AdminUserSummary> streamAllSummaries();
+}
@@ -0,0 +1,67 @@
+package com.amazingshop.personal.userservice.repositories;
+
+import com.amazingshop.personal.userservice.dto.responses.AdminUserSummary;
+import com.amazingshop.personal.userservice.enums.Role;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Админский список пользователей: набор фильтров произвольный, поэтому запрос собирается
+ * из тех условий, что заданы, - каждое сочетание попадает на свой индекс (V14, V15)
+ */
+public interface UsersRepositoryCustom {
+
+    /**
+     * Не больше limit строк в порядке sort, строго после (afterValue, afterId), если они заданы
+     */
+    List<AdminUserSummary> findSummaries(UserListing listing, int limit);
+
+    /**
+     * Ключ сортировки; при равенстве порядок добивается по id
+     */
+    enum SortField {
+        CREATED_AT("createdAt", "u.createdAt"),
+        USERNAME("username", "u.username"),
+        EMAIL("email", "u.email"),
+        ID("id", "u.id");
+
+        private final String param;
+        private final String path;
+
+        SortField(String param, String path) {
+            this.param = param;
+            this.path = path;
+        }
+
+        public String param() {
+            return param;
+        }
+
+        String path() {
+            return path;
+        }
+
+        public static SortField fromParam(String param) {
+            return Arrays.stream(values())
+                    .filter(field -> field.param.equals(param))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalArgumentException("Unsupported sort: " + param));
+        }
+    }
+
+    /**
+     * Префиксы уже приведены через User.normalize; afterValue - LocalDateTime или String по полю сортировки
+     */
+    record UserListing(Role role,
+                       LocalDateTime createdFrom,
+                       LocalDateTime createdTo,
+                       String usernamePrefix,
+                       String emailPrefix,
+                       SortField sort,
+                       boolean descending,
+                       Object afterValue,
+                       Long afterId) {
+    }
+}
@@ -0,0 +1,75 @@
+package com.amazingshop.personal.userservice.repositories;
+
+import com.amazingshop.personal.userservice.dto.responses.AdminUserSummary;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.TypedQuery;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+class UsersRepositoryCustomImpl implements UsersRepositoryCustom {
+
+    private static final String SUMMARY_SELECT = "select new com.amazingshop.personal.userservice.dto.responses.AdminUserSummary(" +
+            "u.id, u.username, u.email, u.role, u.createdAt, u.profilePictureUrl) from User u where 1 = 1";
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Override
+    public List<AdminUserSummary> findSummaries(UserListing listing, int limit) {
+        StringBuilder jpql = new StringBuilder(SUMMARY_SELECT);
+        Map<String, Object> params = new HashMap<>();
+
+        if (listing.role() != null) {
+            jpql.append(" and u.role = :role");
+            params.put("role", listing.role());
+        }
+        if (listing.createdFrom() != null) {
+            jpql.append(" and u.createdAt >= :createdFrom");
+            params.put("createdFrom", listing.createdFrom());
+        }
+        if (listing.createdTo() != null) {
+            jpql.append(" and u.createdAt < :createdTo");
+            params.put("createdTo", listing.createdTo());
+        }
+        // Префикс уже нормализован (User.normalize) и сравнивается с колонками V13 под индексами
+        // text_pattern_ops из V15; старые почти-дубликаты с NULL в этих колонках в фильтр не попадают
+        if (listing.usernamePrefix() != null) {
+            jpql.append(" and u.usernameLc like :usernamePrefix escape '\\'");
+            params.put("usernamePrefix", likePrefix(listing.usernamePrefix()));
+        }
+        if (listing.emailPrefix() != null) {
+            jpql.append(" and u.emailLc like :emailPrefix escape '\\'");
+            params.put("emailPrefix", likePrefix(listing.emailPrefix()));
+        }
+
+        String path = listing.sort().path();
+        String after = listing.descending() ? "<" : ">";
+        if (listing.afterId() != null) {
+            if (listing.sort() == SortField.ID) {
+                jpql.append(" and u.id ").append(after).append(" :afterId");
+            } else {
+                jpql.append(" and (").append(path).append(' ').append(after).append(" :afterValue or (")
+                        .append(path).append(" = :afterValue and u.id ").append(after).append(" :afterId))");
+                params.put("afterValue", listing.afterValue());
+            }
+            params.put("afterId", listing.afterId());
+        }
+
+        String direction = listing.descending() ? " desc" : " asc";
+        jpql.append(" order by ").append(path).append(direction);
+        if (listing.sort() != SortField.ID) {
+            jpql.append(", u.id").append(direction);
+        }
+
+        TypedQuery<AdminUserSummary> query = entityManager.createQuery(jpql.toString(), AdminUserSummary.class);
+        params.forEach(query::setParameter);
+        return query.setMaxResults(limit).getResultList();
+    }
+
+    private static String likePrefix(String prefix) {
+        return prefix.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_") + "%";
+    }
+}
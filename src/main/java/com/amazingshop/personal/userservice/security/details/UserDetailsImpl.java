@@ -1,5 +1,6 @@
 package com.amazingshop.personal.userservice.security.details;
 
+import com.amazingshop.personal.userservice.enums.Role;
 import com.amazingshop.personal.userservice.models.User;
 import lombok.Getter;
 import org.springframework.security.core.GrantedAuthority;
@@ -9,28 +10,27 @@ import org.springframework.security.core.userdetails.UserDetails;
 import java.util.Collection;
 import java.util.Collections;
 
+/**
+ * Неизменяемый снимок пользователя на момент загрузки: один экземпляр делят запросы через
+ * {@link com.amazingshop.personal.userservice.cache.UserDetailsCache}, поэтому ссылки на сущность не держим
+ */
 @Getter
 public class UserDetailsImpl implements UserDetails {
 
-    private User user;
+    private final Long id;
+    private final String username;
+    private final String password;
+    private final Role role;
+    private final boolean enabled;
+    private final Collection<? extends GrantedAuthority> authorities;
 
     public UserDetailsImpl(User user) {
-        this.user = user;
-    }
-
-    @Override
-    public Collection<? extends GrantedAuthority> getAuthorities() {
-        return Collections.singleton(new SimpleGrantedAuthority("ROLE_" + user.getRole().toString()));
-    }
-
-    @Override
-    public String getPassword() {
-        return this.user.getPassword();
-    }
-
-    @Override
-    public String getUsername() {
-        return this.user.getUsername();
+        this.id = user.getId();
+        this.username = user.getUsername();
+        this.password = user.getPassword();
+        this.role = user.getRole();
+        this.enabled = user.getDeletionRequestedAt() == null;
+        this.authorities = Collections.singleton(new SimpleGrantedAuthority("ROLE_" + role));
     }
 
     @Override
@@ -48,8 +48,9 @@ public class UserDetailsImpl implements UserDetails {
         return true;
     }
 
+    // Аккаунт на удалении: DaoAuthenticationProvider отклонит вход, JwtFilter - выданные токены
     @Override
     public boolean isEnabled() {
-        return true;
+        return enabled;
     }
 }
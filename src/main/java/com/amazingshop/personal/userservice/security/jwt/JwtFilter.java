@@ -66,6 +66,11 @@ public class JwtFilter extends OncePerRequestFilter {
 
             if (username != null && !username.isBlank()) {
                 UserDetails userDetails = userDetailsService.loadUserByUsername(username);
+                if (!userDetails.isEnabled()) {
+                    log.debug("Rejected JWT of disabled user: {}", username);
+                    filterChain.doFilter(request, response);
+                    return;
+                }
                 UsernamePasswordAuthenticationToken authentication =
                         new UsernamePasswordAuthenticationToken(
                                 userDetails, null, userDetails.getAuthorities());
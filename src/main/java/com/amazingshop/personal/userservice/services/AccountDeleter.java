@@ -0,0 +1,148 @@
+package com.amazingshop.personal.userservice.services;
+
+import com.amazingshop.personal.userservice.config.AsyncConfig;
+import com.amazingshop.personal.userservice.dto.responses.DeletionJobResponse;
+import com.amazingshop.personal.userservice.enums.JobStatus;
+import com.amazingshop.personal.userservice.interfaces.UserService;
+import com.amazingshop.personal.userservice.models.AccountDeletionJob;
+import com.amazingshop.personal.userservice.models.User;
+import com.amazingshop.personal.userservice.repositories.AccountDeletionJobRepository;
+import com.amazingshop.personal.userservice.util.exceptions.UserNotFoundException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Удаление аккаунта фоновой задачей.
+ * <p>
+ * Запрос в одной короткой транзакции закрывает вход (deletion_requested_at, refresh token сброшен)
+ * и записывает задачу в Account_Deletion_Jobs. Дальше история чатов удаляется порциями
+ * {@link ChatBulkDeleter#deleteNextChunk}, прогресс сохраняется после каждой порции,
+ * и только в конце удаляется сам пользователь - каскад ему уже нечего удалять.
+ * <p>
+ * Выполняет задачу {@link DeletionJobRunner}, как и задачи {@link ChatBulkDeleter}. Незавершённые задачи
+ * (в том числе прерванные перезапуском) подбирает {@link #resumeUnfinished()}; на нескольких узлах задачу
+ * выполняет тот, кто взял её аренду. Упавшая попытка возвращает задачу в очередь, после max-attempts
+ * задача остаётся FAILED - пользователь при этом так и не может войти.
+ */
+@Slf4j
+@Component
+public class AccountDeleter {
+
+    public static final String LEASE_PREFIX = "account-deletion:";
+
+    private final UserService userService;
+    private final AccountDeletionJobRepository jobRepository;
+    private final DeletionJobRunner<AccountDeletionJob> runner;
+
+    @Autowired
+    public AccountDeleter(UserService userService,
+                          AccountDeletionJobRepository jobRepository,
+                          ChatBulkDeleter chatBulkDeleter,
+                          MaintenanceLeases leases,
+                          PlatformTransactionManager transactionManager,
+                          @Qualifier(AsyncConfig.MAINTENANCE_EXECUTOR) TaskExecutor executor,
+                          @Value("${account.deletion.lease-minutes:5}") long leaseMinutes,
+                          @Value("${account.deletion.max-attempts:5}") int maxAttempts,
+                          @Value("${account.deletion.resume-batch-size:20}") int resumeBatchSize) {
+        this.userService = userService;
+        this.jobRepository = jobRepository;
+        this.runner = new DeletionJobRunner<>("Account deletion", LEASE_PREFIX, jobRepository, leases,
+                new TransactionTemplate(transactionManager), executor, Duration.ofMinutes(leaseMinutes), maxAttempts,
+                resumeBatchSize, chatBulkDeleter::deleteNextChunk, this::deleteUser);
+    }
+
+    /**
+     * Ставит аккаунт на удаление. Повторный запрос возвращает уже созданную задачу,
+     * сдавшуюся (FAILED) - запускает заново
+     */
+    @Transactional
+    public DeletionJobResponse request(Long userId) {
+        LocalDateTime now = LocalDateTime.now();
+        Optional<AccountDeletionJob> existing = jobRepository.findByUserId(userId);
+        if (existing.isPresent()) {
+            AccountDeletionJob job = existing.get();
+            if (job.getStatus() == JobStatus.FAILED) {
+                job.setStatus(JobStatus.PENDING);
+                job.setAttempts(0);
+                job.setFinishedAt(null);
+                job.setError(null);
+                job.setUpdatedAt(now);
+                runner.submitAfterCommit(job.getId());
+                log.info("Restarting failed account deletion {} for user {}", job.getId(), userId);
+            }
+            return DeletionJobRunner.toResponse(job);
+        }
+
+        User user = userService.findUserByIdOrThrow(userId);
+        user.setDeletionRequestedAt(now);
+        user.setRefreshToken(null);
+        user.setRefreshTokenExpiry(null);
+        // save() обновит снимки UserDetails после коммита - вход и JWT отклоняются сразу
+        userService.save(user);
+
+        AccountDeletionJob job = jobRepository.save(new AccountDeletionJob(UUID.randomUUID().toString(), userId, now));
+        runner.submitAfterCommit(job.getId());
+        log.info("Scheduled account deletion {} for user {}", job.getId(), userId);
+        return DeletionJobRunner.toResponse(job);
+    }
+
+    public Optional<DeletionJobResponse> findJob(String jobId) {
+        return jobRepository.findById(jobId).map(DeletionJobRunner::toResponse);
+    }
+
+    /**
+     * Подбирает незавершённые задачи - после перезапуска и после неудачных попыток.
+     * Возвращает число поставленных в пул
+     */
+    @Scheduled(fixedDelayString = "${account.deletion.resume-ms:60000}",
+            initialDelayString = "${account.deletion.resume-initial-delay-ms:30000}")
+    public int resumeUnfinished() {
+        int submitted = runner.resumeUnfinished();
+        if (submitted > 0) {
+            log.info("Resumed {} unfinished account deletions", submitted);
+        }
+        return submitted;
+    }
+
+    /**
+     * Удаляет истёкшие аренды задач, оставшиеся от упавших узлов. Отчёты о задачах остаются:
+     * по ним видно, что аккаунт удалён
+     */
+    @Scheduled(cron = "${account.deletion.job-cleanup-cron:0 15 3 * * *}")
+    public int purgeExpiredLeases() {
+        int deleted = runner.purgeExpiredLeases();
+        if (deleted > 0) {
+            log.info("Purged {} expired account deletion leases", deleted);
+        }
+        return deleted;
+    }
+
+    /**
+     * Выполняет задачу до конца в текущем потоке, если её аренда свободна
+     */
+    public void process(String jobId) {
+        runner.process(jobId);
+    }
+
+    // Своя транзакция deleteById: если пользователь уже удалён прошлой попыткой, задачу просто закрываем
+    private void deleteUser(AccountDeletionJob job) {
+        try {
+            userService.deleteById(job.getUserId());
+        } catch (UserNotFoundException e) {
+            log.debug("User {} of account deletion {} is already deleted", job.getUserId(), job.getId());
+        }
+    }
+}
@@ -1,23 +1,64 @@
 package com.amazingshop.personal.userservice.services;
 
+import com.amazingshop.personal.userservice.dto.requests.AdminUserQuery;
+import com.amazingshop.personal.userservice.dto.responses.AdminUserPage;
+import com.amazingshop.personal.userservice.dto.responses.AdminUserSummary;
+import com.amazingshop.personal.userservice.dto.responses.DailyStatsResponse;
+import com.amazingshop.personal.userservice.dto.responses.DeletionJobResponse;
+import com.amazingshop.personal.userservice.dto.responses.PlatformStatsResponse;
+import com.amazingshop.personal.userservice.dto.responses.SubjectStatsResponse;
 import com.amazingshop.personal.userservice.enums.Role;
+import com.amazingshop.personal.userservice.enums.UserExportFormat;
 import com.amazingshop.personal.userservice.interfaces.AdminService;
 import com.amazingshop.personal.userservice.interfaces.UserService;
+import com.amazingshop.personal.userservice.models.DailyStats;
 import com.amazingshop.personal.userservice.models.User;
+import com.amazingshop.personal.userservice.repositories.DailyStatsRepository;
+import com.amazingshop.personal.userservice.repositories.UsersRepository;
+import com.amazingshop.personal.userservice.repositories.UsersRepositoryCustom.SortField;
+import com.amazingshop.personal.userservice.repositories.UsersRepositoryCustom.UserListing;
+import com.amazingshop.personal.userservice.util.exceptions.DeletionJobNotFoundException;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.StringUtils;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeParseException;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Iterator;
 import java.util.List;
+import java.util.stream.Stream;
 
 @Slf4j
 @Service
 public class AdminServiceImpl implements AdminService {
 
+    static final int MAX_PAGE_SIZE = 200;
+    static final int MAX_STATS_DAYS = 366;
+
     private final UserService userService;
+    private final UsersRepository usersRepository;
+    private final DailyStatsRepository statsRepository;
+    private final AccountDeleter accountDeleter;
+    private final ObjectMapper objectMapper;
 
-    public AdminServiceImpl(UserService userService) {
+    public AdminServiceImpl(UserService userService, UsersRepository usersRepository,
+                            DailyStatsRepository statsRepository, AccountDeleter accountDeleter,
+                            ObjectMapper objectMapper) {
         this.userService = userService;
+        this.usersRepository = usersRepository;
+        this.statsRepository = statsRepository;
+        this.accountDeleter = accountDeleter;
+        this.objectMapper = objectMapper;
     }
 
     @Override
@@ -28,24 +69,176 @@ public class AdminServiceImpl implements AdminService {
 
     @Override
     @PreAuthorize("hasRole('ADMIN')")
-    public List<User> getAllUsers() {
-        log.info("Admin requested all users list");
-        return userService.findAll();
+    @Transactional(readOnly = true)
+    public AdminUserPage listUsers(AdminUserQuery query) {
+        if (query.getLimit() < 1 || query.getLimit() > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+        SortField sort = SortField.fromParam(query.getSort());
+        boolean descending = isDescending(query.getDirection());
+
+        Cursor cursor = query.getCursor() == null ? null : Cursor.decode(query.getCursor(), sort, descending);
+        UserListing listing = new UserListing(
+                query.getRole(),
+                query.getCreatedFrom(),
+                query.getCreatedTo(),
+                prefix(query.getUsernamePrefix()),
+                prefix(query.getEmailPrefix()),
+                sort,
+                descending,
+                cursor == null ? null : cursor.value(),
+                cursor == null ? null : cursor.id());
+
+        // Лишняя строка только показывает, есть ли следующая страница
+        List<AdminUserSummary> rows = usersRepository.findSummaries(listing, query.getLimit() + 1);
+        if (rows.size() <= query.getLimit()) {
+            return new AdminUserPage(rows, null);
+        }
+
+        List<AdminUserSummary> page = rows.subList(0, query.getLimit());
+        AdminUserSummary last = page.get(page.size() - 1);
+        log.debug("Admin users page: {} rows, sort {} {}", page.size(), sort.param(), descending ? "desc" : "asc");
+        return new AdminUserPage(List.copyOf(page), Cursor.of(last, sort, descending).encode());
+    }
+
+    /**
+     * Все пользователи по возрастанию id, строка за строкой из курсора БД прямо в out.
+     * Read-only транзакция держит курсор (и уходит на реплику, если она настроена).
+     * Отключение клиента обрывает выгрузку на ближайшей записи - IOException закрывает курсор
+     */
+    @Override
+    @PreAuthorize("hasRole('ADMIN')")
+    @Transactional(readOnly = true)
+    public long exportUsers(UserExportFormat format, OutputStream out) throws IOException {
+        UserExportWriter writer = UserExportWriter.of(format, out, objectMapper);
+        long rows = 0;
+        try (Stream<AdminUserSummary> users = usersRepository.streamAllSummaries()) {
+            Iterator<AdminUserSummary> iterator = users.iterator();
+            while (iterator.hasNext()) {
+                writer.write(iterator.next());
+                rows++;
+            }
+        }
+        writer.finish();
+        return rows;
+    }
+
+    /**
+     * Дни [from, to] из готовых сводок Daily_Stats - чтение не зависит от числа сообщений
+     */
+    @Override
+    @PreAuthorize("hasRole('ADMIN')")
+    @Transactional(readOnly = true)
+    public PlatformStatsResponse getDailyStats(LocalDate from, LocalDate to) {
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("from must not be after to");
+        }
+        if (ChronoUnit.DAYS.between(from, to) >= MAX_STATS_DAYS) {
+            throw new IllegalArgumentException("Stats range must not exceed " + MAX_STATS_DAYS + " days");
+        }
+
+        // Строки отсортированы по дню: TOTAL - итог дня, остальные - его предметы
+        List<DailyStatsResponse> days = new ArrayList<>();
+        DailyStatsResponse current = null;
+        for (DailyStats row : statsRepository.findByDayBetweenOrderByDayAscSubjectAsc(from, to)) {
+            if (current == null || !current.getDay().equals(row.getDay())) {
+                current = new DailyStatsResponse(row.getDay(), 0, 0, 0, 0, row.isClosed(), new ArrayList<>());
+                days.add(current);
+            }
+            if (DailyStats.TOTAL.equals(row.getSubject())) {
+                current.setNewUsers(row.getNewUsers());
+                current.setNewChats(row.getNewChats());
+                current.setMessages(row.getMessages());
+                current.setActiveUsers(row.getActiveUsers());
+                current.setClosed(row.isClosed());
+            } else {
+                current.getSubjects().add(new SubjectStatsResponse(row.getSubject(), row.getNewChats(),
+                        row.getMessages(), row.getActiveUsers()));
+            }
+        }
+        return new PlatformStatsResponse(days);
     }
 
     @Override
     @PreAuthorize("hasRole('ADMIN')")
-    public void deleteUser(Long userId) {
+    public DeletionJobResponse deleteUser(Long userId) {
         log.info("Admin requested to delete user with id: {}", userId);
-        userService.deleteById(userId);
+        // Вход закрывается сразу, история и сам пользователь удаляются в фоне порциями
+        return accountDeleter.request(userId);
     }
 
     @Override
     @PreAuthorize("hasRole('ADMIN')")
+    public DeletionJobResponse getDeletionJob(String jobId) {
+        return accountDeleter.findJob(jobId)
+                .orElseThrow(() -> new DeletionJobNotFoundException("Deletion job not found"));
+    }
+
+    /**
+     * Чтение и запись в одной пишущей транзакции на primary: read-only чтение ушло бы на реплику,
+     * и save() вернул бы поверх свежих колонок (refresh token, email) отстающий снимок
+     */
+    @Override
+    @PreAuthorize("hasRole('ADMIN')")
+    @Transactional
     public User promoteToAdmin(Long userId) {
         log.info("Admin requested to promote user {} to admin", userId);
         User user = userService.findUserByIdOrThrow(userId);
         user.setRole(Role.ADMIN);
         return userService.save(user);
     }
-}
\ No newline at end of file
+
+    private static boolean isDescending(String direction) {
+        if ("desc".equalsIgnoreCase(direction)) {
+            return true;
+        }
+        if ("asc".equalsIgnoreCase(direction)) {
+            return false;
+        }
+        throw new IllegalArgumentException("Unsupported direction: " + direction);
+    }
+
+    private static String prefix(String value) {
+        return StringUtils.hasText(value) ? User.normalize(value) : null;
+    }
+
+    /**
+     * Позиция последней строки страницы: значение поля сортировки и id.
+     * Наружу уходит непрозрачной строкой base64url "sort:direction:id:value"; курсор
+     * от другой сортировки отвергается, иначе keyset-условие молча пропустит строки
+     */
+    record Cursor(SortField sort, boolean descending, Long id, Object value) {
+
+        static Cursor of(AdminUserSummary last, SortField sort, boolean descending) {
+            Object value = switch (sort) {
+                case CREATED_AT -> last.getCreatedAt();
+                case USERNAME -> last.getUsername();
+                case EMAIL -> last.getEmail();
+                case ID -> null;
+            };
+            return new Cursor(sort, descending, last.getId(), value);
+        }
+
+        String encode() {
+            String raw = sort.param() + ":" + (descending ? "desc" : "asc") + ":" + id + ":" + (value == null ? "" : value);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+        }
+
+        static Cursor decode(String cursor, SortField sort, boolean descending) {
+            try {
+                String[] parts = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8).split(":", 4);
+                if (parts.length != 4 || SortField.fromParam(parts[0]) != sort || isDescending(parts[1]) != descending) {
+                    throw new IllegalArgumentException("Cursor does not match sort order");
+                }
+                Object value = switch (sort) {
+                    case CREATED_AT -> LocalDateTime.parse(parts[3]);
+                    case USERNAME, EMAIL -> parts[3];
+                    case ID -> null;
+                };
+                return new Cursor(sort, descending, Long.valueOf(parts[2]), value);
+            } catch (IllegalArgumentException | DateTimeParseException e) {
+                throw new IllegalArgumentException("Invalid cursor", e);
+            }
+        }
+    }
+}
@@ -1,5 +1,6 @@
 package com.amazingshop.personal.userservice.services;
 
+import com.amazingshop.personal.userservice.datasource.PrimaryReads;
 import com.amazingshop.personal.userservice.dto.requests.AuthenticationDTO;
 import com.amazingshop.personal.userservice.dto.requests.RefreshTokenRequest;
 import com.amazingshop.personal.userservice.dto.responses.TokenPairResponse;
@@ -13,6 +14,7 @@ import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 
@@ -23,21 +25,26 @@ public class AuthenticationServiceImpl implements AuthenticationService {
     private final AuthenticationManager authenticationManager;
     private final JwtUtil jwtUtil;
     private final UserService userService;
+    private final PrimaryReads primaryReads;
 
     @Autowired
-    public AuthenticationServiceImpl(AuthenticationManager authenticationManager, JwtUtil jwtUtil, UserService userService) {
+    public AuthenticationServiceImpl(AuthenticationManager authenticationManager, JwtUtil jwtUtil, UserService userService,
+                                     PrimaryReads primaryReads) {
         this.authenticationManager = authenticationManager;
         this.jwtUtil = jwtUtil;
         this.userService = userService;
+        this.primaryReads = primaryReads;
     }
 
     @Override
+    // Без общей транзакции: проверка BCrypt не держит соединение пула. Пользователь читается с primary -
+    // только что зарегистрированного на реплике может ещё не быть, а отстающий снимок save() вернул бы поверх свежего
     public TokenPairResponse performLogin(AuthenticationDTO authenticationDTO) {
         authenticationManager.authenticate(new UsernamePasswordAuthenticationToken(
                 authenticationDTO.getUsername(),
                 authenticationDTO.getPassword()));
 
-        User user = userService.findByUsername(authenticationDTO.getUsername())
+        User user = primaryReads.call(() -> userService.findByUsername(authenticationDTO.getUsername()))
                 .orElseThrow(() -> new UsernameNotFoundException("User not found"));
 
         String accessToken = jwtUtil.generateAccessToken(authenticationDTO.getUsername());
@@ -58,6 +65,8 @@ public class AuthenticationServiceImpl implements AuthenticationService {
     }
 
     @Override
+    // Как promoteToAdmin: пользователь читается с primary в той же транзакции, что и сохраняется
+    @Transactional
     public void logout(RefreshTokenRequest request) {
         String username = jwtUtil.validateTokenAndRetrieveClaim(request.getRefreshToken());
 
@@ -0,0 +1,31 @@
+package com.amazingshop.personal.userservice.services;
+
+import com.amazingshop.personal.userservice.interfaces.Tokenizer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Оценка по длине: символов на токен в среднем chars-per-token, с округлением вверх
+ */
+@Component
+public class CharacterRatioTokenizer implements Tokenizer {
+
+    private final double charsPerToken;
+
+    @Autowired
+    public CharacterRatioTokenizer(@Value("${chat.tokenizer.chars-per-token:4}") double charsPerToken) {
+        if (charsPerToken <= 0) {
+            throw new IllegalArgumentException("chars-per-token must be positive");
+        }
+        this.charsPerToken = charsPerToken;
+    }
+
+    @Override
+    public int countTokens(String text) {
+        if (text == null || text.isEmpty()) {
+            return 0;
+        }
+        return (int) Math.ceil(text.codePointCount(0, text.length()) / charsPerToken);
+    }
+}
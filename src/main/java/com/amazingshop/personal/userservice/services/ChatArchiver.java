@@ -0,0 +1,195 @@
+package com.amazingshop.personal.userservice.services;
+
+import com.amazingshop.personal.userservice.cache.ChatMessageTailCache;
+import com.amazingshop.personal.userservice.interfaces.Tokenizer;
+import com.amazingshop.personal.userservice.models.ChatArchive;
+import com.amazingshop.personal.userservice.models.ChatMessage;
+import com.amazingshop.personal.userservice.repositories.ChatArchiveRepository;
+import com.amazingshop.personal.userservice.repositories.ChatMessageRepository;
+import com.amazingshop.personal.userservice.repositories.ChatRepository;
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.json.JsonMapper;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Холодный архив чатов.
+ * <p>
+ * Чат без изменений дольше idle-days целиком переносится из Chat_Messages в один
+ * gzip-блоб в Chat_Archives, так горячие индексы и буферный кэш держат только живые чаты.
+ * Чтение архивного чата распаковывает блоб на лету, а новое сообщение возвращает
+ * историю обратно в Chat_Messages.
+ * <p>
+ * Дельта-синхронизация отдаёт только сообщения из Chat_Messages: история архивного
+ * чата не менялась, а целиком клиент получает её через историю чата.
+ */
+@Slf4j
+@Component
+public class ChatArchiver {
+
+    private static final TypeReference<List<ArchivedMessage>> PAYLOAD_TYPE = new TypeReference<>() {
+    };
+
+    // Собственный маппер: формат архива не должен зависеть от настроек JSON в API
+    private static final ObjectMapper PAYLOAD_MAPPER = JsonMapper.builder()
+            .addModule(new JavaTimeModule())
+            .build();
+
+    private final ChatRepository chatRepository;
+    private final ChatMessageRepository messageRepository;
+    private final ChatArchiveRepository archiveRepository;
+    private final ChatMessageTailCache tailCache;
+    private final Tokenizer tokenizer;
+    private final TransactionTemplate transactionTemplate;
+    private final int idleDays;
+    private final int batchSize;
+
+    @Autowired
+    public ChatArchiver(ChatRepository chatRepository,
+                        ChatMessageRepository messageRepository,
+                        ChatArchiveRepository archiveRepository,
+                        ChatMessageTailCache tailCache,
+                        Tokenizer tokenizer,
+                        PlatformTransactionManager transactionManager,
+                        @Value("${chat.archive.idle-days:7}") int idleDays,
+                        @Value("${chat.archive.batch-size:100}") int batchSize) {
+        this.chatRepository = chatRepository;
+        this.messageRepository = messageRepository;
+        this.archiveRepository = archiveRepository;
+        this.tailCache = tailCache;
+        this.tokenizer = tokenizer;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.idleDays = idleDays;
+        this.batchSize = batchSize;
+    }
+
+    @Scheduled(cron = "${chat.archive.cron:0 0 4 * * *}")
+    public int archiveIdleChats() {
+        return archiveChatsIdleSince(LocalDateTime.now().minusDays(idleDays));
+    }
+
+    /**
+     * Архивирует чаты, не менявшиеся с cutoff. Каждый чат - в своей транзакции.
+     */
+    public int archiveChatsIdleSince(LocalDateTime cutoff) {
+        int archived = 0;
+        Long afterId = 0L;
+        List<Long> chatIds;
+        while (!(chatIds = chatRepository.findArchivableIds(cutoff, afterId, PageRequest.of(0, batchSize))).isEmpty()) {
+            for (Long chatId : chatIds) {
+                if (Boolean.TRUE.equals(transactionTemplate.execute(status -> archive(chatId, cutoff)))) {
+                    archived++;
+                }
+            }
+            afterId = chatIds.get(chatIds.size() - 1);
+        }
+
+        if (archived > 0) {
+            log.info("Archived {} chats idle since {}", archived, cutoff);
+        }
+        return archived;
+    }
+
+    /**
+     * Сообщения архивного чата по возрастанию id или пустой список, если чат не в архиве.
+     * Владельца чата проверяет вызывающий.
+     */
+    public List<ChatMessage> findArchivedMessages(Long chatId) {
+        return archiveRepository.findById(chatId)
+                .map(archive -> decode(chatId, archive.getPayload()))
+                .orElse(List.of());
+    }
+
+    /**
+     * Возвращает историю архивного чата в Chat_Messages с прежними id.
+     * Вызывается в транзакции записи в чат, уже заблокировавшей его строку.
+     */
+    public boolean promote(Long chatId) {
+        Optional<ChatArchive> archive = archiveRepository.findById(chatId);
+        if (archive.isEmpty()) {
+            return false;
+        }
+
+        // token_count в архиве не хранится: при возврате считаем заново, как при обычной вставке
+        for (ChatMessage message : decode(chatId, archive.get().getPayload())) {
+            messageRepository.restore(message.getId(), chatId, message.getRole(), message.getContent(),
+                    message.getTemplateUsed(), message.getCreatedAt(), message.getChangeSeq(),
+                    tokenizer.countTokens(message.getContent()));
+        }
+        archiveRepository.delete(archive.get());
+
+        log.debug("Promoted chat {} with {} messages back from archive", chatId, archive.get().getMessageCount());
+        return true;
+    }
+
+    private boolean archive(Long chatId, LocalDateTime cutoff) {
+        // Чат мог ожить, пока мы до него дошли
+        if (chatRepository.findIdleForUpdate(chatId, cutoff).isEmpty()) {
+            return false;
+        }
+
+        List<ChatMessage> messages = messageRepository.findByChatIdOrderByIdAsc(chatId);
+        if (messages.isEmpty()) {
+            return false;
+        }
+
+        archiveRepository.save(new ChatArchive(chatId, messages.size(), encode(messages), LocalDateTime.now()));
+        messageRepository.deleteByChatId(chatId);
+        tailCache.invalidate(chatId);
+        return true;
+    }
+
+    private static byte[] encode(List<ChatMessage> messages) {
+        List<ArchivedMessage> entries = messages.stream().map(ArchivedMessage::of).toList();
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (OutputStream gzip = new GZIPOutputStream(bytes)) {
+            PAYLOAD_MAPPER.writeValue(gzip, entries);
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to encode chat archive", e);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static List<ChatMessage> decode(Long chatId, byte[] payload) {
+        try (InputStream gzip = new GZIPInputStream(new ByteArrayInputStream(payload))) {
+            return PAYLOAD_MAPPER.readValue(gzip, PAYLOAD_TYPE).stream()
+                    .map(entry -> entry.toMessage(chatId))
+                    .toList();
+        } catch (IOException e) {
+            throw new IllegalStateException("Failed to decode archive of chat " + chatId, e);
+        }
+    }
+
+    private record ArchivedMessage(Long id, String role, String content, String templateUsed,
+                                   LocalDateTime createdAt, long changeSeq) {
+
+        static ArchivedMessage of(ChatMessage message) {
+            return new ArchivedMessage(message.getId(), message.getRole(), message.getContent(),
+                    message.getTemplateUsed(), message.getCreatedAt(), message.getChangeSeq());
+        }
+
+        ChatMessage toMessage(Long chatId) {
+            return new ChatMessage(id, chatId, role, content, templateUsed, createdAt, changeSeq, null);
+        }
+    }
+}
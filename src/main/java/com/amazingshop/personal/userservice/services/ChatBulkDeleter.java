@@ -0,0 +1,223 @@
+package com.amazingshop.personal.userservice.services;
+
+import com.amazingshop.personal.userservice.cache.ChatMessageTailCache;
+import com.amazingshop.personal.userservice.config.AsyncConfig;
+import com.amazingshop.personal.userservice.dto.responses.DeletionJobResponse;
+import com.amazingshop.personal.userservice.enums.JobStatus;
+import com.amazingshop.personal.userservice.events.ChatDeleted;
+import com.amazingshop.personal.userservice.models.ChatDeletionJob;
+import com.amazingshop.personal.userservice.repositories.ChatDeletionJobRepository;
+import com.amazingshop.personal.userservice.repositories.ChatMessageRepository;
+import com.amazingshop.personal.userservice.repositories.ChatRepository;
+import com.amazingshop.personal.userservice.repositories.ChatTombstoneRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.UUID;
+
+/**
+ * Массовое удаление чатов пользователя set-based запросами.
+ * <p>
+ * Работа режется на ограниченные порции, каждая коммитится отдельно: сначала сообщения
+ * пачками по message-batch-size, затем сами чаты (с записью следов для синхронизации).
+ * Так ни одна транзакция не держит блокировки на всю историю пользователя.
+ * <p>
+ * Фоновые задачи хранятся в Chat_Deletion_Jobs и выполняются {@link DeletionJobRunner}, как задачи
+ * {@link AccountDeleter}: статус виден с любого узла, прогресс сохраняется после каждой порции,
+ * незавершённые задачи подбирает {@link #resumeUnfinished()}, а выполняет тот узел, что взял аренду задачи.
+ */
+@Slf4j
+@Component
+public class ChatBulkDeleter {
+
+    public static final String LEASE_PREFIX = "chat-deletion:";
+
+    private final ChatRepository chatRepository;
+    private final ChatMessageRepository messageRepository;
+    private final ChatTombstoneRepository tombstoneRepository;
+    private final ChatDeletionJobRepository jobRepository;
+    private final ChatMessageTailCache tailCache;
+    private final TransactionTemplate transactionTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+    private final int chatBatchSize;
+    private final int messageBatchSize;
+    private final int asyncThresholdMessages;
+    private final Duration jobRetention;
+    private final DeletionJobRunner<ChatDeletionJob> runner;
+
+    @Autowired
+    public ChatBulkDeleter(ChatRepository chatRepository,
+                           ChatMessageRepository messageRepository,
+                           ChatTombstoneRepository tombstoneRepository,
+                           ChatDeletionJobRepository jobRepository,
+                           ChatMessageTailCache tailCache,
+                           MaintenanceLeases leases,
+                           PlatformTransactionManager transactionManager,
+                           @Qualifier(AsyncConfig.MAINTENANCE_EXECUTOR) TaskExecutor executor,
+                           ApplicationEventPublisher eventPublisher,
+                           @Value("${chat.deletion.chat-batch-size:100}") int chatBatchSize,
+                           @Value("${chat.deletion.message-batch-size:5000}") int messageBatchSize,
+                           @Value("${chat.deletion.async-threshold-messages:5000}") int asyncThresholdMessages,
+                           @Value("${chat.deletion.lease-minutes:5}") long leaseMinutes,
+                           @Value("${chat.deletion.max-attempts:5}") int maxAttempts,
+                           @Value("${chat.deletion.resume-batch-size:20}") int resumeBatchSize,
+                           @Value("${chat.deletion.job-retention-hours:24}") long jobRetentionHours) {
+        this.chatRepository = chatRepository;
+        this.messageRepository = messageRepository;
+        this.tombstoneRepository = tombstoneRepository;
+        this.jobRepository = jobRepository;
+        this.tailCache = tailCache;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.eventPublisher = eventPublisher;
+        this.chatBatchSize = chatBatchSize;
+        this.messageBatchSize = messageBatchSize;
+        this.asyncThresholdMessages = asyncThresholdMessages;
+        this.jobRetention = Duration.ofHours(jobRetentionHours);
+        this.runner = new DeletionJobRunner<>("Chat deletion", LEASE_PREFIX, jobRepository, leases,
+                transactionTemplate, executor, Duration.ofMinutes(leaseMinutes), maxAttempts, resumeBatchSize,
+                this::deleteNextChunk, job -> { });
+    }
+
+    /**
+     * true, если сообщений у пользователя столько, что удалять их стоит в фоне.
+     * Считаем не дальше порога, чтобы сама проверка не стала тяжёлым запросом.
+     */
+    public boolean exceedsAsyncThreshold(Long userId) {
+        return messageRepository.countByUserIdUpTo(userId, asyncThresholdMessages + 1L) > asyncThresholdMessages;
+    }
+
+    /**
+     * Удаляет все чаты пользователя в текущем потоке
+     */
+    public DeletionJobResponse deleteNow(Long userId) {
+        LocalDateTime createdAt = LocalDateTime.now();
+        long chatsDeleted = 0;
+        long messagesDeleted = 0;
+        Chunk chunk;
+        while (!(chunk = deleteNextChunk(userId)).isEmpty()) {
+            chatsDeleted += chunk.chats();
+            messagesDeleted += chunk.messages();
+        }
+        log.info("Deleted {} chats and {} messages for user {}", chatsDeleted, messagesDeleted, userId);
+        return new DeletionJobResponse(UUID.randomUUID().toString(), JobStatus.COMPLETED, chatsDeleted,
+                messagesDeleted, createdAt, LocalDateTime.now(), null);
+    }
+
+    /**
+     * Ставит удаление в фоновый пул. Если у пользователя уже идёт удаление - возвращает его.
+     * Задача сохраняется до постановки в пул: переполненная очередь только откладывает её
+     */
+    public DeletionJobResponse submit(Long userId) {
+        ChatDeletionJob job = transactionTemplate.execute(status -> {
+            // Блокировка строки пользователя: два одновременных запроса не создадут две задачи
+            chatRepository.lockChangeSeqOwner(userId);
+            Optional<ChatDeletionJob> active =
+                    jobRepository.findFirstByUserIdAndStatusIn(userId, DeletionJobRunner.UNFINISHED);
+            if (active.isPresent()) {
+                return active.get();
+            }
+
+            ChatDeletionJob created = jobRepository.save(
+                    new ChatDeletionJob(UUID.randomUUID().toString(), userId, LocalDateTime.now()));
+            runner.submitAfterCommit(created.getId());
+            log.info("Scheduled background deletion {} of all chats for user {}", created.getId(), userId);
+            return created;
+        });
+        return DeletionJobRunner.toResponse(job);
+    }
+
+    public Optional<DeletionJobResponse> findJob(String jobId, Long userId) {
+        return jobRepository.findByIdAndUserId(jobId, userId).map(DeletionJobRunner::toResponse);
+    }
+
+    /**
+     * Подбирает незавершённые задачи - после перезапуска и после неудачных попыток.
+     * Возвращает число поставленных в пул
+     */
+    @Scheduled(fixedDelayString = "${chat.deletion.resume-ms:60000}",
+            initialDelayString = "${chat.deletion.resume-initial-delay-ms:30000}")
+    public int resumeUnfinished() {
+        int submitted = runner.resumeUnfinished();
+        if (submitted > 0) {
+            log.info("Resumed {} unfinished chat deletions", submitted);
+        }
+        return submitted;
+    }
+
+    /**
+     * Удаляет отчёты о задачах, завершённых дольше job-retention-hours назад,
+     * и истёкшие аренды задач, оставшиеся от упавших узлов
+     */
+    @Scheduled(cron = "${chat.deletion.job-cleanup-cron:0 15 3 * * *}")
+    public int purgeFinishedJobs() {
+        int deleted = transactionTemplate.execute(status ->
+                jobRepository.deleteFinishedBefore(LocalDateTime.now().minus(jobRetention)));
+        int leasesDeleted = runner.purgeExpiredLeases();
+        if (deleted > 0 || leasesDeleted > 0) {
+            log.info("Purged {} finished chat deletion jobs and {} expired leases", deleted, leasesDeleted);
+        }
+        return deleted;
+    }
+
+    /**
+     * Выполняет задачу до конца в текущем потоке, если её аренда свободна
+     */
+    public void process(String jobId) {
+        runner.process(jobId);
+    }
+
+    /**
+     * Удаляет очередную порцию чатов пользователя (до chat-batch-size) вместе с их сообщениями.
+     * Пустая порция - чатов не осталось. Каждая пачка коммитится отдельно, так что вызывающий
+     * может сохранять прогресс между порциями и продолжить с того же места после перезапуска
+     */
+    public Chunk deleteNextChunk(Long userId) {
+        List<Long> chatIds = chatRepository.findIdsByUserId(userId, PageRequest.of(0, chatBatchSize));
+        if (chatIds.isEmpty()) {
+            return Chunk.EMPTY;
+        }
+
+        long deletedMessages = 0;
+        int deletedInBatch;
+        do {
+            deletedInBatch = transactionTemplate.execute(status ->
+                    messageRepository.deleteBatchByChatIdIn(chatIds, messageBatchSize));
+            deletedMessages += deletedInBatch;
+        } while (deletedInBatch == messageBatchSize);
+
+        int deletedChats = transactionTemplate.execute(status -> {
+            // Следы берут позиции прямо в INSERT - сначала та же блокировка, что в nextChangeSeq
+            chatRepository.lockChangeSeqOwner(userId);
+            tombstoneRepository.insertForChats(chatIds);
+            tailCache.invalidateAll(chatIds);
+            chatIds.forEach(chatId -> eventPublisher.publishEvent(new ChatDeleted(chatId, userId)));
+            return chatRepository.deleteByIdInAndUserId(chatIds, userId);
+        });
+        return new Chunk(deletedChats, deletedMessages);
+    }
+
+    /**
+     * Итог одной порции: удалено чатов и сообщений
+     */
+    public record Chunk(int chats, long messages) {
+
+        static final Chunk EMPTY = new Chunk(0, 0);
+
+        public boolean isEmpty() {
+            return chats == 0 && messages == 0;
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.amazingshop.personal.userservice.services;
+
+import com.amazingshop.personal.userservice.dto.responses.ChatContextResponse;
+import com.amazingshop.personal.userservice.dto.responses.ContextMessage;
+import com.amazingshop.personal.userservice.interfaces.ChatContextService;
+import com.amazingshop.personal.userservice.interfaces.Tokenizer;
+import com.amazingshop.personal.userservice.models.ChatMessage;
+import com.amazingshop.personal.userservice.models.ChatRollingSummary;
+import com.amazingshop.personal.userservice.repositories.ChatMessageRepository;
+import com.amazingshop.personal.userservice.repositories.ChatRepository;
+import com.amazingshop.personal.userservice.repositories.ChatRollingSummaryRepository;
+import com.amazingshop.personal.userservice.util.exceptions.ChatNotFoundException;
+import com.amazingshop.personal.userservice.util.exceptions.UnauthorizedException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Pageable;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Контекст чата для AI-сервиса: скользящее краткое содержание старой части
+ * и самые новые сообщения после него, суммарно укладывающиеся в бюджет токенов.
+ * <p>
+ * Краткое содержание берётся, только если занимает не больше половины бюджета, иначе
+ * весь бюджет отдаётся сообщениям. Хвост набирается одним запросом по token_count,
+ * без загрузки старой истории; история архивного чата считается по архиву тем же Tokenizer.
+ * Так же на лету считается хвост, в котором остались сообщения без token_count (до V11),
+ * пока их не досчитал {@link TokenCountBackfiller}.
+ */
+@Slf4j
+@Service
+@Transactional(readOnly = true)
+public class ChatContextServiceImpl implements ChatContextService {
+
+    private final ChatRepository chatRepository;
+    private final ChatMessageRepository messageRepository;
+    private final ChatRollingSummaryRepository summaryRepository;
+    private final ChatArchiver archiver;
+    private final Tokenizer tokenizer;
+
+    @Autowired
+    public ChatContextServiceImpl(ChatRepository chatRepository, ChatMessageRepository messageRepository,
+                                  ChatRollingSummaryRepository summaryRepository, ChatArchiver archiver,
+                                  Tokenizer tokenizer) {
+        this.chatRepository = chatRepository;
+        this.messageRepository = messageRepository;
+        this.summaryRepository = summaryRepository;
+        this.archiver = archiver;
+        this.tokenizer = tokenizer;
+    }
+
+    @Override
+    public ChatContextResponse getContext(Long chatId, Long userId, int tokenBudget) {
+        if (tokenBudget <= 0) {
+            throw new IllegalArgumentException("tokenBudget must be positive");
+        }
+
+        // Отдаётся только после проверки владельца - ниже, запросом хвоста или явно
+        ChatRollingSummary summary = summaryRepository.findById(chatId)
+                .filter(s -> s.getTokenCount() <= tokenBudget / 2)
+                .orElse(null);
+        long afterId = summary != null ? summary.getLastMessageId() : 0L;
+        int tailBudget = tokenBudget - (summary != null ? summary.getTokenCount() : 0);
+
+        // Накопительная сумма в SQL пропустила бы NULL как ноль токенов
+        if (messageRepository.existsByChatIdAndIdGreaterThanAndTokenCountIsNull(chatId, afterId)) {
+            checkOwner(chatId, userId);
+            List<ChatMessage> uncounted = messageRepository.findByChatIdAndIdGreaterThanOrderByIdAsc(
+                    chatId, afterId, Pageable.unpaged());
+            return fromMessages(chatId, tokenBudget, summary, tailBudget, uncounted);
+        }
+
+        List<ContextMessage> messages = messageRepository.findContext(chatId, userId, afterId, tailBudget).stream()
+                .map(row -> new ContextMessage(row.getId(), row.getRole(), row.getContent(), row.getTemplateUsed(),
+                        row.getCreatedAt(), row.getTokenCount()))
+                .toList();
+        if (!messages.isEmpty()) {
+            boolean truncated = messageRepository.existsByChatIdAndIdGreaterThanAndIdLessThan(
+                    chatId, afterId, messages.get(0).getId());
+            return response(chatId, tokenBudget, summary, messages, truncated);
+        }
+
+        // Пусто: чужой чат, архивный чат, нет сообщений после краткого содержания
+        // или даже последнее сообщение не влезает в бюджет
+        checkOwner(chatId, userId);
+
+        List<ChatMessage> archived = archiver.findArchivedMessages(chatId).stream()
+                .filter(message -> message.getId() > afterId)
+                .toList();
+        if (!archived.isEmpty()) {
+            return fromMessages(chatId, tokenBudget, summary, tailBudget, archived);
+        }
+        return response(chatId, tokenBudget, summary, List.of(),
+                messageRepository.existsByChatIdAndIdGreaterThan(chatId, afterId));
+    }
+
+    private void checkOwner(Long chatId, Long userId) {
+        if (!chatRepository.existsByIdAndUserId(chatId, userId)) {
+            if (chatRepository.existsById(chatId)) {
+                throw new UnauthorizedException("You are not authorized to view this chat");
+            }
+            throw new ChatNotFoundException("Chat not found");
+        }
+    }
+
+    // Хвост по уже загруженной истории: сохранённый token_count, а где его нет - Tokenizer
+    private ChatContextResponse fromMessages(Long chatId, int tokenBudget, ChatRollingSummary summary, int tailBudget,
+                                             List<ChatMessage> history) {
+        Deque<ContextMessage> messages = new ArrayDeque<>();
+        long used = 0;
+        for (int i = history.size() - 1; i >= 0; i--) {
+            ChatMessage message = history.get(i);
+            int tokens = message.getTokenCount() != null
+                    ? message.getTokenCount()
+                    : tokenizer.countTokens(message.getContent());
+            if (used + tokens > tailBudget) {
+                break;
+            }
+            used += tokens;
+            messages.addFirst(new ContextMessage(message.getId(), message.getRole(), message.getContent(),
+                    message.getTemplateUsed(), message.getCreatedAt(), tokens));
+        }
+        return response(chatId, tokenBudget, summary, new ArrayList<>(messages), messages.size() < history.size());
+    }
+
+    private static ChatContextResponse response(Long chatId, int tokenBudget, ChatRollingSummary summary,
+                                                List<ContextMessage> messages, boolean truncated) {
+        int tokenCount = messages.stream().mapToInt(ContextMessage::getTokenCount).sum();
+        if (summary == null) {
+            return new ChatContextResponse(chatId, tokenBudget, tokenCount, truncated, null, null, messages);
+        }
+        return new ChatContextResponse(chatId, tokenBudget, tokenCount + summary.getTokenCount(), truncated,
+                summary.getContent(), summary.getLastMessageId(), messages);
+    }
+}
@@ -1,44 +1,76 @@
 package com.amazingshop.personal.userservice.services;
 
+import com.amazingshop.personal.userservice.cache.ChatMessageTailCache;
+import com.amazingshop.personal.userservice.dto.responses.ChatSummary;
+import com.amazingshop.personal.userservice.dto.responses.DeletionJobResponse;
+import com.amazingshop.personal.userservice.events.ChatCreated;
+import com.amazingshop.personal.userservice.events.ChatDeleted;
+import com.amazingshop.personal.userservice.events.MessageAppended;
 import com.amazingshop.personal.userservice.interfaces.ChatService;
+import com.amazingshop.personal.userservice.interfaces.Tokenizer;
 import com.amazingshop.personal.userservice.models.Chat;
 import com.amazingshop.personal.userservice.models.ChatMessage;
+import com.amazingshop.personal.userservice.models.ChatTombstone;
 import com.amazingshop.personal.userservice.repositories.ChatRepository;
 import com.amazingshop.personal.userservice.repositories.ChatMessageRepository;
+import com.amazingshop.personal.userservice.repositories.ChatTombstoneRepository;
+import com.amazingshop.personal.userservice.util.exceptions.ChatNotFoundException;
+import com.amazingshop.personal.userservice.util.exceptions.DeletionJobNotFoundException;
 import com.amazingshop.personal.userservice.util.exceptions.UnauthorizedException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.Instant;
 import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
 
 @Slf4j
 @Service
 public class ChatServiceImpl implements ChatService {
 
+    private static final int PREVIEW_LENGTH = 200;
+
     private final ChatRepository chatRepository;
     private final ChatMessageRepository messageRepository;
     private final ChatMessageRepository chatMessageRepository;
+    private final ChatTombstoneRepository tombstoneRepository;
+    private final ChatMessageTailCache tailCache;
+    private final ChatBulkDeleter bulkDeleter;
+    private final ChatArchiver archiver;
+    private final Tokenizer tokenizer;
+    private final ApplicationEventPublisher eventPublisher;
 
     @Autowired
-    public ChatServiceImpl(ChatRepository chatRepository, ChatMessageRepository messageRepository, ChatMessageRepository chatMessageRepository) {
+    public ChatServiceImpl(ChatRepository chatRepository, ChatMessageRepository messageRepository,
+                           ChatMessageRepository chatMessageRepository, ChatTombstoneRepository tombstoneRepository,
+                           ChatMessageTailCache tailCache, ChatBulkDeleter bulkDeleter, ChatArchiver archiver,
+                           Tokenizer tokenizer, ApplicationEventPublisher eventPublisher) {
         this.chatRepository = chatRepository;
         this.messageRepository = messageRepository;
         this.chatMessageRepository = chatMessageRepository;
+        this.tombstoneRepository = tombstoneRepository;
+        this.tailCache = tailCache;
+        this.bulkDeleter = bulkDeleter;
+        this.archiver = archiver;
+        this.tokenizer = tokenizer;
+        this.eventPublisher = eventPublisher;
     }
 
     @Override
-    public List<Chat> getUserChats(Long userId, String search, String subject) {
+    public List<ChatSummary> getUserChats(Long userId, String search, String subject) {
         if (search != null && !search.trim().isEmpty()) {
-            return chatRepository.findByUserIdAndTitleContainingIgnoreCaseOrderByUpdatedAtDesc(userId, search);
+            return chatRepository.findSummariesByUserIdAndTitleContaining(userId, search);
         }
         if (subject != null && !subject.trim().isEmpty()) {
-            return chatRepository.findByUserIdAndSubjectOrderByUpdatedAtDesc(userId, subject);
+            return chatRepository.findSummariesByUserIdAndSubject(userId, subject);
         }
-        return chatRepository.findByUserIdOrderByUpdatedAtDesc(userId);
+        return chatRepository.findSummariesByUserId(userId);
     }
 
     @Override
@@ -46,113 +78,195 @@ public class ChatServiceImpl implements ChatService {
     public Chat createChat(Long userId, String title, String subject) {
         Chat chat = new Chat();
         chat.setUserId(userId);
-        chat.setTitle(title != null ? truncateTitle(title) : "New Chat");
+        chat.setTitle(title != null ? ChatTitleGenerator.truncateTitle(title) : ChatTitleGenerator.DEFAULT_TITLE);
         chat.setSubject(subject);
-        return chatRepository.save(chat);
+        chat.setChangeSeq(chatRepository.nextChangeSeq(userId));
+        Chat saved = chatRepository.save(chat);
+        eventPublisher.publishEvent(new ChatCreated(saved.getId(), userId));
+        return saved;
     }
 
     @Override
     @Transactional
     public void deleteChat(Long chatId, Long userId) {
-        Chat chat = chatRepository.findById(chatId)
-                .orElseThrow(() -> new RuntimeException("Chat not found"));
-
-        if (!chat.getUserId().equals(userId)) {
-            throw new UnauthorizedException("You are not authorized to delete this chat");
+        // Позиция следа берётся до DELETE: блокировка пользователя идёт раньше блокировки чата
+        ChatTombstone tombstone = newTombstone(chatId, userId);
+        if (chatRepository.deleteByIdAndUserId(chatId, userId) == 0) {
+            throw ownershipFailure(chatId, "You are not authorized to delete this chat");
         }
 
-        chatRepository.deleteById(chatId);
+        tombstoneRepository.save(tombstone);
+        tailCache.invalidate(chatId);
+        eventPublisher.publishEvent(new ChatDeleted(chatId, userId));
     }
 
 
     @Override
     public List<ChatMessage> getChatMessages(Long chatId, Long userId) {
-        Chat chat = chatRepository.findById(chatId)
-                .orElseThrow(() -> new RuntimeException("Chat not found"));
+        // Хвост кэшируется вместе с владельцем - чужой хвост просто не используем
+        ChatMessageTailCache.Tail tail = tailCache.get(chatId);
+        if (tail != null && !tail.ownerId().equals(userId)) {
+            tail = null;
+        }
+
+        if (tail != null && tail.complete()) {
+            return tail.messages();
+        }
 
-        if (!chat.getUserId().equals(userId)) {
-            throw new UnauthorizedException("You are not authorized to delete this chat");
+        // Кэш держит только хвост длинного чата - из БД догружаем лишь более старые сообщения
+        if (tail != null && !tail.messages().isEmpty()) {
+            Long firstCachedId = tail.messages().get(0).getId();
+            List<ChatMessage> messages = new ArrayList<>(messageRepository
+                    .findByChatIdAndIdLessThanOrderByCreatedAtAsc(chatId, firstCachedId));
+            // Неполный хвост, а в БД старше ничего нет - значит, история в архиве
+            if (messages.isEmpty()) {
+                archiver.findArchivedMessages(chatId).stream()
+                        .filter(message -> message.getId() < firstCachedId)
+                        .forEach(messages::add);
+            }
+            // Между чтениями история могла вернуться из архива: блоб уже удалён, строки - в Chat_Messages
+            if (messages.isEmpty()) {
+                messages.addAll(messageRepository.findByChatIdAndIdLessThanOrderByCreatedAtAsc(chatId, firstCachedId));
+            }
+            messages.addAll(tail.messages());
+            return messages;
         }
 
-        return messageRepository.findByChatIdOrderByCreatedAtAsc(chatId);
+        long stamp = tailCache.stamp(chatId);
+        List<ChatMessage> messages = messageRepository.findOwnedByChatId(chatId, userId);
+        // Пустой ответ неоднозначен: отдельная проверка нужна только для пустых и чужих чатов
+        if (messages.isEmpty() && !chatRepository.existsByIdAndUserId(chatId, userId)) {
+            throw ownershipFailure(chatId, "You are not authorized to view this chat");
+        }
+        // У архивного чата строк в Chat_Messages нет - распаковываем историю из архива
+        if (messages.isEmpty()) {
+            messages = archiver.findArchivedMessages(chatId);
+        }
+        // Пустой архив после пустой таблицы: между чтениями новое сообщение могло вернуть историю
+        // в Chat_Messages (promote удаляет блоб в той же транзакции) - перечитываем таблицу
+        if (messages.isEmpty()) {
+            messages = messageRepository.findOwnedByChatId(chatId, userId);
+        }
+
+        tailCache.put(chatId, userId, messages, stamp);
+        return messages;
     }
 
     @Override
     @Transactional
     public ChatMessage addMessage(Long chatId, Long userId, String content, String role, String templateUsed) {
-        Chat chat = chatRepository.findById(chatId)
-                .orElseThrow(() -> new RuntimeException("Chat not found"));
-
-        if (!chat.getUserId().equals(userId)) {
-            throw new UnauthorizedException("You are not authorized to delete this chat");
-        }
-
-        // Проверяем, является ли это первым сообщением пользователя
-        boolean isFirstUserMessage = messageRepository.countByChatIdAndRole(chatId, "user") == 0;
-
         ChatMessage message = new ChatMessage();
         message.setChatId(chatId);
         message.setContent(content);
         message.setRole(role);
         message.setTemplateUsed(templateUsed);
         message.setCreatedAt(LocalDateTime.now());
+        // Один раз при вставке - бюджет контекста потом набирается без подсчёта по content
+        message.setTokenCount(tokenizer.countTokens(content));
 
-        chatMessageRepository.save(message);
+        // Сообщение и обновление чата получают одну позицию в последовательности изменений
+        long changeSeq = chatRepository.nextChangeSeq(userId);
+        message.setChangeSeq(changeSeq);
 
-        // Если это первое сообщение пользователя, обновляем title чата
-        if (isFirstUserMessage && "user".equals(role) && content != null && !content.trim().isEmpty()) {
-            String newTitle = truncateTitle(content);
-            chat.setTitle(newTitle);
-            log.info("Auto-generated chat title from first message: {}", newTitle);
+        // Счётчик, превью и timestamp чата обновляются одним атомарным UPDATE,
+        // он же проверяет владельца до вставки сообщения
+        if (chatRepository.recordMessage(chatId, userId, preview(content), role, message.getCreatedAt(), changeSeq) == 0) {
+            throw ownershipFailure(chatId, "You are not authorized to add messages to this chat");
         }
+        // Чат снова активен: строка чата уже заблокирована UPDATE-ом, возвращаем историю из архива
+        archiver.promote(chatId);
 
-        // Update chat timestamp
-        chat.setUpdatedAt(LocalDateTime.now());
-        chatRepository.save(chat);
+        chatMessageRepository.save(message);
+        tailCache.append(chatId, message);
 
-        return messageRepository.save(message);
-    }
+        // Title, индексация и прочие побочные эффекты - в обработчиках после коммита
+        eventPublisher.publishEvent(new MessageAppended(chatId, userId, message.getId(), role, content,
+                message.getCreatedAt()));
 
-    private String truncateTitle(String text) {
-        String[] words = text.trim().split("\\s+");
-        StringBuilder title = new StringBuilder();
+        return message;
+    }
 
-        for (int i = 0; i < Math.min(words.length, 8); i++) {
-            if (title.length() + words[i].length() > 40) break;
-            if (title.length() > 0) title.append(" ");
-            title.append(words[i]);
+    private static String preview(String content) {
+        if (content == null) {
+            return null;
         }
-
-        return title.length() > 0 ? title.toString() : "New Chat";
+        String trimmed = content.strip();
+        return trimmed.length() > PREVIEW_LENGTH ? trimmed.substring(0, PREVIEW_LENGTH) : trimmed;
     }
 
     @Override
     // Получить последние N чатов
-    public List<Chat> getRecentChats(Long userId, int limit) {
-        List<Chat> allChats = chatRepository.findByUserIdOrderByUpdatedAtDesc(userId);
-        return allChats.stream()
-                .limit(limit)
-                .collect(Collectors.toList());
+    public List<ChatSummary> getRecentChats(Long userId, int limit) {
+        return chatRepository.findSummariesByUserId(userId, PageRequest.of(0, limit));
     }
 
     @Override
+    @Transactional
     public Chat updateChatTitle(Long chatId, Long userId, String newTitle) {
-        Chat chat = chatRepository.findById(chatId)
-                .orElseThrow(() -> new RuntimeException("Chat not found"));
+        int updated = chatRepository.updateTitleByIdAndUserId(
+                chatId, userId, newTitle, LocalDateTime.now(), chatRepository.nextChangeSeq(userId));
+        if (updated == 0) {
+            throw ownershipFailure(chatId, "You are not authorized to update this chat");
+        }
+
+        // Ответ API - обновлённый чат, читаем его уже после проверенного UPDATE
+        return chatRepository.findById(chatId)
+                .orElseThrow(() -> new ChatNotFoundException("Chat not found"));
+    }
 
-        if (!chat.getUserId().equals(userId)) {
-            throw new UnauthorizedException("You are not authorized to delete this chat");
+    @Override
+    // Небольшие истории удаляем сразу, большие - фоновой задачей, чтобы не держать HTTP-запрос
+    public DeletionJobResponse deleteAllChats(Long userId) {
+        if (bulkDeleter.exceedsAsyncThreshold(userId)) {
+            return bulkDeleter.submit(userId);
         }
+        return bulkDeleter.deleteNow(userId);
+    }
 
-        chat.setTitle(newTitle);
-        chat.setUpdatedAt(LocalDateTime.now());
+    @Override
+    public DeletionJobResponse getDeletionJob(String jobId, Long userId) {
+        return bulkDeleter.findJob(jobId, userId)
+                .orElseThrow(() -> new DeletionJobNotFoundException("Deletion job not found"));
+    }
 
-        return chatRepository.save(chat);
+    @Override
+    public String getChatListVersion(Long userId) {
+        ChatRepository.ChatListVersion version = chatRepository.findChatListVersion(userId);
+        return userId + "-" + version.getChatCount() + "-" + toEpochMicros(version.getLastUpdatedAt());
     }
 
     @Override
-    public void deleteAllChats(Long userId) {
-        List<Chat> userChats = chatRepository.findByUserIdOrderByUpdatedAtDesc(userId);
-        chatRepository.deleteAll(userChats);
+    public String getChatMessagesVersion(Long chatId, Long userId) {
+        ChatRepository.ChatVersion version = chatRepository.findChatVersion(chatId)
+                .orElseThrow(() -> new ChatNotFoundException("Chat not found"));
+
+        if (!version.getUserId().equals(userId)) {
+            throw new UnauthorizedException("You are not authorized to view this chat");
+        }
+
+        // addMessage всегда сдвигает updated_at чата, поэтому его достаточно для версии истории
+        return chatId + "-" + toEpochMicros(version.getUpdatedAt());
+    }
+
+    /**
+     * Запрос с фильтром по владельцу не затронул ни одной строки: отличаем 404 от 403
+     */
+    private RuntimeException ownershipFailure(Long chatId, String forbiddenMessage) {
+        if (chatRepository.existsById(chatId)) {
+            return new UnauthorizedException(forbiddenMessage);
+        }
+        return new ChatNotFoundException("Chat not found");
+    }
+
+    private ChatTombstone newTombstone(Long chatId, Long userId) {
+        return new ChatTombstone(chatId, userId, chatRepository.nextChangeSeq(userId), LocalDateTime.now());
+    }
+
+    private static long toEpochMicros(LocalDateTime dateTime) {
+        if (dateTime == null) {
+            return 0;
+        }
+        Instant instant = dateTime.toInstant(ZoneOffset.UTC);
+        return instant.getEpochSecond() * 1_000_000 + instant.getNano() / 1_000;
     }
 }
\ No newline at end of file
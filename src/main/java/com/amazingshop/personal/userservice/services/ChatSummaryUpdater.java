@@ -0,0 +1,137 @@
+package com.amazingshop.personal.userservice.services;
+
+import com.amazingshop.personal.userservice.events.ChatEvent;
+import com.amazingshop.personal.userservice.events.ChatEventHandler;
+import com.amazingshop.personal.userservice.events.MessageAppended;
+import com.amazingshop.personal.userservice.interfaces.ChatSummarizer;
+import com.amazingshop.personal.userservice.interfaces.Tokenizer;
+import com.amazingshop.personal.userservice.models.ChatMessage;
+import com.amazingshop.personal.userservice.models.ChatRollingSummary;
+import com.amazingshop.personal.userservice.repositories.ChatMessageRepository;
+import com.amazingshop.personal.userservice.repositories.ChatRollingSummaryRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Продвигает скользящее краткое содержание чата после новых сообщений.
+ * <p>
+ * Последние keep-recent сообщений всегда остаются вне краткого содержания. Как только за watermark
+ * накопилось ещё every сообщений, всё, что старше хвоста, сворачивается через {@link ChatSummarizer}.
+ * Суммаризатор вызывается вне транзакции; запись - сравнение с прочитанным watermark,
+ * поэтому параллельный пересчёт того же чата просто проигрывает.
+ */
+@Slf4j
+@Component
+public class ChatSummaryUpdater implements ChatEventHandler {
+
+    private final ChatMessageRepository messageRepository;
+    private final ChatRollingSummaryRepository summaryRepository;
+    private final ChatSummarizer summarizer;
+    private final Tokenizer tokenizer;
+    private final TransactionTemplate transactionTemplate;
+    private final int every;
+    private final int keepRecent;
+    private final int maxTokens;
+    private final int maxBatch;
+
+    @Autowired
+    public ChatSummaryUpdater(ChatMessageRepository messageRepository,
+                              ChatRollingSummaryRepository summaryRepository,
+                              ChatSummarizer summarizer,
+                              Tokenizer tokenizer,
+                              PlatformTransactionManager transactionManager,
+                              @Value("${chat.summary.every:20}") int every,
+                              @Value("${chat.summary.keep-recent:20}") int keepRecent,
+                              @Value("${chat.summary.max-tokens:512}") int maxTokens,
+                              @Value("${chat.summary.max-batch:200}") int maxBatch) {
+        this.messageRepository = messageRepository;
+        this.summaryRepository = summaryRepository;
+        this.summarizer = summarizer;
+        this.tokenizer = tokenizer;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.every = every;
+        this.keepRecent = keepRecent;
+        this.maxTokens = maxTokens;
+        this.maxBatch = maxBatch;
+    }
+
+    @Override
+    public void handle(List<ChatEvent> events) {
+        Set<Long> chatIds = new LinkedHashSet<>();
+        for (ChatEvent event : events) {
+            if (event instanceof MessageAppended) {
+                chatIds.add(event.chatId());
+            }
+        }
+        chatIds.forEach(this::update);
+    }
+
+    /**
+     * Сворачивает накопившиеся сообщения чата; false - рано или watermark сдвинул кто-то другой
+     */
+    public boolean update(Long chatId) {
+        boolean advanced = false;
+        while (true) {
+            Optional<ChatRollingSummary> current = summaryRepository.findById(chatId);
+            long watermark = current.map(ChatRollingSummary::getLastMessageId).orElse(0L);
+
+            long pending = messageRepository.countByChatIdAndIdGreaterThan(chatId, watermark);
+            if (pending < keepRecent + every) {
+                return advanced;
+            }
+
+            int batchSize = (int) Math.min(pending - keepRecent, maxBatch);
+            List<ChatMessage> batch = messageRepository.findByChatIdAndIdGreaterThanOrderByIdAsc(
+                    chatId, watermark, PageRequest.of(0, batchSize));
+            if (batch.isEmpty()) {
+                return advanced;
+            }
+
+            String content = summarizer.summarize(current.map(ChatRollingSummary::getContent).orElse(null),
+                    batch, maxTokens);
+            long lastMessageId = batch.get(batch.size() - 1).getId();
+            int messageCount = current.map(ChatRollingSummary::getMessageCount).orElse(0) + batch.size();
+
+            if (!save(chatId, current.isPresent(), watermark, content, lastMessageId, messageCount)) {
+                log.debug("Rolling summary of chat {} was advanced concurrently", chatId);
+                return advanced;
+            }
+            advanced = true;
+            log.debug("Summarized chat {} through message {}", chatId, lastMessageId);
+        }
+    }
+
+    private boolean save(Long chatId, boolean exists, long watermark, String content, long lastMessageId,
+                         int messageCount) {
+        int tokenCount = tokenizer.countTokens(content);
+        LocalDateTime now = LocalDateTime.now();
+        if (exists) {
+            Integer updated = transactionTemplate.execute(status -> summaryRepository.advance(
+                    chatId, watermark, content, tokenCount, lastMessageId, messageCount, now));
+            return updated != null && updated > 0;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> summaryRepository.insert(
+                    chatId, content, tokenCount, lastMessageId, messageCount, now));
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            // Чат удалён или первое краткое содержание уже записал другой поток
+            return false;
+        }
+    }
+}
@@ -0,0 +1,181 @@
+package com.amazingshop.personal.userservice.services;
+
+import com.amazingshop.personal.userservice.dto.responses.ChatChangesResponse;
+import com.amazingshop.personal.userservice.interfaces.ChatSyncService;
+import com.amazingshop.personal.userservice.models.Chat;
+import com.amazingshop.personal.userservice.models.ChatMessage;
+import com.amazingshop.personal.userservice.models.ChatMessageTombstone;
+import com.amazingshop.personal.userservice.models.ChatSyncHorizon;
+import com.amazingshop.personal.userservice.models.ChatTombstone;
+import com.amazingshop.personal.userservice.repositories.ChatMessageRepository;
+import com.amazingshop.personal.userservice.repositories.ChatMessageTombstoneRepository;
+import com.amazingshop.personal.userservice.repositories.ChatRepository;
+import com.amazingshop.personal.userservice.repositories.ChatSyncHorizonRepository;
+import com.amazingshop.personal.userservice.repositories.ChatTombstoneRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Isolation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.LongStream;
+
+/**
+ * Дельта-синхронизация чатов: всё, что изменилось после watermark клиента.
+ * <p>
+ * Watermark - позиция в chat_change_seq. Чаты отдаются целиком (их мало), сообщения и следы удалённых
+ * чатов и сообщений - общей страницей из limit первых по позиции: одна очистка по сроку хранения
+ * оставляет по следу на каждое сообщение. При усечении watermark указывает на последнюю отданную
+ * позицию, и повторно пришедшие чаты клиент просто перезаписывает.
+ * <p>
+ * Watermark не обгоняет незакоммиченные изменения: позиции одного пользователя выдаются
+ * в порядке коммитов ({@link ChatRepository#nextChangeSeq(Long)}), а все запросы дельты читают
+ * один снимок (REPEATABLE READ) - всё, что в него не попало, получит позицию больше watermark.
+ */
+@Slf4j
+@Service
+@Transactional(readOnly = true)
+public class ChatSyncServiceImpl implements ChatSyncService {
+
+    // Число hash-секций Chat_Messages (V7): список из большего числа чатов уже не отсекает секции
+    static final int PRUNING_MAX_CHATS = 16;
+
+    private final ChatRepository chatRepository;
+    private final ChatMessageRepository messageRepository;
+    private final ChatTombstoneRepository tombstoneRepository;
+    private final ChatMessageTombstoneRepository messageTombstoneRepository;
+    private final ChatSyncHorizonRepository horizonRepository;
+    private final int tombstoneRetentionDays;
+
+    @Autowired
+    public ChatSyncServiceImpl(ChatRepository chatRepository,
+                               ChatMessageRepository messageRepository,
+                               ChatTombstoneRepository tombstoneRepository,
+                               ChatMessageTombstoneRepository messageTombstoneRepository,
+                               ChatSyncHorizonRepository horizonRepository,
+                               @Value("${chat.sync.tombstone-retention-days:30}") int tombstoneRetentionDays) {
+        this.chatRepository = chatRepository;
+        this.messageRepository = messageRepository;
+        this.tombstoneRepository = tombstoneRepository;
+        this.messageTombstoneRepository = messageTombstoneRepository;
+        this.horizonRepository = horizonRepository;
+        this.tombstoneRetentionDays = tombstoneRetentionDays;
+    }
+
+    @Override
+    @Transactional(readOnly = true, isolation = Isolation.REPEATABLE_READ)
+    public ChatChangesResponse getChanges(Long userId, long since, int limit) {
+        if (limit <= 0) {
+            throw new IllegalArgumentException("limit must be positive");
+        }
+
+        boolean fullResync = since > 0 && since < purgedChangeSeq();
+        long from = fullResync ? 0 : since;
+
+        PageRequest page = PageRequest.of(0, limit + 1);
+        List<Chat> chats = chatRepository.findChangedSince(userId, from);
+        List<ChatMessage> messages = findChangedMessages(userId, from, page);
+        List<ChatTombstone> tombstones = tombstoneRepository
+                .findByUserIdAndChangeSeqGreaterThanOrderByChangeSeqAsc(userId, from, page);
+        List<ChatMessageTombstone> messageTombstones = messageTombstoneRepository
+                .findByUserIdAndChangeSeqGreaterThanOrderByChangeSeqAsc(userId, from, page);
+
+        // Граница страницы - limit-я позиция среди всех трёх видов изменений
+        long[] changeSeqs = LongStream.concat(
+                        LongStream.concat(messages.stream().mapToLong(ChatMessage::getChangeSeq),
+                                tombstones.stream().mapToLong(ChatTombstone::getChangeSeq)),
+                        messageTombstones.stream().mapToLong(ChatMessageTombstone::getChangeSeq))
+                .sorted()
+                .toArray();
+        boolean hasMore = changeSeqs.length > limit;
+        long watermark;
+        if (hasMore) {
+            long upTo = changeSeqs[limit - 1];
+            messages = messages.stream().filter(message -> message.getChangeSeq() <= upTo).toList();
+            tombstones = tombstones.stream().filter(tombstone -> tombstone.getChangeSeq() <= upTo).toList();
+            // У сообщений и удалённых чатов позиции уникальны; следы архива делят одну, и полная
+            // выборка могла оборваться внутри группы на границе
+            if (messageTombstones.size() > limit
+                    && messageTombstones.get(messageTombstones.size() - 1).getChangeSeq() <= upTo) {
+                messageTombstones = messageTombstoneRepository
+                        .findByUserIdAndChangeSeqGreaterThanAndChangeSeqLessThanEqualOrderByChangeSeqAsc(userId, from, upTo);
+            } else {
+                messageTombstones = messageTombstones.stream()
+                        .filter(tombstone -> tombstone.getChangeSeq() <= upTo).toList();
+            }
+            watermark = upTo;
+        } else {
+            watermark = Math.max(from, lastChangeSeq(chats.stream().map(Chat::getChangeSeq).toList()));
+            watermark = Math.max(watermark, lastChangeSeq(messages.stream().map(ChatMessage::getChangeSeq).toList()));
+            watermark = Math.max(watermark, lastChangeSeq(tombstones.stream().map(ChatTombstone::getChangeSeq).toList()));
+            watermark = Math.max(watermark,
+                    lastChangeSeq(messageTombstones.stream().map(ChatMessageTombstone::getChangeSeq).toList()));
+        }
+
+        log.debug("Sync for user {} since {}: {} chats, {} messages, {} deleted, watermark {}",
+                userId, since, chats.size(), messages.size(), tombstones.size(), watermark);
+
+        return new ChatChangesResponse(
+                watermark,
+                hasMore,
+                fullResync,
+                chats,
+                messages,
+                tombstones.stream().map(ChatTombstone::getChatId).toList(),
+                messageTombstones.stream().map(ChatMessageTombstone::getMessageId).toList());
+    }
+
+    /**
+     * Удаляет следы старше срока хранения и сдвигает горизонт синхронизации
+     */
+    @Override
+    @Transactional
+    @Scheduled(cron = "${chat.sync.tombstone-compaction-cron:0 30 3 * * *}")
+    public int compactTombstones() {
+        LocalDateTime cutoff = LocalDateTime.now().minusDays(tombstoneRetentionDays);
+        Long chatsUpTo = tombstoneRepository.findMaxChangeSeqDeletedBefore(cutoff);
+        Long messagesUpTo = messageTombstoneRepository.findMaxChangeSeqDeletedBefore(cutoff);
+        if (chatsUpTo == null && messagesUpTo == null) {
+            return 0;
+        }
+        // Горизонт общий: клиенту старше него не хватает следов любого из видов
+        long purgeUpTo = Math.max(chatsUpTo != null ? chatsUpTo : 0, messagesUpTo != null ? messagesUpTo : 0);
+
+        ChatSyncHorizon horizon = horizonRepository.findById(ChatSyncHorizon.SINGLETON_ID)
+                .orElseGet(() -> new ChatSyncHorizon(ChatSyncHorizon.SINGLETON_ID, 0));
+        horizon.setPurgedChangeSeq(Math.max(horizon.getPurgedChangeSeq(), purgeUpTo));
+        horizonRepository.save(horizon);
+
+        int deleted = tombstoneRepository.deleteUpToChangeSeq(purgeUpTo)
+                + messageTombstoneRepository.deleteUpToChangeSeq(purgeUpTo);
+        log.info("Compacted {} chat tombstones up to change_seq {}", deleted, purgeUpTo);
+        return deleted;
+    }
+
+    private List<ChatMessage> findChangedMessages(Long userId, long since, Pageable page) {
+        List<Long> chatIds = chatRepository.findIdsByUserId(userId, PageRequest.of(0, PRUNING_MAX_CHATS + 1));
+        if (chatIds.isEmpty()) {
+            return List.of();
+        }
+        if (chatIds.size() <= PRUNING_MAX_CHATS) {
+            return messageRepository.findChangedSince(chatIds, since, page);
+        }
+        return messageRepository.findChangedSinceByUserId(userId, since, page);
+    }
+
+    private long purgedChangeSeq() {
+        return horizonRepository.findById(ChatSyncHorizon.SINGLETON_ID)
+                .map(ChatSyncHorizon::getPurgedChangeSeq)
+                .orElse(0L);
+    }
+
+    private static long lastChangeSeq(List<Long> changeSeqs) {
+        return changeSeqs.isEmpty() ? 0 : changeSeqs.get(changeSeqs.size() - 1);
+    }
+}
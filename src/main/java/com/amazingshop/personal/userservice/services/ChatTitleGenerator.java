@@ -0,0 +1,79 @@
+package com.amazingshop.personal.userservice.services;
+
+import com.amazingshop.personal.userservice.events.ChatEvent;
+import com.amazingshop.personal.userservice.events.ChatEventHandler;
+import com.amazingshop.personal.userservice.events.MessageAppended;
+import com.amazingshop.personal.userservice.repositories.ChatMessageRepository;
+import com.amazingshop.personal.userservice.repositories.ChatRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Генерирует title чата из первого сообщения пользователя.
+ * Название, которое пользователь задал сам, не трогает - обновляется только {@link #DEFAULT_TITLE}.
+ * Работает после коммита addMessage, поэтому запрос на отправку сообщения за это не платит.
+ */
+@Slf4j
+@Component
+public class ChatTitleGenerator implements ChatEventHandler {
+
+    public static final String DEFAULT_TITLE = "New Chat";
+
+    private final ChatRepository chatRepository;
+    private final ChatMessageRepository messageRepository;
+
+    @Autowired
+    public ChatTitleGenerator(ChatRepository chatRepository, ChatMessageRepository messageRepository) {
+        this.chatRepository = chatRepository;
+        this.messageRepository = messageRepository;
+    }
+
+    @Override
+    // REQUIRES_NEW: при переполненной очереди вызывается в afterCommit потока запроса
+    @Transactional(propagation = Propagation.REQUIRES_NEW)
+    public void handle(List<ChatEvent> events) {
+        Set<Long> titled = new HashSet<>();
+        for (ChatEvent event : events) {
+            if (!(event instanceof MessageAppended appended) || !isTitleCandidate(appended)) {
+                continue;
+            }
+            // В пачке может быть несколько сообщений одного чата - title даёт только самое раннее
+            if (titled.contains(appended.chatId())
+                    || messageRepository.existsByChatIdAndRoleAndIdLessThan(appended.chatId(), "user", appended.messageId())) {
+                continue;
+            }
+
+            String title = truncateTitle(appended.content());
+            titled.add(appended.chatId());
+            if (chatRepository.updateTitleIfDefault(appended.chatId(), title, DEFAULT_TITLE, LocalDateTime.now(),
+                    chatRepository.nextChangeSeq(appended.userId())) > 0) {
+                log.info("Auto-generated chat title from first message: {}", title);
+            }
+        }
+    }
+
+    private static boolean isTitleCandidate(MessageAppended event) {
+        return "user".equals(event.role()) && event.content() != null && !event.content().trim().isEmpty();
+    }
+
+    public static String truncateTitle(String text) {
+        String[] words = text.trim().split("\\s+");
+        StringBuilder title = new StringBuilder();
+
+        for (int i = 0; i < Math.min(words.length, 8); i++) {
+            if (title.length() + words[i].length() > 40) break;
+            if (title.length() > 0) title.append(" ");
+            title.append(words[i]);
+        }
+
+        return title.length() > 0 ? title.toString() : DEFAULT_TITLE;
+    }
+}
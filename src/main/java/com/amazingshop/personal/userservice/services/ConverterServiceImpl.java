@@ -3,27 +3,27 @@ package com.amazingshop.personal.userservice.services;
 import com.amazingshop.personal.userservice.dto.requests.UserDTO;
 import com.amazingshop.personal.userservice.interfaces.ConverterService;
 import com.amazingshop.personal.userservice.models.User;
-import org.modelmapper.ModelMapper;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+/**
+ * Преобразования DTO написаны вручную: без отражения и без построения карт типов при первом вызове
+ * (см. ConverterBenchmark). Новое поле DTO нужно добавить сюда явно
+ */
 @Service
 public class ConverterServiceImpl implements ConverterService {
 
-    private final ModelMapper modelMapper;
-
-    @Autowired
-    public ConverterServiceImpl(ModelMapper modelMapper) {
-        this.modelMapper = modelMapper;
-    }
-
     @Override
     public User convertToUser(UserDTO userDTO) {
-        return modelMapper.map(userDTO, User.class);
+        User user = new User();
+        // Сеттеры заодно заполняют нормализованные username_lc/email_lc
+        user.setUsername(userDTO.getUsername());
+        user.setPassword(userDTO.getPassword());
+        user.setEmail(userDTO.getEmail());
+        return user;
     }
 
     @Override
     public UserDTO convertToUserDTO(User user) {
-        return modelMapper.map(user, UserDTO.class);
+        return new UserDTO(user.getUsername(), user.getPassword(), user.getEmail());
     }
-}
\ No newline at end of file
+}
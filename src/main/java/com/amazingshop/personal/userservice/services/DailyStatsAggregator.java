@@ -0,0 +1,143 @@
+package com.amazingshop.personal.userservice.services;
+
+import com.amazingshop.personal.userservice.models.DailyStats;
+import com.amazingshop.personal.userservice.repositories.ChatMessageRepository;
+import com.amazingshop.personal.userservice.repositories.ChatRepository;
+import com.amazingshop.personal.userservice.repositories.DailyStatsRepository;
+import com.amazingshop.personal.userservice.repositories.UsersRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Дневные сводки для админской панели.
+ * <p>
+ * Каждый проход пересчитывает только незакрытые дни - начиная с дня после последнего закрытого.
+ * День пересчитывается целиком по индексам created_at (регистрации, новые чаты, сообщения и
+ * активные авторы по корзинам предметов, см. {@link ChatRepository#SUBJECT_BUCKET}) и перезаписывает свои строки в Daily_Stats одной транзакцией,
+ * так что повторный пересчёт ничего не задваивает.
+ * Через close-after после полуночи день пересчитывается последний раз и закрывается:
+ * к этому времени все транзакции с сообщениями этого дня уже зафиксированы.
+ * Поэтому сводки считают события дня - последующие удаления их не уменьшают.
+ * <p>
+ * Первый проход досчитывает историю порциями по max-days-per-run дней.
+ * На нескольких узлах работает тот, кто взял аренду.
+ */
+@Slf4j
+@Component
+public class DailyStatsAggregator {
+
+    public static final String LEASE_NAME = "daily-stats-aggregator";
+
+    private final UsersRepository usersRepository;
+    private final ChatRepository chatRepository;
+    private final ChatMessageRepository messageRepository;
+    private final DailyStatsRepository statsRepository;
+    private final MaintenanceLeases leases;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration leaseDuration;
+    private final Duration closeAfter;
+    private final int maxDaysPerRun;
+
+    @Autowired
+    public DailyStatsAggregator(UsersRepository usersRepository,
+                                ChatRepository chatRepository,
+                                ChatMessageRepository messageRepository,
+                                DailyStatsRepository statsRepository,
+                                MaintenanceLeases leases,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${stats.daily.lease-minutes:10}") long leaseMinutes,
+                                @Value("${stats.daily.close-after-minutes:15}") long closeAfterMinutes,
+                                @Value("${stats.daily.max-days-per-run:31}") int maxDaysPerRun) {
+        this.usersRepository = usersRepository;
+        this.chatRepository = chatRepository;
+        this.messageRepository = messageRepository;
+        this.statsRepository = statsRepository;
+        this.leases = leases;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.leaseDuration = Duration.ofMinutes(leaseMinutes);
+        this.closeAfter = Duration.ofMinutes(closeAfterMinutes);
+        this.maxDaysPerRun = maxDaysPerRun;
+    }
+
+    /**
+     * Пересчитывает незакрытые дни; возвращает их число (0, если аренда у другого узла)
+     */
+    @Scheduled(fixedDelayString = "${stats.daily.refresh-ms:300000}",
+            initialDelayString = "${stats.daily.initial-delay-ms:60000}")
+    public int refresh() {
+        if (!leases.tryAcquire(LEASE_NAME, leaseDuration)) {
+            log.debug("Daily stats refresh skipped: lease is held by another node");
+            return 0;
+        }
+
+        try {
+            LocalDateTime now = LocalDateTime.now();
+            LocalDate today = now.toLocalDate();
+            LocalDate from = statsRepository.findLastClosedDay()
+                    .map(day -> day.plusDays(1))
+                    .or(() -> usersRepository.findFirstCreatedAt().map(LocalDateTime::toLocalDate))
+                    .orElse(today);
+
+            int refreshed = 0;
+            for (LocalDate day = from; !day.isAfter(today) && refreshed < maxDaysPerRun; day = day.plusDays(1)) {
+                boolean closed = !now.isBefore(day.plusDays(1).atStartOfDay().plus(closeAfter));
+                refreshDay(day, closed, now);
+                refreshed++;
+            }
+            log.debug("Daily stats refreshed for {} days starting {}", refreshed, from);
+            return refreshed;
+        } finally {
+            leases.release(LEASE_NAME);
+        }
+    }
+
+    private void refreshDay(LocalDate day, boolean closed, LocalDateTime now) {
+        LocalDateTime from = day.atStartOfDay();
+        LocalDateTime to = from.plusDays(1);
+
+        transactionTemplate.executeWithoutResult(status -> {
+            // Корзины предметов в порядке имени, итог дня - отдельной строкой TOTAL
+            Map<String, DailyStats> bySubject = new TreeMap<>();
+            for (ChatRepository.SubjectCount chats : chatRepository.countCreatedBySubject(from, to)) {
+                subjectRow(bySubject, day, chats.getSubject(), closed, now).setNewChats(chats.getCount());
+            }
+            for (ChatMessageRepository.SubjectActivity activity : messageRepository.countActivityBySubject(from, to)) {
+                DailyStats row = subjectRow(bySubject, day, activity.getSubject(), closed, now);
+                row.setMessages(activity.getMessages());
+                row.setActiveUsers(activity.getActiveUsers());
+            }
+
+            DailyStats total = new DailyStats(day, DailyStats.TOTAL,
+                    usersRepository.countByCreatedAtGreaterThanEqualAndCreatedAtLessThan(from, to),
+                    bySubject.values().stream().mapToLong(DailyStats::getNewChats).sum(),
+                    bySubject.values().stream().mapToLong(DailyStats::getMessages).sum(),
+                    messageRepository.countActiveUsers(from, to),
+                    closed, now);
+
+            List<DailyStats> rows = new ArrayList<>(bySubject.size() + 1);
+            rows.add(total);
+            rows.addAll(bySubject.values());
+
+            statsRepository.saveAll(rows);
+            statsRepository.deleteByDayAndSubjectNotIn(day, rows.stream().map(DailyStats::getSubject).toList());
+        });
+    }
+
+    private static DailyStats subjectRow(Map<String, DailyStats> bySubject, LocalDate day, String subject,
+                                         boolean closed, LocalDateTime now) {
+        return bySubject.computeIfAbsent(subject, s -> new DailyStats(day, s, 0, 0, 0, 0, closed, now));
+    }
+}
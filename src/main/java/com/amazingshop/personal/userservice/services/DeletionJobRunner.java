@@ -0,0 +1,199 @@
+package com.amazingshop.personal.userservice.services;
+
+import com.amazingshop.personal.userservice.dto.responses.DeletionJobResponse;
+import com.amazingshop.personal.userservice.enums.JobStatus;
+import com.amazingshop.personal.userservice.models.DeletionJob;
+import com.amazingshop.personal.userservice.repositories.DeletionJobRepository;
+import com.amazingshop.personal.userservice.util.AfterCommit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Исполнитель фоновых задач удаления, общий для {@link ChatBulkDeleter} и {@link AccountDeleter}.
+ * <p>
+ * Задача хранится в своей таблице и удаляет чаты пользователя порциями {@code nextChunk}, сохраняя прогресс
+ * после каждой; в конце вызывается {@code beforeComplete}. Выполняет задачу тот узел, что взял её аренду,
+ * незавершённые задачи подбирает {@link #resumeUnfinished()}. Упавшая попытка возвращает задачу в очередь,
+ * после max-attempts задача остаётся FAILED. Аренда задачи в конечном статусе удаляется, а строки,
+ * оставшиеся от упавших узлов, чистит {@link #purgeExpiredLeases()}.
+ */
+@Slf4j
+class DeletionJobRunner<T extends DeletionJob> {
+
+    static final List<JobStatus> UNFINISHED = List.of(JobStatus.PENDING, JobStatus.RUNNING);
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final String name;
+    private final String leasePrefix;
+    private final DeletionJobRepository<T> jobRepository;
+    private final MaintenanceLeases leases;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskExecutor executor;
+    private final Duration leaseDuration;
+    private final int maxAttempts;
+    private final int resumeBatchSize;
+    private final Function<Long, ChatBulkDeleter.Chunk> nextChunk;
+    private final Consumer<T> beforeComplete;
+
+    // Задачи, уже стоящие в пуле этого узла: повторный подбор их не дублирует
+    private final Set<String> queued = ConcurrentHashMap.newKeySet();
+
+    DeletionJobRunner(String name,
+                      String leasePrefix,
+                      DeletionJobRepository<T> jobRepository,
+                      MaintenanceLeases leases,
+                      TransactionTemplate transactionTemplate,
+                      TaskExecutor executor,
+                      Duration leaseDuration,
+                      int maxAttempts,
+                      int resumeBatchSize,
+                      Function<Long, ChatBulkDeleter.Chunk> nextChunk,
+                      Consumer<T> beforeComplete) {
+        this.name = name;
+        this.leasePrefix = leasePrefix;
+        this.jobRepository = jobRepository;
+        this.leases = leases;
+        this.transactionTemplate = transactionTemplate;
+        this.executor = executor;
+        this.leaseDuration = leaseDuration;
+        this.maxAttempts = maxAttempts;
+        this.resumeBatchSize = resumeBatchSize;
+        this.nextChunk = nextChunk;
+        this.beforeComplete = beforeComplete;
+    }
+
+    /**
+     * Ставит задачу в пул после коммита текущей транзакции: раньше она не видна другим потокам
+     */
+    void submitAfterCommit(String jobId) {
+        AfterCommit.run(() -> submit(jobId));
+    }
+
+    /**
+     * Ставит в пул незавершённые задачи, старые первыми. Возвращает число поставленных
+     */
+    int resumeUnfinished() {
+        List<String> jobIds = jobRepository.findIdsByStatusIn(UNFINISHED, PageRequest.of(0, resumeBatchSize));
+        int submitted = 0;
+        for (String jobId : jobIds) {
+            if (submit(jobId)) {
+                submitted++;
+            }
+        }
+        return submitted;
+    }
+
+    /**
+     * Выполняет задачу до конца в текущем потоке, если её аренда свободна
+     */
+    void process(String jobId) {
+        String leaseName = leasePrefix + jobId;
+        if (!leases.tryAcquire(leaseName, leaseDuration)) {
+            log.debug("{} {} skipped: lease is held by another node", name, jobId);
+            return;
+        }
+
+        boolean finished = false;
+        try {
+            finished = jobRepository.findById(jobId)
+                    .filter(job -> UNFINISHED.contains(job.getStatus()))
+                    .map(job -> run(job, leaseName))
+                    .orElse(true);
+        } finally {
+            if (finished) {
+                leases.delete(leaseName);
+            } else {
+                leases.release(leaseName);
+            }
+        }
+    }
+
+    /**
+     * Удаляет истёкшие аренды задач этого вида. Возвращает число удалённых
+     */
+    int purgeExpiredLeases() {
+        return leases.purgeExpired(leasePrefix);
+    }
+
+    // true, если задача пришла в конечный статус и её аренда больше не понадобится
+    private boolean run(T job, String leaseName) {
+        String jobId = job.getId();
+        Long userId = job.getUserId();
+        try {
+            transactionTemplate.executeWithoutResult(status ->
+                    jobRepository.updateStatus(jobId, JobStatus.RUNNING, null, LocalDateTime.now()));
+
+            ChatBulkDeleter.Chunk chunk;
+            while (!(chunk = nextChunk.apply(userId)).isEmpty()) {
+                ChatBulkDeleter.Chunk deleted = chunk;
+                transactionTemplate.executeWithoutResult(status ->
+                        jobRepository.addProgress(jobId, deleted.chats(), deleted.messages(), LocalDateTime.now()));
+                // Длинная история не должна отдать задачу другому узлу посреди работы
+                if (!leases.tryAcquire(leaseName, leaseDuration)) {
+                    log.warn("{} {} lost its lease, leaving it to another node", name, jobId);
+                    return false;
+                }
+            }
+            beforeComplete.accept(job);
+
+            LocalDateTime now = LocalDateTime.now();
+            transactionTemplate.executeWithoutResult(status ->
+                    jobRepository.updateStatus(jobId, JobStatus.COMPLETED, now, now));
+            log.info("{} {} completed for user {}", name, jobId, userId);
+            return true;
+        } catch (RuntimeException e) {
+            boolean giveUp = job.getAttempts() + 1 >= maxAttempts;
+            LocalDateTime now = LocalDateTime.now();
+            transactionTemplate.executeWithoutResult(status -> jobRepository.recordFailure(jobId,
+                    giveUp ? JobStatus.FAILED : JobStatus.PENDING, truncate(e.getMessage()), giveUp ? now : null, now));
+            log.error("{} {} failed for user {} (attempt {})", name, jobId, userId, job.getAttempts() + 1, e);
+            return giveUp;
+        }
+    }
+
+    private boolean submit(String jobId) {
+        if (!queued.add(jobId)) {
+            return false;
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    process(jobId);
+                } finally {
+                    queued.remove(jobId);
+                }
+            });
+            return true;
+        } catch (TaskRejectedException e) {
+            // Задача уже сохранена - её подберёт resumeUnfinished
+            queued.remove(jobId);
+            log.warn("Maintenance queue is full, {} {} postponed", name.toLowerCase(), jobId);
+            return false;
+        }
+    }
+
+    private static String truncate(String message) {
+        if (message == null || message.length() <= MAX_ERROR_LENGTH) {
+            return message;
+        }
+        return message.substring(0, MAX_ERROR_LENGTH);
+    }
+
+    static DeletionJobResponse toResponse(DeletionJob job) {
+        return new DeletionJobResponse(job.getId(), job.getStatus(), job.getChatsDeleted(), job.getMessagesDeleted(),
+                job.getCreatedAt(), job.getFinishedAt(), job.getError());
+    }
+}
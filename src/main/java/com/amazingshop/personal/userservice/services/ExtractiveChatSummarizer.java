@@ -0,0 +1,65 @@
+package com.amazingshop.personal.userservice.services;
+
+import com.amazingshop.personal.userservice.interfaces.ChatSummarizer;
+import com.amazingshop.personal.userservice.interfaces.Tokenizer;
+import com.amazingshop.personal.userservice.models.ChatMessage;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * Локальное краткое содержание без модели: по строке "role: первое предложение" на сообщение.
+ * Если не укладывается в maxTokens, выбрасываются самые старые строки.
+ * Детерминировано - одинаковый вход всегда даёт одинаковый результат
+ */
+@Component
+public class ExtractiveChatSummarizer implements ChatSummarizer {
+
+    static final int MAX_LINE_CHARS = 160;
+
+    private final Tokenizer tokenizer;
+
+    @Autowired
+    public ExtractiveChatSummarizer(Tokenizer tokenizer) {
+        this.tokenizer = tokenizer;
+    }
+
+    @Override
+    public String summarize(String previousSummary, List<ChatMessage> messages, int maxTokens) {
+        Deque<String> lines = new ArrayDeque<>();
+        if (previousSummary != null && !previousSummary.isEmpty()) {
+            lines.addAll(previousSummary.lines().toList());
+        }
+        for (ChatMessage message : messages) {
+            String sentence = firstSentence(message.getContent());
+            if (!sentence.isEmpty()) {
+                lines.addLast(message.getRole() + ": " + sentence);
+            }
+        }
+
+        // Строки считаются по отдельности - перевод строки считаем за токен
+        int tokens = lines.stream().mapToInt(line -> tokenizer.countTokens(line) + 1).sum();
+        while (tokens > maxTokens && !lines.isEmpty()) {
+            tokens -= tokenizer.countTokens(lines.removeFirst()) + 1;
+        }
+        return String.join("\n", lines);
+    }
+
+    static String firstSentence(String content) {
+        if (content == null) {
+            return "";
+        }
+        String text = content.strip().replaceAll("\\s+", " ");
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if ((c == '.' || c == '!' || c == '?') && (i + 1 == text.length() || text.charAt(i + 1) == ' ')) {
+                text = text.substring(0, i + 1);
+                break;
+            }
+        }
+        return text.length() > MAX_LINE_CHARS ? text.substring(0, MAX_LINE_CHARS - 1) + "…" : text;
+    }
+}
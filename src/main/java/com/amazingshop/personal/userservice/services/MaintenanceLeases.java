@@ -0,0 +1,86 @@
+package com.amazingshop.personal.userservice.services;
+
+import com.amazingshop.personal.userservice.repositories.MaintenanceLeaseRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Аренды фоновых задач в БД: при нескольких узлах задачу выполняет только один.
+ * Аренда ограничена по времени, так что упавший узел не блокирует задачу навсегда.
+ */
+@Slf4j
+@Component
+public class MaintenanceLeases {
+
+    private final MaintenanceLeaseRepository leaseRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final String owner;
+
+    @Autowired
+    public MaintenanceLeases(MaintenanceLeaseRepository leaseRepository, PlatformTransactionManager transactionManager) {
+        this.leaseRepository = leaseRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.transactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.owner = hostName() + "-" + UUID.randomUUID();
+    }
+
+    /**
+     * true, если аренда получена (или продлена) этим узлом на ttl
+     */
+    public boolean tryAcquire(String name, Duration ttl) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime until = now.plus(ttl);
+
+        Integer updated = transactionTemplate.execute(status -> leaseRepository.tryAcquire(name, owner, now, until));
+        if (updated != null && updated > 0) {
+            return true;
+        }
+
+        try {
+            transactionTemplate.executeWithoutResult(status -> leaseRepository.insert(name, owner, until));
+            return true;
+        } catch (DataIntegrityViolationException e) {
+            log.debug("Lease {} is held by another node", name);
+            return false;
+        }
+    }
+
+    public void release(String name) {
+        transactionTemplate.executeWithoutResult(status -> leaseRepository.release(name, owner, LocalDateTime.now()));
+    }
+
+    /**
+     * Удаляет свою аренду - для задач, которые больше не будут выполняться
+     */
+    public void delete(String name) {
+        transactionTemplate.executeWithoutResult(status -> leaseRepository.delete(name, owner));
+    }
+
+    /**
+     * Удаляет истёкшие аренды с заданным префиксом имени. Возвращает число удалённых
+     */
+    public int purgeExpired(String prefix) {
+        Integer deleted = transactionTemplate.execute(status ->
+                leaseRepository.deleteExpiredByPrefix(prefix, LocalDateTime.now()));
+        return deleted == null ? 0 : deleted;
+    }
+
+    private static String hostName() {
+        try {
+            return InetAddress.getLocalHost().getHostName();
+        } catch (UnknownHostException e) {
+            return "unknown";
+        }
+    }
+}
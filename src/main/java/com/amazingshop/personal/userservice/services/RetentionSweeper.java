@@ -0,0 +1,280 @@
+package com.amazingshop.personal.userservice.services;
+
+import com.amazingshop.personal.userservice.cache.ChatMessageTailCache;
+import com.amazingshop.personal.userservice.models.ChatMessageTombstone;
+import com.amazingshop.personal.userservice.repositories.ChatArchiveRepository;
+import com.amazingshop.personal.userservice.repositories.ChatMessageRepository;
+import com.amazingshop.personal.userservice.repositories.ChatMessageTombstoneRepository;
+import com.amazingshop.personal.userservice.repositories.ChatRepository;
+import com.amazingshop.personal.userservice.repositories.ChatRollingSummaryRepository;
+import com.amazingshop.personal.userservice.repositories.UsersRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Очистка устаревших данных по срокам хранения.
+ * <p>
+ * Каждый класс данных обходится keyset-порциями ограниченного размера, каждая порция -
+ * отдельная короткая транзакция, между порциями пауза. Так очистка не держит долгих
+ * блокировок и не забивает WAL. На нескольких узлах работает тот, кто взял аренду,
+ * и продлевает её между порциями.
+ * <p>
+ * Удалённые сообщения оставляют следы в Chat_Message_Tombstones, как удалённые чаты в Chat_Tombstones:
+ * клиенты дельта-синхронизации получают их id и убирают у себя.
+ */
+@Slf4j
+@Component
+public class RetentionSweeper {
+
+    public static final String LEASE_NAME = "retention-sweeper";
+    public static final String METRIC_NAME = "retention.rows";
+
+    public static final String REFRESH_TOKENS = "refresh-tokens";
+    public static final String CHAT_MESSAGES = "chat-messages";
+    public static final String CHAT_ARCHIVES = "chat-archives";
+
+    private static final LocalDateTime EPOCH = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    private final UsersRepository usersRepository;
+    private final ChatRepository chatRepository;
+    private final ChatMessageRepository messageRepository;
+    private final ChatArchiveRepository archiveRepository;
+    private final ChatRollingSummaryRepository summaryRepository;
+    private final ChatMessageTombstoneRepository messageTombstoneRepository;
+    private final ChatArchiver archiver;
+    private final ChatMessageTailCache tailCache;
+    private final MaintenanceLeases leases;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration leaseDuration;
+    private final Policy refreshTokens;
+    private final Policy chatMessages;
+    private final int messageRetentionDays;
+    private final Map<String, Counter> counters;
+
+    @Autowired
+    public RetentionSweeper(UsersRepository usersRepository,
+                            ChatRepository chatRepository,
+                            ChatMessageRepository messageRepository,
+                            ChatArchiveRepository archiveRepository,
+                            ChatRollingSummaryRepository summaryRepository,
+                            ChatMessageTombstoneRepository messageTombstoneRepository,
+                            ChatArchiver archiver,
+                            ChatMessageTailCache tailCache,
+                            MaintenanceLeases leases,
+                            PlatformTransactionManager transactionManager,
+                            MeterRegistry meterRegistry,
+                            @Value("${retention.lease-minutes:30}") long leaseMinutes,
+                            @Value("${retention.refresh-tokens.enabled:true}") boolean refreshTokensEnabled,
+                            @Value("${retention.refresh-tokens.batch-size:1000}") int refreshTokensBatchSize,
+                            @Value("${retention.refresh-tokens.pause-ms:100}") long refreshTokensPauseMs,
+                            @Value("${retention.chat-messages.retention-days:0}") int messageRetentionDays,
+                            @Value("${retention.chat-messages.batch-size:1000}") int chatMessagesBatchSize,
+                            @Value("${retention.chat-messages.pause-ms:200}") long chatMessagesPauseMs) {
+        this.usersRepository = usersRepository;
+        this.chatRepository = chatRepository;
+        this.messageRepository = messageRepository;
+        this.archiveRepository = archiveRepository;
+        this.summaryRepository = summaryRepository;
+        this.messageTombstoneRepository = messageTombstoneRepository;
+        this.archiver = archiver;
+        this.tailCache = tailCache;
+        this.leases = leases;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.leaseDuration = Duration.ofMinutes(leaseMinutes);
+        this.refreshTokens = new Policy(refreshTokensEnabled, refreshTokensBatchSize, refreshTokensPauseMs);
+        // 0 дней - храним историю бессрочно
+        this.chatMessages = new Policy(messageRetentionDays > 0, chatMessagesBatchSize, chatMessagesPauseMs);
+        this.messageRetentionDays = messageRetentionDays;
+        this.counters = Stream.of(REFRESH_TOKENS, CHAT_MESSAGES, CHAT_ARCHIVES)
+                .collect(Collectors.toMap(dataClass -> dataClass, dataClass -> Counter.builder(METRIC_NAME)
+                        .description("Строки, очищенные по сроку хранения")
+                        .tag("data.class", dataClass)
+                        .register(meterRegistry)));
+    }
+
+    /**
+     * Один проход по всем включённым классам данных.
+     * Возвращает число обработанных строк по классам; пусто, если аренда у другого узла.
+     */
+    @Scheduled(cron = "${retention.cron:0 15 3 * * *}")
+    public Map<String, Long> sweep() {
+        if (!leases.tryAcquire(LEASE_NAME, leaseDuration)) {
+            log.debug("Retention sweep skipped: lease is held by another node");
+            return Map.of();
+        }
+
+        try {
+            Map<String, Long> report = new LinkedHashMap<>();
+            LocalDateTime now = LocalDateTime.now();
+            if (refreshTokens.enabled()) {
+                report.put(REFRESH_TOKENS, sweepRefreshTokens(now));
+            }
+            if (chatMessages.enabled() && renewLease()) {
+                LocalDateTime cutoff = now.minusDays(messageRetentionDays);
+                report.put(CHAT_MESSAGES, sweepChatMessages(cutoff));
+                if (renewLease()) {
+                    report.put(CHAT_ARCHIVES, sweepChatArchives(cutoff));
+                }
+            }
+
+            report.forEach((dataClass, rows) -> counters.get(dataClass).increment(rows));
+            log.info("Retention sweep finished: {}", report);
+            return report;
+        } finally {
+            leases.release(LEASE_NAME);
+        }
+    }
+
+    // Просроченный refresh token бесполезен, но остаётся в Users и в индексе idx_refresh_token
+    private long sweepRefreshTokens(LocalDateTime now) {
+        long cleared = 0;
+        Long afterId = 0L;
+        while (true) {
+            List<Long> ids = usersRepository.findIdsWithExpiredRefreshToken(
+                    now, afterId, PageRequest.of(0, refreshTokens.batchSize()));
+            if (ids.isEmpty()) {
+                break;
+            }
+
+            cleared += transactionTemplate.execute(status -> usersRepository.clearExpiredRefreshTokens(ids, now));
+            afterId = ids.get(ids.size() - 1);
+            if (ids.size() < refreshTokens.batchSize() || !renewLease() || !pause(refreshTokens)) {
+                break;
+            }
+        }
+        return cleared;
+    }
+
+    private long sweepChatMessages(LocalDateTime cutoff) {
+        long deleted = 0;
+        // Нижняя граница не даёт каждой порции заново проходить уже удалённый (мёртвый) участок индекса
+        LocalDateTime from = EPOCH;
+        while (true) {
+            List<ChatMessageRepository.MessageRef> batch = messageRepository.findCreatedBetween(
+                    from, cutoff, PageRequest.of(0, chatMessages.batchSize()));
+            if (batch.isEmpty()) {
+                break;
+            }
+
+            Set<Long> chatIds = batch.stream().map(ChatMessageRepository.MessageRef::getChatId).collect(Collectors.toSet());
+            List<Long> ids = batch.stream().map(ChatMessageRepository.MessageRef::getId).toList();
+            deleted += transactionTemplate.execute(status -> {
+                lockOwners(chatIds);
+                // Следы пишутся до DELETE: INSERT берёт chat_id и владельца из удаляемых строк
+                messageTombstoneRepository.insertForMessages(chatIds, ids);
+                int rows = messageRepository.deleteByChatIdInAndIdIn(chatIds, ids);
+                recountChats(chatIds);
+                chatRepository.clearEmptySummaries(chatIds);
+                // Иначе удалённое по сроку продолжало бы жить в кратком содержании для AI-сервиса
+                summaryRepository.deleteByChatIdIn(chatIds);
+                tailCache.invalidateAll(chatIds);
+                return rows;
+            });
+
+            from = batch.get(batch.size() - 1).getCreatedAt();
+            if (batch.size() < chatMessages.batchSize() || !renewLease() || !pause(chatMessages)) {
+                break;
+            }
+        }
+        return deleted;
+    }
+
+    // Архив удаляется целиком, только когда в нём не осталось сообщений моложе срока
+    private long sweepChatArchives(LocalDateTime cutoff) {
+        long deleted = 0;
+        Long afterId = 0L;
+        while (true) {
+            List<Long> chatIds = archiveRepository.findExpiredChatIds(
+                    cutoff, afterId, PageRequest.of(0, chatMessages.batchSize()));
+            if (chatIds.isEmpty()) {
+                break;
+            }
+
+            deleted += transactionTemplate.execute(status -> {
+                recordArchiveTombstones(lockOwners(chatIds));
+                int rows = archiveRepository.deleteByChatIdIn(chatIds);
+                recountChats(chatIds);
+                chatRepository.clearEmptySummaries(chatIds);
+                summaryRepository.deleteByChatIdIn(chatIds);
+                tailCache.invalidateAll(chatIds);
+                return rows;
+            });
+
+            afterId = chatIds.get(chatIds.size() - 1);
+            if (chatIds.size() < chatMessages.batchSize() || !renewLease() || !pause(chatMessages)) {
+                break;
+            }
+        }
+        return deleted;
+    }
+
+    // Id сообщений архива есть только в блобе: все следы чата получают одну позицию,
+    // как сообщение и обновление чата в addMessage
+    private void recordArchiveTombstones(List<ChatRepository.ChatOwner> owners) {
+        LocalDateTime now = LocalDateTime.now();
+        for (ChatRepository.ChatOwner owner : owners) {
+            long changeSeq = chatRepository.allocateChangeSeq();
+            messageTombstoneRepository.saveAll(archiver.findArchivedMessages(owner.getChatId()).stream()
+                    .map(message -> new ChatMessageTombstone(message.getId(), owner.getChatId(), owner.getUserId(),
+                            changeSeq, now))
+                    .toList());
+        }
+    }
+
+    // Под той же блокировкой владельцев, что и следы: позиция чата не обгонит незакоммиченные изменения
+    private void recountChats(Collection<Long> chatIds) {
+        chatRepository.recountMessages(chatIds, LocalDateTime.now(), chatRepository.allocateChangeSeq());
+    }
+
+    // Позиции следов выдаются под блокировкой владельцев - как в ChatRepository#nextChangeSeq
+    private List<ChatRepository.ChatOwner> lockOwners(Collection<Long> chatIds) {
+        List<ChatRepository.ChatOwner> owners = chatRepository.findOwnersByIdIn(chatIds);
+        if (!owners.isEmpty()) {
+            chatRepository.lockChangeSeqOwners(owners.stream().map(ChatRepository.ChatOwner::getUserId).distinct().toList());
+        }
+        return owners;
+    }
+
+    // Долгий проход не должен отдать аренду другому узлу посреди работы - продлеваем, как AccountDeleter
+    private boolean renewLease() {
+        if (leases.tryAcquire(LEASE_NAME, leaseDuration)) {
+            return true;
+        }
+        log.warn("Retention sweep lost its lease, leaving the rest to another node");
+        return false;
+    }
+
+    private static boolean pause(Policy policy) {
+        if (policy.pauseMillis() <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(policy.pauseMillis());
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private record Policy(boolean enabled, int batchSize, long pauseMillis) {
+    }
+}
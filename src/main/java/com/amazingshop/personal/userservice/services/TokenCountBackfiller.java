@@ -0,0 +1,122 @@
+package com.amazingshop.personal.userservice.services;
+
+import com.amazingshop.personal.userservice.interfaces.Tokenizer;
+import com.amazingshop.personal.userservice.models.ChatMessage;
+import com.amazingshop.personal.userservice.repositories.ChatMessageRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Досчитывает token_count у сообщений, сохранённых до V11, настроенным {@link Tokenizer}.
+ * <p>
+ * Идёт keyset-порциями по id, каждая порция - своя короткая транзакция, между порциями пауза
+ * и продление аренды. Новые сообщения получают token_count при вставке, поэтому после прохода,
+ * не нашедшего ни одной строки, узел больше не сканирует таблицу до перезапуска.
+ * Пока строка не досчитана, {@link ChatContextServiceImpl} считает её на лету.
+ */
+@Slf4j
+@Component
+public class TokenCountBackfiller {
+
+    public static final String LEASE_NAME = "token-count-backfill";
+
+    private final ChatMessageRepository messageRepository;
+    private final Tokenizer tokenizer;
+    private final MaintenanceLeases leases;
+    private final TransactionTemplate transactionTemplate;
+    private final Duration leaseDuration;
+    private final int batchSize;
+    private final long pauseMillis;
+
+    private volatile boolean finished;
+
+    @Autowired
+    public TokenCountBackfiller(ChatMessageRepository messageRepository,
+                                Tokenizer tokenizer,
+                                MaintenanceLeases leases,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${chat.tokenizer.backfill.lease-minutes:10}") long leaseMinutes,
+                                @Value("${chat.tokenizer.backfill.batch-size:1000}") int batchSize,
+                                @Value("${chat.tokenizer.backfill.pause-ms:200}") long pauseMillis) {
+        this.messageRepository = messageRepository;
+        this.tokenizer = tokenizer;
+        this.leases = leases;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.leaseDuration = Duration.ofMinutes(leaseMinutes);
+        this.batchSize = batchSize;
+        this.pauseMillis = pauseMillis;
+    }
+
+    /**
+     * Один проход по таблице; возвращает число досчитанных сообщений (0, если аренда у другого узла)
+     */
+    @Scheduled(fixedDelayString = "${chat.tokenizer.backfill.interval-ms:300000}",
+            initialDelayString = "${chat.tokenizer.backfill.initial-delay-ms:60000}")
+    public long backfill() {
+        if (finished) {
+            return 0;
+        }
+        if (!leases.tryAcquire(LEASE_NAME, leaseDuration)) {
+            log.debug("Token count backfill skipped: lease is held by another node");
+            return 0;
+        }
+
+        try {
+            long counted = 0;
+            long afterId = 0;
+            while (true) {
+                long from = afterId;
+                List<ChatMessage> batch = transactionTemplate.execute(status -> countBatch(from));
+                if (batch.isEmpty()) {
+                    finished = true;
+                    log.info("Token count backfill finished, {} messages counted in the last pass", counted);
+                    return counted;
+                }
+                counted += batch.size();
+                afterId = batch.get(batch.size() - 1).getId();
+
+                if (!leases.tryAcquire(LEASE_NAME, leaseDuration)) {
+                    log.warn("Token count backfill lost its lease after {} messages", counted);
+                    return counted;
+                }
+                if (!pause()) {
+                    return counted;
+                }
+            }
+        } finally {
+            leases.release(LEASE_NAME);
+        }
+    }
+
+    private List<ChatMessage> countBatch(long afterId) {
+        List<ChatMessage> batch = messageRepository.findByIdGreaterThanAndTokenCountIsNullOrderByIdAsc(
+                afterId, PageRequest.of(0, batchSize));
+        for (ChatMessage message : batch) {
+            messageRepository.updateTokenCount(message.getChatId(), message.getId(),
+                    tokenizer.countTokens(message.getContent()));
+        }
+        return batch;
+    }
+
+    private boolean pause() {
+        if (pauseMillis <= 0) {
+            return true;
+        }
+        try {
+            Thread.sleep(pauseMillis);
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -1,7 +1,8 @@
 package com.amazingshop.personal.userservice.services;
 
+import com.amazingshop.personal.userservice.cache.UserDetailsCache;
+import com.amazingshop.personal.userservice.datasource.PrimaryReads;
 import com.amazingshop.personal.userservice.interfaces.UserService;
-import com.amazingshop.personal.userservice.models.User;
 import com.amazingshop.personal.userservice.security.details.UserDetailsImpl;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -17,17 +18,25 @@ import java.util.Optional;
 public class UserDetailsServiceImpl implements UserDetailsService {
 
     private final UserService userService;
+    private final UserDetailsCache userDetailsCache;
+    private final PrimaryReads primaryReads;
 
     @Autowired
-    public UserDetailsServiceImpl(UserService userService) {
+    public UserDetailsServiceImpl(UserService userService, UserDetailsCache userDetailsCache,
+                                  PrimaryReads primaryReads) {
         this.userService = userService;
+        this.userDetailsCache = userDetailsCache;
+        this.primaryReads = primaryReads;
     }
 
     @Override
     public UserDetails loadUserByUsername(String username) throws UsernameNotFoundException {
         log.debug("Loading user by username: {}", username);
 
-        Optional<User> user = userService.findByUsername(username);
+        // Вызывается на каждый запрос с JWT - снимок берётся из кэша, в БД (primary) только при промахе:
+        // после сброса с другого узла реплика могла ещё не увидеть новую роль или удаление
+        Optional<UserDetailsImpl> user = userDetailsCache.get(username,
+                name -> primaryReads.call(() -> userService.findByUsername(name)));
 
         if (user.isEmpty()) {
             log.warn("User not found: {}", username);
@@ -35,6 +44,6 @@ public class UserDetailsServiceImpl implements UserDetailsService {
         }
 
         log.debug("User found: {}", username);
-        return new UserDetailsImpl(user.get());
+        return user.get();
     }
-}
\ No newline at end of file
+}
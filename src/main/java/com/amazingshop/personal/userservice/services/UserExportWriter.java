@@ -0,0 +1,110 @@
+package com.amazingshop.personal.userservice.services;
+
+import com.amazingshop.personal.userservice.dto.responses.AdminUserSummary;
+import com.amazingshop.personal.userservice.enums.UserExportFormat;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+/**
+ * Построчная запись выгрузки пользователей. Ничего не копит: строка сразу уходит в поток,
+ * поток не закрывается - им владеет вызывающий
+ */
+abstract class UserExportWriter {
+
+    static UserExportWriter of(UserExportFormat format, OutputStream out, ObjectMapper objectMapper) throws IOException {
+        return switch (format) {
+            case CSV -> new Csv(out);
+            case NDJSON -> new Ndjson(out, objectMapper);
+        };
+    }
+
+    abstract void write(AdminUserSummary user) throws IOException;
+
+    /**
+     * Сбрасывает буферы записи в поток
+     */
+    abstract void finish() throws IOException;
+
+    /**
+     * RFC 4180: поля с запятой, кавычкой или переводом строки - в кавычках, кавычки удваиваются
+     */
+    static final class Csv extends UserExportWriter {
+
+        static final String HEADER = "id,username,email,role,created_at,profile_picture_url\r\n";
+
+        private final Writer writer;
+
+        Csv(OutputStream out) throws IOException {
+            this.writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+            writer.write(HEADER);
+        }
+
+        @Override
+        void write(AdminUserSummary user) throws IOException {
+            writer.write(String.valueOf(user.getId()));
+            writer.write(',');
+            writeField(user.getUsername());
+            writer.write(',');
+            writeField(user.getEmail());
+            writer.write(',');
+            writeField(user.getRole() == null ? null : user.getRole().name());
+            writer.write(',');
+            LocalDateTime createdAt = user.getCreatedAt();
+            writeField(createdAt == null ? null : createdAt.toString());
+            writer.write(',');
+            writeField(user.getProfilePictureUrl());
+            writer.write("\r\n");
+        }
+
+        @Override
+        void finish() throws IOException {
+            writer.flush();
+        }
+
+        private void writeField(String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+                writer.write(value);
+                return;
+            }
+            writer.write('"');
+            writer.write(value.replace("\"", "\"\""));
+            writer.write('"');
+        }
+    }
+
+    /**
+     * Один JSON-объект на строку, тем же маппером, что и ответы API
+     */
+    static final class Ndjson extends UserExportWriter {
+
+        private final JsonGenerator generator;
+
+        Ndjson(OutputStream out, ObjectMapper objectMapper) throws IOException {
+            this.generator = objectMapper.getFactory().createGenerator(out);
+            generator.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            // Разделитель между объектами по умолчанию - пробел; строки разделяем сами
+            generator.setRootValueSeparator(null);
+        }
+
+        @Override
+        void write(AdminUserSummary user) throws IOException {
+            generator.writeObject(user);
+            generator.writeRaw('\n');
+        }
+
+        @Override
+        void finish() throws IOException {
+            generator.close();
+        }
+    }
+}
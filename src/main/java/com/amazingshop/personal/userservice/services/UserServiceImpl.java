@@ -1,11 +1,15 @@
 package com.amazingshop.personal.userservice.services;
 
+import com.amazingshop.personal.userservice.cache.CurrentUserResponseCache;
+import com.amazingshop.personal.userservice.cache.UserDetailsCache;
+import com.amazingshop.personal.userservice.datasource.PrimaryReads;
 import com.amazingshop.personal.userservice.dto.responses.CurrentUserResponse;
 import com.amazingshop.personal.userservice.interfaces.UserService;
 import com.amazingshop.personal.userservice.models.User;
 import com.amazingshop.personal.userservice.repositories.UsersRepository;
 import com.amazingshop.personal.userservice.security.details.UserDetailsImpl;
 import com.amazingshop.personal.userservice.util.exceptions.UserNotFoundException;
+import com.amazingshop.personal.userservice.util.exceptions.UserValidationException;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.core.Authentication;
@@ -15,6 +19,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.util.List;
 import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 
 @Slf4j
@@ -23,10 +28,17 @@ import java.util.Optional;
 public class UserServiceImpl implements UserService {
 
     private final UsersRepository usersRepository;
+    private final CurrentUserResponseCache currentUserCache;
+    private final UserDetailsCache userDetailsCache;
+    private final PrimaryReads primaryReads;
 
     @Autowired
-    public UserServiceImpl(UsersRepository usersRepository) {
+    public UserServiceImpl(UsersRepository usersRepository, CurrentUserResponseCache currentUserCache,
+                           UserDetailsCache userDetailsCache, PrimaryReads primaryReads) {
         this.usersRepository = usersRepository;
+        this.currentUserCache = currentUserCache;
+        this.userDetailsCache = userDetailsCache;
+        this.primaryReads = primaryReads;
     }
 
     @Override
@@ -38,7 +50,22 @@ public class UserServiceImpl implements UserService {
     @Override
     public Optional<User> findByEmail(String email) {
         log.debug("Searching for user by email: {}", email);
-        return usersRepository.findByEmail(email);
+        String emailLc = User.normalize(email);
+        if (emailLc == null) {
+            return Optional.empty();
+        }
+        return usersRepository.findByEmailLc(emailLc)
+                .or(() -> usersRepository.findFirstByEmailAndEmailLcIsNullOrderByIdAsc(email));
+    }
+
+    @Override
+    public boolean isUsernameTaken(String username) {
+        return usersRepository.existsByUsernameLc(User.normalize(username));
+    }
+
+    @Override
+    public boolean isEmailTaken(String email) {
+        return usersRepository.existsByEmailLc(User.normalize(email));
     }
 
     @Override
@@ -56,7 +83,10 @@ public class UserServiceImpl implements UserService {
     @Transactional
     public User save(User user) {
         log.debug("Saving user: {}", user.getUsername());
-        return usersRepository.save(user);
+        User saved = usersRepository.save(user);
+        currentUserCache.put(toResponse(saved));
+        userDetailsCache.put(saved);
+        return saved;
     }
 
     @Override
@@ -67,12 +97,20 @@ public class UserServiceImpl implements UserService {
             throw new UserNotFoundException("User with id " + id + " not found");
         }
         usersRepository.deleteById(id);
+        currentUserCache.invalidate(id);
+        userDetailsCache.invalidate(id);
     }
 
     @Override
     public Long getCurrentUserId() {
         Authentication auth = SecurityContextHolder.getContext().getAuthentication();
         UserDetailsImpl userDetails = (UserDetailsImpl) auth.getPrincipal();
+
+        // JwtFilter уже загрузил пользователя на этот запрос - повторно в БД не ходим
+        if (userDetails.getId() != null) {
+            return userDetails.getId();
+        }
+
         return findByUsername(userDetails.getUsername())
                 .orElseThrow(() -> new UserNotFoundException("User not found!"))
                 .getId();
@@ -80,27 +118,19 @@ public class UserServiceImpl implements UserService {
 
     @Override
     public CurrentUserResponse getCurrentUserResponse() {
-        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
-        UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
-
-        User user = this.findByUsername(userDetails.getUsername())
-                .orElseThrow(() -> new UserNotFoundException("Current user not found"));
+        return getCurrentUserEntry().response();
+    }
 
-        // Строим безопасный ответ
-        return CurrentUserResponse.builder()
-                .id(user.getId())
-                .username(user.getUsername())
-                .email(user.getEmail())
-                .role(user.getRole())
-                .profilePictureUrl(user.getProfilePictureUrl())
-                .createdAt(user.getCreatedAt())
-                //Пока всем FREE
-                .subscriptionPlan("FREE")
-                .subscriptionExpiresAt(null)
-                .build();
+    @Override
+    public CurrentUserResponseCache.Entry getCurrentUserEntry() {
+        Long userId = getCurrentUserId();
+        // Промах бывает сразу после сброса с другого узла - реплика могла ещё не догнать изменение
+        return currentUserCache.get(userId, () -> primaryReads.call(() -> toResponse(usersRepository.findById(userId)
+                .orElseThrow(() -> new UserNotFoundException("Current user not found")))));
     }
 
     @Override
+    @Transactional
     public CurrentUserResponse updateCurrentUserResponse(Map<String, String> updates) {
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         UserDetailsImpl userDetails = (UserDetailsImpl) authentication.getPrincipal();
@@ -110,22 +140,36 @@ public class UserServiceImpl implements UserService {
 
         // Обновляем только разрешенные поля
         if (updates.containsKey("email")) {
-            currentUser.setEmail(updates.get("email"));
+            String email = updates.get("email");
+            // Свой же email в другом регистре - не смена. У старого почти-дубликата email_lc пуст,
+            // а нормализованное значение занято более ранней записью - его не трогаем
+            boolean sameEmail = Objects.equals(User.normalize(email), User.normalize(currentUser.getEmail()));
+            if (!sameEmail && isEmailTaken(email)) {
+                throw new UserValidationException("A user with this email already exists!");
+            }
+            if (!sameEmail || currentUser.getEmailLc() != null) {
+                currentUser.setEmail(email);
+            }
         }
 
         if (updates.containsKey("profilePictureUrl")) {
             currentUser.setProfilePictureUrl(updates.get("profilePictureUrl"));
         }
 
-        User updatedUser = this.save(currentUser);
+        // save() сам обновит кэш /me после коммита
+        return toResponse(this.save(currentUser));
+    }
 
+    // Безопасный ответ: без пароля и refresh token
+    private static CurrentUserResponse toResponse(User user) {
         return CurrentUserResponse.builder()
-                .id(updatedUser.getId())
-                .username(updatedUser.getUsername())
-                .email(updatedUser.getEmail())
-                .role(updatedUser.getRole())
-                .profilePictureUrl(updatedUser.getProfilePictureUrl())
-                .createdAt(updatedUser.getCreatedAt())
+                .id(user.getId())
+                .username(user.getUsername())
+                .email(user.getEmail())
+                .role(user.getRole())
+                .profilePictureUrl(user.getProfilePictureUrl())
+                .createdAt(user.getCreatedAt())
+                //Пока всем FREE
                 .subscriptionPlan("FREE")
                 .subscriptionExpiresAt(null)
                 .build();
@@ -0,0 +1,7 @@
+package com.amazingshop.personal.userservice.util.exceptions;
+
+public class ChatNotFoundException extends RuntimeException {
+    public ChatNotFoundException(String message) {
+        super(message);
+    }
+}
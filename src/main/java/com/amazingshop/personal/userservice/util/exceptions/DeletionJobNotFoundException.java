@@ -0,0 +1,7 @@
+package com.amazingshop.personal.userservice.util.exceptions;
+
+public class DeletionJobNotFoundException extends RuntimeException {
+    public DeletionJobNotFoundException(String message) {
+        super(message);
+    }
+}
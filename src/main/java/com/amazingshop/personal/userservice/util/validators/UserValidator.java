@@ -8,7 +8,6 @@ import org.springframework.stereotype.Component;
 import org.springframework.validation.Errors;
 import org.springframework.validation.Validator;
 
-import java.util.Optional;
 import java.util.regex.Pattern;
 
 @Component
@@ -54,8 +53,8 @@ public class UserValidator implements Validator {
             throw new UserValidationException("Username should be between 2 and 30 characters!");
         }
 
-        Optional<User> existingUser = userService.findByUsername(username);
-        if (existingUser.isPresent()){
+        // Без учёта регистра: "Bob" занят, если есть "bob"
+        if (userService.isUsernameTaken(username)){
             throw new UserValidationException("A user with this username already exists!");
         }
     }
@@ -69,8 +68,7 @@ public class UserValidator implements Validator {
             throw new UserValidationException("Invalid email format!");
         }
 
-        Optional<User> existingUser = userService.findByEmail(email);
-        if (existingUser.isPresent()) {
+        if (userService.isEmailTaken(email)) {
             throw new UserValidationException("A user with this email already exists!");
         }
     }
@@ -0,0 +1,74 @@
+package db.migration;
+
+import com.amazingshop.personal.userservice.models.User;
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Имя и email в нижнем регистре: поиск и проверка занятости без учёта регистра по уникальным индексам.
+ * <p>
+ * Значения считаются тем же {@link User#normalize}, что и в приложении: LOWER() в SQL не обрезает
+ * пробелы и зависит от локали базы, и запись могла бы получить ключ, который приложение никогда не ищет.
+ * <p>
+ * У старых почти-дубликатов ("Bob" и "bob") значение получает только самая ранняя запись,
+ * остальные остаются с NULL: входят по точному username и находятся по точному email,
+ * а при смене email получают нормализованное значение.
+ */
+public class V13__add_normalized_identity_columns extends BaseJavaMigration {
+
+    private static final int BATCH_SIZE = 1000;
+
+    @Override
+    public void migrate(Context context) throws SQLException {
+        Connection connection = context.getConnection();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("ALTER TABLE Users ADD COLUMN username_lc VARCHAR(30)");
+            statement.execute("ALTER TABLE Users ADD COLUMN email_lc VARCHAR");
+        }
+
+        // Порядок по id: занятое значение остаётся за более ранней записью
+        Set<String> usernames = new HashSet<>();
+        Set<String> emails = new HashSet<>();
+        try (PreparedStatement select = connection.prepareStatement(
+                "SELECT id, username, email FROM Users WHERE id > ? ORDER BY id LIMIT " + BATCH_SIZE);
+             PreparedStatement update = connection.prepareStatement(
+                     "UPDATE Users SET username_lc = ?, email_lc = ? WHERE id = ?")) {
+            long afterId = 0;
+            int rows;
+            do {
+                select.setLong(1, afterId);
+                rows = 0;
+                try (ResultSet resultSet = select.executeQuery()) {
+                    while (resultSet.next()) {
+                        afterId = resultSet.getLong("id");
+                        String usernameLc = claim(usernames, User.normalize(resultSet.getString("username")));
+                        String emailLc = claim(emails, User.normalize(resultSet.getString("email")));
+                        update.setString(1, usernameLc);
+                        update.setString(2, emailLc);
+                        update.setLong(3, afterId);
+                        update.addBatch();
+                        rows++;
+                    }
+                }
+                update.executeBatch();
+            } while (rows == BATCH_SIZE);
+        }
+
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("CREATE UNIQUE INDEX ux_users_username_lc ON Users(username_lc)");
+            statement.execute("CREATE UNIQUE INDEX ux_users_email_lc ON Users(email_lc)");
+        }
+    }
+
+    private static String claim(Set<String> taken, String value) {
+        return value != null && taken.add(value) ? value : null;
+    }
+}
@@ -0,0 +1,10 @@
+-- Аренды фоновых задач: на нескольких узлах задачу выполняет только взявший аренду
+CREATE TABLE Maintenance_Leases (
+    name VARCHAR(100) PRIMARY KEY,
+    owner VARCHAR(200) NOT NULL,
+    leased_until TIMESTAMP NOT NULL
+);
+
+-- Очистка по сроку хранения идёт порциями по этим индексам
+CREATE INDEX idx_user_refresh_token_expiry ON Users(refresh_token_expiry);
+CREATE INDEX idx_message_created_at ON Chat_Messages(created_at);
@@ -0,0 +1,8 @@
+-- Число токенов сообщения: считается один раз при вставке (Tokenizer), чтобы бюджет контекста
+-- AI-сервиса набирался без чтения content.
+-- Старые строки не переписываются здесь одним UPDATE по всей таблице: у них остаётся NULL,
+-- их порциями досчитывает TokenCountBackfiller тем же Tokenizer, а до тех пор контекст считает их на лету
+ALTER TABLE Chat_Messages ADD COLUMN token_count INTEGER;
+
+-- Обратный проход по чату с накопительной суммой читает только этот индекс
+CREATE INDEX idx_message_chat_id_token_count ON Chat_Messages (chat_id, id, token_count);
@@ -0,0 +1,11 @@
+-- Скользящее краткое содержание старой части чата для контекста AI-сервиса:
+-- сообщения с id <= last_message_id свёрнуты в content, в контекст идут только более новые
+CREATE TABLE Chat_Rolling_Summaries (
+    chat_id BIGINT PRIMARY KEY,
+    content TEXT NOT NULL,
+    token_count INT NOT NULL,
+    last_message_id BIGINT NOT NULL,
+    message_count INT NOT NULL,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT fk_rolling_summary_chat FOREIGN KEY (chat_id) REFERENCES Chats(id) ON DELETE CASCADE
+);
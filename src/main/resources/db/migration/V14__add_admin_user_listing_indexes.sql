@@ -0,0 +1,5 @@
+-- Админский список пользователей (GET /admin/users): keyset-страницы по каждой сортировке.
+-- username уже покрыт уникальным индексом из V1, id - первичным ключом
+CREATE INDEX idx_users_created_at_id ON Users(created_at, id);
+CREATE INDEX idx_users_role_created_at_id ON Users(role, created_at, id);
+CREATE INDEX idx_users_email_id ON Users(email, id);
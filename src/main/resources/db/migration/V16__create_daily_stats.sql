@@ -0,0 +1,17 @@
+-- Дневные сводки для админской панели (см. DailyStatsAggregator): строка на день и предмет чата,
+-- subject - имя предмета из Subject, 'OTHER' - чаты без предмета или с неизвестным, '*' - итог дня по всем.
+-- closed - день пересчитан после своего окончания и больше не меняется
+CREATE TABLE Daily_Stats (
+    stat_date DATE NOT NULL,
+    subject VARCHAR(20) NOT NULL,
+    new_users BIGINT NOT NULL,
+    new_chats BIGINT NOT NULL,
+    messages BIGINT NOT NULL,
+    active_users BIGINT NOT NULL,
+    closed BOOLEAN NOT NULL,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (stat_date, subject)
+);
+
+-- Пересчёт дня читает только его диапазон: Users и Chat_Messages уже по индексам created_at (V14, V10)
+CREATE INDEX idx_chat_created_at ON Chats(created_at);
@@ -0,0 +1,20 @@
+-- Удаление аккаунта - фоновая задача (см. AccountDeleter): вход закрывается сразу,
+-- история чатов удаляется порциями, сам пользователь - последним
+ALTER TABLE Users ADD COLUMN deletion_requested_at TIMESTAMP;
+
+-- Задача на пользователя одна; внешнего ключа нет - строка переживает удалённого пользователя как отчёт
+CREATE TABLE Account_Deletion_Jobs (
+    id VARCHAR(36) PRIMARY KEY,
+    user_id BIGINT NOT NULL UNIQUE,
+    status VARCHAR(20) NOT NULL,
+    chats_deleted BIGINT NOT NULL DEFAULT 0,
+    messages_deleted BIGINT NOT NULL DEFAULT 0,
+    attempts INT NOT NULL DEFAULT 0,
+    error VARCHAR(500),
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    finished_at TIMESTAMP
+);
+
+-- Подбор незавершённых задач после перезапуска
+CREATE INDEX idx_account_deletion_jobs_status ON Account_Deletion_Jobs(status);
@@ -0,0 +1,19 @@
+-- Фоновое удаление всех чатов пользователя (см. ChatBulkDeleter): задача видна всем узлам,
+-- прерванная перезапуском продолжается с того же места
+CREATE TABLE Chat_Deletion_Jobs (
+    id VARCHAR(36) PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    chats_deleted BIGINT NOT NULL DEFAULT 0,
+    messages_deleted BIGINT NOT NULL DEFAULT 0,
+    attempts INT NOT NULL DEFAULT 0,
+    error VARCHAR(500),
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    finished_at TIMESTAMP,
+    CONSTRAINT fk_chat_deletion_job_user FOREIGN KEY (user_id) REFERENCES Users(id) ON DELETE CASCADE
+);
+
+-- Активная задача пользователя и подбор незавершённых после перезапуска
+CREATE INDEX idx_chat_deletion_jobs_user_status ON Chat_Deletion_Jobs(user_id, status);
+CREATE INDEX idx_chat_deletion_jobs_status ON Chat_Deletion_Jobs(status);
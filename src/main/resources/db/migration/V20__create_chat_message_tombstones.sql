@@ -0,0 +1,13 @@
+-- Следы сообщений, удалённых очисткой по сроку хранения: клиент дельта-синхронизации
+-- убирает их у себя так же, как удалённые чаты. Компактируются вместе со следами чатов
+CREATE TABLE Chat_Message_Tombstones (
+    message_id BIGINT PRIMARY KEY,
+    chat_id BIGINT NOT NULL,
+    user_id BIGINT NOT NULL,
+    change_seq BIGINT NOT NULL,
+    deleted_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT fk_message_tombstone_user FOREIGN KEY (user_id) REFERENCES Users(id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_message_tombstone_user_change_seq ON Chat_Message_Tombstones(user_id, change_seq);
+CREATE INDEX idx_message_tombstone_deleted_at ON Chat_Message_Tombstones(deleted_at);
@@ -0,0 +1,4 @@
+-- Список чатов и его версия (count + max(updated_at)) читаются по (user_id, updated_at)
+CREATE INDEX idx_chat_user_updated ON Chats(user_id, updated_at DESC);
+
+DROP INDEX idx_chat_user_id;
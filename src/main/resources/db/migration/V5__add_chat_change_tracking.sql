@@ -0,0 +1,29 @@
+-- Монотонная последовательность изменений для дельта-синхронизации клиентов
+CREATE SEQUENCE chat_change_seq;
+
+ALTER TABLE Chats ADD COLUMN change_seq BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE Chat_Messages ADD COLUMN change_seq BIGINT NOT NULL DEFAULT 0;
+
+CREATE INDEX idx_chat_user_change_seq ON Chats(user_id, change_seq);
+CREATE INDEX idx_message_chat_change_seq ON Chat_Messages(chat_id, change_seq);
+
+-- Следы удалённых чатов, периодически компактируются
+CREATE TABLE Chat_Tombstones (
+    chat_id BIGINT PRIMARY KEY,
+    user_id BIGINT NOT NULL,
+    change_seq BIGINT NOT NULL,
+    deleted_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT fk_tombstone_user FOREIGN KEY (user_id) REFERENCES Users(id) ON DELETE CASCADE
+);
+
+CREATE INDEX idx_tombstone_user_change_seq ON Chat_Tombstones(user_id, change_seq);
+CREATE INDEX idx_tombstone_deleted_at ON Chat_Tombstones(deleted_at);
+
+-- Наибольший change_seq среди уже удалённых компактором следов:
+-- клиенту с более старым watermark нужна полная пересинхронизация
+CREATE TABLE Chat_Sync_Horizon (
+    id INT PRIMARY KEY,
+    purged_change_seq BIGINT NOT NULL
+);
+
+INSERT INTO Chat_Sync_Horizon (id, purged_change_seq) VALUES (1, 0);
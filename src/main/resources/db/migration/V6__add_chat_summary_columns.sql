@@ -0,0 +1,14 @@
+-- Денормализованная сводка для сайдбара: список чатов рисуется без чтения сообщений
+ALTER TABLE Chats ADD COLUMN message_count INT NOT NULL DEFAULT 0;
+ALTER TABLE Chats ADD COLUMN last_message_preview VARCHAR(200);
+ALTER TABLE Chats ADD COLUMN last_message_role VARCHAR(10);
+ALTER TABLE Chats ADD COLUMN last_message_at TIMESTAMP;
+
+UPDATE Chats c SET
+    message_count = (SELECT COUNT(*) FROM Chat_Messages m WHERE m.chat_id = c.id),
+    last_message_at = (SELECT MAX(m.created_at) FROM Chat_Messages m WHERE m.chat_id = c.id),
+    last_message_preview = (SELECT SUBSTRING(m.content, 1, 200) FROM Chat_Messages m
+                            WHERE m.chat_id = c.id ORDER BY m.id DESC LIMIT 1),
+    last_message_role = (SELECT m.role FROM Chat_Messages m
+                         WHERE m.chat_id = c.id ORDER BY m.id DESC LIMIT 1)
+WHERE EXISTS (SELECT 1 FROM Chat_Messages m WHERE m.chat_id = c.id);
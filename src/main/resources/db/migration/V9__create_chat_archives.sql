@@ -0,0 +1,12 @@
+-- Холодный архив: история чата, неактивного дольше N дней, хранится одним
+-- сжатым блобом, а её строки уходят из Chat_Messages и её индексов
+CREATE TABLE Chat_Archives (
+    chat_id BIGINT PRIMARY KEY,
+    message_count INT NOT NULL,
+    payload BYTEA NOT NULL,
+    archived_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CONSTRAINT fk_archive_chat FOREIGN KEY (chat_id) REFERENCES Chats(id) ON DELETE CASCADE
+);
+
+-- Поиск кандидатов в архив по давности последнего изменения
+CREATE INDEX idx_chat_updated_at ON Chats(updated_at);
@@ -0,0 +1,237 @@
+package com.amazingshop.personal.userservice;
+
+import com.amazingshop.personal.userservice.enums.Role;
+import com.amazingshop.personal.userservice.models.User;
+import com.amazingshop.personal.userservice.repositories.UsersRepository;
+import com.amazingshop.personal.userservice.security.jwt.JwtUtil;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Сравнение платформенных и виртуальных потоков Tomcat при медленной БД.
+ * <p>
+ * Каждый запрос к БД искусственно задерживается на {@link #DB_LATENCY}, пул соединений больше
+ * числа платформенных потоков Tomcat - так потолок задаёт именно число потоков, а не БД.
+ * 2000 клиентов держат по одному соединению и шлют GET /users/me (два запроса к БД: фильтр JWT и контроллер).
+ * <p>
+ * Запуск: {@code ./mvnw test -Pload-test}
+ */
+@Tag("load")
+class ThreadingLoadComparisonTest {
+
+    // Параметры можно переопределить: ./mvnw test -Pload-test -Dload.clients=500 -Dload.db-latency-ms=100
+    private static final int CLIENTS = Integer.getInteger("load.clients", 2000);
+    private static final int POOL_SIZE = Integer.getInteger("load.pool-size", 1000);
+    private static final Duration DB_LATENCY = Duration.ofMillis(Long.getLong("load.db-latency-ms", 1000));
+    private static final Duration WARM_UP = Duration.ofSeconds(Long.getLong("load.warm-up-s", 5));
+    private static final Duration MEASUREMENT = Duration.ofSeconds(Long.getLong("load.measurement-s", 15));
+
+    @Test
+    @DisplayName("сравнение пропускной способности платформенных и виртуальных потоков при медленной БД")
+    void compareThreadingModes() throws Exception {
+        Result platform = run(false);
+        Result virtual = run(true);
+
+        System.out.printf("%n%-10s %10s %10s %10s %8s%n", "threads", "req/s", "p50, ms", "p99, ms", "errors");
+        for (Result result : List.of(platform, virtual)) {
+            System.out.printf("%-10s %10.0f %10d %10d %8d%n", result.mode(), result.throughput(),
+                    result.p50Millis(), result.p99Millis(), result.errors());
+        }
+
+        // Соотношение зависит от железа: если упираемся в CPU, а не в потоки, режимы сравняются
+        assertTrue(platform.throughput() > 0, "Нет ни одного успешного ответа: " + platform);
+        assertTrue(virtual.throughput() > 0, "Нет ни одного успешного ответа: " + virtual);
+    }
+
+    private Result run(boolean virtualThreads) throws Exception {
+        String mode = virtualThreads ? "virtual" : "platform";
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(UserServiceApplication.class)
+                .profiles("test")
+                .initializers(ctx -> ctx.getBeanFactory().addBeanPostProcessor(new SlowDatabase()))
+                // Аргументами командной строки, а не properties(): те лишь значения по умолчанию и проигрывают application.yml
+                .run("--server.port=0",
+                        "--spring.threads.virtual.enabled=" + virtualThreads,
+                        "--spring.datasource.url=jdbc:h2:mem:load-" + mode + ";DB_CLOSE_DELAY=-1",
+                        "--spring.datasource.hikari.maximum-pool-size=" + POOL_SIZE,
+                        "--spring.datasource.hikari.minimum-idle=" + POOL_SIZE,
+                        "--server.tomcat.threads.max=200",
+                        "--server.tomcat.max-connections=" + (CLIENTS * 2),
+                        "--server.tomcat.accept-count=" + CLIENTS,
+                        "--spring.jpa.properties.hibernate.generate_statistics=false",
+                        "--spring.jpa.properties.hibernate.show_sql=false",
+                        "--logging.level.root=ERROR",
+                        "--logging.level.com.amazingshop=ERROR")) {
+
+            int port = ((ServletWebServerApplicationContext) context).getWebServer().getPort();
+            String token = seedUser(context);
+            HttpRequest request = HttpRequest.newBuilder(URI.create("http://localhost:" + port + "/api/v1/users/me"))
+                    .header("Authorization", "Bearer " + token)
+                    .timeout(Duration.ofSeconds(60))
+                    .build();
+
+            try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor();
+                 HttpClient httpClient = HttpClient.newBuilder()
+                         .version(HttpClient.Version.HTTP_1_1)
+                         .executor(clients)
+                         .build()) {
+                load(httpClient, clients, request, WARM_UP, null);
+                Queue<Long> latencies = new ConcurrentLinkedQueue<>();
+                LongAdder errors = new LongAdder();
+                load(httpClient, clients, request, MEASUREMENT, new Recorder(latencies, errors));
+                return Result.of(mode, latencies, errors.sum(), MEASUREMENT);
+            }
+        }
+    }
+
+    private static String seedUser(ConfigurableApplicationContext context) {
+        User user = new User();
+        user.setUsername("loadUser");
+        user.setEmail("load@example.com");
+        user.setPassword("password");
+        user.setRole(Role.USER);
+        context.getBean(UsersRepository.class).save(user);
+        return context.getBean(JwtUtil.class).generateAccessToken(user.getUsername());
+    }
+
+    private static void load(HttpClient httpClient, ExecutorService clients, HttpRequest request,
+                             Duration duration, Recorder recorder) throws Exception {
+        long deadline = System.nanoTime() + duration.toNanos();
+        List<Future<?>> futures = new ArrayList<>(CLIENTS);
+        for (int i = 0; i < CLIENTS; i++) {
+            futures.add(clients.submit(() -> {
+                while (System.nanoTime() < deadline) {
+                    long start = System.nanoTime();
+                    try {
+                        HttpResponse<Void> response = httpClient.send(request, HttpResponse.BodyHandlers.discarding());
+                        if (recorder != null) {
+                            recorder.record(response.statusCode() == 200, System.nanoTime() - start);
+                        }
+                    } catch (Exception e) {
+                        if (recorder != null) {
+                            recorder.record(false, System.nanoTime() - start);
+                        }
+                    }
+                }
+                return null;
+            }));
+        }
+        for (Future<?> future : futures) {
+            future.get();
+        }
+    }
+
+    private record Recorder(Queue<Long> latencies, LongAdder errors) {
+
+        void record(boolean ok, long nanos) {
+            if (ok) {
+                latencies.add(nanos);
+            } else {
+                errors.increment();
+            }
+        }
+    }
+
+    private record Result(String mode, double throughput, long p50Millis, long p99Millis, long errors) {
+
+        static Result of(String mode, Queue<Long> latencies, long errors, Duration duration) {
+            List<Long> sorted = latencies.stream().sorted().toList();
+            return new Result(mode, sorted.size() * 1000.0 / duration.toMillis(),
+                    percentile(sorted, 0.50), percentile(sorted, 0.99), errors);
+        }
+
+        private static long percentile(List<Long> sorted, double quantile) {
+            if (sorted.isEmpty()) {
+                return 0;
+            }
+            return Duration.ofNanos(sorted.get((int) Math.ceil(quantile * sorted.size()) - 1)).toMillis();
+        }
+    }
+
+    /**
+     * Оборачивает DataSource так, что каждый запрос сначала ждёт {@link #DB_LATENCY} - как медленная БД,
+     * которая держит и соединение, и поток
+     */
+    private static final class SlowDatabase implements BeanPostProcessor {
+
+        @Override
+        public Object postProcessAfterInitialization(Object bean, String beanName) {
+            if (bean instanceof DataSource dataSource && !(bean instanceof DelegatingDataSource)) {
+                return new DelegatingDataSource(dataSource) {
+                    @Override
+                    public Connection getConnection() throws SQLException {
+                        return slow(super.getConnection());
+                    }
+                };
+            }
+            return bean;
+        }
+
+        private static Connection slow(Connection connection) {
+            return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                    new Class<?>[]{Connection.class}, (proxy, method, args) -> {
+                        Object result = invoke(connection, method, args);
+                        return result instanceof Statement statement ? slow(statement) : result;
+                    });
+        }
+
+        private static Statement slow(Statement statement) {
+            // Прокси должен реализовать PreparedStatement/CallableStatement, если их реализует исходный объект
+            return (Statement) Proxy.newProxyInstance(Statement.class.getClassLoader(), sqlInterfaces(statement.getClass()),
+                    (proxy, method, args) -> {
+                        if (method.getName().startsWith("execute")) {
+                            Thread.sleep(DB_LATENCY);
+                        }
+                        return invoke(statement, method, args);
+                    });
+        }
+
+        private static Class<?>[] sqlInterfaces(Class<?> type) {
+            List<Class<?>> interfaces = new ArrayList<>();
+            for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+                for (Class<?> candidate : current.getInterfaces()) {
+                    if (candidate.getName().startsWith("java.sql.") && !interfaces.contains(candidate)) {
+                        interfaces.add(candidate);
+                    }
+                }
+            }
+            return interfaces.toArray(Class<?>[]::new);
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
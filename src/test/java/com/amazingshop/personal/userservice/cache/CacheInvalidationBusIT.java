@@ -0,0 +1,108 @@
+package com.amazingshop.personal.userservice.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Два узла с общей шиной на настоящем PostgreSQL
+ */
+class CacheInvalidationBusIT {
+
+    private static EmbeddedPostgres postgres;
+
+    private CacheInvalidationBus nodeA;
+    private CacheInvalidationBus nodeB;
+    private final List<String> evictedOnB = new CopyOnWriteArrayList<>();
+    private final AtomicInteger flushesOnB = new AtomicInteger();
+
+    @BeforeAll
+    static void startPostgres() throws IOException {
+        postgres = EmbeddedPostgres.start();
+    }
+
+    @AfterAll
+    static void stopPostgres() throws IOException {
+        if (postgres != null) {
+            postgres.close();
+        }
+    }
+
+    @BeforeEach
+    void setUp() {
+        nodeA = node();
+        nodeB = node();
+        nodeB.subscribe("users.me", evictedOnB::add, flushesOnB::incrementAndGet);
+        nodeA.start();
+        nodeB.start();
+        // Первое подключение слушателя сбрасывает кэш - дожидаемся его
+        await(() -> flushesOnB.get() == 1);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        nodeA.stop();
+        nodeB.stop();
+    }
+
+    @Test
+    @DisplayName("publish: ключ с одного узла должен выбрасываться на другом")
+    void publish_ShouldEvictOnOtherNode() {
+        nodeA.publish("users.me", "5");
+        nodeA.publishAll("users.me", List.of("6", "7"));
+
+        await(() -> evictedOnB.size() == 3);
+        assertEquals(List.of("5", "6", "7"), evictedOnB);
+        assertEquals(1, flushesOnB.get());
+    }
+
+    @Test
+    @DisplayName("listener: после обрыва соединения должен переподключиться и сбросить кэш")
+    void listener_ShouldReconnectAndFlush() {
+        new JdbcTemplate(postgres.getPostgresDatabase()).queryForList(
+                "SELECT pg_terminate_backend(pid) FROM pg_stat_activity " +
+                        "WHERE application_name = 'cache-invalidation-listener'");
+
+        await(() -> flushesOnB.get() >= 2);
+
+        nodeA.publish("users.me", "8");
+        await(() -> evictedOnB.contains("8"));
+    }
+
+    private static CacheInvalidationBus node() {
+        DataSourceProperties properties = new DataSourceProperties();
+        properties.setUrl(postgres.getJdbcUrl("postgres", "postgres"));
+        properties.setUsername("postgres");
+        properties.setPassword("");
+        return new CacheInvalidationBus(new JdbcTemplate(postgres.getPostgresDatabase()), properties,
+                new SimpleMeterRegistry(), true, "cache_invalidation", 100, 500, 50, 200, 1000);
+    }
+
+    private static void await(BooleanSupplier condition) {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, "Условие не выполнилось за 10 секунд");
+            try {
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                fail(e);
+            }
+        }
+    }
+}
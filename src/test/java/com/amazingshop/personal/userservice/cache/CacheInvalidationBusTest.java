@@ -0,0 +1,103 @@
+package com.amazingshop.personal.userservice.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class CacheInvalidationBusTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private CacheInvalidationBus bus;
+    private List<String> evicted;
+    private AtomicInteger flushes;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        // Потоки не запускаются - сообщения подаются напрямую в receive
+        bus = new CacheInvalidationBus(mock(JdbcTemplate.class), new DataSourceProperties(), meterRegistry,
+                true, "test_channel", 100, 500, 100, 1000, 1000);
+        evicted = new ArrayList<>();
+        flushes = new AtomicInteger();
+        bus.subscribe("users.me", evicted::add, flushes::incrementAndGet);
+    }
+
+    @Test
+    @DisplayName("encode/decode: ключи с пробелами и переводами строк должны доходить без искажений")
+    void encode_ShouldRoundTripKeys() {
+        List<CacheInvalidationBus.Key> keys = List.of(
+                new CacheInvalidationBus.Key("users.details", "name with space\nand newline"),
+                new CacheInvalidationBus.Key("chat.tail", "42"));
+
+        CacheInvalidationBus.Message message = CacheInvalidationBus.decode(CacheInvalidationBus.encode("node1", 7, keys));
+
+        assertEquals("node1", message.nodeId());
+        assertEquals(7, message.seq());
+        assertEquals(keys, message.keys());
+    }
+
+    @Test
+    @DisplayName("chunk: пачка должна делиться на сообщения не длиннее лимита NOTIFY")
+    void chunk_ShouldRespectPayloadLimit() {
+        Set<CacheInvalidationBus.Key> keys = new LinkedHashSet<>();
+        IntStream.range(0, 2000).forEach(i -> keys.add(new CacheInvalidationBus.Key("chat.tail", "10000" + i)));
+
+        List<List<CacheInvalidationBus.Key>> chunks = CacheInvalidationBus.chunk(keys);
+
+        assertTrue(chunks.size() > 1);
+        assertEquals(2000, chunks.stream().mapToInt(List::size).sum());
+        for (List<CacheInvalidationBus.Key> chunk : chunks) {
+            assertTrue(CacheInvalidationBus.encode("abcdef12", Long.MAX_VALUE, chunk).length()
+                    <= CacheInvalidationBus.MAX_PAYLOAD_BYTES);
+        }
+    }
+
+    @Test
+    @DisplayName("receive: ключи другого узла должны выбрасываться в подписанном регионе")
+    void receive_ShouldEvictKeysOfSubscribedRegion() {
+        bus.receive(payload("other", 1, "users.me", "5"));
+        bus.receive(payload("other", 2, "chat.tail", "9"));
+
+        assertEquals(List.of("5"), evicted);
+        assertEquals(0, flushes.get());
+    }
+
+    @Test
+    @DisplayName("receive: пропуск в номерах должен сбрасывать кэш целиком")
+    void receive_ShouldFlush_WhenSequenceHasGap() {
+        bus.receive(payload("other", 1, "users.me", "5"));
+        bus.receive(payload("other", 3, "users.me", "6"));
+
+        assertEquals(List.of("5"), evicted);
+        assertEquals(1, flushes.get());
+        assertEquals(1.0, meterRegistry.get(CacheInvalidationBus.METRIC_NAME + ".flushes")
+                .tag("reason", "gap").counter().count());
+    }
+
+    @Test
+    @DisplayName("receive: собственные сообщения узла должны пропускаться")
+    void receive_ShouldIgnoreOwnMessages() {
+        bus.receive(payload(bus.nodeId(), 1, "users.me", "5"));
+        bus.receive("garbage");
+
+        assertTrue(evicted.isEmpty());
+        assertEquals(0, flushes.get());
+    }
+
+    private static String payload(String nodeId, long seq, String region, String key) {
+        return CacheInvalidationBus.encode(nodeId, seq, List.of(new CacheInvalidationBus.Key(region, key)));
+    }
+}
@@ -0,0 +1,128 @@
+package com.amazingshop.personal.userservice.cache;
+
+import com.amazingshop.personal.userservice.models.ChatMessage;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class ChatMessageTailCacheTest {
+
+    private static final Long CHAT_ID = 10L;
+    private static final Long OWNER_ID = 1L;
+    private static final int TAIL_SIZE = 3;
+
+    private SimpleMeterRegistry meterRegistry;
+    private ChatMessageTailCache cache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new ChatMessageTailCache(TAIL_SIZE, 1_000_000, meterRegistry, mock(CacheInvalidationBus.class));
+    }
+
+    @Test
+    @DisplayName("put: короткий чат должен кэшироваться целиком")
+    void put_ShouldStoreCompleteHistory_WhenChatIsShort() {
+        cache.put(CHAT_ID, OWNER_ID, messages(1, 2), cache.stamp(CHAT_ID));
+
+        ChatMessageTailCache.Tail tail = cache.get(CHAT_ID);
+
+        assertNotNull(tail);
+        assertTrue(tail.complete());
+        assertEquals(2, tail.messages().size());
+    }
+
+    @Test
+    @DisplayName("put: длинный чат должен кэшироваться только последними N сообщениями")
+    void put_ShouldStoreOnlyTail_WhenChatIsLong() {
+        cache.put(CHAT_ID, OWNER_ID, messages(1, 5), cache.stamp(CHAT_ID));
+
+        ChatMessageTailCache.Tail tail = cache.get(CHAT_ID);
+
+        assertFalse(tail.complete());
+        assertEquals(List.of(3L, 4L, 5L), ids(tail));
+    }
+
+    @Test
+    @DisplayName("put: не должен класть устаревший список, если в чат успели записать")
+    void put_ShouldSkip_WhenChatWasWrittenDuringRead() {
+        long stamp = cache.stamp(CHAT_ID);
+        cache.append(CHAT_ID, message(3));
+
+        cache.put(CHAT_ID, OWNER_ID, messages(1, 2), stamp);
+
+        assertNull(cache.get(CHAT_ID));
+    }
+
+    @Test
+    @DisplayName("append: должен дописать сообщение и сдвинуть хвост")
+    void append_ShouldUpdateTailInPlace() {
+        cache.put(CHAT_ID, OWNER_ID, messages(1, 3), cache.stamp(CHAT_ID));
+
+        cache.append(CHAT_ID, message(4));
+
+        ChatMessageTailCache.Tail tail = cache.get(CHAT_ID);
+        assertFalse(tail.complete());
+        assertEquals(List.of(2L, 3L, 4L), ids(tail));
+    }
+
+    @Test
+    @DisplayName("append: не должен дублировать уже прочитанное из БД сообщение")
+    void append_ShouldIgnoreAlreadyCachedMessage() {
+        cache.put(CHAT_ID, OWNER_ID, messages(1, 2), cache.stamp(CHAT_ID));
+
+        cache.append(CHAT_ID, message(2));
+
+        assertEquals(List.of(1L, 2L), ids(cache.get(CHAT_ID)));
+    }
+
+    @Test
+    @DisplayName("invalidate: должен удалить хвост чата")
+    void invalidate_ShouldDropEntry() {
+        cache.put(CHAT_ID, OWNER_ID, messages(1, 2), cache.stamp(CHAT_ID));
+
+        cache.invalidate(CHAT_ID);
+
+        assertNull(cache.get(CHAT_ID));
+    }
+
+    @Test
+    @DisplayName("metrics: должен публиковать hit ratio и объём кэша")
+    void metrics_ShouldBeRegistered() {
+        cache.put(CHAT_ID, OWNER_ID, messages(1, 2), cache.stamp(CHAT_ID));
+        cache.get(CHAT_ID);
+        cache.get(999L);
+
+        assertEquals(0.5, meterRegistry.get(ChatMessageTailCache.METRIC_NAME + ".hit.ratio").gauge().value());
+        assertTrue(meterRegistry.get(ChatMessageTailCache.METRIC_NAME + ".weight").gauge().value() >= 0);
+        assertNotNull(meterRegistry.find("cache.evictions").tag("cache", ChatMessageTailCache.METRIC_NAME).functionCounter());
+    }
+
+    private static List<ChatMessage> messages(long fromId, long toId) {
+        return LongStream.rangeClosed(fromId, toId)
+                .mapToObj(ChatMessageTailCacheTest::message)
+                .toList();
+    }
+
+    private static ChatMessage message(long id) {
+        ChatMessage message = new ChatMessage();
+        message.setId(id);
+        message.setChatId(CHAT_ID);
+        message.setRole("user");
+        message.setContent("Message " + id);
+        message.setCreatedAt(LocalDateTime.now());
+        return message;
+    }
+
+    private static List<Long> ids(ChatMessageTailCache.Tail tail) {
+        return tail.messages().stream().map(ChatMessage::getId).toList();
+    }
+}
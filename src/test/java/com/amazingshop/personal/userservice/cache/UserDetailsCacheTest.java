@@ -0,0 +1,123 @@
+package com.amazingshop.personal.userservice.cache;
+
+import com.amazingshop.personal.userservice.enums.Role;
+import com.amazingshop.personal.userservice.models.User;
+import com.amazingshop.personal.userservice.security.details.UserDetailsImpl;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+public class UserDetailsCacheTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private UserDetailsCache cache;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        cache = new UserDetailsCache(100, 60, meterRegistry, mock(CacheInvalidationBus.class));
+    }
+
+    @Test
+    @DisplayName("get: повторная загрузка того же пользователя не должна идти в БД")
+    void get_ShouldLoadOnce() {
+        AtomicInteger loads = new AtomicInteger();
+
+        Optional<UserDetailsImpl> first = cache.get("alice", name -> {
+            loads.incrementAndGet();
+            return Optional.of(user(1L, name, Role.USER));
+        });
+        Optional<UserDetailsImpl> second = cache.get("alice", name -> fail("должно быть в кэше"));
+
+        assertEquals(1, loads.get());
+        assertSame(first.orElseThrow(), second.orElseThrow());
+        assertEquals(1.0, meterRegistry.get("cache.gets").tag("cache", UserDetailsCache.METRIC_NAME)
+                .tag("result", "hit").functionCounter().count());
+    }
+
+    @Test
+    @DisplayName("get: отсутствующий пользователь не должен кэшироваться")
+    void get_ShouldNotCacheMissingUser() {
+        assertTrue(cache.get("ghost", name -> Optional.empty()).isEmpty());
+
+        Optional<UserDetailsImpl> created = cache.get("ghost", name -> Optional.of(user(2L, name, Role.USER)));
+
+        assertTrue(created.isPresent());
+    }
+
+    @Test
+    @DisplayName("get: чтение в пишущей транзакции не должно попадать в кэш")
+    void get_ShouldBypassCache_InWriteTransaction() {
+        // Arrange: в кэше закоммиченный снимок, транзакция уже повысила роль
+        cache.put(user(6L, "erin", Role.USER));
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        Optional<UserDetailsImpl> inTransaction;
+        try {
+            // Act
+            inTransaction = cache.get("erin", name -> Optional.of(user(6L, name, Role.ADMIN)));
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+
+        // Assert: транзакция видит свои изменения, а в кэше остался закоммиченный снимок
+        assertEquals(Role.ADMIN, inTransaction.orElseThrow().getRole());
+        assertEquals(Role.USER, cache.get("erin", name -> fail("должно быть в кэше")).orElseThrow().getRole());
+    }
+
+    @Test
+    @DisplayName("get: промах в пишущей транзакции не должен кэшировать незакоммиченный снимок")
+    void get_ShouldNotCacheMiss_InWriteTransaction() {
+        TransactionSynchronizationManager.setActualTransactionActive(true);
+        try {
+            cache.get("frank", name -> Optional.of(user(7L, name, Role.ADMIN)));
+        } finally {
+            TransactionSynchronizationManager.setActualTransactionActive(false);
+        }
+
+        // Транзакция откатилась - после неё снимок читается заново
+        Optional<UserDetailsImpl> afterRollback = cache.get("frank", name -> Optional.of(user(7L, name, Role.USER)));
+        assertEquals(Role.USER, afterRollback.orElseThrow().getRole());
+    }
+
+    @Test
+    @DisplayName("put: снимок не должен меняться вместе с сущностью")
+    void put_ShouldStoreImmutableSnapshot() {
+        User user = user(3L, "bob", Role.USER);
+        cache.put(user);
+
+        user.setRole(Role.ADMIN);
+        user.setPassword("changed");
+
+        UserDetailsImpl details = cache.get("bob", name -> fail("должно быть в кэше")).orElseThrow();
+        assertEquals(Role.USER, details.getRole());
+        assertEquals("hash", details.getPassword());
+        assertEquals("ROLE_USER", details.getAuthorities().iterator().next().getAuthority());
+    }
+
+    @Test
+    @DisplayName("invalidate: должен выбросить снимок по id пользователя")
+    void invalidate_ShouldRemoveById() {
+        cache.put(user(4L, "carol", Role.USER));
+        cache.put(user(5L, "dave", Role.USER));
+
+        cache.invalidate(4L);
+
+        assertTrue(cache.get("carol", name -> Optional.empty()).isEmpty());
+        assertTrue(cache.get("dave", name -> Optional.empty()).isPresent());
+    }
+
+    private static User user(Long id, String username, Role role) {
+        User user = new User(username, "hash", username + "@test.com");
+        user.setId(id);
+        user.setRole(role);
+        return user;
+    }
+}
@@ -0,0 +1,300 @@
+package com.amazingshop.personal.userservice.controllers;
+
+import com.amazingshop.personal.userservice.enums.Role;
+import com.amazingshop.personal.userservice.interfaces.UserService;
+import com.amazingshop.personal.userservice.models.DailyStats;
+import com.amazingshop.personal.userservice.models.User;
+import com.amazingshop.personal.userservice.repositories.DailyStatsRepository;
+import com.amazingshop.personal.userservice.repositories.UsersRepository;
+import com.amazingshop.personal.userservice.security.jwt.JwtUtil;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@Transactional
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class AdminControllerIT {
+
+    private static final LocalDateTime BASE = LocalDateTime.of(2024, 3, 1, 12, 0);
+
+    private final MockMvc mockMvc;
+    private final ObjectMapper objectMapper;
+    private final JwtUtil jwtUtil;
+    private final UsersRepository usersRepository;
+    private final UserService userService;
+    private final DailyStatsRepository statsRepository;
+
+    private String adminToken;
+
+    @Autowired
+    AdminControllerIT(MockMvc mockMvc, ObjectMapper objectMapper, JwtUtil jwtUtil, UsersRepository usersRepository,
+                      UserService userService, DailyStatsRepository statsRepository) {
+        this.mockMvc = mockMvc;
+        this.objectMapper = objectMapper;
+        this.jwtUtil = jwtUtil;
+        this.usersRepository = usersRepository;
+        this.userService = userService;
+        this.statsRepository = statsRepository;
+    }
+
+    @BeforeEach
+    void setUp() {
+        User admin = saveUser("listingAdmin", "listing-admin@test.com", Role.ADMIN, BASE);
+        saveUser("listing1", "Listing1@Test.com", Role.USER, BASE.plusDays(1));
+        saveUser("listing2", "listing2@test.com", Role.USER, BASE.plusDays(2));
+        saveUser("listing3", "listing3@test.com", Role.USER, BASE.plusDays(3));
+        saveUser("other", "other@test.com", Role.USER, BASE.plusDays(4));
+        adminToken = jwtUtil.generateAccessToken(admin.getUsername());
+    }
+
+    @Test
+    @DisplayName("GET /admin/users: должен отдавать страницы по курсору без пропусков и повторов")
+    void listUsers_ShouldPageThroughCursor() throws Exception {
+        // Act: первая страница
+        String body = mockMvc.perform(get("/api/v1/admin/users")
+                        .param("usernamePrefix", "LISTING")
+                        .param("role", "USER")
+                        .param("sort", "username")
+                        .param("direction", "asc")
+                        .param("limit", "2")
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users", hasSize(2)))
+                .andExpect(jsonPath("$.users[0].username").value("listing1"))
+                .andExpect(jsonPath("$.users[1].username").value("listing2"))
+                .andExpect(jsonPath("$.users[0].password").doesNotExist())
+                .andExpect(jsonPath("$.users[0].refreshToken").doesNotExist())
+                .andReturn().getResponse().getContentAsString();
+        String cursor = objectMapper.readTree(body).get("nextCursor").asText();
+
+        // Act & Assert: вторая страница - последняя
+        mockMvc.perform(get("/api/v1/admin/users")
+                        .param("usernamePrefix", "LISTING")
+                        .param("role", "USER")
+                        .param("sort", "username")
+                        .param("direction", "asc")
+                        .param("limit", "2")
+                        .param("cursor", cursor)
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.users", hasSize(1)))
+                .andExpect(jsonPath("$.users[0].username").value("listing3"))
+                .andExpect(jsonPath("$.nextCursor").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("GET /admin/users: фильтры по дате создания и префиксу email, по умолчанию новые сначала")
+    void listUsers_ShouldFilterByCreatedRangeAndEmailPrefix() throws Exception {
+        String body = mockMvc.perform(get("/api/v1/admin/users")
+                        .param("emailPrefix", "listing")
+                        .param("createdFrom", BASE.plusDays(1).toString())
+                        .param("createdTo", BASE.plusDays(3).toString())
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+
+        JsonNode users = objectMapper.readTree(body).get("users");
+        assertEquals(2, users.size());
+        assertEquals("listing2", users.get(0).get("username").asText());
+        assertEquals("Listing1@Test.com", users.get(1).get("email").asText());
+    }
+
+    @Test
+    @DisplayName("GET /admin/users: должен вернуть 400 для испорченного курсора и курсора от другой сортировки")
+    void listUsers_ShouldReturn400_WhenCursorIsInvalid() throws Exception {
+        String body = mockMvc.perform(get("/api/v1/admin/users")
+                        .param("usernamePrefix", "listing")
+                        .param("limit", "1")
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        String cursor = objectMapper.readTree(body).get("nextCursor").asText();
+
+        mockMvc.perform(get("/api/v1/admin/users")
+                        .param("sort", "email")
+                        .param("cursor", cursor)
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v1/admin/users")
+                        .param("cursor", "not-a-cursor")
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("GET /admin/users: должен вернуть 400 для limit вне допустимого диапазона")
+    void listUsers_ShouldReturn400_WhenLimitIsOutOfRange() throws Exception {
+        mockMvc.perform(get("/api/v1/admin/users")
+                        .param("limit", "1000")
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("GET /admin/users: должен вернуть 403 для обычного пользователя")
+    void listUsers_ShouldReturn403_ForRegularUser() throws Exception {
+        String userToken = jwtUtil.generateAccessToken("listing1");
+
+        mockMvc.perform(get("/api/v1/admin/users")
+                        .header("Authorization", "Bearer " + userToken))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    @DisplayName("GET /admin/users/export: CSV со сжатием gzip по Accept-Encoding, без паролей")
+    void exportUsers_ShouldStreamGzippedCsv() throws Exception {
+        // Act
+        byte[] body = mockMvc.perform(get("/api/v1/admin/users/export")
+                        .param("format", "csv")
+                        .header("Accept-Encoding", "gzip, deflate")
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Encoding", "gzip"))
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"users.csv\""))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        // Assert
+        String csv;
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(body))) {
+            csv = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        List<String> lines = csv.lines().toList();
+        assertEquals("id,username,email,role,created_at,profile_picture_url", lines.get(0));
+        assertTrue(lines.stream().anyMatch(line -> line.contains(",listing2,listing2@test.com,USER,2024-03-03T12:00,")));
+        assertFalse(csv.contains("password"));
+    }
+
+    @Test
+    @DisplayName("GET /admin/users/export: gzip;q=0 в Accept-Encoding - отказ от сжатия")
+    void exportUsers_ShouldNotCompress_WhenGzipHasZeroQuality() throws Exception {
+        String body = mockMvc.perform(get("/api/v1/admin/users/export")
+                        .param("format", "csv")
+                        .header("Accept-Encoding", "gzip;q=0, identity")
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        assertTrue(body.startsWith("id,username,email,role,created_at,profile_picture_url"));
+    }
+
+    @Test
+    @DisplayName("GET /admin/users/export: NDJSON без сжатия - по объекту на строку в порядке id")
+    void exportUsers_ShouldStreamNdjson() throws Exception {
+        String body = mockMvc.perform(get("/api/v1/admin/users/export")
+                        .param("format", "ndjson")
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist("Content-Encoding"))
+                .andReturn().getResponse().getContentAsString(StandardCharsets.UTF_8);
+
+        List<JsonNode> users = body.lines().map(this::readJson).toList();
+        assertEquals(usersRepository.count(), users.size());
+        assertTrue(users.stream().anyMatch(user -> "listing3".equals(user.get("username").asText())));
+        assertTrue(users.stream().noneMatch(user -> user.has("password")));
+        for (int i = 1; i < users.size(); i++) {
+            assertTrue(users.get(i - 1).get("id").asLong() < users.get(i).get("id").asLong());
+        }
+    }
+
+    @Test
+    @DisplayName("GET /admin/users/export: должен вернуть 400 для неизвестного формата")
+    void exportUsers_ShouldReturn400_WhenFormatIsUnknown() throws Exception {
+        mockMvc.perform(get("/api/v1/admin/users/export")
+                        .param("format", "xlsx")
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("GET /admin/stats/daily: должен отдать дни из сводок с разбивкой по предметам")
+    void getDailyStats_ShouldReturnRollups() throws Exception {
+        // Arrange
+        LocalDate day = LocalDate.of(2024, 3, 1);
+        LocalDateTime now = LocalDateTime.now();
+        statsRepository.saveAll(List.of(
+                new DailyStats(day, DailyStats.TOTAL, 3, 4, 10, 2, true, now),
+                new DailyStats(day, "MATH", 0, 3, 7, 2, true, now),
+                new DailyStats(day, DailyStats.OTHER, 0, 1, 3, 1, true, now),
+                new DailyStats(day.plusDays(1), DailyStats.TOTAL, 1, 0, 0, 0, false, now)));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/admin/stats/daily")
+                        .param("from", "2024-03-01")
+                        .param("to", "2024-03-02")
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.days", hasSize(2)))
+                .andExpect(jsonPath("$.days[0].day").value("2024-03-01"))
+                .andExpect(jsonPath("$.days[0].newUsers").value(3))
+                .andExpect(jsonPath("$.days[0].messages").value(10))
+                .andExpect(jsonPath("$.days[0].activeUsers").value(2))
+                .andExpect(jsonPath("$.days[0].closed").value(true))
+                .andExpect(jsonPath("$.days[0].subjects", hasSize(2)))
+                .andExpect(jsonPath("$.days[0].subjects[0].subject").value("MATH"))
+                .andExpect(jsonPath("$.days[0].subjects[0].newChats").value(3))
+                .andExpect(jsonPath("$.days[1].closed").value(false))
+                .andExpect(jsonPath("$.days[1].subjects", hasSize(0)));
+    }
+
+    @Test
+    @DisplayName("GET /admin/stats/daily: должен вернуть 400 для слишком длинного или перевёрнутого диапазона")
+    void getDailyStats_ShouldReturn400_WhenRangeIsInvalid() throws Exception {
+        mockMvc.perform(get("/api/v1/admin/stats/daily")
+                        .param("from", "2020-01-01")
+                        .param("to", "2024-01-01")
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/api/v1/admin/stats/daily")
+                        .param("from", "2024-02-01")
+                        .param("to", "2024-01-01")
+                        .header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isBadRequest());
+    }
+
+    private JsonNode readJson(String line) {
+        try {
+            return objectMapper.readTree(line);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private User saveUser(String username, String email, Role role, LocalDateTime createdAt) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(email);
+        user.setPassword("password");
+        user.setRole(role);
+        user.setCreatedAt(createdAt);
+        return userService.save(user);
+    }
+}
@@ -98,6 +98,21 @@ class AuthControllerIT {
                 .andExpect(status().isBadRequest());
     }
 
+    @Test
+    @DisplayName("POST /auth/signup: username и email, отличающиеся только регистром, должны считаться занятыми")
+    void signup_ShouldReturn400_WhenCaseVariantDuplicate() throws Exception {
+        registerUser("caseUser", "case@example.com", "Pass123!");
+
+        mockMvc.perform(post("/api/v1/auth/signup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new UserDTO("CASEUSER", "Pass123!", "other@example.com"))))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(post("/api/v1/auth/signup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new UserDTO("otherUser", "Pass123!", "Case@Example.COM"))))
+                .andExpect(status().isBadRequest());
+    }
+
     @Test
     @DisplayName("POST /auth/login: должен вернуть токены для валидных credentials")
     void login_ShouldReturnTokens_WhenCredentialsValid() throws Exception {
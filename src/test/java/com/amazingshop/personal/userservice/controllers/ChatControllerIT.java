@@ -3,12 +3,20 @@ package com.amazingshop.personal.userservice.controllers;
 import com.amazingshop.personal.userservice.dto.requests.AddMessageRequest;
 import com.amazingshop.personal.userservice.dto.requests.CreateChatRequest;
 import com.amazingshop.personal.userservice.dto.requests.UpdateChatTitleRequest;
+import com.amazingshop.personal.userservice.interfaces.UserService;
 import com.amazingshop.personal.userservice.models.Chat;
 import com.amazingshop.personal.userservice.models.User;
 import com.amazingshop.personal.userservice.repositories.ChatRepository;
-import com.amazingshop.personal.userservice.repositories.UsersRepository;
 import com.amazingshop.personal.userservice.security.jwt.JwtUtil;
+import com.amazingshop.personal.userservice.services.ChatArchiver;
+import com.amazingshop.personal.userservice.services.ChatTitleGenerator;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -20,7 +28,12 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
+import java.util.List;
+
 import static org.hamcrest.Matchers.*;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
@@ -33,19 +46,26 @@ class ChatControllerIT {
     private final MockMvc mockMvc;
     private final ObjectMapper objectMapper;
     private final JwtUtil jwtUtil;
-    private final UsersRepository usersRepository;
+    private final UserService userService;
     private final ChatRepository chatRepository;
+    private final ChatArchiver archiver;
+    private final Statistics statistics;
+
+    private static final MediaType SMILE = MediaType.parseMediaType("application/x-jackson-smile");
 
     private String authToken;
     private User testUser;
 
     @Autowired
-    ChatControllerIT(MockMvc mockMvc, ObjectMapper objectMapper, JwtUtil jwtUtil, UsersRepository usersRepository, ChatRepository chatRepository) {
+    ChatControllerIT(MockMvc mockMvc, ObjectMapper objectMapper, JwtUtil jwtUtil, UserService userService,
+                     ChatRepository chatRepository, ChatArchiver archiver, EntityManagerFactory entityManagerFactory) {
         this.mockMvc = mockMvc;
         this.objectMapper = objectMapper;
         this.jwtUtil = jwtUtil;
-        this.usersRepository = usersRepository;
+        this.userService = userService;
         this.chatRepository = chatRepository;
+        this.archiver = archiver;
+        this.statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
     }
 
     @BeforeEach
@@ -54,7 +74,7 @@ class ChatControllerIT {
         testUser.setUsername("chatTestUser");
         testUser.setEmail("chat@test.com");
         testUser.setPassword("password");
-        testUser = usersRepository.save(testUser);
+        testUser = userService.save(testUser);
 
         authToken = jwtUtil.generateAccessToken(testUser.getUsername());
     }
@@ -99,6 +119,33 @@ class ChatControllerIT {
                 .andExpect(jsonPath("$[1].title", is("Chat 1")));
     }
 
+    @Test
+    @DisplayName("GET /chats: должен вернуть сводку по сообщениям одним запросом к списку")
+    void getChats_ShouldReturnMessageSummary() throws Exception {
+        Chat chat = createChatViaApi("Chat");
+        for (String content : List.of("First question", "Assistant answer")) {
+            mockMvc.perform(post("/api/v1/chats/" + chat.getId() + "/messages")
+                            .header("Authorization", "Bearer " + authToken)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(new AddMessageRequest(
+                                    content, content.startsWith("First") ? "user" : "assistant", null))))
+                    .andExpect(status().isOk());
+        }
+
+        statistics.clear();
+        mockMvc.perform(get("/api/v1/chats")
+                        .header("Authorization", "Bearer " + authToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].messageCount", is(2)))
+                .andExpect(jsonPath("$[0].lastMessagePreview", is("Assistant answer")))
+                .andExpect(jsonPath("$[0].lastMessageRole", is("assistant")));
+
+        // Пользователь для JwtFilter + версия списка для ETag + сам список. Тест идёт в незакоммиченной
+        // транзакции, а чтения из пишущей транзакции UserDetailsCache не кэширует
+        assertTrue(statistics.getPrepareStatementCount() <= 3,
+                "sidebar executed " + statistics.getPrepareStatementCount() + " statements");
+    }
+
     @Test
     @DisplayName("GET /chats?search=: должен фильтровать чаты по поиску")
     void getChats_ShouldFilterBySearch() throws Exception {
@@ -129,6 +176,15 @@ class ChatControllerIT {
                 .andExpect(jsonPath("$", hasSize(0)));
     }
 
+    @Test
+    @DisplayName("DELETE /chats/{id}: должен вернуть 404 для несуществующего чата")
+    void deleteChat_ShouldReturn404_WhenChatDoesNotExist() throws Exception {
+        mockMvc.perform(delete("/api/v1/chats/999999")
+                        .header("Authorization", "Bearer " + authToken))
+                .andExpect(status().isNotFound())
+                .andExpect(jsonPath("$.message", is("Chat not found")));
+    }
+
     // ✅ ДОБАВЛЕН НОВЫЙ ТЕСТ
     @Test
     @DisplayName("DELETE /chats/{id}: должен вернуть 403 при попытке удалить чужой чат")
@@ -138,7 +194,7 @@ class ChatControllerIT {
         otherUser.setUsername("otherUser");
         otherUser.setEmail("other@test.com");
         otherUser.setPassword("password");
-        otherUser = usersRepository.save(otherUser);
+        otherUser = userService.save(otherUser);
         // Создаём чат от имени другого пользователя
         Chat otherUserChat = new Chat();
         otherUserChat.setUserId(otherUser.getId());
@@ -195,6 +251,36 @@ class ChatControllerIT {
                 .andExpect(jsonPath("$[1].content").value("Second"));
     }
 
+    @Test
+    @DisplayName("GET /chats/{id}/messages: архивный чат должен читаться из архива и вернуться при новом сообщении")
+    void getChatMessages_ShouldRehydrateArchivedChat() throws Exception {
+        Chat chat = createTestChat("Archived", null);
+        for (String content : List.of("First", "Second")) {
+            mockMvc.perform(post("/api/v1/chats/" + chat.getId() + "/messages")
+                            .header("Authorization", "Bearer " + authToken)
+                            .contentType(MediaType.APPLICATION_JSON)
+                            .content(objectMapper.writeValueAsString(new AddMessageRequest(content, "user", null))))
+                    .andExpect(status().isOk());
+        }
+
+        assertEquals(1, archiver.archiveChatsIdleSince(LocalDateTime.now().plusMinutes(1)));
+
+        mockMvc.perform(get("/api/v1/chats/" + chat.getId() + "/messages")
+                        .header("Authorization", "Bearer " + authToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[0].content").value("First"))
+                .andExpect(jsonPath("$[1].content").value("Second"));
+
+        mockMvc.perform(post("/api/v1/chats/" + chat.getId() + "/messages")
+                        .header("Authorization", "Bearer " + authToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new AddMessageRequest("Third", "user", null))))
+                .andExpect(status().isOk());
+
+        assertTrue(archiver.findArchivedMessages(chat.getId()).isEmpty());
+    }
+
     // ✅ ДОБАВЛЕН НОВЫЙ ТЕСТ
     @Test
     @DisplayName("GET /chats/{id}/messages: должен вернуть 403 для чужого чата")
@@ -204,7 +290,7 @@ class ChatControllerIT {
         otherUser.setUsername("otherUser2");
         otherUser.setEmail("other2@test.com");
         otherUser.setPassword("password");
-        otherUser = usersRepository.save(otherUser);
+        otherUser = userService.save(otherUser);
 
         Chat otherUserChat = new Chat();
         otherUserChat.setUserId(otherUser.getId());
@@ -234,6 +320,29 @@ class ChatControllerIT {
     }
 
     // ✅ ДОБАВЛЕН НОВЫЙ ТЕСТ
+    @Test
+    @DisplayName("PUT /chats/{id}/title: авто-title не должен перезаписать название, заданное пользователем")
+    void updateChatTitle_ShouldNotBeOverwrittenByAutoTitle() throws Exception {
+        // Arrange: чат с названием по умолчанию переименован до того, как сработал генератор
+        Chat chat = createTestChat(ChatTitleGenerator.DEFAULT_TITLE, null);
+        mockMvc.perform(put("/api/v1/chats/" + chat.getId() + "/title")
+                        .header("Authorization", "Bearer " + authToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new UpdateChatTitleRequest("My Title"))))
+                .andExpect(status().isOk());
+
+        // Act
+        int updated = chatRepository.updateTitleIfDefault(chat.getId(), "Auto title", ChatTitleGenerator.DEFAULT_TITLE,
+                LocalDateTime.now(), chatRepository.nextChangeSeq(testUser.getId()));
+
+        // Assert
+        assertEquals(0, updated);
+        mockMvc.perform(get("/api/v1/chats")
+                        .header("Authorization", "Bearer " + authToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$[0].title").value("My Title"));
+    }
+
     @Test
     @DisplayName("PUT /chats/{id}/title: должен вернуть 403 для чужого чата")
     void updateChatTitle_ShouldReturn403_WhenNotOwner() throws Exception {
@@ -241,7 +350,7 @@ class ChatControllerIT {
         otherUser.setUsername("otherUser3");
         otherUser.setEmail("other3@test.com");
         otherUser.setPassword("password");
-        otherUser = usersRepository.save(otherUser);
+        otherUser = userService.save(otherUser);
 
         Chat otherUserChat = new Chat();
         otherUserChat.setUserId(otherUser.getId());
@@ -275,8 +384,261 @@ class ChatControllerIT {
                 .andExpect(jsonPath("$", hasSize(0)));
     }
 
+    @Test
+    @DisplayName("DELETE /chats/all: должен удалить сообщения и записать удаления для синхронизации")
+    void deleteAllChats_ShouldDeleteMessagesAndRecordTombstones() throws Exception {
+        Chat first = createChatViaApi("Chat 1");
+        Chat second = createChatViaApi("Chat 2");
+        mockMvc.perform(post("/api/v1/chats/" + first.getId() + "/messages")
+                .header("Authorization", "Bearer " + authToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new AddMessageRequest("Hello", "user", null))));
+
+        mockMvc.perform(delete("/api/v1/chats/all")
+                        .header("Authorization", "Bearer " + authToken))
+                .andExpect(status().isNoContent());
+
+        mockMvc.perform(get("/api/v1/chats/changes")
+                        .header("Authorization", "Bearer " + authToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.chats", hasSize(0)))
+                .andExpect(jsonPath("$.messages", hasSize(0)))
+                .andExpect(jsonPath("$.deletedChatIds",
+                        containsInAnyOrder(first.getId().intValue(), second.getId().intValue())));
+    }
+
+    @Test
+    @DisplayName("GET /chats/deletion-jobs/{jobId}: должен вернуть 404 для неизвестной задачи")
+    void getDeletionJob_ShouldReturn404_WhenUnknown() throws Exception {
+        mockMvc.perform(get("/api/v1/chats/deletion-jobs/unknown")
+                        .header("Authorization", "Bearer " + authToken))
+                .andExpect(status().isNotFound());
+    }
+
+// ==================== CONDITIONAL GET ====================
+
+    @Test
+    @DisplayName("GET /chats: должен вернуть 304 при совпадении If-None-Match")
+    void getChats_ShouldReturn304_WhenETagMatches() throws Exception {
+        createTestChat("Chat 1", null);
+
+        String etag = mockMvc.perform(get("/api/v1/chats")
+                        .header("Authorization", "Bearer " + authToken))
+                .andExpect(status().isOk())
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/v1/chats")
+                        .header("Authorization", "Bearer " + authToken)
+                        .header("If-None-Match", etag))
+                .andExpect(status().isNotModified());
+    }
+
+    @Test
+    @DisplayName("GET /chats/{id}/messages: ETag JSON-ответа не должен давать 304 на запрос CBOR")
+    void getChatMessages_ShouldNotReturn304_WhenETagIsFromAnotherFormat() throws Exception {
+        Chat chat = createTestChat("Test", null);
+
+        String jsonETag = mockMvc.perform(get("/api/v1/chats/" + chat.getId() + "/messages")
+                        .header("Authorization", "Bearer " + authToken)
+                        .accept(MediaType.APPLICATION_JSON))
+                .andExpect(status().isOk())
+                .andExpect(header().stringValues("Vary", hasItem("Accept")))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/v1/chats/" + chat.getId() + "/messages")
+                        .header("Authorization", "Bearer " + authToken)
+                        .header("If-None-Match", jsonETag)
+                        .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andExpect(header().string("ETag", not(jsonETag)));
+    }
+
+    @Test
+    @DisplayName("GET /chats: 304 должен нести Vary: Accept")
+    void getChats_ShouldVaryByAccept_WhenNotModified() throws Exception {
+        createTestChat("Chat 1", null);
+
+        String etag = mockMvc.perform(get("/api/v1/chats")
+                        .header("Authorization", "Bearer " + authToken)
+                        .accept(SMILE))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/v1/chats")
+                        .header("Authorization", "Bearer " + authToken)
+                        .header("If-None-Match", etag)
+                        .accept(SMILE))
+                .andExpect(status().isNotModified())
+                .andExpect(header().stringValues("Vary", hasItem("Accept")));
+    }
+
+    @Test
+    @DisplayName("GET /chats/recent: должен вернуть 200 после создания нового чата")
+    void getRecentChats_ShouldReturn200_WhenListChanged() throws Exception {
+        createTestChat("Chat 1", null);
+
+        String etag = mockMvc.perform(get("/api/v1/chats/recent")
+                        .header("Authorization", "Bearer " + authToken))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        createTestChat("Chat 2", null);
+
+        mockMvc.perform(get("/api/v1/chats/recent")
+                        .header("Authorization", "Bearer " + authToken)
+                        .header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)));
+    }
+
+    @Test
+    @DisplayName("GET /chats/{id}/messages: 304 должен обходиться не более чем одним запросом к БД")
+    void getChatMessages_ShouldAnswer304WithSingleQuery() throws Exception {
+        Chat chat = createTestChat("Test", null);
+        AddMessageRequest request = new AddMessageRequest("Hello!", "user", null);
+
+        mockMvc.perform(post("/api/v1/chats/" + chat.getId() + "/messages")
+                        .header("Authorization", "Bearer " + authToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isOk());
+
+        String etag = mockMvc.perform(get("/api/v1/chats/" + chat.getId() + "/messages")
+                        .header("Authorization", "Bearer " + authToken))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        statistics.clear();
+
+        // Полный путь запроса с Bearer-токеном. Пользователь тестовой транзакции не закоммичен, поэтому
+        // JwtFilter читает его из БД в обход UserDetailsCache; сами сообщения не загружаются
+        mockMvc.perform(get("/api/v1/chats/" + chat.getId() + "/messages")
+                        .header("Authorization", "Bearer " + authToken)
+                        .header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+
+        assertTrue(statistics.getPrepareStatementCount() <= 2,
+                "304 path executed " + statistics.getPrepareStatementCount() + " statements");
+    }
+
+    @Test
+    @DisplayName("GET /chats/{id}/messages: должен вернуть 200 после нового сообщения")
+    void getChatMessages_ShouldReturn200_WhenNewMessageAdded() throws Exception {
+        Chat chat = createTestChat("Test", null);
+
+        String etag = mockMvc.perform(get("/api/v1/chats/" + chat.getId() + "/messages")
+                        .header("Authorization", "Bearer " + authToken))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(post("/api/v1/chats/" + chat.getId() + "/messages")
+                .header("Authorization", "Bearer " + authToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new AddMessageRequest("Hi", "user", null))));
+
+        mockMvc.perform(get("/api/v1/chats/" + chat.getId() + "/messages")
+                        .header("Authorization", "Bearer " + authToken)
+                        .header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(header().string("ETag", not(etag)));
+    }
+
+// ==================== DELTA SYNC ====================
+
+    @Test
+    @DisplayName("GET /chats/changes: должен вернуть только изменения после watermark")
+    void getChanges_ShouldReturnOnlyChangesSinceWatermark() throws Exception {
+        Chat kept = createChatViaApi("Kept");
+        Chat removed = createChatViaApi("Removed");
+
+        long watermark = objectMapper.readTree(mockMvc.perform(get("/api/v1/chats/changes")
+                        .header("Authorization", "Bearer " + authToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.chats", hasSize(2)))
+                .andReturn().getResponse().getContentAsString()).get("watermark").asLong();
+
+        mockMvc.perform(post("/api/v1/chats/" + kept.getId() + "/messages")
+                .header("Authorization", "Bearer " + authToken)
+                .contentType(MediaType.APPLICATION_JSON)
+                .content(objectMapper.writeValueAsString(new AddMessageRequest("Hello", "user", null))));
+        mockMvc.perform(delete("/api/v1/chats/" + removed.getId())
+                .header("Authorization", "Bearer " + authToken));
+
+        mockMvc.perform(get("/api/v1/chats/changes")
+                        .param("since", String.valueOf(watermark))
+                        .header("Authorization", "Bearer " + authToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.chats", hasSize(1)))
+                .andExpect(jsonPath("$.chats[0].id").value(kept.getId()))
+                .andExpect(jsonPath("$.messages", hasSize(1)))
+                .andExpect(jsonPath("$.messages[0].content").value("Hello"))
+                .andExpect(jsonPath("$.deletedChatIds", contains(removed.getId().intValue())))
+                .andExpect(jsonPath("$.watermark", greaterThan((int) watermark)));
+    }
+
+    @Test
+    @DisplayName("GET /chats/{id}/messages: по Accept должен отдавать CBOR, без Accept - JSON")
+    void getChatMessages_ShouldNegotiateCbor() throws Exception {
+        Chat chat = createTestChat("Binary", null);
+        mockMvc.perform(post("/api/v1/chats/" + chat.getId() + "/messages")
+                        .header("Authorization", "Bearer " + authToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new AddMessageRequest("First", "user", null))))
+                .andExpect(status().isOk());
+
+        byte[] body = mockMvc.perform(get("/api/v1/chats/" + chat.getId() + "/messages")
+                        .header("Authorization", "Bearer " + authToken)
+                        .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        JsonNode messages = new CBORMapper().readTree(body);
+        assertEquals(1, messages.size());
+        assertEquals("First", messages.get(0).get("content").asText());
+        assertTrue(messages.get(0).get("createdAt").isTextual());
+
+        mockMvc.perform(get("/api/v1/chats/" + chat.getId() + "/messages")
+                        .header("Authorization", "Bearer " + authToken))
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    @DisplayName("POST /chats/{id}/messages: должен принимать тело в CBOR и отвечать в Smile")
+    void addMessage_ShouldAcceptCborBody() throws Exception {
+        Chat chat = createTestChat("Binary", null);
+        byte[] request = new CBORMapper().writeValueAsBytes(new AddMessageRequest("Из CBOR", "user", "math"));
+
+        byte[] body = mockMvc.perform(post("/api/v1/chats/" + chat.getId() + "/messages")
+                        .header("Authorization", "Bearer " + authToken)
+                        .contentType(MediaType.APPLICATION_CBOR)
+                        .accept(SMILE)
+                        .content(request))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(SMILE))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        JsonNode message = new SmileMapper().readTree(body);
+        assertEquals("Из CBOR", message.get("content").asText());
+        assertEquals("math", message.get("templateUsed").asText());
+        assertEquals(chat.getId().longValue(), message.get("chatId").asLong());
+    }
+
 // ==================== HELPER ====================
 
+    private Chat createChatViaApi(String title) throws Exception {
+        String body = mockMvc.perform(post("/api/v1/chats")
+                        .header("Authorization", "Bearer " + authToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new CreateChatRequest(title, null))))
+                .andExpect(status().isOk())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readValue(body, Chat.class);
+    }
+
     private Chat createTestChat(String title, String subject) {
         Chat chat = new Chat();
         chat.setUserId(testUser.getId());
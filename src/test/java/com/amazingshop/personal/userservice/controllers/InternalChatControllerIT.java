@@ -0,0 +1,204 @@
+package com.amazingshop.personal.userservice.controllers;
+
+import com.amazingshop.personal.userservice.dto.requests.AddMessageRequest;
+import com.amazingshop.personal.userservice.interfaces.UserService;
+import com.amazingshop.personal.userservice.models.Chat;
+import com.amazingshop.personal.userservice.models.ChatRollingSummary;
+import com.amazingshop.personal.userservice.models.User;
+import com.amazingshop.personal.userservice.repositories.ChatMessageRepository;
+import com.amazingshop.personal.userservice.repositories.ChatRepository;
+import com.amazingshop.personal.userservice.repositories.ChatRollingSummaryRepository;
+import com.amazingshop.personal.userservice.security.jwt.JwtUtil;
+import com.amazingshop.personal.userservice.services.ChatArchiver;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+import static org.hamcrest.Matchers.hasSize;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@Transactional
+@SpringBootTest
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class InternalChatControllerIT {
+
+    private final MockMvc mockMvc;
+    private final ObjectMapper objectMapper;
+    private final JwtUtil jwtUtil;
+    private final UserService userService;
+    private final ChatRepository chatRepository;
+    private final ChatArchiver archiver;
+    private final ChatMessageRepository messageRepository;
+    private final ChatRollingSummaryRepository summaryRepository;
+
+    private String authToken;
+    private User testUser;
+
+    @Autowired
+    InternalChatControllerIT(MockMvc mockMvc, ObjectMapper objectMapper, JwtUtil jwtUtil,
+                             UserService userService, ChatRepository chatRepository, ChatArchiver archiver,
+                             ChatMessageRepository messageRepository, ChatRollingSummaryRepository summaryRepository) {
+        this.mockMvc = mockMvc;
+        this.objectMapper = objectMapper;
+        this.jwtUtil = jwtUtil;
+        this.userService = userService;
+        this.chatRepository = chatRepository;
+        this.archiver = archiver;
+        this.messageRepository = messageRepository;
+        this.summaryRepository = summaryRepository;
+    }
+
+    @BeforeEach
+    void setUp() {
+        testUser = saveUser("contextUser", "context@test.com");
+        authToken = jwtUtil.generateAccessToken(testUser.getUsername());
+    }
+
+    @Test
+    @DisplayName("GET /internal/chats/{id}/context: должен вернуть самые новые сообщения в пределах бюджета")
+    void getContext_ShouldReturnNewestMessagesWithinBudget() throws Exception {
+        // Arrange: по 10 токенов на сообщение при 4 символах на токен
+        Chat chat = saveChat(testUser.getId());
+        addMessage(chat, "a".repeat(40));
+        addMessage(chat, "b".repeat(40));
+        addMessage(chat, "c".repeat(40));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/internal/chats/" + chat.getId() + "/context")
+                        .param("tokenBudget", "25")
+                        .header("Authorization", "Bearer " + authToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.chatId").value(chat.getId()))
+                .andExpect(jsonPath("$.tokenCount").value(20))
+                .andExpect(jsonPath("$.truncated").value(true))
+                .andExpect(jsonPath("$.messages", hasSize(2)))
+                .andExpect(jsonPath("$.messages[0].content").value("b".repeat(40)))
+                .andExpect(jsonPath("$.messages[0].tokenCount").value(10))
+                .andExpect(jsonPath("$.messages[1].content").value("c".repeat(40)));
+    }
+
+    @Test
+    @DisplayName("GET /internal/chats/{id}/context: вся история в бюджете - truncated=false")
+    void getContext_ShouldReturnWholeHistory_WhenItFits() throws Exception {
+        Chat chat = saveChat(testUser.getId());
+        addMessage(chat, "First");
+        addMessage(chat, "Second");
+
+        mockMvc.perform(get("/api/v1/internal/chats/" + chat.getId() + "/context")
+                        .param("tokenBudget", "4000")
+                        .header("Authorization", "Bearer " + authToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.truncated").value(false))
+                .andExpect(jsonPath("$.messages", hasSize(2)))
+                .andExpect(jsonPath("$.messages[0].content").value("First"));
+    }
+
+    @Test
+    @DisplayName("GET /internal/chats/{id}/context: должен вернуть краткое содержание и хвост после него")
+    void getContext_ShouldReturnSummaryAndTail() throws Exception {
+        // Arrange: первое сообщение уже свёрнуто в краткое содержание
+        Chat chat = saveChat(testUser.getId());
+        addMessage(chat, "a".repeat(40));
+        addMessage(chat, "b".repeat(40));
+        addMessage(chat, "c".repeat(40));
+        Long watermark = messageRepository.findByChatIdOrderByIdAsc(chat.getId()).get(0).getId();
+        summaryRepository.save(new ChatRollingSummary(chat.getId(), "user: aaaa", 3, watermark, 1, LocalDateTime.now()));
+
+        // Act & Assert
+        mockMvc.perform(get("/api/v1/internal/chats/" + chat.getId() + "/context")
+                        .param("tokenBudget", "1000")
+                        .header("Authorization", "Bearer " + authToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.summary").value("user: aaaa"))
+                .andExpect(jsonPath("$.summarizedThroughId").value(watermark))
+                .andExpect(jsonPath("$.tokenCount").value(23))
+                .andExpect(jsonPath("$.truncated").value(false))
+                .andExpect(jsonPath("$.messages", hasSize(2)))
+                .andExpect(jsonPath("$.messages[0].content").value("b".repeat(40)));
+    }
+
+    @Test
+    @DisplayName("GET /internal/chats/{id}/context: архивный чат должен собираться из архива")
+    void getContext_ShouldReadArchivedChat() throws Exception {
+        Chat chat = saveChat(testUser.getId());
+        addMessage(chat, "a".repeat(40));
+        addMessage(chat, "b".repeat(40));
+        assertEquals(1, archiver.archiveChatsIdleSince(LocalDateTime.now().plusMinutes(1)));
+
+        mockMvc.perform(get("/api/v1/internal/chats/" + chat.getId() + "/context")
+                        .param("tokenBudget", "15")
+                        .header("Authorization", "Bearer " + authToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.truncated").value(true))
+                .andExpect(jsonPath("$.messages", hasSize(1)))
+                .andExpect(jsonPath("$.messages[0].content").value("b".repeat(40)));
+    }
+
+    @Test
+    @DisplayName("GET /internal/chats/{id}/context: должен вернуть 403 для чужого чата")
+    void getContext_ShouldReturn403_WhenNotOwner() throws Exception {
+        User otherUser = saveUser("contextOther", "context-other@test.com");
+        Chat otherChat = saveChat(otherUser.getId());
+
+        mockMvc.perform(get("/api/v1/internal/chats/" + otherChat.getId() + "/context")
+                        .param("tokenBudget", "100")
+                        .header("Authorization", "Bearer " + authToken))
+                .andExpect(status().isForbidden());
+    }
+
+    @Test
+    @DisplayName("GET /internal/chats/{id}/context: должен вернуть 400 для неположительного бюджета")
+    void getContext_ShouldReturn400_WhenBudgetIsNotPositive() throws Exception {
+        Chat chat = saveChat(testUser.getId());
+
+        mockMvc.perform(get("/api/v1/internal/chats/" + chat.getId() + "/context")
+                        .param("tokenBudget", "0")
+                        .header("Authorization", "Bearer " + authToken))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("GET /internal/chats/{id}/context: должен вернуть 401 без токена")
+    void getContext_ShouldReturn401_WithoutToken() throws Exception {
+        mockMvc.perform(get("/api/v1/internal/chats/1/context").param("tokenBudget", "100"))
+                .andExpect(status().isUnauthorized());
+    }
+
+    private void addMessage(Chat chat, String content) throws Exception {
+        mockMvc.perform(post("/api/v1/chats/" + chat.getId() + "/messages")
+                        .header("Authorization", "Bearer " + authToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(new AddMessageRequest(content, "user", null))))
+                .andExpect(status().isOk());
+    }
+
+    private Chat saveChat(Long userId) {
+        Chat chat = new Chat();
+        chat.setUserId(userId);
+        chat.setTitle("Context chat");
+        return chatRepository.save(chat);
+    }
+
+    private User saveUser(String username, String email) {
+        User user = new User();
+        user.setUsername(username);
+        user.setEmail(email);
+        user.setPassword("password");
+        return userService.save(user);
+    }
+}
@@ -1,10 +1,12 @@
 package com.amazingshop.personal.userservice.controllers;
 
 import com.amazingshop.personal.userservice.enums.Role;
+import com.amazingshop.personal.userservice.interfaces.UserService;
 import com.amazingshop.personal.userservice.models.User;
-import com.amazingshop.personal.userservice.repositories.UsersRepository;
 import com.amazingshop.personal.userservice.security.jwt.JwtUtil;
+import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.smile.databind.SmileMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -18,8 +20,15 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.util.Map;
 
+import static org.hamcrest.Matchers.hasItem;
+import static org.hamcrest.Matchers.not;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.handler;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
 
@@ -33,17 +42,17 @@ public class UsersControllerIT {
     private final MockMvc mockMvc;
     private final ObjectMapper objectMapper;
     private final JwtUtil jwtUtil;
-    private final UsersRepository usersRepository;
+    private final UserService userService;
 
     private String authToken;
     private User testUser;
 
     @Autowired
-    public UsersControllerIT(MockMvc mockMvc, ObjectMapper objectMapper, JwtUtil jwtUtil, UsersRepository usersRepository) {
+    public UsersControllerIT(MockMvc mockMvc, ObjectMapper objectMapper, JwtUtil jwtUtil, UserService userService) {
         this.mockMvc = mockMvc;
         this.objectMapper = objectMapper;
         this.jwtUtil = jwtUtil;
-        this.usersRepository = usersRepository;
+        this.userService = userService;
     }
 
     @BeforeEach
@@ -53,7 +62,7 @@ public class UsersControllerIT {
         testUser.setEmail("test@example.com");
         testUser.setPassword("password");
         testUser.setRole(Role.USER);
-        testUser = usersRepository.save(testUser);
+        testUser = userService.save(testUser);
 
         authToken = jwtUtil.generateAccessToken(testUser.getUsername());
     }
@@ -74,6 +83,21 @@ public class UsersControllerIT {
                 .andExpect(jsonPath("$.refreshToken").doesNotExist()); // Refresh token не должен возвращаться
     }
 
+    @Test
+    @DisplayName("GET /users/me: по Accept должен отдавать Smile")
+    void getCurrentUser_ShouldReturnSmile_WhenRequested() throws Exception {
+        byte[] body = mockMvc.perform(get("/api/v1/users/me")
+                        .header("Authorization", "Bearer " + authToken)
+                        .accept("application/x-jackson-smile"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType("application/x-jackson-smile"))
+                .andReturn().getResponse().getContentAsByteArray();
+
+        JsonNode user = new SmileMapper().readTree(body);
+        assertEquals("testUser", user.get("username").asText());
+        assertFalse(user.has("password"));
+    }
+
     @Test
     @DisplayName("GET /users/me: должен вернуть 401 без токена")
     void getCurrentUser_ShouldReturn401_WithoutToken() throws Exception {
@@ -109,7 +133,7 @@ public class UsersControllerIT {
         admin.setEmail("admin@example.com");
         admin.setPassword("password");
         admin.setRole(Role.ADMIN);
-        admin = usersRepository.save(admin);
+        admin = userService.save(admin);
 
         String adminToken = jwtUtil.generateAccessToken(admin.getUsername());
 
@@ -120,6 +144,92 @@ public class UsersControllerIT {
                 .andExpect(jsonPath("$.role").value("ADMIN"));
     }
 
+    @Test
+    @DisplayName("GET /users/me: должен отдать ETag и ответить 304 на совпадающий If-None-Match")
+    void getCurrentUser_ShouldReturn304_WhenETagMatches() throws Exception {
+        String etag = mockMvc.perform(get("/api/v1/users/me")
+                        .header("Authorization", "Bearer " + authToken))
+                .andExpect(status().isOk())
+                .andExpect(handler().methodName("getCurrentUser"))
+                .andExpect(header().exists("ETag"))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/v1/users/me")
+                        .header("Authorization", "Bearer " + authToken)
+                        .header("If-None-Match", etag))
+                .andExpect(status().isNotModified())
+                .andExpect(content().string(""));
+    }
+
+    @Test
+    @DisplayName("GET /users/me: ETag JSON-ответа не должен давать 304 на запрос CBOR")
+    void getCurrentUser_ShouldNotReturn304_WhenETagIsFromAnotherFormat() throws Exception {
+        String jsonETag = mockMvc.perform(get("/api/v1/users/me")
+                        .header("Authorization", "Bearer " + authToken))
+                .andExpect(status().isOk())
+                .andExpect(header().stringValues("Vary", hasItem("Accept")))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(get("/api/v1/users/me")
+                        .header("Authorization", "Bearer " + authToken)
+                        .header("If-None-Match", jsonETag)
+                        .accept(MediaType.APPLICATION_CBOR))
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.APPLICATION_CBOR))
+                .andExpect(header().string("ETag", not(jsonETag)));
+    }
+
+    @Test
+    @DisplayName("GET /users/me: после PUT /users/me должен отдать новые данные с новым ETag")
+    void getCurrentUser_ShouldReflectUpdate() throws Exception {
+        String etag = mockMvc.perform(get("/api/v1/users/me")
+                        .header("Authorization", "Bearer " + authToken))
+                .andReturn().getResponse().getHeader("ETag");
+
+        mockMvc.perform(put("/api/v1/users/me")
+                        .header("Authorization", "Bearer " + authToken)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(Map.of("email", "cached@example.com"))))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/v1/users/me")
+                        .header("Authorization", "Bearer " + authToken)
+                        .header("If-None-Match", etag))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.email").value("cached@example.com"));
+    }
+
+    @Test
+    @DisplayName("GET /users/me: после повышения до ADMIN должен отдать новую роль")
+    void getCurrentUser_ShouldReflectPromotion() throws Exception {
+        User admin = new User();
+        admin.setUsername("promotingAdmin");
+        admin.setEmail("promoting@example.com");
+        admin.setPassword("password");
+        admin.setRole(Role.ADMIN);
+        admin = userService.save(admin);
+
+        mockMvc.perform(get("/api/v1/users/me")
+                        .header("Authorization", "Bearer " + authToken))
+                .andExpect(jsonPath("$.role").value("USER"));
+        // Снимок UserDetails с ролью USER уже в кэше
+        mockMvc.perform(get("/api/v1/admin/hello")
+                        .header("Authorization", "Bearer " + authToken))
+                .andExpect(status().isForbidden());
+
+        mockMvc.perform(put("/api/v1/admin/" + testUser.getId() + "/promote")
+                        .header("Authorization", "Bearer " + jwtUtil.generateAccessToken(admin.getUsername())))
+                .andExpect(status().isOk());
+
+        mockMvc.perform(get("/api/v1/users/me")
+                        .header("Authorization", "Bearer " + authToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.role").value("ADMIN"));
+        mockMvc.perform(get("/api/v1/admin/hello")
+                        .header("Authorization", "Bearer " + authToken))
+                .andExpect(status().isOk());
+    }
+
     @Test
     @DisplayName("PUT /users/me: должен обновить email пользователя")
     void updateCurrentUser_ShouldUpdateEmail() throws Exception {
@@ -234,7 +344,7 @@ public class UsersControllerIT {
     void updateCurrentUser_ShouldUpdateOnlyProvidedFields() throws Exception {
         // Устанавливаем начальное значение profilePictureUrl
         testUser.setProfilePictureUrl("https://old-pic.jpg");
-        usersRepository.save(testUser);
+        userService.save(testUser);
 
         // Обновляем только email
         Map<String, String> updates = Map.of("email", "onlyemail@example.com");
@@ -283,7 +393,7 @@ public class UsersControllerIT {
     void updateCurrentUser_ShouldHandleNullValues() throws Exception {
         // Устанавливаем profilePictureUrl
         testUser.setProfilePictureUrl("https://example.com/pic.jpg");
-        usersRepository.save(testUser);
+        userService.save(testUser);
 
         // Пытаемся обновить на null (это может быть удаление картинки)
         Map<String, String> updates = Map.of("profilePictureUrl", "");
@@ -0,0 +1,205 @@
+package com.amazingshop.personal.userservice.datasource;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.cfg.AvailableSettings;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.orm.jpa.JpaTransactionManager;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.SharedEntityManagerCreator;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Маршрутизация на H2 вместо primary и двух реплик: в каждой базе таблица node
+ * с её именем, по ответу видно, куда ушёл запрос.
+ * <p>
+ * Транзакции идут через JpaTransactionManager, как в приложении: read-only до прокси
+ * доходит только через подготовку соединения в HibernateJpaDialect.
+ */
+public class ReplicaDataSourceTest {
+
+    private static final Duration MAX_LAG = Duration.ofSeconds(1);
+
+    private DataSource primary;
+    private List<DataSource> replicas;
+    private ReplicaDataSource replicaDataSource;
+    private LocalContainerEntityManagerFactoryBean entityManagerFactoryBean;
+    private EntityManager entityManager;
+    private TransactionTemplate readOnly;
+    private TransactionTemplate readWrite;
+    private PrimaryReads primaryReads;
+
+    @BeforeEach
+    void setUp() {
+        primary = database("primary");
+        replicas = List.of(database("replica-0"), database("replica-1"));
+
+        ReadYourWrites readYourWrites = new ReadYourWrites(Duration.ofMinutes(1));
+        replicaDataSource = new ReplicaDataSource(primary, replicas, readYourWrites, MAX_LAG,
+                "SELECT seconds FROM lag", new SimpleMeterRegistry());
+        LazyConnectionDataSourceProxy routing = new LazyConnectionDataSourceProxy(
+                new WriteTrackingDataSource(primary, readYourWrites));
+        routing.setReadOnlyDataSource(replicaDataSource);
+
+        // Режим соединений тот же, что выставляет Spring Boot
+        entityManagerFactoryBean = new LocalContainerEntityManagerFactoryBean();
+        entityManagerFactoryBean.setDataSource(routing);
+        entityManagerFactoryBean.setPackagesToScan(ReplicaDataSourceTest.class.getPackageName());
+        entityManagerFactoryBean.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        entityManagerFactoryBean.setJpaPropertyMap(Map.of(
+                AvailableSettings.CONNECTION_HANDLING, "DELAYED_ACQUISITION_AND_HOLD"));
+        entityManagerFactoryBean.afterPropertiesSet();
+        EntityManagerFactory entityManagerFactory = entityManagerFactoryBean.getObject();
+
+        entityManager = SharedEntityManagerCreator.createSharedEntityManager(entityManagerFactory);
+        JpaTransactionManager transactionManager = new JpaTransactionManager(entityManagerFactory);
+        readOnly = new TransactionTemplate(transactionManager);
+        readOnly.setReadOnly(true);
+        readWrite = new TransactionTemplate(transactionManager);
+        primaryReads = new PrimaryReads(transactionManager);
+    }
+
+    @AfterEach
+    void tearDown() {
+        SecurityContextHolder.clearContext();
+        entityManagerFactoryBean.destroy();
+        for (DataSource dataSource : List.of(primary, replicas.get(0), replicas.get(1))) {
+            new JdbcTemplate(dataSource).execute("DROP ALL OBJECTS");
+        }
+    }
+
+    @Test
+    @DisplayName("read-only транзакции должны расходиться по репликам по кругу")
+    void readOnly_ShouldRoundRobinReplicas() {
+        replicaDataSource.refreshLag();
+
+        Set<String> nodes = new HashSet<>();
+        for (int i = 0; i < 4; i++) {
+            nodes.add(readOnly.execute(status -> currentNode()));
+        }
+
+        assertEquals(Set.of("replica-0", "replica-1"), nodes);
+    }
+
+    @Test
+    @DisplayName("пишущие транзакции должны идти на primary")
+    void readWrite_ShouldUsePrimary() {
+        replicaDataSource.refreshLag();
+
+        assertEquals("primary", readWrite.execute(status -> currentNode()));
+    }
+
+    @Test
+    @DisplayName("реплика с лагом больше допуска должна выпасть из ротации")
+    void readOnly_ShouldSkipLaggingReplica() {
+        setLag(replicas.get(0), 5);
+        replicaDataSource.refreshLag();
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals("replica-1", readOnly.execute(status -> currentNode()));
+        }
+    }
+
+    @Test
+    @DisplayName("без подходящих реплик чтение должно уйти на primary")
+    void readOnly_ShouldFallBackToPrimary_WhenAllReplicasLag() {
+        // До первой проверки лага реплики не в ротации
+        assertEquals("primary", readOnly.execute(status -> currentNode()));
+
+        setLag(replicas.get(0), 5);
+        setLag(replicas.get(1), 5);
+        replicaDataSource.refreshLag();
+
+        assertEquals("primary", readOnly.execute(status -> currentNode()));
+    }
+
+    @Test
+    @DisplayName("после своей записи пользователь должен читать с primary, остальные - с реплик")
+    void readOnly_ShouldStickToPrimary_AfterOwnWrite() {
+        replicaDataSource.refreshLag();
+
+        authenticate("alice");
+        readWrite.executeWithoutResult(status ->
+                entityManager.createNativeQuery("UPDATE node SET name = name").executeUpdate());
+        assertEquals("primary", readOnly.execute(status -> currentNode()));
+
+        authenticate("bob");
+        assertTrue(readOnly.execute(status -> currentNode()).startsWith("replica"));
+    }
+
+    @Test
+    @DisplayName("загрузка кэша должна читать с primary, даже внутри транзакции на реплике")
+    void primaryReads_ShouldBypassReplicas() {
+        replicaDataSource.refreshLag();
+
+        assertEquals("primary", primaryReads.call(this::currentNode));
+        String[] nodes = readOnly.execute(status -> new String[]{currentNode(), primaryReads.call(this::currentNode)});
+        assertTrue(nodes[0].startsWith("replica"));
+        assertEquals("primary", nodes[1]);
+        assertTrue(readOnly.execute(status -> currentNode()).startsWith("replica"));
+    }
+
+    @Test
+    @DisplayName("соединение с явными учётными данными должно маршрутизироваться так же")
+    void getConnectionWithCredentials_ShouldUseReplicas() throws SQLException {
+        replicaDataSource.refreshLag();
+
+        try (Connection connection = replicaDataSource.getConnection("sa", "")) {
+            assertTrue(nodeOf(connection).startsWith("replica"));
+        }
+    }
+
+    private String currentNode() {
+        return (String) entityManager.createNativeQuery("SELECT name FROM node").getSingleResult();
+    }
+
+    private static String nodeOf(Connection connection) throws SQLException {
+        try (Statement statement = connection.createStatement();
+             ResultSet resultSet = statement.executeQuery("SELECT name FROM node")) {
+            resultSet.next();
+            return resultSet.getString(1);
+        }
+    }
+
+    private static DataSource database(String name) {
+        DataSource dataSource = new DriverManagerDataSource("jdbc:h2:mem:" + name + ";DB_CLOSE_DELAY=-1", "sa", "");
+        JdbcTemplate jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("CREATE TABLE node (name VARCHAR(20))");
+        jdbc.update("INSERT INTO node (name) VALUES (?)", name);
+        jdbc.execute("CREATE TABLE lag (seconds DOUBLE PRECISION)");
+        jdbc.update("INSERT INTO lag (seconds) VALUES (0)");
+        return dataSource;
+    }
+
+    private static void setLag(DataSource replica, double seconds) {
+        new JdbcTemplate(replica).update("UPDATE lag SET seconds = ?", seconds);
+    }
+
+    private static void authenticate(String username) {
+        SecurityContextHolder.getContext().setAuthentication(
+                new UsernamePasswordAuthenticationToken(username, null, List.of()));
+    }
+}
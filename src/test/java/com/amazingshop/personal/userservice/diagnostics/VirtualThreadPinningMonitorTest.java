@@ -0,0 +1,63 @@
+package com.amazingshop.personal.userservice.diagnostics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class VirtualThreadPinningMonitorTest {
+
+    private SimpleMeterRegistry meterRegistry;
+    private VirtualThreadPinningMonitor monitor;
+
+    private final Object lock = new Object();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        monitor = new VirtualThreadPinningMonitor(meterRegistry, 10);
+        monitor.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        monitor.stop();
+    }
+
+    @Test
+    @DisplayName("блокировка внутри synchronized должна попасть в метрику с нашим кадром в site")
+    void synchronizedSleep_ShouldBeReportedWithApplicationSite() throws Exception {
+        // Act
+        Thread.ofVirtual().start(this::sleepWhileHoldingMonitor).join();
+
+        // Assert - JFR отдаёт события порциями, ждём сброса
+        Counter counter = awaitCounter();
+        assertNotNull(counter, "Закрепление не было зафиксировано");
+        assertEquals(getClass().getName() + ".sleepWhileHoldingMonitor", counter.getId().getTag("site"));
+    }
+
+    private void sleepWhileHoldingMonitor() {
+        synchronized (lock) {
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private Counter awaitCounter() throws InterruptedException {
+        for (int i = 0; i < 100; i++) {
+            Counter counter = meterRegistry.find(VirtualThreadPinningMonitor.METRIC_NAME).counter();
+            if (counter != null) {
+                return counter;
+            }
+            Thread.sleep(100);
+        }
+        return null;
+    }
+}
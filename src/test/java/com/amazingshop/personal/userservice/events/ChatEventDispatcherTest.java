@@ -0,0 +1,99 @@
+package com.amazingshop.personal.userservice.events;
+
+import com.amazingshop.personal.userservice.config.AsyncConfig;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChatEventDispatcherTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ChatEventDispatcher dispatcher;
+
+    private ThreadPoolTaskExecutor executor;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        dispatcher.stop();
+        if (executor != null) {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    @DisplayName("onEvent: должен доставить события обработчику пачкой в рабочем потоке")
+    void onEvent_ShouldDeliverBatchOnWorkerThread() throws Exception {
+        // Arrange
+        CountDownLatch delivered = new CountDownLatch(3);
+        List<String> threads = new CopyOnWriteArrayList<>();
+        ChatEventHandler handler = events -> events.forEach(event -> {
+            threads.add(Thread.currentThread().getName());
+            delivered.countDown();
+        });
+        dispatcher = new ChatEventDispatcher(List.of(handler), meterRegistry, workers(1), 100, 10, 1);
+        dispatcher.start();
+
+        // Act
+        dispatcher.onEvent(new ChatCreated(1L, 1L));
+        dispatcher.onEvent(new ChatDeleted(2L, 1L));
+        dispatcher.onEvent(new ChatCreated(3L, 1L));
+
+        // Assert
+        assertTrue(delivered.await(5, TimeUnit.SECONDS));
+        assertTrue(threads.stream().allMatch(name -> name.startsWith("chat-events-")));
+        assertEquals(3, meterRegistry.get(ChatEventDispatcher.METRIC_NAME + ".lag").timer().count());
+    }
+
+    @Test
+    @DisplayName("onEvent: при переполненной очереди должен обработать событие в потоке вызывающего")
+    void onEvent_ShouldRunOnCallerThread_WhenQueueIsFull() {
+        // Arrange: рабочие потоки не запущены, очередь на одно событие
+        List<String> threads = new CopyOnWriteArrayList<>();
+        ChatEventHandler handler = events -> threads.add(Thread.currentThread().getName());
+        dispatcher = new ChatEventDispatcher(List.of(handler), meterRegistry, new SyncTaskExecutor(), 1, 10, 0);
+
+        // Act
+        dispatcher.onEvent(new ChatCreated(1L, 1L));
+        dispatcher.onEvent(new ChatCreated(2L, 1L));
+
+        // Assert
+        assertEquals(List.of(Thread.currentThread().getName()), threads);
+        assertEquals(1.0, meterRegistry.get(ChatEventDispatcher.METRIC_NAME + ".caller.runs").counter().count());
+        assertEquals(1, meterRegistry.get(ChatEventDispatcher.METRIC_NAME + ".handler").timer().count());
+    }
+
+    @Test
+    @DisplayName("onEvent: ошибка одного обработчика не должна мешать остальным")
+    void onEvent_ShouldIsolateHandlerFailures() {
+        // Arrange
+        List<ChatEvent> received = new CopyOnWriteArrayList<>();
+        ChatEventHandler failing = events -> {
+            throw new IllegalStateException("boom");
+        };
+        dispatcher = new ChatEventDispatcher(List.of(failing, received::addAll), meterRegistry, new SyncTaskExecutor(), 1, 10, 0);
+        dispatcher.onEvent(new ChatCreated(1L, 1L));
+
+        // Act
+        ChatDeleted event = new ChatDeleted(1L, 1L);
+        dispatcher.onEvent(event);
+
+        // Assert
+        assertEquals(List.of(event), received);
+    }
+
+    private ThreadPoolTaskExecutor workers(int count) {
+        executor = new AsyncConfig().chatEventsExecutor(count, false);
+        executor.initialize();
+        return executor;
+    }
+}
@@ -0,0 +1,106 @@
+package com.amazingshop.personal.userservice.json;
+
+import com.amazingshop.personal.userservice.models.ChatMessage;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.type.CollectionType;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.smile.SmileFactory;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON против CBOR и Smile для истории чата из 1000 сообщений: время кодирования и разбора.
+ * Размер ответа печатается перед запуском. Мапперы собраны так же, как в WebConfig.
+ * <p>
+ * Запуск: {@code ./mvnw test -Pbenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChatEncodingBenchmark {
+
+    private static final int MESSAGE_COUNT = 1000;
+
+    @Param({"json", "cbor", "smile"})
+    public String format;
+
+    private List<ChatMessage> messages;
+    private byte[] encoded;
+    private ObjectWriter writer;
+    private ObjectReader reader;
+
+    @Setup
+    public void setUp() throws IOException {
+        ObjectMapper mapper = mapper(format);
+        CollectionType type = mapper.getTypeFactory().constructCollectionType(List.class, ChatMessage.class);
+        writer = mapper.writerFor(type);
+        reader = mapper.readerFor(type);
+        messages = messages();
+        encoded = writer.writeValueAsBytes(messages);
+    }
+
+    @Benchmark
+    public byte[] encode() throws IOException {
+        return writer.writeValueAsBytes(messages);
+    }
+
+    @Benchmark
+    public List<ChatMessage> decode() throws IOException {
+        return reader.readValue(encoded);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void runBenchmarks() throws Exception {
+        List<ChatMessage> history = messages();
+        int jsonSize = mapper("json").writeValueAsBytes(history).length;
+        for (String name : List.of("json", "cbor", "smile")) {
+            int size = mapper(name).writeValueAsBytes(history).length;
+            System.out.printf("%-6s %8d bytes (%.0f%% of JSON)%n", name, size, size * 100.0 / jsonSize);
+        }
+
+        new Runner(new OptionsBuilder()
+                .include(ChatEncodingBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+
+    private static ObjectMapper mapper(String format) {
+        JsonFactory factory = switch (format) {
+            case "cbor" -> new CBORFactory();
+            case "smile" -> new SmileFactory();
+            default -> new JsonFactory();
+        };
+        return Jackson2ObjectMapperBuilder.json()
+                .factory(factory)
+                .serializers(new ChatMessageJsonSerializer(), new ChatJsonSerializer())
+                .build();
+    }
+
+    private static List<ChatMessage> messages() {
+        LocalDateTime now = LocalDateTime.of(2024, 5, 1, 12, 0);
+        List<ChatMessage> messages = new ArrayList<>(MESSAGE_COUNT);
+        for (int i = 0; i < MESSAGE_COUNT; i++) {
+            String content = "Сообщение " + i + ": " + "объяснение решения задачи по шагам. ".repeat(8);
+            messages.add(new ChatMessage((long) i, 1L, i % 2 == 0 ? "user" : "assistant", content,
+                    i % 5 == 0 ? "math" : null, now.plusSeconds(i), i, 0));
+        }
+        return messages;
+    }
+}
@@ -0,0 +1,79 @@
+package com.amazingshop.personal.userservice.json;
+
+import com.amazingshop.personal.userservice.dto.responses.ChatChangesResponse;
+import com.amazingshop.personal.userservice.models.Chat;
+import com.amazingshop.personal.userservice.models.ChatMessage;
+import com.fasterxml.jackson.databind.BeanDescription;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.introspect.BeanPropertyDefinition;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ChatJsonSerializersTest {
+
+    // Маппер как у Spring Boot, но без наших сериализаторов - эталон формата
+    private final ObjectMapper defaultMapper = Jackson2ObjectMapperBuilder.json().build();
+    private final ObjectMapper fastMapper = Jackson2ObjectMapperBuilder.json()
+            .serializers(new ChatMessageJsonSerializer(), new ChatJsonSerializer())
+            .build();
+
+    @Test
+    @DisplayName("ChatMessage: вывод должен совпадать с сериализацией по умолчанию, включая null")
+    void chatMessages_ShouldMatchDefaultSerialization() throws Exception {
+        ChatMessage full = new ChatMessage(1L, 10L, "user", "Привет, \"мир\"\n", "math",
+                LocalDateTime.of(2024, 5, 1, 12, 30, 15, 123_000_000), 7L, 5);
+        ChatMessage sparse = new ChatMessage(null, 10L, "assistant", "", null, null, 0L, 0);
+        List<ChatMessage> messages = List.of(full, sparse);
+
+        String json = fastMapper.writeValueAsString(messages);
+
+        assertEquals(defaultMapper.writeValueAsString(messages), json);
+        assertFalse(json.contains("changeSeq"));
+        assertFalse(json.contains("tokenCount"));
+    }
+
+    @Test
+    @DisplayName("Chat: вывод должен совпадать с сериализацией по умолчанию, в том числе внутри DTO")
+    void chats_ShouldMatchDefaultSerialization() throws Exception {
+        LocalDateTime now = LocalDateTime.of(2024, 5, 1, 12, 0);
+        Chat chat = new Chat(5L, 1L, "Title", "math", now, now.plusMinutes(1), 3,
+                "Preview", "assistant", now.plusMinutes(1), 9L);
+        Chat empty = new Chat(6L, 1L, "Empty", null, now, now, 0, null, null, null, 10L);
+        ChatChangesResponse changes = new ChatChangesResponse(42L, false, false, List.of(chat, empty),
+                List.of(new ChatMessage(2L, 5L, "user", "Hi", null, now, 8L, 1)), List.of(3L), List.of(4L));
+
+        assertEquals(defaultMapper.writeValueAsString(List.of(chat, empty)), fastMapper.writeValueAsString(List.of(chat, empty)));
+        assertEquals(defaultMapper.writeValueAsString(changes), fastMapper.writeValueAsString(changes));
+    }
+
+    @Test
+    @DisplayName("набор полей сериализаторов должен совпадать со свойствами сущностей")
+    void serializers_ShouldWriteEveryEntityProperty() throws Exception {
+        // Новое поле сущности без правки сериализатора молча пропало бы из ответа
+        assertEquals(beanProperties(ChatMessage.class), writtenFields(new ChatMessage()));
+        assertEquals(beanProperties(Chat.class), writtenFields(new Chat()));
+    }
+
+    // Свойства, которые BeanSerializer вывел бы с учётом @JsonIgnore
+    private List<String> beanProperties(Class<?> type) {
+        BeanDescription description = defaultMapper.getSerializationConfig()
+                .introspect(defaultMapper.constructType(type));
+        return description.findProperties().stream()
+                .filter(BeanPropertyDefinition::couldSerialize)
+                .map(BeanPropertyDefinition::getName)
+                .toList();
+    }
+
+    private List<String> writtenFields(Object value) throws Exception {
+        List<String> fields = new ArrayList<>();
+        fastMapper.readTree(fastMapper.writeValueAsString(value)).fieldNames().forEachRemaining(fields::add);
+        return fields;
+    }
+}
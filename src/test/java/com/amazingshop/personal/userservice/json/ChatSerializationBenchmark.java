@@ -0,0 +1,109 @@
+package com.amazingshop.personal.userservice.json;
+
+import com.amazingshop.personal.userservice.models.Chat;
+import com.amazingshop.personal.userservice.models.ChatMessage;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сериализация истории чата: BeanSerializer по умолчанию против {@link ChatMessageJsonSerializer}.
+ * Пишем в поток, как HttpMessageConverter пишет в ответ. Аллокации - gc.alloc.rate.norm (байт на операцию).
+ * <p>
+ * Запуск: {@code ./mvnw test -Pbenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChatSerializationBenchmark {
+
+    @Param({"1000"})
+    public int messageCount;
+
+    // writeValue закрывает поток, а OutputStream.nullOutputStream() после close бросает исключение
+    private final OutputStream sink = new OutputStream() {
+        @Override
+        public void write(int b) {
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+        }
+    };
+
+    private ObjectWriter defaultMessages;
+    private ObjectWriter fastMessages;
+    private ObjectWriter defaultChats;
+    private ObjectWriter fastChats;
+    private List<ChatMessage> messages;
+    private List<Chat> chats;
+
+    @Setup
+    public void setUp() {
+        ObjectMapper defaultMapper = Jackson2ObjectMapperBuilder.json().build();
+        ObjectMapper fastMapper = Jackson2ObjectMapperBuilder.json()
+                .serializers(new ChatMessageJsonSerializer(), new ChatJsonSerializer())
+                .build();
+        defaultMessages = defaultMapper.writerFor(defaultMapper.getTypeFactory().constructCollectionType(List.class, ChatMessage.class));
+        fastMessages = fastMapper.writerFor(fastMapper.getTypeFactory().constructCollectionType(List.class, ChatMessage.class));
+        defaultChats = defaultMapper.writerFor(defaultMapper.getTypeFactory().constructCollectionType(List.class, Chat.class));
+        fastChats = fastMapper.writerFor(fastMapper.getTypeFactory().constructCollectionType(List.class, Chat.class));
+
+        LocalDateTime now = LocalDateTime.of(2024, 5, 1, 12, 0);
+        messages = new ArrayList<>(messageCount);
+        chats = new ArrayList<>(messageCount);
+        for (int i = 0; i < messageCount; i++) {
+            String content = "Сообщение " + i + ": " + "объяснение решения задачи по шагам. ".repeat(8);
+            messages.add(new ChatMessage((long) i, 1L, i % 2 == 0 ? "user" : "assistant", content,
+                    i % 5 == 0 ? "math" : null, now.plusSeconds(i), i, 0));
+            chats.add(new Chat((long) i, 1L, "Chat " + i, "math", now, now.plusSeconds(i), i,
+                    content.substring(0, 100), "assistant", now.plusSeconds(i), i));
+        }
+    }
+
+    @Benchmark
+    public void messagesDefault() throws IOException {
+        defaultMessages.writeValue(sink, messages);
+    }
+
+    @Benchmark
+    public void messagesPreEncoded() throws IOException {
+        fastMessages.writeValue(sink, messages);
+    }
+
+    @Benchmark
+    public void chatsDefault() throws IOException {
+        defaultChats.writeValue(sink, chats);
+    }
+
+    @Benchmark
+    public void chatsPreEncoded() throws IOException {
+        fastChats.writeValue(sink, chats);
+    }
+
+    @Test
+    @Tag("benchmark")
+    void runBenchmarks() throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(ChatSerializationBenchmark.class.getSimpleName())
+                .addProfiler(GCProfiler.class)
+                .build())
+                .run();
+    }
+}
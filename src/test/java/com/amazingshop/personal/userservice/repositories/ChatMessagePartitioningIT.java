@@ -0,0 +1,299 @@
+package com.amazingshop.personal.userservice.repositories;
+
+import com.amazingshop.personal.userservice.dto.responses.ChatChangesResponse;
+import com.amazingshop.personal.userservice.interfaces.ChatSyncService;
+import com.amazingshop.personal.userservice.models.DailyStats;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.flywaydb.core.Flyway;
+import com.amazingshop.personal.userservice.services.TokenCountBackfiller;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Секционирование Chat_Messages на настоящем PostgreSQL.
+ * <p>
+ * До старта приложения база мигрируется до V7 и наполняется сообщениями в старой таблице,
+ * затем Flyway приложения выполняет V8 (докопирование и подмена). Запросы репозитория
+ * перехватываются и проверяются через EXPLAIN: план должен затрагивать только секции нужных чатов.
+ */
+@SpringBootTest
+@ActiveProfiles("test")
+class ChatMessagePartitioningIT {
+
+    private static final Pattern PARTITION = Pattern.compile("chat_messages_p\\d{2}");
+    private static final int PARTITIONS = 16;
+    private static final int CHATS = 20;
+    private static final int MESSAGES_PER_CHAT = 5;
+
+    private static EmbeddedPostgres postgres;
+
+    private final ChatMessageRepository messageRepository;
+    private final ChatRepository chatRepository;
+    private final TokenCountBackfiller tokenCountBackfiller;
+    private final ChatSyncService chatSyncService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private List<Long> chatIds;
+
+    @Autowired
+    ChatMessagePartitioningIT(ChatMessageRepository messageRepository, ChatRepository chatRepository,
+                              TokenCountBackfiller tokenCountBackfiller, ChatSyncService chatSyncService,
+                              DataSource dataSource, TransactionTemplate transactionTemplate) {
+        this.messageRepository = messageRepository;
+        this.chatRepository = chatRepository;
+        this.tokenCountBackfiller = tokenCountBackfiller;
+        this.chatSyncService = chatSyncService;
+        this.jdbcTemplate = new JdbcTemplate(dataSource);
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    @DynamicPropertySource
+    static void postgresProperties(DynamicPropertyRegistry registry) throws IOException {
+        postgres = EmbeddedPostgres.start();
+        DataSource dataSource = postgres.getPostgresDatabase();
+
+        Flyway.configure()
+                .dataSource(dataSource)
+                .locations("classpath:db/migration", "classpath:db/vendor/postgresql")
+                .target("7")
+                .load()
+                .migrate();
+        seedLegacyTable(new JdbcTemplate(dataSource));
+
+        registry.add("spring.datasource.url", () -> postgres.getJdbcUrl("postgres", "postgres"));
+        registry.add("spring.datasource.username", () -> "postgres");
+        registry.add("spring.datasource.password", () -> "");
+        registry.add("spring.datasource.driver-class-name", () -> "org.postgresql.Driver");
+        registry.add("spring.jpa.database-platform", () -> "org.hibernate.dialect.PostgreSQLDialect");
+        registry.add("spring.jpa.hibernate.ddl-auto", () -> "none");
+        registry.add("spring.jpa.properties.hibernate.session_factory.statement_inspector",
+                () -> RecordingInspector.class.getName());
+    }
+
+    @AfterAll
+    static void stopPostgres() throws IOException {
+        if (postgres != null) {
+            postgres.close();
+        }
+    }
+
+    // Данные кладутся в старую несекционированную таблицу - их должен перенести V8
+    private static void seedLegacyTable(JdbcTemplate jdbc) {
+        jdbc.update("INSERT INTO Users (username, password, email, role) VALUES ('partition_user', 'x', 'p@test.com', 0)");
+        for (int chat = 0; chat < CHATS; chat++) {
+            jdbc.update("INSERT INTO Chats (user_id, title) SELECT id, 'Chat " + chat + "' FROM Users");
+            for (int message = 0; message < MESSAGES_PER_CHAT; message++) {
+                jdbc.update("INSERT INTO Chat_Messages (chat_id, role, content, change_seq) " +
+                        "SELECT MAX(id), 'user', 'message', nextval('chat_change_seq') FROM Chats");
+            }
+        }
+
+        // Почти-дубликаты из времён до V13, без чатов
+        jdbc.update("INSERT INTO Users (username, password, email, role) VALUES ('Dup_User', 'x', ' Dup@Test.com', 0)");
+        jdbc.update("INSERT INTO Users (username, password, email, role) VALUES ('dup_user', 'x', 'dup@test.com', 0)");
+    }
+
+    @BeforeEach
+    void setUp() {
+        chatIds = jdbcTemplate.queryForList("SELECT id FROM Chats ORDER BY id", Long.class);
+        RecordingInspector.SQL.clear();
+    }
+
+    @Test
+    @DisplayName("V8: Chat_Messages должна стать секционированной без потери сообщений")
+    void migration_ShouldSwapInPartitionedTableWithAllRows() {
+        assertEquals("p", jdbcTemplate.queryForObject(
+                "SELECT relkind::text FROM pg_class WHERE relname = 'chat_messages'", String.class));
+        assertEquals(PARTITIONS, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_inherits WHERE inhparent = 'chat_messages'::regclass", Integer.class));
+        assertEquals(CHATS * MESSAGES_PER_CHAT, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM chat_messages", Integer.class));
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM pg_trigger WHERE tgname = 'trg_chat_messages_mirror'", Integer.class));
+    }
+
+    @Test
+    @DisplayName("V13: нормализованные имя и email - по User.normalize и только у самой ранней записи")
+    void migration_ShouldNormalizeIdentityLikeApplication() {
+        List<String> normalized = jdbcTemplate.queryForList(
+                "SELECT COALESCE(username_lc, '-') || '|' || COALESCE(email_lc, '-') FROM Users " +
+                        "WHERE LOWER(username) = 'dup_user' ORDER BY id", String.class);
+
+        // Пробелы обрезаны так же, как при регистрации, - иначе 'dup@test.com' досталось бы второй записи
+        assertEquals(List.of("dup_user|dup@test.com", "-|-"), normalized);
+    }
+
+    @Test
+    @DisplayName("findOwnedByChatId: план должен читать одну секцию")
+    void findOwnedByChatId_ShouldPruneToSinglePartition() {
+        Long chatId = chatIds.get(0);
+        Long userId = jdbcTemplate.queryForObject("SELECT user_id FROM Chats WHERE id = ?", Long.class, chatId);
+
+        assertEquals(MESSAGES_PER_CHAT, messageRepository.findOwnedByChatId(chatId, userId).size());
+
+        assertEquals(1, scannedPartitions(lastMessageQuery(), chatId, userId).size());
+    }
+
+    @Test
+    @DisplayName("findByChatIdAndIdLessThan: план должен читать одну секцию")
+    void findByChatIdAndIdLessThan_ShouldPruneToSinglePartition() {
+        Long chatId = chatIds.get(1);
+
+        messageRepository.findByChatIdAndIdLessThanOrderByCreatedAtAsc(chatId, Long.MAX_VALUE);
+
+        assertEquals(1, scannedPartitions(lastMessageQuery(), chatId, Long.MAX_VALUE).size());
+    }
+
+    @Test
+    @DisplayName("findContext: бюджет набирается по досчитанному token_count, план читает одну секцию")
+    void findContext_ShouldFillBudgetFromSinglePartition() {
+        Long chatId = chatIds.get(3);
+        Long userId = jdbcTemplate.queryForObject("SELECT user_id FROM Chats WHERE id = ?", Long.class, chatId);
+
+        // Сообщения из старой таблицы пришли без token_count - их досчитывает Tokenizer
+        tokenCountBackfiller.backfill();
+        assertEquals(0, jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM Chat_Messages WHERE token_count IS NULL", Integer.class));
+        RecordingInspector.SQL.clear();
+
+        // 'message' - 7 символов, по 4 символа на токен - 2 токена
+        List<ChatMessageRepository.ContextRow> rows = messageRepository.findContext(chatId, userId, 0, 5);
+
+        assertEquals(2, rows.size());
+        assertTrue(rows.get(0).getId() < rows.get(1).getId());
+        assertEquals(2, rows.get(1).getTokenCount());
+        assertEquals(1, scannedPartitions(lastMessageQuery(), chatId, userId, 0L, chatId, 0L, 5L).size());
+    }
+
+    @Test
+    @DisplayName("findChangedSince: план должен читать только секции переданных чатов")
+    void findChangedSince_ShouldPruneToChatPartitions() {
+        List<Long> ids = chatIds.subList(0, 2);
+
+        assertEquals(2 * MESSAGES_PER_CHAT, messageRepository.findChangedSince(ids, 0, PageRequest.of(0, 100)).size());
+
+        Set<String> partitions = scannedPartitions(lastMessageQuery(), ids.get(0), ids.get(1), 0L, 100);
+        assertTrue(partitions.size() <= 2, "Scanned partitions: " + partitions);
+    }
+
+    @Test
+    @DisplayName("getChanges: пользователь с чатами сверх лимита параметров PostgreSQL (32767) синхронизируется")
+    void getChanges_ShouldSync_WhenUserHasMoreChatsThanBindParameters() {
+        // Arrange: отдельный пользователь, чтобы не менять данные остальных проверок
+        jdbcTemplate.update("INSERT INTO Users (username, password, email, role) VALUES ('many_chats', 'x', 'many@test.com', 0)");
+        Long userId = jdbcTemplate.queryForObject("SELECT id FROM Users WHERE username = 'many_chats'", Long.class);
+        try {
+            jdbcTemplate.update("INSERT INTO Chats (user_id, title, change_seq) " +
+                    "SELECT ?, 'Chat ' || g, nextval('chat_change_seq') FROM generate_series(1, 33000) g", userId);
+            jdbcTemplate.update("INSERT INTO Chat_Messages (chat_id, role, content, change_seq) " +
+                    "SELECT MAX(id), 'user', 'message', nextval('chat_change_seq') FROM Chats WHERE user_id = ?", userId);
+
+            // Act
+            ChatChangesResponse changes = chatSyncService.getChanges(userId, 0, 100);
+
+            // Assert
+            assertEquals(33000, changes.getChats().size());
+            assertEquals(1, changes.getMessages().size());
+        } finally {
+            jdbcTemplate.update("DELETE FROM Chat_Messages WHERE chat_id IN (SELECT id FROM Chats WHERE user_id = ?)", userId);
+            jdbcTemplate.update("DELETE FROM Chats WHERE user_id = ?", userId);
+            jdbcTemplate.update("DELETE FROM Users WHERE id = ?", userId);
+        }
+    }
+
+    @Test
+    @DisplayName("deleteBatchByChatIdIn: план должен читать одну секцию")
+    void deleteBatchByChatIdIn_ShouldPruneToSinglePartition() {
+        Long chatId = chatIds.get(2);
+
+        // Откатываем удаление: нужен только текст запроса
+        transactionTemplate.execute(status -> {
+            messageRepository.deleteBatchByChatIdIn(List.of(chatId), 10);
+            status.setRollbackOnly();
+            return null;
+        });
+
+        assertEquals(1, scannedPartitions(lastMessageQuery(), chatId, chatId, 10).size());
+    }
+
+    @Test
+    @DisplayName("countByUserIdUpTo: без chat_id в условии читаются все секции")
+    void countByUserIdUpTo_ShouldScanAllPartitions() {
+        Long userId = jdbcTemplate.queryForObject("SELECT MIN(user_id) FROM Chats", Long.class);
+
+        messageRepository.countByUserIdUpTo(userId, 1000);
+
+        assertEquals(PARTITIONS, scannedPartitions(lastMessageQuery(), userId, 1000L).size());
+    }
+
+    @Test
+    @DisplayName("countActivityBySubject: группировка по корзине предмета должна выполняться на PostgreSQL")
+    void countActivityBySubject_ShouldGroupByBucket() {
+        LocalDateTime from = LocalDateTime.of(2000, 1, 1, 0, 0);
+        LocalDateTime to = LocalDateTime.now().plusDays(1);
+
+        List<ChatMessageRepository.SubjectActivity> activity = messageRepository.countActivityBySubject(from, to);
+        List<ChatRepository.SubjectCount> chats = chatRepository.countCreatedBySubject(from, to);
+
+        // Засеянные чаты без предмета - одна корзина OTHER
+        assertEquals(1, activity.size());
+        assertEquals(DailyStats.OTHER, activity.get(0).getSubject());
+        assertEquals(CHATS * MESSAGES_PER_CHAT, activity.get(0).getMessages());
+        assertEquals(1, activity.get(0).getActiveUsers());
+        assertEquals(1, chats.size());
+        assertEquals(CHATS, chats.get(0).getCount());
+    }
+
+    private Set<String> scannedPartitions(String sql, Object... args) {
+        String plan = jdbcTemplate.queryForList("EXPLAIN " + sql, String.class, args).stream()
+                .collect(Collectors.joining("\n"));
+        Matcher matcher = PARTITION.matcher(plan);
+        return matcher.results().map(result -> result.group()).collect(Collectors.toSet());
+    }
+
+    private static String lastMessageQuery() {
+        List<String> messageQueries = RecordingInspector.SQL.stream()
+                .filter(sql -> sql.toLowerCase().contains("chat_messages"))
+                .toList();
+        assertFalse(messageQueries.isEmpty(), "No query against chat_messages was executed");
+        return messageQueries.get(messageQueries.size() - 1);
+    }
+
+    /**
+     * Запоминает SQL, который Hibernate отправляет в базу
+     */
+    public static class RecordingInspector implements StatementInspector {
+
+        static final List<String> SQL = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            SQL.add(sql);
+            return sql;
+        }
+    }
+}
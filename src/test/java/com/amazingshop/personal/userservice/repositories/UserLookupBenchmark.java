@@ -0,0 +1,118 @@
+package com.amazingshop.personal.userservice.repositories;
+
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.flywaydb.core.Flyway;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Поиск пользователя по email на настоящем PostgreSQL с 5M пользователей:
+ * старый findByEmail (полный просмотр), LOWER(email) без индекса и email_lc/username_lc по индексам V13.
+ * <p>
+ * Запуск: {@code ./mvnw test -Pbenchmark -Dtest=UserLookupBenchmark} (наполнение базы - пара минут)
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class UserLookupBenchmark {
+
+    @Param({"5000000"})
+    public int users;
+
+    private EmbeddedPostgres postgres;
+    private Connection connection;
+    private PreparedStatement byEmail;
+    private PreparedStatement byLowerEmail;
+    private PreparedStatement byEmailLc;
+    private PreparedStatement usernameLcExists;
+
+    @Setup
+    public void setUp() throws IOException, SQLException {
+        postgres = EmbeddedPostgres.start();
+        Flyway.configure()
+                .dataSource(postgres.getPostgresDatabase())
+                .locations("classpath:db/migration", "classpath:db/vendor/postgresql")
+                .load()
+                .migrate();
+
+        connection = postgres.getPostgresDatabase().getConnection();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("INSERT INTO Users (username, password, email, role, username_lc, email_lc) " +
+                    "SELECT 'User' || g, 'x', 'User' || g || '@Example.com', 0, 'user' || g, 'user' || g || '@example.com' " +
+                    "FROM generate_series(1, " + users + ") g");
+            statement.execute("ANALYZE Users");
+        }
+
+        byEmail = connection.prepareStatement("SELECT id FROM Users WHERE email = ?");
+        byLowerEmail = connection.prepareStatement("SELECT id FROM Users WHERE LOWER(email) = ?");
+        byEmailLc = connection.prepareStatement("SELECT id FROM Users WHERE email_lc = ?");
+        usernameLcExists = connection.prepareStatement("SELECT EXISTS (SELECT 1 FROM Users WHERE username_lc = ?)");
+    }
+
+    @TearDown
+    public void tearDown() throws IOException, SQLException {
+        connection.close();
+        postgres.close();
+    }
+
+    // До V13: findByEmail с точным сравнением, индекса по email нет
+    @Benchmark
+    public long emailExactWithoutIndex() throws SQLException {
+        return lookup(byEmail, "User" + randomUser() + "@Example.com");
+    }
+
+    // Без учёта регистра без нормализованной колонки
+    @Benchmark
+    public long emailLowerWithoutIndex() throws SQLException {
+        return lookup(byLowerEmail, "user" + randomUser() + "@example.com");
+    }
+
+    @Benchmark
+    public long emailLcIndexed() throws SQLException {
+        return lookup(byEmailLc, "user" + randomUser() + "@example.com");
+    }
+
+    @Benchmark
+    public long usernameLcExistsIndexed() throws SQLException {
+        usernameLcExists.setString(1, "user" + randomUser());
+        try (ResultSet resultSet = usernameLcExists.executeQuery()) {
+            resultSet.next();
+            return resultSet.getBoolean(1) ? 1 : 0;
+        }
+    }
+
+    @Test
+    @Tag("benchmark")
+    void runBenchmarks() throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(UserLookupBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+
+    private int randomUser() {
+        return ThreadLocalRandom.current().nextInt(1, users + 1);
+    }
+
+    private static long lookup(PreparedStatement statement, String value) throws SQLException {
+        statement.setString(1, value);
+        try (ResultSet resultSet = statement.executeQuery()) {
+            return resultSet.next() ? resultSet.getLong(1) : -1;
+        }
+    }
+}
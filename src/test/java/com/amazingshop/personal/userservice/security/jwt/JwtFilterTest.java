@@ -25,6 +25,7 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 
 import java.io.IOException;
+import java.time.LocalDateTime;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -250,6 +251,22 @@ class JwtFilterTest {
         verify(filterChain, times(1)).doFilter(request, response);
     }
 
+    @Test
+    @DisplayName("doFilterInternal: не должен аутентифицировать аккаунт, поставленный на удаление")
+    void doFilterInternal_ShouldNotAuthenticate_WhenUserDisabled() throws ServletException, IOException {
+        User user = new User(TEST_USERNAME, "encodedPassword", TEST_USERNAME + "@example.com");
+        user.setRole(Role.USER);
+        user.setDeletionRequestedAt(LocalDateTime.now());
+        when(request.getHeader("Authorization")).thenReturn("Bearer " + VALID_TOKEN);
+        when(jwtUtil.validateTokenAndRetrieveClaim(VALID_TOKEN)).thenReturn(TEST_USERNAME);
+        when(userDetailsService.loadUserByUsername(TEST_USERNAME)).thenReturn(new UserDetailsImpl(user));
+
+        jwtFilter.doFilterInternal(request, response, filterChain);
+
+        assertNull(SecurityContextHolder.getContext().getAuthentication());
+        verify(filterChain, times(1)).doFilter(request, response);
+    }
+
     @Test
     @DisplayName("doFilterInternal: должен продолжить цепочку даже при RuntimeException")
     void doFilterInternal_ShouldContinueChain_WhenRuntimeException() throws ServletException, IOException {
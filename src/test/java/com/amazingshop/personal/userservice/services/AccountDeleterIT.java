@@ -0,0 +1,236 @@
+package com.amazingshop.personal.userservice.services;
+
+import com.amazingshop.personal.userservice.enums.JobStatus;
+import com.amazingshop.personal.userservice.enums.Role;
+import com.amazingshop.personal.userservice.interfaces.UserService;
+import com.amazingshop.personal.userservice.models.AccountDeletionJob;
+import com.amazingshop.personal.userservice.models.Chat;
+import com.amazingshop.personal.userservice.models.ChatMessage;
+import com.amazingshop.personal.userservice.models.User;
+import com.amazingshop.personal.userservice.repositories.AccountDeletionJobRepository;
+import com.amazingshop.personal.userservice.repositories.ChatMessageRepository;
+import com.amazingshop.personal.userservice.repositories.ChatRepository;
+import com.amazingshop.personal.userservice.repositories.MaintenanceLeaseRepository;
+import com.amazingshop.personal.userservice.repositories.UsersRepository;
+import com.amazingshop.personal.userservice.security.jwt.JwtUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.http.MediaType;
+import org.springframework.security.crypto.password.PasswordEncoder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// Маленькие порции, чтобы удаление шло в несколько шагов
+@Transactional
+@SpringBootTest(properties = {"chat.deletion.chat-batch-size=2", "chat.deletion.message-batch-size=2"})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class AccountDeleterIT {
+
+    private final MockMvc mockMvc;
+    private final ObjectMapper objectMapper;
+    private final JwtUtil jwtUtil;
+    private final PasswordEncoder passwordEncoder;
+    private final AccountDeleter accountDeleter;
+    private final ChatBulkDeleter chatBulkDeleter;
+    private final AccountDeletionJobRepository jobRepository;
+    private final UsersRepository usersRepository;
+    private final UserService userService;
+    private final ChatRepository chatRepository;
+    private final ChatMessageRepository messageRepository;
+    private final MaintenanceLeaseRepository leaseRepository;
+    private final EntityManager entityManager;
+
+    private String adminToken;
+    private User victim;
+
+    @Autowired
+    AccountDeleterIT(MockMvc mockMvc, ObjectMapper objectMapper, JwtUtil jwtUtil, PasswordEncoder passwordEncoder,
+                     AccountDeleter accountDeleter, ChatBulkDeleter chatBulkDeleter,
+                     AccountDeletionJobRepository jobRepository,
+                     UsersRepository usersRepository, UserService userService, ChatRepository chatRepository,
+                     ChatMessageRepository messageRepository, MaintenanceLeaseRepository leaseRepository,
+                     EntityManager entityManager) {
+        this.mockMvc = mockMvc;
+        this.objectMapper = objectMapper;
+        this.jwtUtil = jwtUtil;
+        this.passwordEncoder = passwordEncoder;
+        this.accountDeleter = accountDeleter;
+        this.chatBulkDeleter = chatBulkDeleter;
+        this.jobRepository = jobRepository;
+        this.usersRepository = usersRepository;
+        this.userService = userService;
+        this.chatRepository = chatRepository;
+        this.messageRepository = messageRepository;
+        this.leaseRepository = leaseRepository;
+        this.entityManager = entityManager;
+    }
+
+    @BeforeEach
+    void setUp() {
+        User admin = saveUser("deletionAdmin", Role.ADMIN);
+        adminToken = jwtUtil.generateAccessToken(admin.getUsername());
+
+        // Три чата по два сообщения: при порциях по 2 чата - две порции
+        victim = saveUser("deletionVictim", Role.USER);
+        for (int i = 0; i < 3; i++) {
+            Chat chat = saveChat(victim.getId());
+            saveMessage(chat.getId());
+            saveMessage(chat.getId());
+        }
+    }
+
+    @Test
+    @DisplayName("DELETE /admin/{id}: должен сразу закрыть вход и вернуть задачу в статусе PENDING")
+    void deleteUser_ShouldDisableLoginImmediately() throws Exception {
+        // Arrange: снимок UserDetails жертвы уже в кэше
+        String victimToken = jwtUtil.generateAccessToken(victim.getUsername());
+        mockMvc.perform(get("/api/v1/users/me").header("Authorization", "Bearer " + victimToken))
+                .andExpect(status().isOk());
+
+        // Act
+        String jobId = requestDeletion(victim.getId());
+
+        // Assert: история ещё на месте, но ни пароль, ни выданный токен больше не пускают
+        assertEquals(3, chatRepository.findAllIdsByUserId(victim.getId()).size());
+        mockMvc.perform(get("/api/v1/users/me").header("Authorization", "Bearer " + victimToken))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(post("/api/v1/auth/login")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"username\": \"deletionVictim\", \"password\": \"password\"}"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/api/v1/admin/deletion-jobs/" + jobId).header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("PENDING"));
+    }
+
+    @Test
+    @DisplayName("process: должен удалить историю порциями, затем пользователя, сохранить прогресс и удалить аренду")
+    void process_ShouldDeleteHistoryThenUser() throws Exception {
+        // Arrange
+        String jobId = requestDeletion(victim.getId());
+
+        // Act
+        accountDeleter.process(jobId);
+        entityManager.clear();
+
+        // Assert
+        assertFalse(usersRepository.existsById(victim.getId()));
+        assertTrue(chatRepository.findAllIdsByUserId(victim.getId()).isEmpty());
+        mockMvc.perform(get("/api/v1/admin/deletion-jobs/" + jobId).header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("COMPLETED"))
+                .andExpect(jsonPath("$.chatsDeleted").value(3))
+                .andExpect(jsonPath("$.messagesDeleted").value(6))
+                .andExpect(jsonPath("$.finishedAt").exists());
+        assertFalse(leaseRepository.existsById(AccountDeleter.LEASE_PREFIX + jobId));
+    }
+
+    @Test
+    @DisplayName("process: прерванная задача должна продолжиться с места остановки")
+    void process_ShouldResumeInterruptedJob() throws Exception {
+        // Arrange: первая порция удалена, узел упал посреди работы - задача осталась RUNNING
+        String jobId = requestDeletion(victim.getId());
+        jobRepository.updateStatus(jobId, JobStatus.RUNNING, null, LocalDateTime.now());
+        ChatBulkDeleter.Chunk first = chatBulkDeleter.deleteNextChunk(victim.getId());
+        jobRepository.addProgress(jobId, first.chats(), first.messages(), LocalDateTime.now());
+
+        // Act
+        accountDeleter.process(jobId);
+        entityManager.clear();
+
+        // Assert: прогресс двух запусков сложился - первая порция не удалялась повторно
+        assertEquals(2, first.chats());
+        AccountDeletionJob job = jobRepository.findById(jobId).orElseThrow();
+        assertEquals(JobStatus.COMPLETED, job.getStatus());
+        assertEquals(3, job.getChatsDeleted());
+        assertEquals(6, job.getMessagesDeleted());
+        assertFalse(usersRepository.existsById(victim.getId()));
+    }
+
+    @Test
+    @DisplayName("DELETE /admin/{id}: повторный запрос должен вернуть ту же задачу")
+    void deleteUser_ShouldBeIdempotent() throws Exception {
+        String jobId = requestDeletion(victim.getId());
+
+        assertEquals(jobId, requestDeletion(victim.getId()));
+        assertEquals(1, jobRepository.count());
+    }
+
+    @Test
+    @DisplayName("DELETE /admin/{id}: перезапуск сдавшейся задачи должен сбросить прошлую ошибку")
+    void deleteUser_ShouldClearError_WhenRestartingFailedJob() throws Exception {
+        // Arrange: задача исчерпала попытки
+        String jobId = requestDeletion(victim.getId());
+        LocalDateTime now = LocalDateTime.now();
+        jobRepository.recordFailure(jobId, JobStatus.FAILED, "Connection refused", now, now);
+
+        // Act
+        assertEquals(jobId, requestDeletion(victim.getId()));
+
+        // Assert
+        mockMvc.perform(get("/api/v1/admin/deletion-jobs/" + jobId).header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.status").value("PENDING"))
+                .andExpect(jsonPath("$.error").doesNotExist())
+                .andExpect(jsonPath("$.finishedAt").doesNotExist());
+    }
+
+    @Test
+    @DisplayName("GET /admin/deletion-jobs/{jobId}: должен вернуть 404 для неизвестной задачи")
+    void getDeletionJob_ShouldReturn404_WhenUnknown() throws Exception {
+        mockMvc.perform(get("/api/v1/admin/deletion-jobs/unknown").header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isNotFound());
+    }
+
+    @Test
+    @DisplayName("DELETE /admin/{id}: должен вернуть 404 для несуществующего пользователя")
+    void deleteUser_ShouldReturn404_WhenUserMissing() throws Exception {
+        mockMvc.perform(delete("/api/v1/admin/" + Long.MAX_VALUE).header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isNotFound());
+    }
+
+    private String requestDeletion(Long userId) throws Exception {
+        String body = mockMvc.perform(delete("/api/v1/admin/" + userId).header("Authorization", "Bearer " + adminToken))
+                .andExpect(status().isAccepted())
+                .andReturn().getResponse().getContentAsString();
+        return objectMapper.readTree(body).get("jobId").asText();
+    }
+
+    private User saveUser(String username, Role role) {
+        User user = new User(username, passwordEncoder.encode("password"), username + "@test.com");
+        user.setRole(role);
+        return userService.save(user);
+    }
+
+    private Chat saveChat(Long userId) {
+        Chat chat = new Chat();
+        chat.setUserId(userId);
+        chat.setTitle("Deletion chat");
+        return chatRepository.save(chat);
+    }
+
+    private void saveMessage(Long chatId) {
+        ChatMessage message = new ChatMessage();
+        message.setChatId(chatId);
+        message.setRole("user");
+        message.setContent("Question");
+        messageRepository.saveAndFlush(message);
+    }
+}
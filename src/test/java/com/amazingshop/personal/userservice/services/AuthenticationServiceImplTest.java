@@ -1,5 +1,6 @@
 package com.amazingshop.personal.userservice.services;
 
+import com.amazingshop.personal.userservice.datasource.PrimaryReads;
 import com.amazingshop.personal.userservice.dto.requests.AuthenticationDTO;
 import com.amazingshop.personal.userservice.dto.requests.RefreshTokenRequest;
 import com.amazingshop.personal.userservice.dto.responses.TokenPairResponse;
@@ -11,10 +12,12 @@ import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.BadCredentialsException;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.util.Optional;
 
@@ -34,6 +37,9 @@ class AuthenticationServiceImplTest {
     @Mock
     private UserService userService;
 
+    @Spy
+    private PrimaryReads primaryReads = new PrimaryReads(mock(PlatformTransactionManager.class));
+
     @InjectMocks
     private AuthenticationServiceImpl authenticationService;
 
@@ -67,6 +73,7 @@ class AuthenticationServiceImplTest {
         assertEquals("testUser", response.getUsername());
 
         verify(authenticationManager, times(1)).authenticate(any());
+        verify(primaryReads).call(any());
         verify(userService, times(1)).save(any(User.class));
     }
 
@@ -0,0 +1,150 @@
+package com.amazingshop.personal.userservice.services;
+
+import com.amazingshop.personal.userservice.cache.ChatMessageTailCache;
+import com.amazingshop.personal.userservice.models.Chat;
+import com.amazingshop.personal.userservice.models.ChatArchive;
+import com.amazingshop.personal.userservice.models.ChatMessage;
+import com.amazingshop.personal.userservice.repositories.ChatArchiveRepository;
+import com.amazingshop.personal.userservice.repositories.ChatMessageRepository;
+import com.amazingshop.personal.userservice.repositories.ChatRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ChatArchiverTest {
+
+    @Mock
+    private ChatRepository chatRepository;
+
+    @Mock
+    private ChatMessageRepository messageRepository;
+
+    @Mock
+    private ChatArchiveRepository archiveRepository;
+
+    @Mock
+    private ChatMessageTailCache tailCache;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ChatArchiver archiver;
+
+    private static final Long CHAT_ID = 10L;
+    private static final LocalDateTime CUTOFF = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @BeforeEach
+    void setUp() {
+        archiver = new ChatArchiver(chatRepository, messageRepository, archiveRepository, tailCache,
+                new CharacterRatioTokenizer(4), transactionManager, 7, 100);
+    }
+
+    @Test
+    @DisplayName("archiveChatsIdleSince: должен сжать историю в архив и убрать её из Chat_Messages")
+    void archiveChatsIdleSince_ShouldMoveMessagesToArchive() {
+        // Arrange
+        List<ChatMessage> messages = List.of(message(1L, "user", "Hello"), message(2L, "assistant", "Hi"));
+
+        // Act
+        ChatArchive archive = archive(messages);
+
+        // Assert
+        assertEquals(CHAT_ID, archive.getChatId());
+        assertEquals(2, archive.getMessageCount());
+        verify(messageRepository).deleteByChatId(CHAT_ID);
+        verify(tailCache).invalidate(CHAT_ID);
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    @DisplayName("archiveChatsIdleSince: должен пропустить чат, который успел ожить")
+    void archiveChatsIdleSince_ShouldSkipChat_WhenItBecameActive() {
+        // Arrange
+        when(chatRepository.findArchivableIds(eq(CUTOFF), eq(0L), any(Pageable.class))).thenReturn(List.of(CHAT_ID));
+        when(chatRepository.findArchivableIds(eq(CUTOFF), eq(CHAT_ID), any(Pageable.class))).thenReturn(List.of());
+        when(chatRepository.findIdleForUpdate(CHAT_ID, CUTOFF)).thenReturn(Optional.empty());
+
+        // Act
+        int archived = archiver.archiveChatsIdleSince(CUTOFF);
+
+        // Assert
+        assertEquals(0, archived);
+        verify(archiveRepository, never()).save(any());
+        verify(messageRepository, never()).deleteByChatId(any());
+    }
+
+    @Test
+    @DisplayName("findArchivedMessages: должен распаковать историю без потерь")
+    void findArchivedMessages_ShouldDecodeArchivedHistory() {
+        // Arrange
+        List<ChatMessage> messages = List.of(message(1L, "user", "Привет"), message(2L, "assistant", "Здравствуйте"));
+        ChatArchive archive = archive(messages);
+        when(archiveRepository.findById(CHAT_ID)).thenReturn(Optional.of(archive));
+
+        // Act
+        List<ChatMessage> result = archiver.findArchivedMessages(CHAT_ID);
+
+        // Assert
+        assertEquals(messages, result);
+    }
+
+    @Test
+    @DisplayName("promote: должен вернуть сообщения с прежними id и удалить архив")
+    void promote_ShouldRestoreMessagesAndDropArchive() {
+        // Arrange
+        ChatMessage first = message(1L, "user", "Hello");
+        ChatArchive archive = archive(List.of(first));
+        when(archiveRepository.findById(CHAT_ID)).thenReturn(Optional.of(archive));
+
+        // Act
+        boolean promoted = archiver.promote(CHAT_ID);
+
+        // Assert
+        assertTrue(promoted);
+        verify(messageRepository).restore(1L, CHAT_ID, "user", "Hello", null, first.getCreatedAt(), 1L, 2);
+        verify(archiveRepository).delete(archive);
+    }
+
+    @Test
+    @DisplayName("promote: для чата вне архива ничего не делает")
+    void promote_ShouldDoNothing_WhenChatIsNotArchived() {
+        when(archiveRepository.findById(CHAT_ID)).thenReturn(Optional.empty());
+
+        assertFalse(archiver.promote(CHAT_ID));
+        verify(messageRepository, never()).restore(any(), any(), any(), any(), any(), any(), anyLong(), anyInt());
+    }
+
+    private ChatArchive archive(List<ChatMessage> messages) {
+        when(chatRepository.findArchivableIds(eq(CUTOFF), eq(0L), any(Pageable.class))).thenReturn(List.of(CHAT_ID));
+        when(chatRepository.findArchivableIds(eq(CUTOFF), eq(CHAT_ID), any(Pageable.class))).thenReturn(List.of());
+        when(chatRepository.findIdleForUpdate(CHAT_ID, CUTOFF)).thenReturn(Optional.of(new Chat()));
+        when(messageRepository.findByChatIdOrderByIdAsc(CHAT_ID)).thenReturn(messages);
+
+        assertEquals(1, archiver.archiveChatsIdleSince(CUTOFF));
+
+        ArgumentCaptor<ChatArchive> captor = ArgumentCaptor.forClass(ChatArchive.class);
+        verify(archiveRepository).save(captor.capture());
+        return captor.getValue();
+    }
+
+    // token_count в архиве не хранится - из архива сообщение возвращается без него
+    private static ChatMessage message(Long id, String role, String content) {
+        return new ChatMessage(id, CHAT_ID, role, content, null, LocalDateTime.of(2023, 12, 1, 10, 0), id, null);
+    }
+}
@@ -0,0 +1,234 @@
+package com.amazingshop.personal.userservice.services;
+
+import com.amazingshop.personal.userservice.cache.ChatMessageTailCache;
+import com.amazingshop.personal.userservice.dto.responses.DeletionJobResponse;
+import com.amazingshop.personal.userservice.enums.JobStatus;
+import com.amazingshop.personal.userservice.events.ChatDeleted;
+import com.amazingshop.personal.userservice.models.ChatDeletionJob;
+import com.amazingshop.personal.userservice.repositories.ChatDeletionJobRepository;
+import com.amazingshop.personal.userservice.repositories.ChatMessageRepository;
+import com.amazingshop.personal.userservice.repositories.ChatRepository;
+import com.amazingshop.personal.userservice.repositories.ChatTombstoneRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.core.task.SyncTaskExecutor;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ChatBulkDeleterTest {
+
+    @Mock
+    private ChatRepository chatRepository;
+
+    @Mock
+    private ChatMessageRepository messageRepository;
+
+    @Mock
+    private ChatTombstoneRepository tombstoneRepository;
+
+    @Mock
+    private ChatDeletionJobRepository jobRepository;
+
+    @Mock
+    private ChatMessageTailCache tailCache;
+
+    @Mock
+    private MaintenanceLeases leases;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    private static final Long USER_ID = 1L;
+    private static final int CHAT_BATCH = 2;
+    private static final int MESSAGE_BATCH = 3;
+    private static final int THRESHOLD = 10;
+    private static final int MAX_ATTEMPTS = 3;
+
+    @Test
+    @DisplayName("deleteNow: должен удалять сообщения и чаты порциями")
+    void deleteNow_ShouldDeleteInChunks() {
+        // Arrange
+        ChatBulkDeleter deleter = deleter(new SyncTaskExecutor());
+        when(chatRepository.findIdsByUserId(eq(USER_ID), any(Pageable.class)))
+                .thenReturn(List.of(1L, 2L), List.of(3L), List.of());
+        when(messageRepository.deleteBatchByChatIdIn(List.of(1L, 2L), MESSAGE_BATCH)).thenReturn(3, 1);
+        when(messageRepository.deleteBatchByChatIdIn(List.of(3L), MESSAGE_BATCH)).thenReturn(0);
+        when(chatRepository.deleteByIdInAndUserId(List.of(1L, 2L), USER_ID)).thenReturn(2);
+        when(chatRepository.deleteByIdInAndUserId(List.of(3L), USER_ID)).thenReturn(1);
+
+        // Act
+        DeletionJobResponse result = deleter.deleteNow(USER_ID);
+
+        // Assert
+        assertEquals(JobStatus.COMPLETED, result.getStatus());
+        assertEquals(3, result.getChatsDeleted());
+        assertEquals(4, result.getMessagesDeleted());
+        verify(tombstoneRepository).insertForChats(List.of(1L, 2L));
+        verify(tombstoneRepository).insertForChats(List.of(3L));
+        verify(chatRepository, times(2)).lockChangeSeqOwner(USER_ID);
+        verify(tailCache).invalidateAll(List.of(1L, 2L));
+        verify(eventPublisher).publishEvent(new ChatDeleted(3L, USER_ID));
+        // Каждая порция коммитится отдельно: 2 + 1 пачки сообщений и 2 пачки чатов
+        verify(transactionManager, times(5)).commit(any());
+    }
+
+    @Test
+    @DisplayName("exceedsAsyncThreshold: должен считать сообщения не дальше порога")
+    void exceedsAsyncThreshold_ShouldCountUpToThreshold() {
+        ChatBulkDeleter deleter = deleter(new SyncTaskExecutor());
+        when(messageRepository.countByUserIdUpTo(USER_ID, THRESHOLD + 1L)).thenReturn((long) THRESHOLD + 1);
+
+        assertTrue(deleter.exceedsAsyncThreshold(USER_ID));
+    }
+
+    @Test
+    @DisplayName("submit: должен сохранить задачу и выполнить её под арендой")
+    void submit_ShouldPersistJobAndRunIt() {
+        // Arrange
+        ChatBulkDeleter deleter = deleter(new SyncTaskExecutor());
+        when(jobRepository.findFirstByUserIdAndStatusIn(eq(USER_ID), any())).thenReturn(Optional.empty());
+        when(jobRepository.save(any(ChatDeletionJob.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(jobRepository.findById(any())).thenAnswer(inv ->
+                Optional.of(new ChatDeletionJob(inv.getArgument(0), USER_ID, LocalDateTime.now())));
+        when(leases.tryAcquire(any(), any())).thenReturn(true);
+        when(chatRepository.findIdsByUserId(eq(USER_ID), any(Pageable.class))).thenReturn(List.of(1L), List.of());
+        when(messageRepository.deleteBatchByChatIdIn(List.of(1L), MESSAGE_BATCH)).thenReturn(2);
+        when(chatRepository.deleteByIdInAndUserId(List.of(1L), USER_ID)).thenReturn(1);
+
+        // Act
+        DeletionJobResponse submitted = deleter.submit(USER_ID);
+
+        // Assert: прогресс и итог пишутся в Chat_Deletion_Jobs, аренда завершённой задачи удаляется
+        assertEquals(JobStatus.PENDING, submitted.getStatus());
+        verify(jobRepository).save(argThat(job -> job.getUserId().equals(USER_ID)));
+        verify(jobRepository).addProgress(eq(submitted.getJobId()), eq(1L), eq(2L), any());
+        verify(jobRepository).updateStatus(eq(submitted.getJobId()), eq(JobStatus.COMPLETED), any(), any());
+        verify(leases).delete(ChatBulkDeleter.LEASE_PREFIX + submitted.getJobId());
+        verify(leases, never()).release(any());
+    }
+
+    @Test
+    @DisplayName("submit: должен вернуть уже идущую задачу пользователя вместо новой")
+    void submit_ShouldReturnActiveJob_WhenAlreadyRunning() {
+        // Arrange
+        ChatBulkDeleter deleter = deleter(new SyncTaskExecutor());
+        ChatDeletionJob active = new ChatDeletionJob("job-1", USER_ID, LocalDateTime.now());
+        active.setStatus(JobStatus.RUNNING);
+        when(jobRepository.findFirstByUserIdAndStatusIn(eq(USER_ID), any())).thenReturn(Optional.of(active));
+
+        // Act
+        DeletionJobResponse result = deleter.submit(USER_ID);
+
+        // Assert
+        assertEquals("job-1", result.getJobId());
+        assertEquals(JobStatus.RUNNING, result.getStatus());
+        verify(jobRepository, never()).save(any());
+    }
+
+    @Test
+    @DisplayName("submit: при переполненной очереди задача должна остаться в таблице до подбора")
+    void submit_ShouldKeepJob_WhenQueueIsFull() {
+        // Arrange
+        ChatBulkDeleter deleter = deleter(task -> {
+            throw new TaskRejectedException("full");
+        });
+        when(jobRepository.findFirstByUserIdAndStatusIn(eq(USER_ID), any())).thenReturn(Optional.empty());
+        when(jobRepository.save(any(ChatDeletionJob.class))).thenAnswer(inv -> inv.getArgument(0));
+
+        // Act
+        DeletionJobResponse result = deleter.submit(USER_ID);
+
+        // Assert
+        assertEquals(JobStatus.PENDING, result.getStatus());
+        verify(chatRepository, never()).findIdsByUserId(anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("process: должен пропустить задачу, аренду которой держит другой узел")
+    void process_ShouldSkip_WhenLeaseIsHeld() {
+        ChatBulkDeleter deleter = deleter(new SyncTaskExecutor());
+        when(leases.tryAcquire(any(), any())).thenReturn(false);
+
+        deleter.process("job-1");
+
+        verify(jobRepository, never()).findById(any());
+        verify(leases, never()).release(any());
+    }
+
+    @Test
+    @DisplayName("process: упавшая попытка должна вернуть задачу в очередь с ошибкой")
+    void process_ShouldRecordFailure_WhenChunkFails() {
+        // Arrange
+        ChatBulkDeleter deleter = deleter(new SyncTaskExecutor());
+        when(leases.tryAcquire(any(), any())).thenReturn(true);
+        when(jobRepository.findById("job-1"))
+                .thenReturn(Optional.of(new ChatDeletionJob("job-1", USER_ID, LocalDateTime.now())));
+        when(chatRepository.findIdsByUserId(eq(USER_ID), any(Pageable.class))).thenThrow(new IllegalStateException("db down"));
+
+        // Act
+        deleter.process("job-1");
+
+        // Assert
+        verify(jobRepository).recordFailure(eq("job-1"), eq(JobStatus.PENDING), eq("db down"), isNull(), any());
+        verify(leases).release(ChatBulkDeleter.LEASE_PREFIX + "job-1");
+        verify(leases, never()).delete(any());
+    }
+
+    @Test
+    @DisplayName("process: сдавшаяся задача должна удалить свою аренду")
+    void process_ShouldDeleteLease_WhenJobGivesUp() {
+        // Arrange: последняя попытка
+        ChatBulkDeleter deleter = deleter(new SyncTaskExecutor());
+        ChatDeletionJob job = new ChatDeletionJob("job-1", USER_ID, LocalDateTime.now());
+        job.setAttempts(MAX_ATTEMPTS - 1);
+        when(leases.tryAcquire(any(), any())).thenReturn(true);
+        when(jobRepository.findById("job-1")).thenReturn(Optional.of(job));
+        when(chatRepository.findIdsByUserId(eq(USER_ID), any(Pageable.class))).thenThrow(new IllegalStateException("db down"));
+
+        // Act
+        deleter.process("job-1");
+
+        // Assert
+        verify(jobRepository).recordFailure(eq("job-1"), eq(JobStatus.FAILED), eq("db down"), any(), any());
+        verify(leases).delete(ChatBulkDeleter.LEASE_PREFIX + "job-1");
+        verify(leases, never()).release(any());
+    }
+
+    @Test
+    @DisplayName("purgeFinishedJobs: должен удалить старые отчёты и истёкшие аренды задач")
+    void purgeFinishedJobs_ShouldPurgeExpiredLeases() {
+        ChatBulkDeleter deleter = deleter(new SyncTaskExecutor());
+        when(jobRepository.deleteFinishedBefore(any())).thenReturn(2);
+
+        assertEquals(2, deleter.purgeFinishedJobs());
+        verify(leases).purgeExpired(ChatBulkDeleter.LEASE_PREFIX);
+    }
+
+    private ChatBulkDeleter deleter(TaskExecutor executor) {
+        return new ChatBulkDeleter(chatRepository, messageRepository, tombstoneRepository, jobRepository, tailCache,
+                leases, transactionManager, executor, eventPublisher, CHAT_BATCH, MESSAGE_BATCH, THRESHOLD,
+                5, MAX_ATTEMPTS, 20, 24);
+    }
+}
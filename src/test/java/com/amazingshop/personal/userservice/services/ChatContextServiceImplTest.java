@@ -0,0 +1,222 @@
+package com.amazingshop.personal.userservice.services;
+
+import com.amazingshop.personal.userservice.dto.responses.ChatContextResponse;
+import com.amazingshop.personal.userservice.models.ChatMessage;
+import com.amazingshop.personal.userservice.models.ChatRollingSummary;
+import com.amazingshop.personal.userservice.repositories.ChatMessageRepository;
+import com.amazingshop.personal.userservice.repositories.ChatRepository;
+import com.amazingshop.personal.userservice.repositories.ChatRollingSummaryRepository;
+import com.amazingshop.personal.userservice.util.exceptions.ChatNotFoundException;
+import com.amazingshop.personal.userservice.util.exceptions.UnauthorizedException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ChatContextServiceImplTest {
+
+    @Mock
+    private ChatRepository chatRepository;
+
+    @Mock
+    private ChatMessageRepository messageRepository;
+
+    @Mock
+    private ChatRollingSummaryRepository summaryRepository;
+
+    @Mock
+    private ChatArchiver archiver;
+
+    private ChatContextServiceImpl contextService;
+
+    private static final Long CHAT_ID = 1L;
+    private static final Long USER_ID = 100L;
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2024, 5, 1, 12, 0);
+
+    @BeforeEach
+    void setUp() {
+        contextService = new ChatContextServiceImpl(chatRepository, messageRepository, summaryRepository, archiver,
+                new CharacterRatioTokenizer(4));
+    }
+
+    @Test
+    @DisplayName("getContext: должен вернуть строки из индекса и пометить отрезанную историю")
+    void getContext_ShouldReturnRowsAndTruncatedFlag() {
+        // Arrange
+        when(messageRepository.findContext(CHAT_ID, USER_ID, 0L, 25))
+                .thenReturn(List.of(row(5L, "b".repeat(40), 10), row(6L, "c".repeat(40), 10)));
+        when(messageRepository.existsByChatIdAndIdGreaterThanAndIdLessThan(CHAT_ID, 0L, 5L)).thenReturn(true);
+
+        // Act
+        ChatContextResponse response = contextService.getContext(CHAT_ID, USER_ID, 25);
+
+        // Assert
+        assertEquals(20, response.getTokenCount());
+        assertTrue(response.isTruncated());
+        assertEquals(List.of(5L, 6L), response.getMessages().stream().map(m -> m.getId()).toList());
+        verifyNoInteractions(archiver);
+    }
+
+    @Test
+    @DisplayName("getContext: должен отдать краткое содержание и хвост после watermark в остатке бюджета")
+    void getContext_ShouldReturnSummaryAndTailAfterWatermark() {
+        // Arrange
+        when(summaryRepository.findById(CHAT_ID)).thenReturn(Optional.of(summary(40L, 30)));
+        when(messageRepository.findContext(CHAT_ID, USER_ID, 40L, 70))
+                .thenReturn(List.of(row(41L, "d".repeat(40), 10)));
+        when(messageRepository.existsByChatIdAndIdGreaterThanAndIdLessThan(CHAT_ID, 40L, 41L)).thenReturn(false);
+
+        // Act
+        ChatContextResponse response = contextService.getContext(CHAT_ID, USER_ID, 100);
+
+        // Assert
+        assertEquals("user: earlier.", response.getSummary());
+        assertEquals(40L, response.getSummarizedThroughId());
+        assertEquals(40, response.getTokenCount());
+        assertFalse(response.isTruncated());
+        assertEquals(1, response.getMessages().size());
+    }
+
+    @Test
+    @DisplayName("getContext: краткое содержание больше половины бюджета не отдаётся - бюджет целиком на сообщения")
+    void getContext_ShouldSkipSummary_WhenItTakesMoreThanHalfOfBudget() {
+        when(summaryRepository.findById(CHAT_ID)).thenReturn(Optional.of(summary(40L, 30)));
+        when(messageRepository.findContext(CHAT_ID, USER_ID, 0L, 50))
+                .thenReturn(List.of(row(41L, "d".repeat(40), 10)));
+
+        ChatContextResponse response = contextService.getContext(CHAT_ID, USER_ID, 50);
+
+        assertNull(response.getSummary());
+        assertNull(response.getSummarizedThroughId());
+        assertEquals(10, response.getTokenCount());
+    }
+
+    @Test
+    @DisplayName("getContext: должен выбросить IllegalArgumentException для неположительного бюджета")
+    void getContext_ShouldThrow_WhenBudgetIsNotPositive() {
+        assertThrows(IllegalArgumentException.class, () -> contextService.getContext(CHAT_ID, USER_ID, 0));
+        verifyNoInteractions(messageRepository);
+    }
+
+    @Test
+    @DisplayName("getContext: должен выбросить UnauthorizedException для чужого чата")
+    void getContext_ShouldThrowUnauthorized_WhenUserNotOwner() {
+        when(messageRepository.findContext(CHAT_ID, USER_ID, 0L, 100)).thenReturn(List.of());
+        when(chatRepository.existsByIdAndUserId(CHAT_ID, USER_ID)).thenReturn(false);
+        when(chatRepository.existsById(CHAT_ID)).thenReturn(true);
+
+        assertThrows(UnauthorizedException.class, () -> contextService.getContext(CHAT_ID, USER_ID, 100));
+    }
+
+    @Test
+    @DisplayName("getContext: должен выбросить ChatNotFoundException для несуществующего чата")
+    void getContext_ShouldThrowNotFound_WhenChatDoesNotExist() {
+        when(messageRepository.findContext(CHAT_ID, USER_ID, 0L, 100)).thenReturn(List.of());
+        when(chatRepository.existsByIdAndUserId(CHAT_ID, USER_ID)).thenReturn(false);
+        when(chatRepository.existsById(CHAT_ID)).thenReturn(false);
+
+        assertThrows(ChatNotFoundException.class, () -> contextService.getContext(CHAT_ID, USER_ID, 100));
+    }
+
+    @Test
+    @DisplayName("getContext: архивный чат должен считаться по архиву тем же токенизатором")
+    void getContext_ShouldCountArchivedHistory() {
+        // Arrange
+        when(messageRepository.findContext(CHAT_ID, USER_ID, 0L, 15)).thenReturn(List.of());
+        when(chatRepository.existsByIdAndUserId(CHAT_ID, USER_ID)).thenReturn(true);
+        when(archiver.findArchivedMessages(CHAT_ID)).thenReturn(List.of(
+                message(1L, "a".repeat(40)), message(2L, "b".repeat(40))));
+
+        // Act
+        ChatContextResponse response = contextService.getContext(CHAT_ID, USER_ID, 15);
+
+        // Assert
+        assertEquals(1, response.getMessages().size());
+        assertEquals(2L, response.getMessages().get(0).getId());
+        assertEquals(10, response.getTokenCount());
+        assertTrue(response.isTruncated());
+        verify(messageRepository, never()).existsByChatIdAndIdGreaterThanAndIdLessThan(anyLong(), anyLong(), anyLong());
+    }
+
+    @Test
+    @DisplayName("getContext: недосчитанные сообщения до V11 должны считаться токенизатором на лету")
+    void getContext_ShouldCountUncountedMessagesOnTheFly() {
+        // Arrange: первое уже досчитано, второе ещё нет
+        when(messageRepository.existsByChatIdAndIdGreaterThanAndTokenCountIsNull(CHAT_ID, 0L)).thenReturn(true);
+        when(chatRepository.existsByIdAndUserId(CHAT_ID, USER_ID)).thenReturn(true);
+        when(messageRepository.findByChatIdAndIdGreaterThanOrderByIdAsc(eq(CHAT_ID), eq(0L), any()))
+                .thenReturn(List.of(message(1L, "a".repeat(40), 10), message(2L, "b".repeat(40), 10),
+                        message(3L, "c".repeat(20))));
+
+        // Act
+        ChatContextResponse response = contextService.getContext(CHAT_ID, USER_ID, 15);
+
+        // Assert: 5 токенов по длине плюс 10 сохранённых
+        assertEquals(List.of(2L, 3L), response.getMessages().stream().map(m -> m.getId()).toList());
+        assertEquals(15, response.getTokenCount());
+        assertTrue(response.isTruncated());
+        verify(messageRepository, never()).findContext(anyLong(), anyLong(), anyLong(), anyLong());
+    }
+
+    @Test
+    @DisplayName("getContext: недосчитанный чужой чат должен дать UnauthorizedException")
+    void getContext_ShouldThrowUnauthorized_WhenUncountedChatIsForeign() {
+        when(messageRepository.existsByChatIdAndIdGreaterThanAndTokenCountIsNull(CHAT_ID, 0L)).thenReturn(true);
+        when(chatRepository.existsByIdAndUserId(CHAT_ID, USER_ID)).thenReturn(false);
+        when(chatRepository.existsById(CHAT_ID)).thenReturn(true);
+
+        assertThrows(UnauthorizedException.class, () -> contextService.getContext(CHAT_ID, USER_ID, 100));
+        verify(messageRepository, never()).findByChatIdAndIdGreaterThanOrderByIdAsc(anyLong(), anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("getContext: если не влезает даже последнее сообщение - пустой список с truncated=true")
+    void getContext_ShouldReturnEmpty_WhenLastMessageExceedsBudget() {
+        when(messageRepository.findContext(CHAT_ID, USER_ID, 0L, 1)).thenReturn(List.of());
+        when(chatRepository.existsByIdAndUserId(CHAT_ID, USER_ID)).thenReturn(true);
+        when(archiver.findArchivedMessages(CHAT_ID)).thenReturn(List.of());
+        when(messageRepository.existsByChatIdAndIdGreaterThan(CHAT_ID, 0L)).thenReturn(true);
+
+        ChatContextResponse response = contextService.getContext(CHAT_ID, USER_ID, 1);
+
+        assertTrue(response.getMessages().isEmpty());
+        assertTrue(response.isTruncated());
+    }
+
+    private static ChatMessageRepository.ContextRow row(Long id, String content, int tokenCount) {
+        return new ChatMessageRepository.ContextRow() {
+            public Long getId() { return id; }
+            public String getRole() { return "user"; }
+            public String getContent() { return content; }
+            public String getTemplateUsed() { return null; }
+            public LocalDateTime getCreatedAt() { return CREATED_AT; }
+            public int getTokenCount() { return tokenCount; }
+        };
+    }
+
+    private static ChatRollingSummary summary(long lastMessageId, int tokenCount) {
+        return new ChatRollingSummary(CHAT_ID, "user: earlier.", tokenCount, lastMessageId, 40, CREATED_AT);
+    }
+
+    // token_count в архиве не хранится, у сообщений до V11 его ещё нет
+    private static ChatMessage message(Long id, String content) {
+        return message(id, content, null);
+    }
+
+    private static ChatMessage message(Long id, String content, Integer tokenCount) {
+        return new ChatMessage(id, CHAT_ID, "user", content, null, CREATED_AT, id, tokenCount);
+    }
+}
@@ -1,17 +1,29 @@
 package com.amazingshop.personal.userservice.services;
 
+import com.amazingshop.personal.userservice.cache.ChatMessageTailCache;
+import com.amazingshop.personal.userservice.dto.responses.ChatSummary;
+import com.amazingshop.personal.userservice.dto.responses.DeletionJobResponse;
+import com.amazingshop.personal.userservice.enums.JobStatus;
+import com.amazingshop.personal.userservice.events.MessageAppended;
+import com.amazingshop.personal.userservice.interfaces.Tokenizer;
 import com.amazingshop.personal.userservice.models.Chat;
 import com.amazingshop.personal.userservice.models.ChatMessage;
 import com.amazingshop.personal.userservice.repositories.ChatMessageRepository;
 import com.amazingshop.personal.userservice.repositories.ChatRepository;
+import com.amazingshop.personal.userservice.repositories.ChatTombstoneRepository;
+import com.amazingshop.personal.userservice.util.exceptions.ChatNotFoundException;
+import com.amazingshop.personal.userservice.util.exceptions.DeletionJobNotFoundException;
 import com.amazingshop.personal.userservice.util.exceptions.UnauthorizedException;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.ArgumentCaptor;
+import org.mockito.InOrder;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.PageRequest;
 
 import java.time.LocalDateTime;
 import java.util.List;
@@ -20,6 +32,9 @@ import java.util.Optional;
 import static org.hibernate.validator.internal.util.Contracts.assertNotNull;
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -31,6 +46,24 @@ public class ChatServiceImplTest {
     @Mock
     private ChatMessageRepository messageRepository;
 
+    @Mock
+    private ChatTombstoneRepository tombstoneRepository;
+
+    @Mock
+    private ChatMessageTailCache tailCache;
+
+    @Mock
+    private ChatBulkDeleter bulkDeleter;
+
+    @Mock
+    private ChatArchiver archiver;
+
+    @Mock
+    private Tokenizer tokenizer;
+
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
     @InjectMocks
     private ChatServiceImpl chatService;
 
@@ -96,18 +129,18 @@ public class ChatServiceImplTest {
     @DisplayName("getUserChats: должен вернуть все чаты пользователя")
     void getUserChats_ShouldReturnAllChats() {
         // Arrange
-        List<Chat> mockChats = List.of(
-                createMockChat(1L, "Chat 1"),
-                createMockChat(2L, "Chat 2")
+        List<ChatSummary> mockChats = List.of(
+                createSummary(1L, "Chat 1"),
+                createSummary(2L, "Chat 2")
         );
-        when(chatRepository.findByUserIdOrderByUpdatedAtDesc(USER_ID)).thenReturn(mockChats);
+        when(chatRepository.findSummariesByUserId(USER_ID)).thenReturn(mockChats);
 
         // Act
-        List<Chat> result = chatService.getUserChats(USER_ID, null, null);
+        List<ChatSummary> result = chatService.getUserChats(USER_ID, null, null);
 
         // Assert
         assertEquals(2, result.size());
-        verify(chatRepository, times(1)).findByUserIdOrderByUpdatedAtDesc(USER_ID);
+        verify(chatRepository, times(1)).findSummariesByUserId(USER_ID);
     }
 
     @Test
@@ -115,17 +148,17 @@ public class ChatServiceImplTest {
     void getUserChats_ShouldFilterBySearch() {
         // Arrange
         String search = "test";
-        List<Chat> mockChats = List.of(createMockChat(1L, "Test Chat"));
-        when(chatRepository.findByUserIdAndTitleContainingIgnoreCaseOrderByUpdatedAtDesc(USER_ID, search))
+        List<ChatSummary> mockChats = List.of(createSummary(1L, "Test Chat"));
+        when(chatRepository.findSummariesByUserIdAndTitleContaining(USER_ID, search))
                 .thenReturn(mockChats);
 
         // Act
-        List<Chat> result = chatService.getUserChats(USER_ID, search, null);
+        List<ChatSummary> result = chatService.getUserChats(USER_ID, search, null);
 
         // Assert
         assertEquals(1, result.size());
         verify(chatRepository, times(1))
-                .findByUserIdAndTitleContainingIgnoreCaseOrderByUpdatedAtDesc(USER_ID, search);
+                .findSummariesByUserIdAndTitleContaining(USER_ID, search);
     }
 
     @Test
@@ -133,86 +166,174 @@ public class ChatServiceImplTest {
     void getUserChats_ShouldFilterBySubject() {
         // Arrange
         String subject = "MATH";
-        List<Chat> mockChats = List.of(createMockChat(1L, "Math Chat"));
-        when(chatRepository.findByUserIdAndSubjectOrderByUpdatedAtDesc(USER_ID, subject))
+        List<ChatSummary> mockChats = List.of(createSummary(1L, "Math Chat"));
+        when(chatRepository.findSummariesByUserIdAndSubject(USER_ID, subject))
                 .thenReturn(mockChats);
 
         // Act
-        List<Chat> result = chatService.getUserChats(USER_ID, null, subject);
+        List<ChatSummary> result = chatService.getUserChats(USER_ID, null, subject);
 
         // Assert
         assertEquals(1, result.size());
         verify(chatRepository, times(1))
-                .findByUserIdAndSubjectOrderByUpdatedAtDesc(USER_ID, subject);
+                .findSummariesByUserIdAndSubject(USER_ID, subject);
     }
 
     @Test
     @DisplayName("deleteChat: должен удалить чат если пользователь владелец")
     void deleteChat_ShouldDeleteChat_WhenUserIsOwner() {
         // Arrange
-        Chat chat = createMockChat(CHAT_ID, "Test");
-        when(chatRepository.findById(CHAT_ID)).thenReturn(Optional.of(chat));
+        when(chatRepository.deleteByIdAndUserId(CHAT_ID, USER_ID)).thenReturn(1);
 
         // Act
         chatService.deleteChat(CHAT_ID, USER_ID);
 
-        // Assert
-        verify(chatRepository, times(1)).deleteById(CHAT_ID);
+        // Assert: чат не загружается, владелец проверяется самим DELETE
+        verify(chatRepository, never()).findById(any());
+        // Позиция следа (и блокировка пользователя) - до блокировки строки чата
+        InOrder inOrder = inOrder(chatRepository);
+        inOrder.verify(chatRepository).nextChangeSeq(USER_ID);
+        inOrder.verify(chatRepository).deleteByIdAndUserId(CHAT_ID, USER_ID);
+        verify(tombstoneRepository, times(1)).save(argThat(t -> t.getChatId().equals(CHAT_ID) && t.getUserId().equals(USER_ID)));
+        verify(tailCache, times(1)).invalidate(CHAT_ID);
     }
 
     @Test
-    @DisplayName("deleteChat: должен выбросить исключение если чат не найден")
+    @DisplayName("deleteChat: должен выбросить ChatNotFoundException если чат не найден")
     void deleteChat_ShouldThrowException_WhenChatNotFound() {
         // Arrange
-        when(chatRepository.findById(CHAT_ID)).thenReturn(Optional.empty());
+        when(chatRepository.deleteByIdAndUserId(CHAT_ID, USER_ID)).thenReturn(0);
+        when(chatRepository.existsById(CHAT_ID)).thenReturn(false);
 
         // Act & Assert
-        RuntimeException exception = assertThrows(RuntimeException.class,
+        ChatNotFoundException exception = assertThrows(ChatNotFoundException.class,
                 () -> chatService.deleteChat(CHAT_ID, USER_ID)
         );
         assertEquals("Chat not found", exception.getMessage());
-        verify(chatRepository, never()).deleteById(any());
+        verify(tombstoneRepository, never()).save(any());
     }
 
     @Test
     @DisplayName("deleteChat: должен выбросить UnauthorizedException если пользователь не владелец")
     void deleteChat_ShouldThrowUnauthorizedException_WhenUserNotOwner() {
-        Chat chat = createMockChat(CHAT_ID, "Test");
-        when(chatRepository.findById(CHAT_ID)).thenReturn(Optional.of(chat));
+        when(chatRepository.deleteByIdAndUserId(CHAT_ID, OTHER_USER_ID)).thenReturn(0);
+        when(chatRepository.existsById(CHAT_ID)).thenReturn(true);
 
         UnauthorizedException exception = assertThrows(UnauthorizedException.class,
                 () -> chatService.deleteChat(CHAT_ID, OTHER_USER_ID)
         );
         assertTrue(exception.getMessage().contains("not authorized"));
-        verify(chatRepository, never()).deleteById(any());
+        verify(tombstoneRepository, never()).save(any());
     }
 
     @Test
     @DisplayName("getChatMessages: должен вернуть сообщения чата")
     void getChatMessages_ShouldReturnMessages_WhenUserIsOwner() {
         // Arrange
-        Chat chat = createMockChat(CHAT_ID, "Test");
         List<ChatMessage> messages = List.of(
                 createMockMessage(1L, "Hello"),
                 createMockMessage(2L, "World")
         );
 
-        when(chatRepository.findById(CHAT_ID)).thenReturn(Optional.of(chat));
-        when(messageRepository.findByChatIdOrderByCreatedAtAsc(CHAT_ID)).thenReturn(messages);
+        when(messageRepository.findOwnedByChatId(CHAT_ID, USER_ID)).thenReturn(messages);
 
         // Act
         List<ChatMessage> result = chatService.getChatMessages(CHAT_ID, USER_ID);
 
         // Assert
         assertEquals(2, result.size());
-        verify(messageRepository, times(1)).findByChatIdOrderByCreatedAtAsc(CHAT_ID);
+        verify(chatRepository, never()).findById(any());
+        verify(tailCache, times(1)).put(eq(CHAT_ID), eq(USER_ID), eq(messages), anyLong());
+    }
+
+    @Test
+    @DisplayName("getChatMessages: должен вернуть пустую историю своего чата")
+    void getChatMessages_ShouldReturnEmpty_WhenOwnChatHasNoMessages() {
+        when(messageRepository.findOwnedByChatId(CHAT_ID, USER_ID)).thenReturn(List.of());
+        when(chatRepository.existsByIdAndUserId(CHAT_ID, USER_ID)).thenReturn(true);
+
+        assertTrue(chatService.getChatMessages(CHAT_ID, USER_ID).isEmpty());
+    }
+
+    @Test
+    @DisplayName("getChatMessages: должен распаковать историю архивного чата")
+    void getChatMessages_ShouldReadArchive_WhenChatIsArchived() {
+        // Arrange
+        List<ChatMessage> archived = List.of(createMockMessage(1L, "Old"));
+
+        when(messageRepository.findOwnedByChatId(CHAT_ID, USER_ID)).thenReturn(List.of());
+        when(chatRepository.existsByIdAndUserId(CHAT_ID, USER_ID)).thenReturn(true);
+        when(archiver.findArchivedMessages(CHAT_ID)).thenReturn(archived);
+
+        // Act
+        List<ChatMessage> result = chatService.getChatMessages(CHAT_ID, USER_ID);
+
+        // Assert
+        assertEquals(archived, result);
+        verify(tailCache).put(eq(CHAT_ID), eq(USER_ID), eq(archived), anyLong());
+    }
+
+    @Test
+    @DisplayName("getChatMessages: история, вернувшаяся из архива между чтениями, не должна потеряться")
+    void getChatMessages_ShouldRereadHotTable_WhenPromotedConcurrently() {
+        // Arrange: таблица ещё пуста, а к чтению архива promote уже удалил блоб
+        List<ChatMessage> promoted = List.of(createMockMessage(1L, "Old"), createMockMessage(2L, "New"));
+
+        when(messageRepository.findOwnedByChatId(CHAT_ID, USER_ID)).thenReturn(List.of(), promoted);
+        when(chatRepository.existsByIdAndUserId(CHAT_ID, USER_ID)).thenReturn(true);
+        when(archiver.findArchivedMessages(CHAT_ID)).thenReturn(List.of());
+
+        // Act
+        List<ChatMessage> result = chatService.getChatMessages(CHAT_ID, USER_ID);
+
+        // Assert
+        assertEquals(promoted, result);
+        verify(tailCache).put(eq(CHAT_ID), eq(USER_ID), eq(promoted), anyLong());
+    }
+
+    @Test
+    @DisplayName("getChatMessages: должен вернуть полный хвост из кэша без запросов к БД")
+    void getChatMessages_ShouldUseCompleteTailFromCache() {
+        // Arrange
+        List<ChatMessage> cached = List.of(createMockMessage(1L, "Hello"));
+
+        when(tailCache.get(CHAT_ID)).thenReturn(new ChatMessageTailCache.Tail(USER_ID, cached, true, 0));
+
+        // Act
+        List<ChatMessage> result = chatService.getChatMessages(CHAT_ID, USER_ID);
+
+        // Assert
+        assertEquals(cached, result);
+        verifyNoInteractions(messageRepository, chatRepository);
+    }
+
+    @Test
+    @DisplayName("getChatMessages: должен догрузить из БД только сообщения старше хвоста")
+    void getChatMessages_ShouldLoadOnlyOlderMessages_WhenTailIsPartial() {
+        // Arrange
+        ChatMessage older = createMockMessage(1L, "Old");
+        ChatMessage newer = createMockMessage(2L, "New");
+
+        when(tailCache.get(CHAT_ID)).thenReturn(new ChatMessageTailCache.Tail(USER_ID, List.of(newer), false, 0));
+        when(messageRepository.findByChatIdAndIdLessThanOrderByCreatedAtAsc(CHAT_ID, 2L)).thenReturn(List.of(older));
+
+        // Act
+        List<ChatMessage> result = chatService.getChatMessages(CHAT_ID, USER_ID);
+
+        // Assert
+        assertEquals(List.of(older, newer), result);
+        verify(messageRepository, never()).findOwnedByChatId(any(), any());
     }
 
     @Test
     @DisplayName("getChatMessages: должен выбросить UnauthorizedException если пользователь не владелец")
     void getChatMessages_ShouldThrowUnauthorizedException_WhenUserNotOwner() {
-        Chat chat = createMockChat(CHAT_ID, "Test");
-        when(chatRepository.findById(CHAT_ID)).thenReturn(Optional.of(chat));
+        // Хвост в кэше принадлежит другому пользователю и не должен быть отдан
+        when(tailCache.get(CHAT_ID)).thenReturn(
+                new ChatMessageTailCache.Tail(USER_ID, List.of(createMockMessage(1L, "Secret")), true, 0));
+        when(messageRepository.findOwnedByChatId(CHAT_ID, OTHER_USER_ID)).thenReturn(List.of());
+        when(chatRepository.existsByIdAndUserId(CHAT_ID, OTHER_USER_ID)).thenReturn(false);
+        when(chatRepository.existsById(CHAT_ID)).thenReturn(true);
 
         assertThrows(UnauthorizedException.class,
                 () -> chatService.getChatMessages(CHAT_ID, OTHER_USER_ID)
@@ -223,136 +344,151 @@ public class ChatServiceImplTest {
     @DisplayName("addMessage: должен добавить сообщение и обновить timestamp чата")
     void addMessage_ShouldAddMessage_AndUpdateChatTimestamp() {
         // Arrange
-        Chat chat = createMockChat(CHAT_ID, "Test");
-        when(chatRepository.findById(CHAT_ID)).thenReturn(Optional.of(chat));
-        when(messageRepository.countByChatIdAndRole(CHAT_ID, "user")).thenReturn(1L);
         when(messageRepository.save(any(ChatMessage.class))).thenAnswer(inv -> inv.getArgument(0));
-        when(chatRepository.save(any(Chat.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(chatRepository.nextChangeSeq(USER_ID)).thenReturn(42L);
+        when(chatRepository.recordMessage(eq(CHAT_ID), eq(USER_ID), eq("Test message"), eq("user"), any(), eq(42L)))
+                .thenReturn(1);
+        when(tokenizer.countTokens("Test message")).thenReturn(3);
 
         // Act
         ChatMessage result = chatService.addMessage(CHAT_ID, USER_ID, "Test message", "user", null);
 
         // Assert
         assertNotNull(result);
+        assertEquals(42L, result.getChangeSeq());
         assertEquals("Test message", result.getContent());
-        verify(chatRepository, times(1)).save(any(Chat.class));
+        assertEquals(3, result.getTokenCount());
+        verify(chatRepository, never()).findById(any());
+        verify(chatRepository, never()).save(any(Chat.class));
+        verify(tailCache, times(1)).append(CHAT_ID, result);
+        verify(archiver).promote(CHAT_ID);
     }
 
     @Test
-    @DisplayName("addMessage: должен установить title из первого сообщения пользователя")
-    void addMessage_ShouldSetTitleFromFirstUserMessage() {
+    @DisplayName("addMessage: должен опубликовать MessageAppended вместо генерации title в запросе")
+    void addMessage_ShouldPublishMessageAppended() {
         // Arrange
-        Chat chat = createMockChat(CHAT_ID, "New Chat");
         String firstMessage = "How to solve this math problem?";
 
-        when(chatRepository.findById(CHAT_ID)).thenReturn(Optional.of(chat));
-        when(messageRepository.countByChatIdAndRole(CHAT_ID, "user")).thenReturn(0L); // Первое сообщение
-        when(messageRepository.save(any(ChatMessage.class))).thenAnswer(inv -> inv.getArgument(0));
-
-        ArgumentCaptor<Chat> chatCaptor = ArgumentCaptor.forClass(Chat.class);
-        when(chatRepository.save(chatCaptor.capture())).thenAnswer(inv -> inv.getArgument(0));
+        when(chatRepository.recordMessage(eq(CHAT_ID), eq(USER_ID), any(), any(), any(), anyLong())).thenReturn(1);
+        when(messageRepository.save(any(ChatMessage.class))).thenAnswer(inv -> {
+            ChatMessage saved = inv.getArgument(0);
+            saved.setId(100L);
+            return saved;
+        });
 
         // Act
         chatService.addMessage(CHAT_ID, USER_ID, firstMessage, "user", null);
 
         // Assert
-        Chat savedChat = chatCaptor.getValue();
-        assertEquals("How to solve this math problem?", savedChat.getTitle());
-    }
-
-    @Test
-    @DisplayName("addMessage: не должен менять title для не-первого сообщения")
-    void addMessage_ShouldNotChangeTitleForNonFirstMessage() {
-        // Arrange
-        Chat chat = createMockChat(CHAT_ID, "Original Title");
-
-        when(chatRepository.findById(CHAT_ID)).thenReturn(Optional.of(chat));
-        when(messageRepository.countByChatIdAndRole(CHAT_ID, "user")).thenReturn(1L); // Не первое
-        when(messageRepository.save(any(ChatMessage.class))).thenAnswer(inv -> inv.getArgument(0));
-
-        ArgumentCaptor<Chat> chatCaptor = ArgumentCaptor.forClass(Chat.class);
-        when(chatRepository.save(chatCaptor.capture())).thenAnswer(inv -> inv.getArgument(0));
-
-        // Act
-        chatService.addMessage(CHAT_ID, USER_ID, "Second message", "user", null);
-
-        // Assert
-        Chat savedChat = chatCaptor.getValue();
-        assertEquals("Original Title", savedChat.getTitle()); // Title не изменился
+        ArgumentCaptor<MessageAppended> eventCaptor = ArgumentCaptor.forClass(MessageAppended.class);
+        verify(eventPublisher).publishEvent(eventCaptor.capture());
+        assertEquals(CHAT_ID, eventCaptor.getValue().chatId());
+        assertEquals(100L, eventCaptor.getValue().messageId());
+        assertEquals(firstMessage, eventCaptor.getValue().content());
+        verify(chatRepository, never()).updateTitleIfDefault(any(), any(), any(), any(), anyLong());
     }
 
     @Test
     @DisplayName("addMessage: должен выбросить UnauthorizedException если пользователь не владелец")
     void addMessage_ShouldThrowUnauthorizedException_WhenUserNotOwner() {
-        Chat chat = createMockChat(CHAT_ID, "Test");
-        when(chatRepository.findById(CHAT_ID)).thenReturn(Optional.of(chat));
+        when(chatRepository.recordMessage(eq(CHAT_ID), eq(OTHER_USER_ID), any(), any(), any(), anyLong()))
+                .thenReturn(0);
+        when(chatRepository.existsById(CHAT_ID)).thenReturn(true);
 
         assertThrows(UnauthorizedException.class,
                 () -> chatService.addMessage(CHAT_ID, OTHER_USER_ID, "Test", "user", null)
         );
+        verify(messageRepository, never()).save(any());
     }
 
     @Test
     @DisplayName("updateChatTitle: должен обновить title чата")
     void updateChatTitle_ShouldUpdateTitle() {
         // Arrange
-        Chat chat = createMockChat(CHAT_ID, "Old Title");
         String newTitle = "New Title";
+        Chat updated = createMockChat(CHAT_ID, newTitle);
 
-        when(chatRepository.findById(CHAT_ID)).thenReturn(Optional.of(chat));
-        when(chatRepository.save(any(Chat.class))).thenAnswer(inv -> inv.getArgument(0));
+        when(chatRepository.nextChangeSeq(USER_ID)).thenReturn(7L);
+        when(chatRepository.updateTitleByIdAndUserId(eq(CHAT_ID), eq(USER_ID), eq(newTitle), any(), eq(7L)))
+                .thenReturn(1);
+        when(chatRepository.findById(CHAT_ID)).thenReturn(Optional.of(updated));
 
         // Act
         Chat result = chatService.updateChatTitle(CHAT_ID, USER_ID, newTitle);
 
         // Assert
         assertEquals(newTitle, result.getTitle());
-        verify(chatRepository, times(1)).save(any(Chat.class));
+        verify(chatRepository, never()).save(any(Chat.class));
     }
 
     @Test
     @DisplayName("updateChatTitle: должен выбросить UnauthorizedException если пользователь не владелец")
     void updateChatTitle_ShouldThrowUnauthorizedException_WhenUserNotOwner() {
-        Chat chat = createMockChat(CHAT_ID, "Old Title");
-        when(chatRepository.findById(CHAT_ID)).thenReturn(Optional.of(chat));
+        when(chatRepository.updateTitleByIdAndUserId(eq(CHAT_ID), eq(OTHER_USER_ID), any(), any(), anyLong()))
+                .thenReturn(0);
+        when(chatRepository.existsById(CHAT_ID)).thenReturn(true);
 
         assertThrows(UnauthorizedException.class,
                 () -> chatService.updateChatTitle(CHAT_ID, OTHER_USER_ID, "New Title")
         );
+        verify(chatRepository, never()).findById(any());
     }
 
     @Test
-    @DisplayName("deleteAllChats: должен удалить все чаты пользователя")
-    void deleteAllChats_ShouldDeleteAllUserChats() {
+    @DisplayName("deleteAllChats: небольшую историю должен удалить сразу")
+    void deleteAllChats_ShouldDeleteInline_WhenBelowThreshold() {
         // Arrange
-        List<Chat> userChats = List.of(
-                createMockChat(1L, "Chat 1"),
-                createMockChat(2L, "Chat 2")
-        );
-        when(chatRepository.findByUserIdOrderByUpdatedAtDesc(USER_ID)).thenReturn(userChats);
+        DeletionJobResponse completed = deletionJob(JobStatus.COMPLETED);
+        when(bulkDeleter.exceedsAsyncThreshold(USER_ID)).thenReturn(false);
+        when(bulkDeleter.deleteNow(USER_ID)).thenReturn(completed);
+
+        // Act
+        DeletionJobResponse result = chatService.deleteAllChats(USER_ID);
+
+        // Assert
+        assertEquals(JobStatus.COMPLETED, result.getStatus());
+        verify(bulkDeleter, never()).submit(any());
+    }
+
+    @Test
+    @DisplayName("deleteAllChats: большую историю должен удалять фоновой задачей")
+    void deleteAllChats_ShouldSubmitJob_WhenAboveThreshold() {
+        // Arrange
+        DeletionJobResponse pending = deletionJob(JobStatus.PENDING);
+        when(bulkDeleter.exceedsAsyncThreshold(USER_ID)).thenReturn(true);
+        when(bulkDeleter.submit(USER_ID)).thenReturn(pending);
 
         // Act
-        chatService.deleteAllChats(USER_ID);
+        DeletionJobResponse result = chatService.deleteAllChats(USER_ID);
 
         // Assert
-        verify(chatRepository, times(1)).deleteAll(userChats);
+        assertEquals(JobStatus.PENDING, result.getStatus());
+        verify(bulkDeleter, never()).deleteNow(any());
+    }
+
+    @Test
+    @DisplayName("getDeletionJob: должен выбросить исключение для чужой или неизвестной задачи")
+    void getDeletionJob_ShouldThrow_WhenJobNotFound() {
+        when(bulkDeleter.findJob("job-1", USER_ID)).thenReturn(Optional.empty());
+
+        assertThrows(DeletionJobNotFoundException.class, () -> chatService.getDeletionJob("job-1", USER_ID));
     }
 
     @Test
     @DisplayName("getRecentChats: должен вернуть ограниченное количество чатов")
     void getRecentChats_ShouldReturnLimitedChats() {
         // Arrange
-        List<Chat> allChats = List.of(
-                createMockChat(1L, "Chat 1"),
-                createMockChat(2L, "Chat 2"),
-                createMockChat(3L, "Chat 3")
+        List<ChatSummary> recentChats = List.of(
+                createSummary(1L, "Chat 1"),
+                createSummary(2L, "Chat 2")
         );
-        when(chatRepository.findByUserIdOrderByUpdatedAtDesc(USER_ID)).thenReturn(allChats);
+        when(chatRepository.findSummariesByUserId(USER_ID, PageRequest.of(0, 2))).thenReturn(recentChats);
 
         // Act
-        List<Chat> result = chatService.getRecentChats(USER_ID, 2);
+        List<ChatSummary> result = chatService.getRecentChats(USER_ID, 2);
 
-        // Assert
+        // Assert: лимит применяется в запросе, а не в памяти
         assertEquals(2, result.size());
     }
 
@@ -370,6 +506,38 @@ public class ChatServiceImplTest {
         assertTrue(result.getTitle().startsWith("word"));
     }
 
+    @Test
+    @DisplayName("getChatMessagesVersion: версия должна меняться вместе с updated_at чата")
+    void getChatMessagesVersion_ShouldDependOnUpdatedAt() {
+        ChatRepository.ChatVersion first = mockChatVersion(USER_ID, LocalDateTime.of(2025, 1, 1, 10, 0));
+        ChatRepository.ChatVersion second = mockChatVersion(USER_ID, LocalDateTime.of(2025, 1, 1, 10, 1));
+        when(chatRepository.findChatVersion(CHAT_ID)).thenReturn(Optional.of(first), Optional.of(second));
+
+        String before = chatService.getChatMessagesVersion(CHAT_ID, USER_ID);
+        String after = chatService.getChatMessagesVersion(CHAT_ID, USER_ID);
+
+        assertNotEquals(before, after);
+        verifyNoInteractions(messageRepository);
+    }
+
+    @Test
+    @DisplayName("getChatMessagesVersion: должен выбросить UnauthorizedException для чужого чата")
+    void getChatMessagesVersion_ShouldThrowUnauthorizedException_WhenUserNotOwner() {
+        ChatRepository.ChatVersion version = mockChatVersion(USER_ID, LocalDateTime.now());
+        when(chatRepository.findChatVersion(CHAT_ID)).thenReturn(Optional.of(version));
+
+        assertThrows(UnauthorizedException.class,
+                () -> chatService.getChatMessagesVersion(CHAT_ID, OTHER_USER_ID)
+        );
+    }
+
+    private ChatRepository.ChatVersion mockChatVersion(Long userId, LocalDateTime updatedAt) {
+        ChatRepository.ChatVersion version = mock(ChatRepository.ChatVersion.class);
+        lenient().when(version.getUserId()).thenReturn(userId);
+        lenient().when(version.getUpdatedAt()).thenReturn(updatedAt);
+        return version;
+    }
+
     private Chat createMockChat(Long id, String title) {
         Chat chat = new Chat();
         chat.setId(id);
@@ -380,6 +548,11 @@ public class ChatServiceImplTest {
         return chat;
     }
 
+    private ChatSummary createSummary(Long id, String title) {
+        return new ChatSummary(id, USER_ID, title, null, LocalDateTime.now(), LocalDateTime.now(),
+                0, null, null, null);
+    }
+
     private ChatMessage createMockMessage(Long id, String content) {
         ChatMessage message = new ChatMessage();
         message.setId(id);
@@ -389,4 +562,8 @@ public class ChatServiceImplTest {
         message.setCreatedAt(LocalDateTime.now());
         return message;
     }
-}
\ No newline at end of file
+
+    private DeletionJobResponse deletionJob(JobStatus status) {
+        return new DeletionJobResponse("job-1", status, 0, 0, LocalDateTime.now(), null, null);
+    }
+}
@@ -0,0 +1,147 @@
+package com.amazingshop.personal.userservice.services;
+
+import com.amazingshop.personal.userservice.events.ChatCreated;
+import com.amazingshop.personal.userservice.events.MessageAppended;
+import com.amazingshop.personal.userservice.models.ChatMessage;
+import com.amazingshop.personal.userservice.models.ChatRollingSummary;
+import com.amazingshop.personal.userservice.repositories.ChatMessageRepository;
+import com.amazingshop.personal.userservice.repositories.ChatRollingSummaryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ChatSummaryUpdaterTest {
+
+    @Mock
+    private ChatMessageRepository messageRepository;
+
+    @Mock
+    private ChatRollingSummaryRepository summaryRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private ChatSummaryUpdater updater;
+
+    private static final Long CHAT_ID = 10L;
+    private static final int EVERY = 5;
+    private static final int KEEP_RECENT = 4;
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2024, 5, 1, 12, 0);
+
+    @BeforeEach
+    void setUp() {
+        CharacterRatioTokenizer tokenizer = new CharacterRatioTokenizer(4);
+        updater = new ChatSummaryUpdater(messageRepository, summaryRepository,
+                new ExtractiveChatSummarizer(tokenizer), tokenizer, transactionManager, EVERY, KEEP_RECENT, 512, 200);
+    }
+
+    @Test
+    @DisplayName("update: пока за watermark меньше keep-recent + every сообщений, ничего не делает")
+    void update_ShouldDoNothing_BelowThreshold() {
+        when(summaryRepository.findById(CHAT_ID)).thenReturn(Optional.empty());
+        when(messageRepository.countByChatIdAndIdGreaterThan(CHAT_ID, 0L)).thenReturn((long) KEEP_RECENT + EVERY - 1);
+
+        assertFalse(updater.update(CHAT_ID));
+        verify(messageRepository, never()).findByChatIdAndIdGreaterThanOrderByIdAsc(any(), any(), any());
+        verifyNoInteractions(transactionManager);
+    }
+
+    @Test
+    @DisplayName("update: первое краткое содержание сворачивает всё, кроме последних keep-recent сообщений")
+    void update_ShouldInsertFirstSummary_LeavingRecentTail() {
+        // Arrange: 10 сообщений - свернуть надо первые 6
+        when(summaryRepository.findById(CHAT_ID)).thenReturn(Optional.empty(),
+                Optional.of(new ChatRollingSummary(CHAT_ID, "...", 10, 6L, 6, CREATED_AT)));
+        when(messageRepository.countByChatIdAndIdGreaterThan(CHAT_ID, 0L)).thenReturn(10L);
+        when(messageRepository.countByChatIdAndIdGreaterThan(CHAT_ID, 6L)).thenReturn(4L);
+        when(messageRepository.findByChatIdAndIdGreaterThanOrderByIdAsc(CHAT_ID, 0L, PageRequest.of(0, 6)))
+                .thenReturn(messages(1, 6));
+
+        // Act
+        boolean advanced = updater.update(CHAT_ID);
+
+        // Assert
+        assertTrue(advanced);
+        verify(summaryRepository).insert(eq(CHAT_ID), eq(String.join("\n",
+                        "user: Message 1.", "user: Message 2.", "user: Message 3.",
+                        "user: Message 4.", "user: Message 5.", "user: Message 6.")),
+                anyInt(), eq(6L), eq(6), any());
+        verify(transactionManager).commit(any());
+    }
+
+    @Test
+    @DisplayName("update: должен дописать новые сообщения к прежнему краткому содержанию")
+    void update_ShouldAdvanceExistingSummary() {
+        // Arrange
+        ChatRollingSummary current = new ChatRollingSummary(CHAT_ID, "user: Earlier.", 4, 6L, 6, CREATED_AT);
+        when(summaryRepository.findById(CHAT_ID)).thenReturn(Optional.of(current), Optional.of(current));
+        when(messageRepository.countByChatIdAndIdGreaterThan(CHAT_ID, 6L)).thenReturn(9L);
+        when(messageRepository.findByChatIdAndIdGreaterThanOrderByIdAsc(CHAT_ID, 6L, PageRequest.of(0, 5)))
+                .thenReturn(messages(7, 11));
+        // Параллельный пересчёт успел первым
+        when(summaryRepository.advance(eq(CHAT_ID), eq(6L), any(), anyInt(), eq(11L), eq(11), any())).thenReturn(0);
+
+        // Act
+        boolean advanced = updater.update(CHAT_ID);
+
+        // Assert
+        assertFalse(advanced);
+        verify(summaryRepository).advance(eq(CHAT_ID), eq(6L), startsWith("user: Earlier.\nuser: Message 7."),
+                anyInt(), eq(11L), eq(11), any());
+    }
+
+    @Test
+    @DisplayName("update: гонка на первой записи не считается ошибкой")
+    void update_ShouldReturnFalse_WhenFirstInsertLosesRace() {
+        when(summaryRepository.findById(CHAT_ID)).thenReturn(Optional.empty());
+        when(messageRepository.countByChatIdAndIdGreaterThan(CHAT_ID, 0L)).thenReturn(9L);
+        when(messageRepository.findByChatIdAndIdGreaterThanOrderByIdAsc(CHAT_ID, 0L, PageRequest.of(0, 5)))
+                .thenReturn(messages(1, 5));
+        doThrow(new DataIntegrityViolationException("duplicate key"))
+                .when(summaryRepository).insert(any(), any(), anyInt(), anyLong(), anyInt(), any());
+
+        assertFalse(updater.update(CHAT_ID));
+    }
+
+    @Test
+    @DisplayName("handle: пересчитывает каждый чат пачки один раз и только по MessageAppended")
+    void handle_ShouldUpdateEachChatOnce() {
+        when(summaryRepository.findById(CHAT_ID)).thenReturn(Optional.empty());
+        when(messageRepository.countByChatIdAndIdGreaterThan(CHAT_ID, 0L)).thenReturn(1L);
+
+        updater.handle(List.of(appended(1L), appended(2L), new ChatCreated(20L, 1L)));
+
+        verify(messageRepository, times(1)).countByChatIdAndIdGreaterThan(CHAT_ID, 0L);
+        verify(summaryRepository, never()).findById(20L);
+    }
+
+    private static List<ChatMessage> messages(long fromId, long toId) {
+        return LongStream.rangeClosed(fromId, toId)
+                .mapToObj(id -> new ChatMessage(id, CHAT_ID, "user", "Message " + id + ". Details follow", null,
+                        CREATED_AT, id, 5))
+                .toList();
+    }
+
+    private static MessageAppended appended(Long messageId) {
+        return new MessageAppended(CHAT_ID, 1L, messageId, "user", "Hi", CREATED_AT);
+    }
+}
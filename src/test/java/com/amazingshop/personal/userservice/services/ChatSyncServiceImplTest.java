@@ -0,0 +1,284 @@
+package com.amazingshop.personal.userservice.services;
+
+import com.amazingshop.personal.userservice.dto.responses.ChatChangesResponse;
+import com.amazingshop.personal.userservice.models.Chat;
+import com.amazingshop.personal.userservice.models.ChatMessage;
+import com.amazingshop.personal.userservice.models.ChatMessageTombstone;
+import com.amazingshop.personal.userservice.models.ChatSyncHorizon;
+import com.amazingshop.personal.userservice.models.ChatTombstone;
+import com.amazingshop.personal.userservice.repositories.ChatMessageRepository;
+import com.amazingshop.personal.userservice.repositories.ChatMessageTombstoneRepository;
+import com.amazingshop.personal.userservice.repositories.ChatRepository;
+import com.amazingshop.personal.userservice.repositories.ChatSyncHorizonRepository;
+import com.amazingshop.personal.userservice.repositories.ChatTombstoneRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ChatSyncServiceImplTest {
+
+    private static final Long USER_ID = 1L;
+
+    @Mock
+    private ChatRepository chatRepository;
+
+    @Mock
+    private ChatMessageRepository messageRepository;
+
+    @Mock
+    private ChatTombstoneRepository tombstoneRepository;
+
+    @Mock
+    private ChatMessageTombstoneRepository messageTombstoneRepository;
+
+    @Mock
+    private ChatSyncHorizonRepository horizonRepository;
+
+    private ChatSyncServiceImpl syncService;
+
+    @BeforeEach
+    void setUp() {
+        syncService = new ChatSyncServiceImpl(chatRepository, messageRepository, tombstoneRepository,
+                messageTombstoneRepository, horizonRepository, 30);
+    }
+
+    @Test
+    @DisplayName("getChanges: watermark должен указывать на последнее изменение")
+    void getChanges_ShouldReturnMaxChangeSeqAsWatermark() {
+        when(horizonRepository.findById(ChatSyncHorizon.SINGLETON_ID)).thenReturn(Optional.empty());
+        when(chatRepository.findChangedSince(USER_ID, 5L)).thenReturn(List.of(chat(10L, 8)));
+        when(chatRepository.findIdsByUserId(eq(USER_ID), any(Pageable.class))).thenReturn(List.of(10L));
+        when(messageRepository.findChangedSince(List.of(10L), 5L, PageRequest.of(0, 101))).thenReturn(List.of(message(7), message(8)));
+        when(tombstoneRepository.findByUserIdAndChangeSeqGreaterThanOrderByChangeSeqAsc(eq(USER_ID), eq(5L), any()))
+                .thenReturn(List.of(new ChatTombstone(11L, USER_ID, 9, LocalDateTime.now())));
+
+        ChatChangesResponse response = syncService.getChanges(USER_ID, 5, 100);
+
+        assertEquals(9, response.getWatermark());
+        assertFalse(response.isHasMore());
+        assertFalse(response.isFullResync());
+        assertEquals(1, response.getChats().size());
+        assertEquals(2, response.getMessages().size());
+        assertEquals(List.of(11L), response.getDeletedChatIds());
+    }
+
+    @Test
+    @DisplayName("getChanges: должен отдать сообщения, удалённые очисткой, и учесть их в watermark")
+    void getChanges_ShouldReturnDeletedMessages() {
+        when(horizonRepository.findById(ChatSyncHorizon.SINGLETON_ID)).thenReturn(Optional.empty());
+        when(chatRepository.findChangedSince(USER_ID, 5L)).thenReturn(List.of());
+        when(chatRepository.findIdsByUserId(eq(USER_ID), any(Pageable.class))).thenReturn(List.of(10L));
+        when(messageRepository.findChangedSince(eq(List.of(10L)), eq(5L), any())).thenReturn(List.of());
+        when(tombstoneRepository.findByUserIdAndChangeSeqGreaterThanOrderByChangeSeqAsc(eq(USER_ID), eq(5L), any())).thenReturn(List.of());
+        when(messageTombstoneRepository.findByUserIdAndChangeSeqGreaterThanOrderByChangeSeqAsc(eq(USER_ID), eq(5L), any()))
+                .thenReturn(List.of(new ChatMessageTombstone(100L, 10L, USER_ID, 12, LocalDateTime.now())));
+
+        ChatChangesResponse response = syncService.getChanges(USER_ID, 5, 100);
+
+        assertEquals(List.of(100L), response.getDeletedMessageIds());
+        assertEquals(12, response.getWatermark());
+    }
+
+    @Test
+    @DisplayName("getChanges: без изменений watermark должен остаться прежним")
+    void getChanges_ShouldKeepWatermark_WhenNothingChanged() {
+        when(horizonRepository.findById(ChatSyncHorizon.SINGLETON_ID)).thenReturn(Optional.empty());
+        when(chatRepository.findChangedSince(USER_ID, 5L)).thenReturn(List.of());
+        when(chatRepository.findIdsByUserId(eq(USER_ID), any(Pageable.class))).thenReturn(List.of(10L));
+        when(messageRepository.findChangedSince(eq(List.of(10L)), eq(5L), any())).thenReturn(List.of());
+        when(tombstoneRepository.findByUserIdAndChangeSeqGreaterThanOrderByChangeSeqAsc(eq(USER_ID), eq(5L), any())).thenReturn(List.of());
+
+        ChatChangesResponse response = syncService.getChanges(USER_ID, 5, 100);
+
+        assertEquals(5, response.getWatermark());
+    }
+
+    @Test
+    @DisplayName("getChanges: при превышении лимита должен отдать страницу и hasMore")
+    void getChanges_ShouldPageMessages_WhenLimitExceeded() {
+        when(chatRepository.findChangedSince(USER_ID, 0L)).thenReturn(List.of(chat(10L, 4)));
+        when(chatRepository.findIdsByUserId(eq(USER_ID), any(Pageable.class))).thenReturn(List.of(10L));
+        when(messageRepository.findChangedSince(List.of(10L), 0L, PageRequest.of(0, 3)))
+                .thenReturn(List.of(message(1), message(2), message(3)));
+        when(tombstoneRepository.findByUserIdAndChangeSeqGreaterThanOrderByChangeSeqAsc(eq(USER_ID), eq(0L), any())).thenReturn(List.of());
+
+        ChatChangesResponse response = syncService.getChanges(USER_ID, 0, 2);
+
+        assertTrue(response.isHasMore());
+        assertEquals(2, response.getMessages().size());
+        assertEquals(2, response.getWatermark());
+    }
+
+    @Test
+    @DisplayName("getChanges: watermark старше горизонта компактора должен вызвать полную пересинхронизацию")
+    void getChanges_ShouldRequestFullResync_WhenWatermarkIsOlderThanHorizon() {
+        when(horizonRepository.findById(ChatSyncHorizon.SINGLETON_ID))
+                .thenReturn(Optional.of(new ChatSyncHorizon(ChatSyncHorizon.SINGLETON_ID, 50)));
+        when(chatRepository.findChangedSince(USER_ID, 0L)).thenReturn(List.of());
+        when(chatRepository.findIdsByUserId(eq(USER_ID), any(Pageable.class))).thenReturn(List.of());
+        when(tombstoneRepository.findByUserIdAndChangeSeqGreaterThanOrderByChangeSeqAsc(eq(USER_ID), eq(0L), any())).thenReturn(List.of());
+
+        ChatChangesResponse response = syncService.getChanges(USER_ID, 10, 100);
+
+        assertTrue(response.isFullResync());
+    }
+
+    @Test
+    @DisplayName("getChanges: без чатов не должен запрашивать сообщения")
+    void getChanges_ShouldSkipMessageQuery_WhenUserHasNoChats() {
+        when(horizonRepository.findById(ChatSyncHorizon.SINGLETON_ID)).thenReturn(Optional.empty());
+        when(chatRepository.findChangedSince(USER_ID, 5L)).thenReturn(List.of());
+        when(chatRepository.findIdsByUserId(eq(USER_ID), any(Pageable.class))).thenReturn(List.of());
+        when(tombstoneRepository.findByUserIdAndChangeSeqGreaterThanOrderByChangeSeqAsc(eq(USER_ID), eq(5L), any())).thenReturn(List.of());
+
+        ChatChangesResponse response = syncService.getChanges(USER_ID, 5, 100);
+
+        assertTrue(response.getMessages().isEmpty());
+        verify(messageRepository, never()).findChangedSince(any(), anyLong(), any());
+        verify(messageRepository, never()).findChangedSinceByUserId(any(), anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("getChanges: у пользователя с множеством чатов сообщения ищутся подзапросом, а не списком id")
+    void getChanges_ShouldUseSubquery_WhenUserHasManyChats() {
+        // Arrange: чатов больше, чем секций - список id ничего бы не отсёк
+        List<Long> chatIds = LongStream.rangeClosed(1, ChatSyncServiceImpl.PRUNING_MAX_CHATS + 1).boxed().toList();
+        when(horizonRepository.findById(ChatSyncHorizon.SINGLETON_ID)).thenReturn(Optional.empty());
+        when(chatRepository.findChangedSince(USER_ID, 5L)).thenReturn(List.of());
+        when(chatRepository.findIdsByUserId(USER_ID, PageRequest.of(0, ChatSyncServiceImpl.PRUNING_MAX_CHATS + 1)))
+                .thenReturn(chatIds);
+        when(messageRepository.findChangedSinceByUserId(USER_ID, 5L, PageRequest.of(0, 101)))
+                .thenReturn(List.of(message(6)));
+        when(tombstoneRepository.findByUserIdAndChangeSeqGreaterThanOrderByChangeSeqAsc(eq(USER_ID), eq(5L), any())).thenReturn(List.of());
+
+        // Act
+        ChatChangesResponse response = syncService.getChanges(USER_ID, 5, 100);
+
+        // Assert
+        assertEquals(1, response.getMessages().size());
+        assertEquals(6, response.getWatermark());
+        verify(messageRepository, never()).findChangedSince(any(), anyLong(), any());
+    }
+
+    @Test
+    @DisplayName("getChanges: следы удалений должны входить в страницу по limit вместе с сообщениями")
+    void getChanges_ShouldPageTombstones_WhenLimitExceeded() {
+        // Arrange: limit 2 - из позиций 2, 3, 4, 5 в страницу входят 2 и 3
+        when(horizonRepository.findById(ChatSyncHorizon.SINGLETON_ID)).thenReturn(Optional.empty());
+        when(chatRepository.findChangedSince(USER_ID, 1L)).thenReturn(List.of());
+        when(chatRepository.findIdsByUserId(eq(USER_ID), any(Pageable.class))).thenReturn(List.of(10L));
+        when(messageRepository.findChangedSince(List.of(10L), 1L, PageRequest.of(0, 3))).thenReturn(List.of(message(2)));
+        when(tombstoneRepository.findByUserIdAndChangeSeqGreaterThanOrderByChangeSeqAsc(USER_ID, 1L, PageRequest.of(0, 3)))
+                .thenReturn(List.of(new ChatTombstone(11L, USER_ID, 5, LocalDateTime.now())));
+        when(messageTombstoneRepository.findByUserIdAndChangeSeqGreaterThanOrderByChangeSeqAsc(USER_ID, 1L, PageRequest.of(0, 3)))
+                .thenReturn(List.of(messageTombstone(100L, 3), messageTombstone(101L, 4)));
+
+        // Act
+        ChatChangesResponse response = syncService.getChanges(USER_ID, 1, 2);
+
+        // Assert
+        assertTrue(response.isHasMore());
+        assertEquals(3, response.getWatermark());
+        assertEquals(1, response.getMessages().size());
+        assertEquals(List.of(), response.getDeletedChatIds());
+        assertEquals(List.of(100L), response.getDeletedMessageIds());
+    }
+
+    @Test
+    @DisplayName("getChanges: следы одного архива с общей позицией не должны разрываться границей страницы")
+    void getChanges_ShouldReturnWholeTombstoneGroup_AtPageBoundary() {
+        // Arrange: выборка limit + 1 целиком из группы с позицией 7 - её продолжение дочитывается
+        when(horizonRepository.findById(ChatSyncHorizon.SINGLETON_ID)).thenReturn(Optional.empty());
+        when(chatRepository.findChangedSince(USER_ID, 1L)).thenReturn(List.of());
+        when(chatRepository.findIdsByUserId(eq(USER_ID), any(Pageable.class))).thenReturn(List.of());
+        when(tombstoneRepository.findByUserIdAndChangeSeqGreaterThanOrderByChangeSeqAsc(eq(USER_ID), eq(1L), any()))
+                .thenReturn(List.of());
+        when(messageTombstoneRepository.findByUserIdAndChangeSeqGreaterThanOrderByChangeSeqAsc(USER_ID, 1L, PageRequest.of(0, 3)))
+                .thenReturn(List.of(messageTombstone(100L, 7), messageTombstone(101L, 7), messageTombstone(102L, 7)));
+        when(messageTombstoneRepository.findByUserIdAndChangeSeqGreaterThanAndChangeSeqLessThanEqualOrderByChangeSeqAsc(
+                USER_ID, 1L, 7L))
+                .thenReturn(List.of(messageTombstone(100L, 7), messageTombstone(101L, 7), messageTombstone(102L, 7),
+                        messageTombstone(103L, 7)));
+
+        // Act
+        ChatChangesResponse response = syncService.getChanges(USER_ID, 1, 2);
+
+        // Assert
+        assertEquals(7, response.getWatermark());
+        assertEquals(List.of(100L, 101L, 102L, 103L), response.getDeletedMessageIds());
+    }
+
+    @Test
+    @DisplayName("compactTombstones: должен сдвинуть горизонт и удалить старые следы")
+    void compactTombstones_ShouldAdvanceHorizonAndDelete() {
+        when(tombstoneRepository.findMaxChangeSeqDeletedBefore(any())).thenReturn(40L);
+        when(horizonRepository.findById(ChatSyncHorizon.SINGLETON_ID))
+                .thenReturn(Optional.of(new ChatSyncHorizon(ChatSyncHorizon.SINGLETON_ID, 10)));
+        when(tombstoneRepository.deleteUpToChangeSeq(40L)).thenReturn(3);
+
+        int deleted = syncService.compactTombstones();
+
+        assertEquals(3, deleted);
+        verify(horizonRepository).save(argThat(h -> h.getPurgedChangeSeq() == 40L));
+    }
+
+    @Test
+    @DisplayName("compactTombstones: горизонт должен учитывать и следы сообщений")
+    void compactTombstones_ShouldAdvanceHorizonPastMessageTombstones() {
+        when(tombstoneRepository.findMaxChangeSeqDeletedBefore(any())).thenReturn(40L);
+        when(messageTombstoneRepository.findMaxChangeSeqDeletedBefore(any())).thenReturn(55L);
+        when(horizonRepository.findById(ChatSyncHorizon.SINGLETON_ID)).thenReturn(Optional.empty());
+        when(tombstoneRepository.deleteUpToChangeSeq(55L)).thenReturn(3);
+        when(messageTombstoneRepository.deleteUpToChangeSeq(55L)).thenReturn(7);
+
+        int deleted = syncService.compactTombstones();
+
+        assertEquals(10, deleted);
+        verify(horizonRepository).save(argThat(h -> h.getPurgedChangeSeq() == 55L));
+    }
+
+    @Test
+    @DisplayName("compactTombstones: ничего не должен делать, если старых следов нет")
+    void compactTombstones_ShouldDoNothing_WhenNoOldTombstones() {
+        when(tombstoneRepository.findMaxChangeSeqDeletedBefore(any())).thenReturn(null);
+        when(messageTombstoneRepository.findMaxChangeSeqDeletedBefore(any())).thenReturn(null);
+
+        assertEquals(0, syncService.compactTombstones());
+        verifyNoInteractions(horizonRepository);
+    }
+
+    private Chat chat(Long id, long changeSeq) {
+        Chat chat = new Chat();
+        chat.setId(id);
+        chat.setUserId(USER_ID);
+        chat.setChangeSeq(changeSeq);
+        return chat;
+    }
+
+    private ChatMessageTombstone messageTombstone(Long messageId, long changeSeq) {
+        return new ChatMessageTombstone(messageId, 10L, USER_ID, changeSeq, LocalDateTime.now());
+    }
+
+    private ChatMessage message(long changeSeq) {
+        ChatMessage message = new ChatMessage();
+        message.setId(changeSeq);
+        message.setChangeSeq(changeSeq);
+        return message;
+    }
+}
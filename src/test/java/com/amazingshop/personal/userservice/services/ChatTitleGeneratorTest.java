@@ -0,0 +1,87 @@
+package com.amazingshop.personal.userservice.services;
+
+import com.amazingshop.personal.userservice.events.ChatCreated;
+import com.amazingshop.personal.userservice.events.MessageAppended;
+import com.amazingshop.personal.userservice.repositories.ChatMessageRepository;
+import com.amazingshop.personal.userservice.repositories.ChatRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class ChatTitleGeneratorTest {
+
+    @Mock
+    private ChatRepository chatRepository;
+
+    @Mock
+    private ChatMessageRepository messageRepository;
+
+    @InjectMocks
+    private ChatTitleGenerator titleGenerator;
+
+    private static final Long USER_ID = 1L;
+    private static final Long CHAT_ID = 10L;
+
+    @Test
+    @DisplayName("handle: должен установить title из первого сообщения пользователя")
+    void handle_ShouldSetTitleFromFirstUserMessage() {
+        // Arrange
+        when(messageRepository.existsByChatIdAndRoleAndIdLessThan(CHAT_ID, "user", 100L)).thenReturn(false);
+        when(chatRepository.nextChangeSeq(USER_ID)).thenReturn(7L);
+
+        // Act
+        titleGenerator.handle(List.of(
+                appended(100L, "user", "How to solve this math problem?"),
+                appended(101L, "user", "And another one")));
+
+        // Assert: второе сообщение того же чата в пачке title не перезаписывает
+        verify(chatRepository, times(1))
+                .updateTitleIfDefault(eq(CHAT_ID), eq("How to solve this math problem?"),
+                        eq(ChatTitleGenerator.DEFAULT_TITLE), any(), eq(7L));
+    }
+
+    @Test
+    @DisplayName("handle: не должен менять title для не-первого сообщения")
+    void handle_ShouldNotChangeTitleForNonFirstMessage() {
+        when(messageRepository.existsByChatIdAndRoleAndIdLessThan(CHAT_ID, "user", 100L)).thenReturn(true);
+
+        titleGenerator.handle(List.of(appended(100L, "user", "Second message")));
+
+        verify(chatRepository, never()).updateTitleIfDefault(any(), any(), any(), any(), anyLong());
+    }
+
+    @Test
+    @DisplayName("handle: должен игнорировать ответы ассистента и другие события")
+    void handle_ShouldIgnoreAssistantMessagesAndOtherEvents() {
+        titleGenerator.handle(List.of(
+                new ChatCreated(CHAT_ID, USER_ID),
+                appended(100L, "assistant", "Answer")));
+
+        verifyNoInteractions(chatRepository, messageRepository);
+    }
+
+    @Test
+    @DisplayName("truncateTitle: должен обрезать title до 40 символов по словам")
+    void truncateTitle_ShouldTruncateByWords() {
+        String title = ChatTitleGenerator.truncateTitle("word ".repeat(100).trim());
+
+        assertEquals("word word word word word word word word", title);
+    }
+
+    private MessageAppended appended(Long messageId, String role, String content) {
+        return new MessageAppended(CHAT_ID, USER_ID, messageId, role, content, LocalDateTime.now());
+    }
+}
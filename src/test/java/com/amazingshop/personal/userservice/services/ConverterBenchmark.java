@@ -0,0 +1,83 @@
+package com.amazingshop.personal.userservice.services;
+
+import com.amazingshop.personal.userservice.dto.requests.UserDTO;
+import com.amazingshop.personal.userservice.models.User;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.modelmapper.ModelMapper;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UserDTO ↔ User: ModelMapper против {@link ConverterServiceImpl}.
+ * Горячие *Steady - среднее время на пару преобразований после прогрева;
+ * *Cold - первый вызов в свежей JVM (создание маппера, загрузка классов, у ModelMapper - построение карт типов),
+ * то есть то, что платит первый запрос после старта.
+ * <p>
+ * Запуск: {@code ./mvnw test -Pbenchmark -Dtest=ConverterBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ConverterBenchmark {
+
+    private ModelMapper modelMapper;
+    private ConverterServiceImpl converterService;
+    private UserDTO userDTO;
+    private User user;
+
+    @Setup
+    public void setUp() {
+        modelMapper = new ModelMapper();
+        converterService = new ConverterServiceImpl();
+        userDTO = new UserDTO("Alice", "secret1", "Alice@Example.com");
+        user = new User("Bob", "$2a$10$hash", "Bob@Example.com");
+    }
+
+    @Benchmark
+    public Object modelMapperSteady() {
+        return new Object[]{modelMapper.map(userDTO, User.class), modelMapper.map(user, UserDTO.class)};
+    }
+
+    @Benchmark
+    public Object handWrittenSteady() {
+        return new Object[]{converterService.convertToUser(userDTO), converterService.convertToUserDTO(user)};
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(10)
+    public Object modelMapperCold() {
+        ModelMapper mapper = new ModelMapper();
+        return new Object[]{mapper.map(userDTO, User.class), mapper.map(user, UserDTO.class)};
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    @Warmup(iterations = 0)
+    @Measurement(iterations = 1)
+    @Fork(10)
+    public Object handWrittenCold() {
+        ConverterServiceImpl converter = new ConverterServiceImpl();
+        return new Object[]{converter.convertToUser(userDTO), converter.convertToUserDTO(user)};
+    }
+
+    @Test
+    @Tag("benchmark")
+    void runBenchmarks() throws Exception {
+        new Runner(new OptionsBuilder()
+                .include(ConverterBenchmark.class.getSimpleName())
+                .build())
+                .run();
+    }
+}
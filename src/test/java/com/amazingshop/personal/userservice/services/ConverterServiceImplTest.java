@@ -0,0 +1,39 @@
+package com.amazingshop.personal.userservice.services;
+
+import com.amazingshop.personal.userservice.dto.requests.UserDTO;
+import com.amazingshop.personal.userservice.models.User;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ConverterServiceImplTest {
+
+    private final ConverterServiceImpl converterService = new ConverterServiceImpl();
+
+    @Test
+    @DisplayName("convertToUser: должен перенести поля и заполнить нормализованные колонки")
+    void convertToUser_ShouldCopyFieldsAndNormalize() {
+        // Act
+        User user = converterService.convertToUser(new UserDTO("Alice", "secret1", "Alice@Example.com"));
+
+        // Assert
+        assertNull(user.getId());
+        assertEquals("Alice", user.getUsername());
+        assertEquals("secret1", user.getPassword());
+        assertEquals("Alice@Example.com", user.getEmail());
+        assertEquals("alice", user.getUsernameLc());
+        assertEquals("alice@example.com", user.getEmailLc());
+    }
+
+    @Test
+    @DisplayName("convertToUserDTO: должен перенести имя, пароль и email")
+    void convertToUserDTO_ShouldCopyFields() {
+        User user = new User("Bob", "hash", "bob@example.com");
+
+        UserDTO dto = converterService.convertToUserDTO(user);
+
+        assertEquals(new UserDTO("Bob", "hash", "bob@example.com"), dto);
+    }
+}
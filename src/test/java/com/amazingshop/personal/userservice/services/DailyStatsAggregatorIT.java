@@ -0,0 +1,206 @@
+package com.amazingshop.personal.userservice.services;
+
+import com.amazingshop.personal.userservice.enums.Role;
+import com.amazingshop.personal.userservice.enums.Subject;
+import com.amazingshop.personal.userservice.models.Chat;
+import com.amazingshop.personal.userservice.models.ChatMessage;
+import com.amazingshop.personal.userservice.models.DailyStats;
+import com.amazingshop.personal.userservice.models.User;
+import com.amazingshop.personal.userservice.repositories.ChatMessageRepository;
+import com.amazingshop.personal.userservice.repositories.ChatRepository;
+import com.amazingshop.personal.userservice.repositories.DailyStatsRepository;
+import com.amazingshop.personal.userservice.repositories.UsersRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+// close-after = 0: прошедшие дни закрываются сразу, не дожидаясь четверти часа после полуночи
+@Transactional
+@SpringBootTest(properties = "stats.daily.close-after-minutes=0")
+@ActiveProfiles("test")
+class DailyStatsAggregatorIT {
+
+    private final DailyStatsAggregator aggregator;
+    private final UsersRepository usersRepository;
+    private final ChatRepository chatRepository;
+    private final ChatMessageRepository messageRepository;
+    private final DailyStatsRepository statsRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+
+    @Autowired
+    DailyStatsAggregatorIT(DailyStatsAggregator aggregator, UsersRepository usersRepository,
+                           ChatRepository chatRepository, ChatMessageRepository messageRepository,
+                           DailyStatsRepository statsRepository, JdbcTemplate jdbcTemplate,
+                           EntityManager entityManager) {
+        this.aggregator = aggregator;
+        this.usersRepository = usersRepository;
+        this.chatRepository = chatRepository;
+        this.messageRepository = messageRepository;
+        this.statsRepository = statsRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManager = entityManager;
+    }
+
+    @Test
+    @DisplayName("refresh: должен посчитать дни с первой регистрации, итогом и по предметам")
+    void refresh_ShouldAggregateDaysBySubject() {
+        // Arrange: позавчера - регистрация и чат по математике с двумя сообщениями
+        LocalDate today = LocalDate.now();
+        LocalDateTime twoDaysAgo = today.minusDays(2).atTime(10, 0);
+        User alice = saveUser("statsAlice", twoDaysAgo);
+        Chat aliceMath = saveChat(alice.getId(), "MATH", twoDaysAgo);
+        saveMessage(aliceMath.getId(), twoDaysAgo);
+        saveMessage(aliceMath.getId(), twoDaysAgo.plusMinutes(1));
+
+        // Сегодня - ещё один пользователь, чат без предмета и сообщения в обоих предметах
+        User bob = saveUser("statsBob", null);
+        Chat aliceGeneral = saveChat(alice.getId(), null, null);
+        Chat bobMath = saveChat(bob.getId(), "MATH", null);
+        saveMessage(aliceMath.getId(), null);
+        saveMessage(aliceGeneral.getId(), null);
+        saveMessage(bobMath.getId(), null);
+
+        // Act
+        int days = aggregator.refresh();
+        entityManager.clear();
+
+        // Assert
+        assertEquals(3, days);
+
+        Map<String, DailyStats> past = statsOf(today.minusDays(2));
+        assertEquals(2, past.size());
+        assertStats(past.get(DailyStats.TOTAL), 1, 1, 2, 1);
+        assertStats(past.get("MATH"), 0, 1, 2, 1);
+        assertTrue(past.get(DailyStats.TOTAL).isClosed());
+
+        Map<String, DailyStats> yesterday = statsOf(today.minusDays(1));
+        assertStats(yesterday.get(DailyStats.TOTAL), 0, 0, 0, 0);
+
+        Map<String, DailyStats> current = statsOf(today);
+        assertStats(current.get(DailyStats.TOTAL), 1, 2, 3, 2);
+        assertStats(current.get("MATH"), 0, 1, 2, 2);
+        assertStats(current.get(DailyStats.OTHER), 0, 1, 1, 1);
+        assertFalse(current.get(DailyStats.TOTAL).isClosed());
+    }
+
+    @Test
+    @DisplayName("refresh: повторный проход пересчитывает только незакрытый сегодняшний день")
+    void refresh_ShouldRecomputeOnlyOpenDays() {
+        // Arrange
+        LocalDate today = LocalDate.now();
+        User user = saveUser("statsCarol", today.minusDays(1).atTime(9, 0));
+        Chat chat = saveChat(user.getId(), "PROGRAMMING", null);
+        saveMessage(chat.getId(), null);
+        assertEquals(2, aggregator.refresh());
+
+        // Act
+        saveMessage(chat.getId(), null);
+        int days = aggregator.refresh();
+        entityManager.clear();
+
+        // Assert
+        assertEquals(1, days);
+        assertStats(statsOf(today).get("PROGRAMMING"), 0, 1, 2, 1);
+        assertStats(statsOf(today.minusDays(1)).get(DailyStats.TOTAL), 1, 0, 0, 0);
+    }
+
+    @Test
+    @DisplayName("refresh: свободные значения subject должны сводиться к предметам Subject и одной корзине OTHER")
+    void refresh_ShouldBucketSubjectsByEnum() {
+        // Arrange: регистр и пробелы не дробят предмет, "ALL" и произвольные строки не заводят своих строк
+        User user = saveUser("statsDave", null);
+        for (String subject : new String[]{"MATH", "math", " Math ", "ALL", "whatever", null}) {
+            Chat chat = saveChat(user.getId(), subject, null);
+            saveMessage(chat.getId(), null);
+        }
+
+        // Act
+        aggregator.refresh();
+        entityManager.clear();
+
+        // Assert
+        Map<String, DailyStats> current = statsOf(LocalDate.now());
+        assertEquals(Set.of(DailyStats.TOTAL, "MATH", DailyStats.OTHER), current.keySet());
+        assertStats(current.get("MATH"), 0, 3, 3, 1);
+        assertStats(current.get(DailyStats.OTHER), 0, 3, 3, 1);
+        assertStats(current.get(DailyStats.TOTAL), 1, 6, 6, 1);
+    }
+
+    @Test
+    @DisplayName("SUBJECT_BUCKET: должен перечислять ровно предметы Subject")
+    void subjectBucket_ShouldListEverySubject() {
+        Matcher list = Pattern.compile("in \\(([^)]*)\\)").matcher(ChatRepository.SUBJECT_BUCKET);
+        assertTrue(list.find());
+
+        Set<String> listed = Arrays.stream(list.group(1).split(","))
+                .map(value -> value.trim().replace("'", ""))
+                .collect(Collectors.toSet());
+        Set<String> subjects = Arrays.stream(Subject.values()).map(Subject::name).collect(Collectors.toSet());
+        assertEquals(subjects, listed);
+        assertFalse(subjects.contains(DailyStats.TOTAL) || subjects.contains(DailyStats.OTHER));
+    }
+
+    private Map<String, DailyStats> statsOf(LocalDate day) {
+        return statsRepository.findByDayBetweenOrderByDayAscSubjectAsc(day, day).stream()
+                .collect(Collectors.toMap(DailyStats::getSubject, Function.identity()));
+    }
+
+    private static void assertStats(DailyStats stats, long newUsers, long newChats, long messages, long activeUsers) {
+        assertNotNull(stats);
+        assertEquals(newUsers, stats.getNewUsers(), "newUsers");
+        assertEquals(newChats, stats.getNewChats(), "newChats");
+        assertEquals(messages, stats.getMessages(), "messages");
+        assertEquals(activeUsers, stats.getActiveUsers(), "activeUsers");
+    }
+
+    private User saveUser(String username, LocalDateTime createdAt) {
+        User user = new User();
+        user.setUsername(username);
+        user.setPassword("password");
+        user.setEmail(username + "@test.com");
+        user.setRole(Role.USER);
+        user.setCreatedAt(createdAt);
+        return usersRepository.saveAndFlush(user);
+    }
+
+    private Chat saveChat(Long userId, String subject, LocalDateTime createdAt) {
+        Chat chat = new Chat();
+        chat.setUserId(userId);
+        chat.setTitle("Stats chat");
+        chat.setSubject(subject);
+        chatRepository.saveAndFlush(chat);
+        if (createdAt != null) {
+            jdbcTemplate.update("UPDATE Chats SET created_at = ? WHERE id = ?", createdAt, chat.getId());
+        }
+        return chat;
+    }
+
+    private void saveMessage(Long chatId, LocalDateTime createdAt) {
+        ChatMessage message = new ChatMessage();
+        message.setChatId(chatId);
+        message.setRole("user");
+        message.setContent("Question");
+        messageRepository.saveAndFlush(message);
+        if (createdAt != null) {
+            jdbcTemplate.update("UPDATE Chat_Messages SET created_at = ? WHERE id = ?", createdAt, message.getId());
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package com.amazingshop.personal.userservice.services;
+
+import com.amazingshop.personal.userservice.models.ChatMessage;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+public class ExtractiveChatSummarizerTest {
+
+    private final ExtractiveChatSummarizer summarizer = new ExtractiveChatSummarizer(new CharacterRatioTokenizer(4));
+
+    @Test
+    @DisplayName("summarize: по первому предложению каждого сообщения после прежнего содержания")
+    void summarize_ShouldAppendFirstSentences() {
+        List<ChatMessage> messages = List.of(
+                message("user", "Как решить уравнение?  Вот   условие: x + 1 = 2"),
+                message("assistant", "Перенесите единицу вправо. Получится x = 1."),
+                message("user", "   "));
+
+        String summary = summarizer.summarize("user: Привет.", messages, 512);
+
+        assertEquals("user: Привет.\nuser: Как решить уравнение?\nassistant: Перенесите единицу вправо.", summary);
+        assertEquals(summary, summarizer.summarize("user: Привет.", messages, 512));
+    }
+
+    @Test
+    @DisplayName("summarize: при превышении maxTokens выбрасывает самые старые строки")
+    void summarize_ShouldDropOldestLines_WhenOverBudget() {
+        // Каждая строка - 18 символов: 5 токенов + 1 за перевод строки
+        List<ChatMessage> messages = List.of(message("user", "aaaaaaaaaaaa"), message("user", "bbbbbbbbbbbb"),
+                message("user", "cccccccccccc"));
+
+        String summary = summarizer.summarize(null, messages, 12);
+
+        assertEquals("user: bbbbbbbbbbbb\nuser: cccccccccccc", summary);
+    }
+
+    @Test
+    @DisplayName("firstSentence: длинный текст без точки обрезается")
+    void firstSentence_ShouldClipLongText() {
+        String sentence = ExtractiveChatSummarizer.firstSentence("x".repeat(500));
+
+        assertEquals(ExtractiveChatSummarizer.MAX_LINE_CHARS, sentence.length());
+        assertTrue(sentence.endsWith("…"));
+    }
+
+    private static ChatMessage message(String role, String content) {
+        return new ChatMessage(null, 1L, role, content, null, null, 0L, 0);
+    }
+}
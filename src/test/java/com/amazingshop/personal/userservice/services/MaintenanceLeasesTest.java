@@ -0,0 +1,75 @@
+package com.amazingshop.personal.userservice.services;
+
+import com.amazingshop.personal.userservice.repositories.MaintenanceLeaseRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class MaintenanceLeasesTest {
+
+    @Mock
+    private MaintenanceLeaseRepository leaseRepository;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private MaintenanceLeases leases;
+
+    private static final String NAME = "job";
+    private static final Duration TTL = Duration.ofMinutes(5);
+
+    @BeforeEach
+    void setUp() {
+        leases = new MaintenanceLeases(leaseRepository, transactionManager);
+    }
+
+    @Test
+    @DisplayName("tryAcquire: должен забрать истёкшую аренду одним UPDATE")
+    void tryAcquire_ShouldTakeExpiredLease() {
+        when(leaseRepository.tryAcquire(eq(NAME), anyString(), any(), any())).thenReturn(1);
+
+        assertTrue(leases.tryAcquire(NAME, TTL));
+        verify(leaseRepository, never()).insert(any(), any(), any());
+    }
+
+    @Test
+    @DisplayName("tryAcquire: должен создать аренду, если её ещё нет")
+    void tryAcquire_ShouldInsertLease_WhenMissing() {
+        when(leaseRepository.tryAcquire(eq(NAME), anyString(), any(), any())).thenReturn(0);
+
+        assertTrue(leases.tryAcquire(NAME, TTL));
+        verify(leaseRepository).insert(eq(NAME), anyString(), any());
+    }
+
+    @Test
+    @DisplayName("tryAcquire: должен вернуть false, если аренда у другого узла")
+    void tryAcquire_ShouldFail_WhenLeaseIsHeldByAnotherNode() {
+        when(leaseRepository.tryAcquire(eq(NAME), anyString(), any(), any())).thenReturn(0);
+        doThrow(new DataIntegrityViolationException("duplicate key"))
+                .when(leaseRepository).insert(eq(NAME), anyString(), any());
+
+        assertFalse(leases.tryAcquire(NAME, TTL));
+    }
+
+    @Test
+    @DisplayName("purgeExpired: должен удалить истёкшие аренды с префиксом")
+    void purgeExpired_ShouldDeleteExpiredLeasesByPrefix() {
+        when(leaseRepository.deleteExpiredByPrefix(eq("job:"), any())).thenReturn(3);
+
+        assertEquals(3, leases.purgeExpired("job:"));
+    }
+}
@@ -0,0 +1,173 @@
+package com.amazingshop.personal.userservice.services;
+
+import com.amazingshop.personal.userservice.enums.Role;
+import com.amazingshop.personal.userservice.models.Chat;
+import com.amazingshop.personal.userservice.models.ChatMessage;
+import com.amazingshop.personal.userservice.models.ChatMessageTombstone;
+import com.amazingshop.personal.userservice.models.User;
+import com.amazingshop.personal.userservice.repositories.ChatMessageRepository;
+import com.amazingshop.personal.userservice.repositories.ChatMessageTombstoneRepository;
+import com.amazingshop.personal.userservice.repositories.ChatRepository;
+import com.amazingshop.personal.userservice.repositories.UsersRepository;
+import com.amazingshop.personal.userservice.security.jwt.JwtUtil;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+@Transactional
+@SpringBootTest(properties = "retention.chat-messages.retention-days=30")
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+class RetentionSweeperIT {
+
+    private final RetentionSweeper sweeper;
+    private final UsersRepository usersRepository;
+    private final ChatRepository chatRepository;
+    private final ChatMessageRepository messageRepository;
+    private final ChatMessageTombstoneRepository messageTombstoneRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final EntityManager entityManager;
+    private final MockMvc mockMvc;
+    private final ObjectMapper objectMapper;
+    private final JwtUtil jwtUtil;
+
+    @Autowired
+    RetentionSweeperIT(RetentionSweeper sweeper, UsersRepository usersRepository, ChatRepository chatRepository,
+                       ChatMessageRepository messageRepository, ChatMessageTombstoneRepository messageTombstoneRepository,
+                       JdbcTemplate jdbcTemplate, EntityManager entityManager, MockMvc mockMvc,
+                       ObjectMapper objectMapper, JwtUtil jwtUtil) {
+        this.sweeper = sweeper;
+        this.usersRepository = usersRepository;
+        this.chatRepository = chatRepository;
+        this.messageRepository = messageRepository;
+        this.messageTombstoneRepository = messageTombstoneRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.entityManager = entityManager;
+        this.mockMvc = mockMvc;
+        this.objectMapper = objectMapper;
+        this.jwtUtil = jwtUtil;
+    }
+
+    @Test
+    @DisplayName("sweep: должен очистить просроченный токен, старые сообщения и обновить сводку чата")
+    void sweep_ShouldRemoveExpiredData() {
+        // Arrange
+        User user = new User();
+        user.setUsername("retention");
+        user.setPassword("password");
+        user.setEmail("retention@test.com");
+        user.setRole(Role.USER);
+        user.setRefreshToken("expired-token");
+        user.setRefreshTokenExpiry(LocalDateTime.now().minusDays(1));
+        usersRepository.saveAndFlush(user);
+
+        Chat chat = new Chat();
+        chat.setUserId(user.getId());
+        chat.setTitle("Old chat");
+        chat.setMessageCount(2);
+        chatRepository.saveAndFlush(chat);
+
+        ChatMessage old = messageRepository.saveAndFlush(message(chat.getId(), "Old"));
+        messageRepository.saveAndFlush(message(chat.getId(), "Fresh"));
+        jdbcTemplate.update("UPDATE Chat_Messages SET created_at = ? WHERE id = ?",
+                LocalDateTime.now().minusDays(60), old.getId());
+
+        // Act
+        Map<String, Long> report = sweeper.sweep();
+        entityManager.clear();
+
+        // Assert
+        assertEquals(1L, report.get(RetentionSweeper.REFRESH_TOKENS));
+        assertEquals(1L, report.get(RetentionSweeper.CHAT_MESSAGES));
+        assertNull(usersRepository.findById(user.getId()).orElseThrow().getRefreshToken());
+        assertEquals(1, messageRepository.findByChatIdOrderByIdAsc(chat.getId()).size());
+        assertEquals(1, chatRepository.findById(chat.getId()).orElseThrow().getMessageCount());
+        // Клиенты синхронизации узнают об удалении из следа
+        ChatMessageTombstone tombstone = messageTombstoneRepository.findById(old.getId()).orElseThrow();
+        assertEquals(user.getId(), tombstone.getUserId());
+        assertTrue(tombstone.getChangeSeq() > 0);
+    }
+
+    @Test
+    @DisplayName("sweep: после очистки ETag списка и истории меняется, а /chats/changes отдаёт чат и след")
+    void sweep_ShouldChangeETagsAndSyncChat() throws Exception {
+        // Arrange: клиент закэшировал список, историю и синхронизировался
+        User user = new User();
+        user.setUsername("retentionSync");
+        user.setPassword("password");
+        user.setEmail("retention-sync@test.com");
+        user.setRole(Role.USER);
+        usersRepository.saveAndFlush(user);
+        String token = "Bearer " + jwtUtil.generateAccessToken(user.getUsername());
+
+        Chat chat = new Chat();
+        chat.setUserId(user.getId());
+        chat.setTitle("Synced chat");
+        chat.setMessageCount(2);
+        chatRepository.saveAndFlush(chat);
+
+        ChatMessage old = messageRepository.saveAndFlush(message(chat.getId(), "Old"));
+        messageRepository.saveAndFlush(message(chat.getId(), "Fresh"));
+        jdbcTemplate.update("UPDATE Chat_Messages SET created_at = ? WHERE id = ?",
+                LocalDateTime.now().minusDays(60), old.getId());
+
+        String listETag = etag(perform("/api/v1/chats", token, null));
+        String messagesETag = etag(perform("/api/v1/chats/" + chat.getId() + "/messages", token, null));
+        long watermark = objectMapper.readTree(perform("/api/v1/chats/changes", token, null)
+                .getResponse().getContentAsString()).get("watermark").asLong();
+
+        // Act
+        sweeper.sweep();
+        entityManager.clear();
+
+        // Assert: закэшированные ответы устарели
+        assertNotEquals(listETag, etag(perform("/api/v1/chats", token, listETag)));
+        assertNotEquals(messagesETag, etag(perform("/api/v1/chats/" + chat.getId() + "/messages", token, messagesETag)));
+
+        JsonNode changes = objectMapper.readTree(perform("/api/v1/chats/changes?since=" + watermark, token, null)
+                .getResponse().getContentAsString());
+        assertEquals(1, changes.get("chats").size());
+        assertEquals(chat.getId(), changes.get("chats").get(0).get("id").asLong());
+        assertEquals(1, changes.get("chats").get(0).get("messageCount").asInt());
+        assertEquals(old.getId(), changes.get("deletedMessageIds").get(0).asLong());
+    }
+
+    private MvcResult perform(String url, String token, String ifNoneMatch) throws Exception {
+        var request = get(url).header("Authorization", token);
+        if (ifNoneMatch != null) {
+            request.header("If-None-Match", ifNoneMatch);
+        }
+        return mockMvc.perform(request).andExpect(status().isOk()).andReturn();
+    }
+
+    private static String etag(MvcResult result) {
+        String etag = result.getResponse().getHeader("ETag");
+        assertNotNull(etag);
+        return etag;
+    }
+
+    private static ChatMessage message(Long chatId, String content) {
+        ChatMessage message = new ChatMessage();
+        message.setChatId(chatId);
+        message.setRole("user");
+        message.setContent(content);
+        return message;
+    }
+}
@@ -0,0 +1,198 @@
+package com.amazingshop.personal.userservice.services;
+
+import com.amazingshop.personal.userservice.cache.ChatMessageTailCache;
+import com.amazingshop.personal.userservice.repositories.ChatArchiveRepository;
+import com.amazingshop.personal.userservice.models.ChatMessage;
+import com.amazingshop.personal.userservice.models.ChatMessageTombstone;
+import com.amazingshop.personal.userservice.repositories.ChatMessageRepository;
+import com.amazingshop.personal.userservice.repositories.ChatMessageTombstoneRepository;
+import com.amazingshop.personal.userservice.repositories.ChatRepository;
+import com.amazingshop.personal.userservice.repositories.ChatRollingSummaryRepository;
+import com.amazingshop.personal.userservice.repositories.UsersRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class RetentionSweeperTest {
+
+    @Mock
+    private UsersRepository usersRepository;
+
+    @Mock
+    private ChatRepository chatRepository;
+
+    @Mock
+    private ChatMessageRepository messageRepository;
+
+    @Mock
+    private ChatArchiveRepository archiveRepository;
+
+    @Mock
+    private ChatRollingSummaryRepository summaryRepository;
+
+    @Mock
+    private ChatMessageTombstoneRepository messageTombstoneRepository;
+
+    @Mock
+    private ChatArchiver archiver;
+
+    @Mock
+    private ChatMessageTailCache tailCache;
+
+    @Mock
+    private MaintenanceLeases leases;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private static final int BATCH = 2;
+
+    @Test
+    @DisplayName("sweep: должен очищать refresh token порциями по keyset")
+    void sweep_ShouldClearRefreshTokensInKeysetBatches() {
+        // Arrange
+        RetentionSweeper sweeper = sweeper(0);
+        when(leases.tryAcquire(eq(RetentionSweeper.LEASE_NAME), any(Duration.class))).thenReturn(true);
+        when(usersRepository.findIdsWithExpiredRefreshToken(any(), eq(0L), any(Pageable.class))).thenReturn(List.of(1L, 2L));
+        when(usersRepository.findIdsWithExpiredRefreshToken(any(), eq(2L), any(Pageable.class))).thenReturn(List.of(5L));
+        when(usersRepository.clearExpiredRefreshTokens(eq(List.of(1L, 2L)), any())).thenReturn(2);
+        when(usersRepository.clearExpiredRefreshTokens(eq(List.of(5L)), any())).thenReturn(1);
+
+        // Act
+        Map<String, Long> report = sweeper.sweep();
+
+        // Assert
+        assertEquals(Map.of(RetentionSweeper.REFRESH_TOKENS, 3L), report);
+        verify(transactionManager, times(2)).commit(any());
+        verify(leases).release(RetentionSweeper.LEASE_NAME);
+        verifyNoInteractions(messageRepository, archiveRepository);
+        assertEquals(3.0, meterRegistry.get(RetentionSweeper.METRIC_NAME)
+                .tag("data.class", RetentionSweeper.REFRESH_TOKENS).counter().count());
+    }
+
+    @Test
+    @DisplayName("sweep: должен удалять старые сообщения и пересчитывать сводку чатов")
+    void sweep_ShouldDeleteExpiredMessagesAndRecountChats() {
+        // Arrange
+        RetentionSweeper sweeper = sweeper(30);
+        LocalDateTime createdAt = LocalDateTime.of(2023, 1, 1, 0, 0);
+        when(leases.tryAcquire(eq(RetentionSweeper.LEASE_NAME), any(Duration.class))).thenReturn(true);
+        when(usersRepository.findIdsWithExpiredRefreshToken(any(), eq(0L), any(Pageable.class))).thenReturn(List.of());
+        when(messageRepository.findCreatedBetween(any(), any(), any(Pageable.class)))
+                .thenReturn(List.of(ref(1L, 10L, createdAt)));
+        when(messageRepository.deleteByChatIdInAndIdIn(Set.of(10L), List.of(1L))).thenReturn(1);
+        when(archiveRepository.findExpiredChatIds(any(), eq(0L), any(Pageable.class))).thenReturn(List.of(20L));
+        when(archiveRepository.deleteByChatIdIn(List.of(20L))).thenReturn(1);
+        when(chatRepository.findOwnersByIdIn(Set.of(10L))).thenReturn(List.of(owner(10L, 7L)));
+        when(chatRepository.findOwnersByIdIn(List.of(20L))).thenReturn(List.of(owner(20L, 8L)));
+        when(chatRepository.allocateChangeSeq()).thenReturn(99L);
+        when(archiver.findArchivedMessages(20L)).thenReturn(List.of(
+                new ChatMessage(3L, 20L, "user", "Old", null, createdAt, 1L, 0)));
+
+        // Act
+        Map<String, Long> report = sweeper.sweep();
+
+        // Assert: удаления попадают в дельта-синхронизацию, позиции выдаются под блокировкой владельцев
+        verify(chatRepository).lockChangeSeqOwners(List.of(7L));
+        verify(messageTombstoneRepository).insertForMessages(Set.of(10L), List.of(1L));
+        verify(chatRepository).lockChangeSeqOwners(List.of(8L));
+        verify(messageTombstoneRepository).saveAll(Mockito.<List<ChatMessageTombstone>>argThat(tombstones ->
+                tombstones.size() == 1 && tombstones.get(0).getMessageId() == 3L
+                        && tombstones.get(0).getUserId() == 8L && tombstones.get(0).getChangeSeq() == 99L));
+        assertEquals(1L, report.get(RetentionSweeper.CHAT_MESSAGES));
+        assertEquals(1L, report.get(RetentionSweeper.CHAT_ARCHIVES));
+        verify(chatRepository).recountMessages(eq(Set.of(10L)), any(LocalDateTime.class), eq(99L));
+        verify(chatRepository).recountMessages(eq(List.of(20L)), any(LocalDateTime.class), eq(99L));
+        verify(tailCache).invalidateAll(Set.of(10L));
+        verify(summaryRepository).deleteByChatIdIn(Set.of(10L));
+        verify(summaryRepository).deleteByChatIdIn(List.of(20L));
+    }
+
+    @Test
+    @DisplayName("sweep: должен продлевать аренду между порциями и остановиться, потеряв её")
+    void sweep_ShouldStop_WhenLeaseIsLostBetweenBatches() {
+        // Arrange: аренда взята, но при продлении после первой порции уже у другого узла
+        RetentionSweeper sweeper = sweeper(30);
+        when(leases.tryAcquire(eq(RetentionSweeper.LEASE_NAME), any(Duration.class))).thenReturn(true, false);
+        when(usersRepository.findIdsWithExpiredRefreshToken(any(), eq(0L), any(Pageable.class))).thenReturn(List.of(1L, 2L));
+        when(usersRepository.clearExpiredRefreshTokens(eq(List.of(1L, 2L)), any())).thenReturn(2);
+
+        // Act
+        Map<String, Long> report = sweeper.sweep();
+
+        // Assert
+        assertEquals(Map.of(RetentionSweeper.REFRESH_TOKENS, 2L), report);
+        verify(usersRepository, never()).findIdsWithExpiredRefreshToken(any(), eq(2L), any(Pageable.class));
+        verifyNoInteractions(messageRepository, archiveRepository);
+    }
+
+    @Test
+    @DisplayName("sweep: без аренды ничего не делает")
+    void sweep_ShouldSkip_WhenLeaseIsHeldByAnotherNode() {
+        RetentionSweeper sweeper = sweeper(30);
+        when(leases.tryAcquire(eq(RetentionSweeper.LEASE_NAME), any(Duration.class))).thenReturn(false);
+
+        assertTrue(sweeper.sweep().isEmpty());
+        verifyNoInteractions(usersRepository, messageRepository, archiveRepository);
+        verify(leases, never()).release(any());
+    }
+
+    private RetentionSweeper sweeper(int messageRetentionDays) {
+        return new RetentionSweeper(usersRepository, chatRepository, messageRepository, archiveRepository,
+                summaryRepository, messageTombstoneRepository, archiver, tailCache, leases, transactionManager, meterRegistry, 30, true, BATCH, 0,
+                messageRetentionDays, BATCH, 0);
+    }
+
+    private static ChatRepository.ChatOwner owner(Long chatId, Long userId) {
+        return new ChatRepository.ChatOwner() {
+            @Override
+            public Long getChatId() {
+                return chatId;
+            }
+
+            @Override
+            public Long getUserId() {
+                return userId;
+            }
+        };
+    }
+
+    private static ChatMessageRepository.MessageRef ref(Long id, Long chatId, LocalDateTime createdAt) {
+        return new ChatMessageRepository.MessageRef() {
+            @Override
+            public Long getId() {
+                return id;
+            }
+
+            @Override
+            public Long getChatId() {
+                return chatId;
+            }
+
+            @Override
+            public LocalDateTime getCreatedAt() {
+                return createdAt;
+            }
+        };
+    }
+}
@@ -0,0 +1,116 @@
+package com.amazingshop.personal.userservice.services;
+
+import com.amazingshop.personal.userservice.models.ChatMessage;
+import com.amazingshop.personal.userservice.repositories.ChatMessageRepository;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+public class TokenCountBackfillerTest {
+
+    @Mock
+    private ChatMessageRepository messageRepository;
+
+    @Mock
+    private MaintenanceLeases leases;
+
+    @Mock
+    private PlatformTransactionManager transactionManager;
+
+    private static final int BATCH = 2;
+
+    @Test
+    @DisplayName("backfill: должен досчитать token_count порциями по keyset настроенным токенизатором")
+    void backfill_ShouldCountInKeysetBatches() {
+        // Arrange: 3 символа на токен вместо 4 по умолчанию
+        TokenCountBackfiller backfiller = backfiller(3);
+        when(leases.tryAcquire(eq(TokenCountBackfiller.LEASE_NAME), any(Duration.class))).thenReturn(true);
+        when(messageRepository.findByIdGreaterThanAndTokenCountIsNullOrderByIdAsc(eq(0L), any(Pageable.class)))
+                .thenReturn(List.of(message(1L, 10L, "abcdef"), message(4L, 20L, "abcdefg")));
+        when(messageRepository.findByIdGreaterThanAndTokenCountIsNullOrderByIdAsc(eq(4L), any(Pageable.class)))
+                .thenReturn(List.of(message(9L, 10L, "")));
+        when(messageRepository.findByIdGreaterThanAndTokenCountIsNullOrderByIdAsc(eq(9L), any(Pageable.class)))
+                .thenReturn(List.of());
+
+        // Act
+        long counted = backfiller.backfill();
+
+        // Assert
+        assertEquals(3, counted);
+        verify(messageRepository).updateTokenCount(10L, 1L, 2);
+        verify(messageRepository).updateTokenCount(20L, 4L, 3);
+        verify(messageRepository).updateTokenCount(10L, 9L, 0);
+        verify(transactionManager, times(3)).commit(any());
+        verify(leases).release(TokenCountBackfiller.LEASE_NAME);
+    }
+
+    @Test
+    @DisplayName("backfill: после прохода без недосчитанных строк таблица больше не сканируется")
+    void backfill_ShouldStopScanning_WhenFinished() {
+        // Arrange
+        TokenCountBackfiller backfiller = backfiller(4);
+        when(leases.tryAcquire(eq(TokenCountBackfiller.LEASE_NAME), any(Duration.class))).thenReturn(true);
+        when(messageRepository.findByIdGreaterThanAndTokenCountIsNullOrderByIdAsc(eq(0L), any(Pageable.class)))
+                .thenReturn(List.of());
+
+        // Act
+        backfiller.backfill();
+        long counted = backfiller.backfill();
+
+        // Assert
+        assertEquals(0, counted);
+        verify(messageRepository, times(1)).findByIdGreaterThanAndTokenCountIsNullOrderByIdAsc(anyLong(), any());
+        verify(leases, times(1)).tryAcquire(eq(TokenCountBackfiller.LEASE_NAME), any(Duration.class));
+    }
+
+    @Test
+    @DisplayName("backfill: потеряв аренду, должен остановиться и не считаться завершённым")
+    void backfill_ShouldStop_WhenLeaseIsLost() {
+        // Arrange: аренда взята, но не продлена после первой порции
+        TokenCountBackfiller backfiller = backfiller(4);
+        when(leases.tryAcquire(eq(TokenCountBackfiller.LEASE_NAME), any(Duration.class))).thenReturn(true, false, true);
+        when(messageRepository.findByIdGreaterThanAndTokenCountIsNullOrderByIdAsc(eq(0L), any(Pageable.class)))
+                .thenReturn(List.of(message(1L, 10L, "abcd"), message(2L, 10L, "abcd")));
+
+        // Act
+        long counted = backfiller.backfill();
+        backfiller.backfill();
+
+        // Assert: второй запуск снова начинает проход
+        assertEquals(2, counted);
+        verify(messageRepository, times(2)).findByIdGreaterThanAndTokenCountIsNullOrderByIdAsc(eq(0L), any());
+    }
+
+    @Test
+    @DisplayName("backfill: не должен ничего делать, если аренда у другого узла")
+    void backfill_ShouldSkip_WhenLeaseIsHeldElsewhere() {
+        TokenCountBackfiller backfiller = backfiller(4);
+        when(leases.tryAcquire(eq(TokenCountBackfiller.LEASE_NAME), any(Duration.class))).thenReturn(false);
+
+        assertEquals(0, backfiller.backfill());
+        verifyNoInteractions(messageRepository);
+        verify(leases, never()).release(any());
+    }
+
+    private TokenCountBackfiller backfiller(double charsPerToken) {
+        return new TokenCountBackfiller(messageRepository, new CharacterRatioTokenizer(charsPerToken), leases,
+                transactionManager, 10, BATCH, 0);
+    }
+
+    private static ChatMessage message(Long id, Long chatId, String content) {
+        return new ChatMessage(id, chatId, "user", content, null, null, id, null);
+    }
+}
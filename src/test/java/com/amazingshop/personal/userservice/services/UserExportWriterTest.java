@@ -0,0 +1,61 @@
+package com.amazingshop.personal.userservice.services;
+
+import com.amazingshop.personal.userservice.dto.responses.AdminUserSummary;
+import com.amazingshop.personal.userservice.enums.Role;
+import com.amazingshop.personal.userservice.enums.UserExportFormat;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class UserExportWriterTest {
+
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2024, 5, 1, 12, 0);
+
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .registerModule(new JavaTimeModule())
+            .disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+
+    @Test
+    @DisplayName("CSV: поля с запятой и кавычками экранируются, null - пустое поле")
+    void csv_ShouldQuoteSpecialCharacters() throws IOException {
+        // Arrange
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        UserExportWriter writer = UserExportWriter.of(UserExportFormat.CSV, out, objectMapper);
+
+        // Act
+        writer.write(new AdminUserSummary(1L, "plain", "a@test.com", Role.USER, CREATED_AT, null));
+        writer.write(new AdminUserSummary(2L, "say \"hi\"", "b@test.com", Role.ADMIN, CREATED_AT, "https://x/a,b.png"));
+        writer.finish();
+
+        // Assert
+        assertEquals(UserExportWriter.Csv.HEADER +
+                        "1,plain,a@test.com,USER,2024-05-01T12:00,\r\n" +
+                        "2,\"say \"\"hi\"\"\",b@test.com,ADMIN,2024-05-01T12:00,\"https://x/a,b.png\"\r\n",
+                out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    @DisplayName("NDJSON: по объекту на строку без разделителей между ними")
+    void ndjson_ShouldWriteOneObjectPerLine() throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        UserExportWriter writer = UserExportWriter.of(UserExportFormat.NDJSON, out, objectMapper);
+
+        writer.write(new AdminUserSummary(1L, "first", "a@test.com", Role.USER, CREATED_AT, null));
+        writer.write(new AdminUserSummary(2L, "second", "b@test.com", Role.USER, CREATED_AT, null));
+        writer.finish();
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(2, lines.length);
+        assertEquals("first", objectMapper.readTree(lines[0]).get("username").asText());
+        assertEquals('{', lines[1].charAt(0));
+    }
+}
@@ -1,11 +1,18 @@
 package com.amazingshop.personal.userservice.services;
 
+import com.amazingshop.personal.userservice.cache.CacheInvalidationBus;
+import com.amazingshop.personal.userservice.cache.CurrentUserResponseCache;
+import com.amazingshop.personal.userservice.cache.UserDetailsCache;
+import com.amazingshop.personal.userservice.datasource.PrimaryReads;
 import com.amazingshop.personal.userservice.dto.responses.CurrentUserResponse;
 import com.amazingshop.personal.userservice.enums.Role;
 import com.amazingshop.personal.userservice.models.User;
 import com.amazingshop.personal.userservice.repositories.UsersRepository;
 import com.amazingshop.personal.userservice.security.details.UserDetailsImpl;
 import com.amazingshop.personal.userservice.util.exceptions.UserNotFoundException;
+import com.amazingshop.personal.userservice.util.exceptions.UserValidationException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -13,10 +20,12 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockedStatic;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.util.List;
 import java.util.Map;
@@ -31,6 +40,18 @@ public class UserServiceImplTest {
     @Mock // не идет в бд
     private UsersRepository usersRepository;
 
+    @Spy
+    private CurrentUserResponseCache currentUserCache = new CurrentUserResponseCache(
+            new ObjectMapper().findAndRegisterModules(), 100, 300, new SimpleMeterRegistry(),
+            mock(CacheInvalidationBus.class));
+
+    @Spy
+    private UserDetailsCache userDetailsCache = new UserDetailsCache(100, 60, new SimpleMeterRegistry(),
+            mock(CacheInvalidationBus.class));
+
+    @Spy
+    private PrimaryReads primaryReads = new PrimaryReads(mock(PlatformTransactionManager.class));
+
     @InjectMocks
     private UserServiceImpl userService;
 
@@ -68,24 +89,48 @@ public class UserServiceImplTest {
     }
 
     @Test
-    @DisplayName("findByEmail: должен вернуть пользователя по email, если он существует")
+    @DisplayName("findByEmail: должен искать по нормализованному email без учёта регистра")
     void findByEmail_ShouldReturnUser_WhenExists() {
         // Array
         String email = "test@gmail.com";
         User mockUser = new User();
         mockUser.setEmail(email);
 
-        when(usersRepository.findByEmail(email)).thenReturn(Optional.of(mockUser));
+        when(usersRepository.findByEmailLc(email)).thenReturn(Optional.of(mockUser));
 
         // Act
-        Optional<User> result = userService.findByEmail(email);
+        Optional<User> result = userService.findByEmail(" Test@Gmail.COM");
 
         // Assert
         assertTrue(result.isPresent());
         assertEquals(email, result.get().getEmail());
 
-        verify(usersRepository, times(1)).findByEmail(email);
+        verify(usersRepository, times(1)).findByEmailLc(email);
+
+    }
+
+    @Test
+    @DisplayName("findByEmail: старый почти-дубликат без email_lc должен находиться по точному email")
+    void findByEmail_ShouldFindLegacyDuplicateByExactEmail() {
+        // Arrange: нормализованное значение досталось более ранней записи с другим email
+        User duplicate = new User("legacyBob", "password", "Bob@Mail.com");
+        duplicate.setEmailLc(null);
+        when(usersRepository.findByEmailLc("bob@mail.com")).thenReturn(Optional.empty());
+        when(usersRepository.findFirstByEmailAndEmailLcIsNullOrderByIdAsc("Bob@Mail.com"))
+                .thenReturn(Optional.of(duplicate));
+
+        // Act
+        Optional<User> result = userService.findByEmail("Bob@Mail.com");
+
+        // Assert
+        assertEquals(Optional.of(duplicate), result);
+    }
 
+    @Test
+    @DisplayName("findByEmail: пустой email не должен находить записи с NULL в email_lc")
+    void findByEmail_ShouldReturnEmpty_WhenEmailIsNull() {
+        assertTrue(userService.findByEmail(null).isEmpty());
+        verifyNoInteractions(usersRepository);
     }
 
     @Test
@@ -185,6 +230,26 @@ public class UserServiceImplTest {
         }
     }
 
+    @Test
+    @DisplayName("getCurrentUserId: должен взять id из загруженного фильтром пользователя без запроса в БД")
+    void getCurrentUserId_ShouldUsePrincipalId_WithoutQuery() {
+        User principalUser = new User();
+        principalUser.setId(7L);
+        principalUser.setUsername("authUser");
+
+        Authentication authentication = mock(Authentication.class);
+        SecurityContext securityContext = mock(SecurityContext.class);
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        when(authentication.getPrincipal()).thenReturn(new UserDetailsImpl(principalUser));
+
+        try (MockedStatic<SecurityContextHolder> mockedSecurity = Mockito.mockStatic(SecurityContextHolder.class)) {
+            mockedSecurity.when(SecurityContextHolder::getContext).thenReturn(securityContext);
+
+            assertEquals(7L, userService.getCurrentUserId());
+            verifyNoInteractions(usersRepository);
+        }
+    }
+
     @Test
     @DisplayName("getCurrentUserId: должен выбросить исключение, если пользователь не найден в БД")
     void getCurrentUserId_ShouldThrowException_WhenUserNotFoundInDb() {
@@ -213,6 +278,7 @@ public class UserServiceImplTest {
         dbUser.setRole(Role.USER);
 
         when(usersRepository.findByUsername(username)).thenReturn(Optional.of(dbUser));
+        when(usersRepository.findById(5L)).thenReturn(Optional.of(dbUser));
 
         SecurityContext securityContext = mockSecurityContext(username);
 
@@ -230,6 +296,77 @@ public class UserServiceImplTest {
         }
     }
 
+    @Test
+    @DisplayName("getCurrentUserEntry: повторный запрос должен отдаваться из кэша теми же байтами")
+    void getCurrentUserEntry_ShouldServeRepeatedRequestsFromCache() {
+        User principalUser = new User();
+        principalUser.setId(8L);
+        principalUser.setUsername("cachedUser");
+        principalUser.setRole(Role.USER);
+        when(usersRepository.findById(8L)).thenReturn(Optional.of(principalUser));
+
+        Authentication authentication = mock(Authentication.class);
+        SecurityContext securityContext = mock(SecurityContext.class);
+        when(securityContext.getAuthentication()).thenReturn(authentication);
+        when(authentication.getPrincipal()).thenReturn(new UserDetailsImpl(principalUser));
+
+        try (MockedStatic<SecurityContextHolder> mockedSecurity = Mockito.mockStatic(SecurityContextHolder.class)) {
+            mockedSecurity.when(SecurityContextHolder::getContext).thenReturn(securityContext);
+
+            CurrentUserResponseCache.Entry first = userService.getCurrentUserEntry();
+            CurrentUserResponseCache.Entry second = userService.getCurrentUserEntry();
+
+            assertSame(first.json(), second.json());
+            assertEquals("cachedUser", second.response().getUsername());
+            verify(usersRepository, times(1)).findById(8L);
+        }
+    }
+
+    @Test
+    @DisplayName("save/deleteById: должны обновлять и выбрасывать запись кэша /me")
+    void save_ShouldWriteThroughCurrentUserCache() {
+        User user = new User();
+        user.setId(9L);
+        user.setUsername("writer");
+        user.setRole(Role.ADMIN);
+        when(usersRepository.save(user)).thenReturn(user);
+        when(usersRepository.existsById(9L)).thenReturn(true);
+
+        userService.save(user);
+
+        assertEquals(Role.ADMIN, currentUserCache.get(9L, () -> fail("должно быть в кэше")).response().getRole());
+
+        userService.deleteById(9L);
+
+        verify(currentUserCache).invalidate(9L);
+        assertThrows(UserNotFoundException.class, () -> currentUserCache.get(9L, () -> {
+            throw new UserNotFoundException("not cached");
+        }));
+    }
+
+    @Test
+    @DisplayName("save/deleteById: смена роли должна заменять снимок UserDetails, удаление - выбрасывать")
+    void save_ShouldReplaceUserDetailsSnapshot() {
+        User user = new User();
+        user.setId(10L);
+        user.setUsername("promoted");
+        user.setRole(Role.USER);
+        userDetailsCache.put(user);
+
+        user.setRole(Role.ADMIN);
+        when(usersRepository.save(user)).thenReturn(user);
+        when(usersRepository.existsById(10L)).thenReturn(true);
+
+        userService.save(user);
+
+        assertEquals(Role.ADMIN, userDetailsCache.get("promoted", name -> fail("должно быть в кэше")).orElseThrow().getRole());
+
+        userService.deleteById(10L);
+
+        verify(userDetailsCache).invalidate(10L);
+        assertTrue(userDetailsCache.get("promoted", name -> Optional.empty()).isEmpty());
+    }
+
     @Test
     @DisplayName("updateCurrentUserResponse: должен обновить поля и вернуть DTO")
     void updateCurrentUserResponse_ShouldUpdateAndReturnDto() {
@@ -261,14 +398,80 @@ public class UserServiceImplTest {
         }
     }
 
+    @Test
+    @DisplayName("updateCurrentUserResponse: должен отклонить email, занятый другим пользователем в другом регистре")
+    void updateCurrentUserResponse_ShouldRejectTakenEmail() {
+        User dbUser = new User("emailOwner", "password", "old@mail.com");
+        dbUser.setId(1L);
+
+        when(usersRepository.findByUsername("emailOwner")).thenReturn(Optional.of(dbUser));
+        when(usersRepository.existsByEmailLc("taken@mail.com")).thenReturn(true);
+
+        SecurityContext securityContext = mockSecurityContext("emailOwner");
+
+        try (MockedStatic<SecurityContextHolder> mockedSecurity = Mockito.mockStatic(SecurityContextHolder.class)) {
+            mockedSecurity.when(SecurityContextHolder::getContext).thenReturn(securityContext);
+
+            assertThrows(UserValidationException.class,
+                    () -> userService.updateCurrentUserResponse(Map.of("email", "Taken@Mail.com")));
+            verify(usersRepository, never()).save(any(User.class));
+        }
+    }
+
+    @Test
+    @DisplayName("updateCurrentUserResponse: свой же email в другом регистре не должен считаться занятым")
+    void updateCurrentUserResponse_ShouldAcceptOwnEmail() {
+        User dbUser = new User("emailOwner", "password", "Owner@Mail.com");
+        dbUser.setId(1L);
+
+        when(usersRepository.findByUsername("emailOwner")).thenReturn(Optional.of(dbUser));
+        when(usersRepository.save(any(User.class))).thenAnswer(invocationOnMock -> invocationOnMock.getArgument(0));
+
+        SecurityContext securityContext = mockSecurityContext("emailOwner");
+
+        try (MockedStatic<SecurityContextHolder> mockedSecurity = Mockito.mockStatic(SecurityContextHolder.class)) {
+            mockedSecurity.when(SecurityContextHolder::getContext).thenReturn(securityContext);
+
+            CurrentUserResponse response = userService.updateCurrentUserResponse(Map.of("email", "owner@mail.com"));
+
+            assertEquals("owner@mail.com", response.getEmail());
+            verify(usersRepository, never()).existsByEmailLc(any());
+        }
+    }
+
+    @Test
+    @DisplayName("updateCurrentUserResponse: почти-дубликат, повторно отправивший свой email, должен сохраниться без email_lc")
+    void updateCurrentUserResponse_ShouldKeepLegacyDuplicateUnchanged() {
+        // Arrange: email_lc этого адреса принадлежит более ранней записи
+        User dbUser = new User("legacyBob", "password", "Bob@Mail.com");
+        dbUser.setId(2L);
+        dbUser.setEmailLc(null);
+
+        when(usersRepository.findByUsername("legacyBob")).thenReturn(Optional.of(dbUser));
+        when(usersRepository.save(any(User.class))).thenAnswer(invocationOnMock -> invocationOnMock.getArgument(0));
+
+        SecurityContext securityContext = mockSecurityContext("legacyBob");
+
+        try (MockedStatic<SecurityContextHolder> mockedSecurity = Mockito.mockStatic(SecurityContextHolder.class)) {
+            mockedSecurity.when(SecurityContextHolder::getContext).thenReturn(securityContext);
+
+            // Act
+            userService.updateCurrentUserResponse(Map.of("email", "bob@mail.com"));
+
+            // Assert: уникальный индекс email_lc не нарушен
+            verify(usersRepository).save(argThat(u -> u.getEmailLc() == null && u.getEmail().equals("Bob@Mail.com")));
+            verify(usersRepository, never()).existsByEmailLc(any());
+        }
+    }
+
     private SecurityContext mockSecurityContext(String username) {
         Authentication authentication = mock(Authentication.class);
         SecurityContext securityContext = mock(SecurityContext.class);
-        UserDetailsImpl userDetails = mock(UserDetailsImpl.class);
+        // Снимок без id - сервис должен дочитать пользователя по username
+        UserDetailsImpl userDetails = new UserDetailsImpl(new User(username, "password", username + "@test.com"));
 
         when(securityContext.getAuthentication()).thenReturn(authentication);
         when(authentication.getPrincipal()).thenReturn(userDetails);
-        when(userDetails.getUsername()).thenReturn(username);
 
         return securityContext;
     }
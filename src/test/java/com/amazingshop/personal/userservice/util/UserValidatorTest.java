@@ -12,8 +12,6 @@ import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.jupiter.MockitoExtension;
 
-import java.util.Optional;
-
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.Mockito.*;
 
@@ -31,11 +29,11 @@ public class UserValidatorTest {
     void validateUsername_ShouldPass_WhenValid() {
         // Arrange
         String validUsername = "testUser";
-        when(userService.findByUsername(validUsername)).thenReturn(Optional.empty());
+        when(userService.isUsernameTaken(validUsername)).thenReturn(false);
 
         // Act & Assert
         assertDoesNotThrow(() -> userValidator.validateUsername(validUsername));
-        Mockito.verify(userService, times(1)).findByUsername(validUsername);
+        Mockito.verify(userService, times(1)).isUsernameTaken(validUsername);
     }
 
     @Test
@@ -86,10 +84,7 @@ public class UserValidatorTest {
     void validateUsername_ShouldThrowException_WhenAlreadyExists() {
         // Arrange
         String existingUsername = "existingUser";
-        User existingUser = new User();
-        existingUser.setUsername(existingUsername);
-
-        when(userService.findByUsername(existingUsername)).thenReturn(Optional.of(existingUser));
+        when(userService.isUsernameTaken(existingUsername)).thenReturn(true);
 
         // Act & Assert
         UserValidationException exception = assertThrows(
@@ -104,11 +99,11 @@ public class UserValidatorTest {
     void validateEmail_ShouldPass_WhenValid() {
         // Arrange
         String validEmail = "test@example.com";
-        when(userService.findByEmail(validEmail)).thenReturn(Optional.empty());
+        when(userService.isEmailTaken(validEmail)).thenReturn(false);
 
         // Act & Assert
         assertDoesNotThrow(() -> userValidator.validateEmail(validEmail));
-        verify(userService, times(1)).findByEmail(validEmail);
+        verify(userService, times(1)).isEmailTaken(validEmail);
     }
 
     @Test
@@ -136,10 +131,7 @@ public class UserValidatorTest {
     void validateEmail_ShouldThrowException_WhenAlreadyExists() {
         // Arrange
         String existingEmail = "existing@example.com";
-        User existingUser = new User();
-        existingUser.setEmail(existingEmail);
-
-        when(userService.findByEmail(existingEmail)).thenReturn(Optional.of(existingUser));
+        when(userService.isEmailTaken(existingEmail)).thenReturn(true);
 
         // Act & Assert
         UserValidationException exception = assertThrows(
@@ -184,14 +176,14 @@ public class UserValidatorTest {
         validUser.setEmail("valid@example.com");
         validUser.setPassword("password123");
 
-        when(userService.findByUsername("validUser")).thenReturn(Optional.empty());
-        when(userService.findByEmail("valid@example.com")).thenReturn(Optional.empty());
+        when(userService.isUsernameTaken("validUser")).thenReturn(false);
+        when(userService.isEmailTaken("valid@example.com")).thenReturn(false);
 
         // Act & Assert
         assertDoesNotThrow(() -> userValidator.validateAndThrow(validUser));
 
-        verify(userService, times(1)).findByUsername("validUser");
-        verify(userService, times(1)).findByEmail("valid@example.com");
+        verify(userService, times(1)).isUsernameTaken("validUser");
+        verify(userService, times(1)).isEmailTaken("valid@example.com");
     }
 
     @Test
@@ -220,7 +212,7 @@ public class UserValidatorTest {
         user.setEmail("invalid-email"); // Невалидный формат
         user.setPassword("password123");
 
-        when(userService.findByUsername("validUser")).thenReturn(Optional.empty());
+        when(userService.isUsernameTaken("validUser")).thenReturn(false);
 
         // Act & Assert
         UserValidationException exception = assertThrows(
@@ -239,8 +231,8 @@ public class UserValidatorTest {
         user.setEmail("valid@example.com");
         user.setPassword("123"); // Слишком короткий
 
-        when(userService.findByUsername("validUser")).thenReturn(Optional.empty());
-        when(userService.findByEmail("valid@example.com")).thenReturn(Optional.empty());
+        when(userService.isUsernameTaken("validUser")).thenReturn(false);
+        when(userService.isEmailTaken("valid@example.com")).thenReturn(false);
 
         // Act & Assert
         UserValidationException exception = assertThrows(